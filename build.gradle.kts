@@ -40,6 +40,7 @@ sourceSets {
     val main = getByName("main")
     val api = create("api")
     val desktop = create("desktop")
+    val benchmark = create("benchmark")
 
     api.apply {
         java {
@@ -59,6 +60,14 @@ sourceSets {
             runtimeClasspath += api.output
         }
     }
+
+    // Benchmarks and replay harnesses which run on the CPU alone, outside of the game
+    benchmark.apply {
+        java {
+            compileClasspath += main.output + main.compileClasspath
+            runtimeClasspath += main.output + main.runtimeClasspath
+        }
+    }
 }
 
 dependencies {
@@ -88,6 +97,25 @@ tasks {
         targetCompatibility = JavaVersion.VERSION_1_8.toString()
     }
 
+    register<JavaExec>("runQuadEncodingBenchmark") {
+        group = "benchmark"
+        description = "Compares the per-quad and batched chunk vertex encoders"
+
+        val benchmark = sourceSets.getByName("benchmark")
+        classpath = benchmark.runtimeClasspath
+        mainClass = "net.caffeinemc.mods.sodium.benchmark.QuadEncodingBenchmark"
+    }
+
+    register<JavaExec>("runArenaTraceReplay") {
+        group = "benchmark"
+        description = "Replays buffer arena allocation traces without an OpenGL context"
+
+        val benchmark = sourceSets.getByName("benchmark")
+        classpath = benchmark.runtimeClasspath
+        mainClass = "net.caffeinemc.mods.sodium.client.gl.arena.GlBufferArenaTraceReplay"
+        systemProperty("sodium.arena.checkAssertions", project.findProperty("arena.checkAssertions") ?: "false")
+    }
+
     jar {
         from("${rootProject.projectDir}/LICENSE.md")
 
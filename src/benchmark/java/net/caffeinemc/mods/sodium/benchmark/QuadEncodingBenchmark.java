@@ -0,0 +1,139 @@
+package net.caffeinemc.mods.sodium.benchmark;
+
+import net.caffeinemc.mods.sodium.client.render.chunk.terrain.material.Material;
+import net.caffeinemc.mods.sodium.client.render.chunk.terrain.material.parameters.AlphaCutoffParameter;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.builder.ChunkMeshBufferBuilder;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkQuadBatch;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexEncoder;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.impl.CompactChunkVertex;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Compares encoding quads one at a time through {@link ChunkMeshBufferBuilder#push(ChunkVertexEncoder.Vertex[], Material)}
+ * against encoding them all at once through {@link ChunkMeshBufferBuilder#push(ChunkQuadBatch)}, using the compact
+ * vertex format. Both paths must produce identical vertex data, which is checked before anything is measured.
+ *
+ * <p>Usage: {@code QuadEncodingBenchmark [quads per section] [iterations]}</p>
+ */
+public class QuadEncodingBenchmark {
+    private static final int DEFAULT_QUAD_COUNT = 4096;
+    private static final int DEFAULT_ITERATIONS = 2000;
+
+    private static final int WARMUP_ITERATIONS = 500;
+
+    private static final Material MATERIAL = new Material(null, AlphaCutoffParameter.ONE_TENTH, true);
+
+    public static void main(String[] args) {
+        int quadCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_QUAD_COUNT;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+
+        ChunkVertexType vertexType = new CompactChunkVertex();
+
+        ChunkVertexEncoder.Vertex[][] quads = createQuads(quadCount, new Random(42L));
+        ChunkQuadBatch batch = createBatch(quads);
+
+        ChunkMeshBufferBuilder perQuadBuilder = new ChunkMeshBufferBuilder(vertexType, 128 * 1024);
+        ChunkMeshBufferBuilder batchBuilder = new ChunkMeshBufferBuilder(vertexType, 128 * 1024);
+
+        try {
+            encodePerQuad(perQuadBuilder, quads);
+            encodeBatch(batchBuilder, batch);
+
+            if (!perQuadBuilder.slice().equals(batchBuilder.slice())) {
+                throw new IllegalStateException("Batch encoder output does not match the per-quad encoder");
+            }
+
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                encodePerQuad(perQuadBuilder, quads);
+                encodeBatch(batchBuilder, batch);
+            }
+
+            long perQuadNanos = 0L, batchNanos = 0L;
+            long checksum = 0L;
+
+            // Alternate between both paths so that neither benefits from running later with a warmer machine
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                checksum += encodePerQuad(perQuadBuilder, quads);
+                perQuadNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                checksum += encodeBatch(batchBuilder, batch);
+                batchNanos += System.nanoTime() - start;
+            }
+
+            long totalQuads = (long) quadCount * iterations;
+
+            System.out.printf("Quads per section: %d, iterations: %d (checksum %d)%n", quadCount, iterations, checksum);
+            System.out.printf("Per-quad: %.2f ns/quad%n", (double) perQuadNanos / totalQuads);
+            System.out.printf("Batched:  %.2f ns/quad%n", (double) batchNanos / totalQuads);
+            System.out.printf("Speedup:  %.2fx%n", (double) perQuadNanos / batchNanos);
+        } finally {
+            perQuadBuilder.destroy();
+            batchBuilder.destroy();
+        }
+    }
+
+    private static int encodePerQuad(ChunkMeshBufferBuilder builder, ChunkVertexEncoder.Vertex[][] quads) {
+        builder.start(0);
+
+        for (ChunkVertexEncoder.Vertex[] quad : quads) {
+            builder.push(quad, MATERIAL);
+        }
+
+        return sample(builder.slice());
+    }
+
+    private static int encodeBatch(ChunkMeshBufferBuilder builder, ChunkQuadBatch batch) {
+        builder.start(0);
+        builder.push(batch);
+
+        return sample(builder.slice());
+    }
+
+    // Reads back part of the output so that the encoding can not be eliminated as dead code
+    private static int sample(ByteBuffer buffer) {
+        return buffer.getInt(buffer.limit() - 4);
+    }
+
+    private static ChunkVertexEncoder.Vertex[][] createQuads(int quadCount, Random random) {
+        ChunkVertexEncoder.Vertex[][] quads = new ChunkVertexEncoder.Vertex[quadCount][];
+
+        for (int quad = 0; quad < quadCount; quad++) {
+            ChunkVertexEncoder.Vertex[] vertices = ChunkVertexEncoder.Vertex.uninitializedQuad();
+
+            // Axis-aligned unit faces at random block positions within the section, with a sprite in a random atlas cell
+            float x = random.nextInt(16), y = random.nextInt(16), z = random.nextInt(16);
+            float u = random.nextInt(64) / 64.0f, v = random.nextInt(64) / 64.0f;
+
+            for (int corner = 0; corner < 4; corner++) {
+                var vertex = vertices[corner];
+
+                vertex.x = x + ((corner >> 1) & 1);
+                vertex.y = y + 1.0f;
+                vertex.z = z + (((corner + 1) >> 1) & 1);
+                vertex.u = u + (((corner >> 1) & 1) / 64.0f);
+                vertex.v = v + ((((corner + 1) >> 1) & 1) / 64.0f);
+                vertex.color = random.nextInt();
+                vertex.light = (random.nextInt(16) << 20) | (random.nextInt(16) << 4);
+            }
+
+            quads[quad] = vertices;
+        }
+
+        return quads;
+    }
+
+    private static ChunkQuadBatch createBatch(ChunkVertexEncoder.Vertex[][] quads) {
+        ChunkQuadBatch batch = new ChunkQuadBatch(quads.length);
+
+        for (ChunkVertexEncoder.Vertex[] quad : quads) {
+            batch.add(quad, MATERIAL);
+        }
+
+        return batch;
+    }
+}
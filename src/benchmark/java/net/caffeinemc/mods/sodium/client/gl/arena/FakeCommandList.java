@@ -0,0 +1,182 @@
+package net.caffeinemc.mods.sodium.client.gl.arena;
+
+import net.caffeinemc.mods.sodium.client.gl.array.GlVertexArray;
+import net.caffeinemc.mods.sodium.client.gl.buffer.*;
+import net.caffeinemc.mods.sodium.client.gl.device.CommandList;
+import net.caffeinemc.mods.sodium.client.gl.device.DrawCommandList;
+import net.caffeinemc.mods.sodium.client.gl.sync.GlFence;
+import net.caffeinemc.mods.sodium.client.gl.tessellation.GlPrimitiveType;
+import net.caffeinemc.mods.sodium.client.gl.tessellation.GlTessellation;
+import net.caffeinemc.mods.sodium.client.gl.tessellation.TessellationBinding;
+import net.caffeinemc.mods.sodium.client.gl.util.EnumBitField;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A command list which does not need an OpenGL context. Buffers only have a size, and every command which touches
+ * them is checked against that size and counted, so that the buffer arenas can be exercised on the CPU alone. Commands
+ * which are not needed by the arenas are not supported.
+ */
+public class FakeCommandList implements CommandList {
+    private int nextHandle = 1;
+
+    private int liveBuffers;
+    private long liveBytes;
+    private long peakBytes;
+
+    private int copyCount;
+    private long copiedBytes;
+
+    @Override
+    public GlMutableBuffer createMutableBuffer() {
+        this.liveBuffers++;
+
+        return new FakeBuffer(this.nextHandle++);
+    }
+
+    @Override
+    public void allocateStorage(GlMutableBuffer buffer, long bufferSize, GlBufferUsage usage) {
+        this.liveBytes += bufferSize - buffer.getSize();
+        this.peakBytes = Math.max(this.peakBytes, this.liveBytes);
+
+        buffer.setSize(bufferSize);
+    }
+
+    @Override
+    public void copyBufferSubData(GlBuffer src, GlBuffer dst, long readOffset, long writeOffset, long bytes) {
+        checkRange(src, readOffset, bytes);
+        checkRange(dst, writeOffset, bytes);
+
+        if (src == dst && readOffset < writeOffset + bytes && writeOffset < readOffset + bytes) {
+            throw new IllegalStateException("Overlapping copy within buffer " + src.handle());
+        }
+
+        this.copyCount++;
+        this.copiedBytes += bytes;
+    }
+
+    @Override
+    public void deleteBuffer(GlBuffer buffer) {
+        // Fails if the buffer has already been deleted
+        buffer.handle();
+        buffer.invalidateHandle();
+
+        this.liveBuffers--;
+        this.liveBytes -= ((GlMutableBuffer) buffer).getSize();
+    }
+
+    static void checkRange(GlBuffer buffer, long offset, long bytes) {
+        long size = ((GlMutableBuffer) buffer).getSize();
+
+        if (offset < 0 || bytes < 0 || offset + bytes > size) {
+            throw new IllegalStateException("Range [%d, %d) is outside of buffer %d with size %d"
+                    .formatted(offset, offset + bytes, buffer.handle(), size));
+        }
+    }
+
+    public int getLiveBuffers() {
+        return this.liveBuffers;
+    }
+
+    public long getLiveBytes() {
+        return this.liveBytes;
+    }
+
+    public long getPeakBytes() {
+        return this.peakBytes;
+    }
+
+    public int getCopyCount() {
+        return this.copyCount;
+    }
+
+    public long getCopiedBytes() {
+        return this.copiedBytes;
+    }
+
+    @Override
+    public void flush() {
+
+    }
+
+    @Override
+    public GlImmutableBuffer createImmutableBuffer(long bufferSize, EnumBitField<GlBufferStorageFlags> flags) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public GlTessellation createTessellation(GlPrimitiveType primitiveType, TessellationBinding[] bindings) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void bindVertexArray(GlVertexArray array) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void uploadData(GlMutableBuffer glBuffer, ByteBuffer byteBuffer, GlBufferUsage usage) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void getBufferSubData(GlBuffer buffer, long offset, ByteBuffer data) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void bindBuffer(GlBufferTarget target, GlBuffer buffer) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void bindBufferBase(GlBufferTarget target, int index, GlBuffer buffer) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void unbindVertexArray() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteVertexArray(GlVertexArray vertexArray) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DrawCommandList beginTessellating(GlTessellation tessellation) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteTessellation(GlTessellation tessellation) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public GlBufferMapping mapBuffer(GlBuffer buffer, long offset, long length, EnumBitField<GlBufferMapFlags> flags) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void unmap(GlBufferMapping map) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void flushMappedRange(GlBufferMapping map, int offset, int length) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public GlFence createFence() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static class FakeBuffer extends GlMutableBuffer {
+        private FakeBuffer(int handle) {
+            super(handle);
+        }
+    }
+}
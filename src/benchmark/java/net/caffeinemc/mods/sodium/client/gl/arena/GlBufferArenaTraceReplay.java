@@ -0,0 +1,312 @@
+package net.caffeinemc.mods.sodium.client.gl.arena;
+
+import it.unimi.dsi.fastutil.ints.Int2ReferenceOpenHashMap;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replays a trace of allocations against a {@link GlBufferArena} which is backed by a {@link FakeCommandList}, so that
+ * the allocator can be verified and timed without an OpenGL context. After every replay, the live segments are checked
+ * for overlaps and against the arena's usage counters, and every buffer command is checked against the bounds of the
+ * buffers it touches.
+ *
+ * <p>A trace is a text file with one operation per line, where blank lines and lines starting with {@code #} are
+ * ignored:</p>
+ * <ul>
+ *     <li>{@code alloc <id> <elements>} allocates a segment, growing the arena if there is no free space for it</li>
+ *     <li>{@code free <id>} frees the segment which was allocated with the given id</li>
+ *     <li>{@code compact <bytes>} runs one step of incremental compaction with the given copy budget</li>
+ * </ul>
+ *
+ * <p>Usage:</p>
+ * <ul>
+ *     <li>{@code GlBufferArenaTraceReplay [iterations]} replays a generated trace</li>
+ *     <li>{@code GlBufferArenaTraceReplay replay <file> [iterations]} replays the trace in the file</li>
+ *     <li>{@code GlBufferArenaTraceReplay generate <file> [sections] [rebuilds] [seed]} writes a generated trace</li>
+ * </ul>
+ *
+ * <p>Pass {@code -Dsodium.arena.checkAssertions=true} to also verify the arena's segment and free lists after every
+ * operation.</p>
+ */
+public class GlBufferArenaTraceReplay {
+    // The vertex stride of the compact format, and the initial size of a region's geometry arena
+    private static final int STRIDE = 20;
+    private static final int INITIAL_CAPACITY = 256 * 756;
+
+    // The defragmentation budget of RenderRegionManager for each frame
+    private static final int COMPACTION_BUDGET = 4 * 1024 * 1024;
+
+    private static final int DEFAULT_SECTIONS = 256;
+    private static final int DEFAULT_REBUILDS = 200_000;
+    private static final long DEFAULT_SEED = 42L;
+
+    private static final int DEFAULT_ITERATIONS = 20;
+
+    private static final int OP_ALLOC = 0;
+    private static final int OP_FREE = 1;
+    private static final int OP_COMPACT = 2;
+
+    private record Op(int type, int id, int value) {
+
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("generate")) {
+            int sections = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SECTIONS;
+            int rebuilds = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_REBUILDS;
+            long seed = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_SEED;
+
+            write(Path.of(args[1]), generate(sections, rebuilds, seed));
+
+            return;
+        }
+
+        List<Op> trace;
+        int iterations;
+
+        if (args.length > 0 && args[0].equals("replay")) {
+            trace = read(Path.of(args[1]));
+            iterations = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ITERATIONS;
+        } else {
+            trace = generate(DEFAULT_SECTIONS, DEFAULT_REBUILDS, DEFAULT_SEED);
+            iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        }
+
+        // The first replay also warms up the allocator, and its statistics are reported since every replay is identical
+        Result result = replay(trace);
+
+        long totalNanos = 0L;
+
+        for (int i = 0; i < iterations; i++) {
+            totalNanos += replay(trace).nanos;
+        }
+
+        System.out.printf("Operations: %d, iterations: %d%n", trace.size(), iterations);
+        System.out.printf("Time: %.1f ns/op%n", (double) totalNanos / ((long) trace.size() * Math.max(1, iterations)));
+        System.out.printf("Peak fragmentation: %.1f%%, final fragmentation: %.1f%%%n",
+                result.peakFragmentation * 100.0f, result.finalFragmentation * 100.0f);
+        System.out.printf("Used: %d KiB, allocated: %d KiB, peak allocated: %d KiB%n",
+                result.usedBytes / 1024, result.allocatedBytes / 1024, result.peakAllocatedBytes / 1024);
+        System.out.printf("Free segments: %d, resizes: %d, copies: %d (%d KiB)%n",
+                result.freeSegments, result.resizes, result.copies, result.copiedBytes / 1024);
+    }
+
+    private record Result(long nanos, float peakFragmentation, float finalFragmentation, long usedBytes,
+                          long allocatedBytes, long peakAllocatedBytes, int freeSegments, int resizes, int copies,
+                          long copiedBytes) {
+
+    }
+
+    private static Result replay(List<Op> trace) {
+        FakeCommandList commandList = new FakeCommandList();
+
+        // Uploads are not replayed, so the arena never needs a staging buffer
+        GlBufferArena arena = new GlBufferArena(commandList, INITIAL_CAPACITY, STRIDE, null);
+
+        Int2ReferenceOpenHashMap<GlBufferSegment> segments = new Int2ReferenceOpenHashMap<>();
+
+        float peakFragmentation = 0.0f;
+        int resizes = 0;
+
+        long start = System.nanoTime();
+
+        for (Op op : trace) {
+            switch (op.type) {
+                case OP_ALLOC -> {
+                    GlBufferSegment segment = arena.alloc(op.value);
+
+                    // Grow the arena in the same way as GlBufferArena#upload does when an upload does not fit
+                    if (segment == null) {
+                        arena.ensureCapacity(commandList, op.value);
+                        segment = arena.alloc(op.value);
+                        resizes++;
+
+                        if (segment == null) {
+                            throw new IllegalStateException("Failed to allocate " + op.value + " elements after resizing");
+                        }
+                    }
+
+                    if (segments.put(op.id, segment) != null) {
+                        throw new IllegalArgumentException("Segment " + op.id + " is allocated twice");
+                    }
+                }
+                case OP_FREE -> {
+                    GlBufferSegment segment = segments.remove(op.id);
+
+                    if (segment == null) {
+                        throw new IllegalArgumentException("Segment " + op.id + " is not allocated");
+                    }
+
+                    segment.delete();
+                }
+                case OP_COMPACT -> {
+                    arena.compact(commandList, op.value);
+                    peakFragmentation = Math.max(peakFragmentation, arena.getFragmentation());
+                }
+            }
+        }
+
+        long nanos = System.nanoTime() - start;
+
+        verify(arena, commandList, segments.values());
+
+        Result result = new Result(nanos, peakFragmentation, arena.getFragmentation(), arena.getDeviceUsedMemory(),
+                arena.getDeviceAllocatedMemory(), commandList.getPeakBytes(), arena.getFreeSegmentCount(), resizes,
+                commandList.getCopyCount(), commandList.getCopiedBytes());
+
+        arena.delete(commandList);
+
+        if (commandList.getLiveBuffers() != 0) {
+            throw new IllegalStateException("Arena leaked " + commandList.getLiveBuffers() + " buffers");
+        }
+
+        return result;
+    }
+
+    private static void verify(GlBufferArena arena, FakeCommandList commandList, Iterable<GlBufferSegment> live) {
+        List<GlBufferSegment> segments = new ArrayList<>();
+        live.forEach(segments::add);
+        segments.sort(Comparator.comparingInt(GlBufferSegment::getOffset));
+
+        long used = 0L;
+        int end = 0;
+
+        for (GlBufferSegment segment : segments) {
+            if (segment.getOffset() < end) {
+                throw new IllegalStateException("Segment at " + segment.getOffset() + " overlaps the previous segment");
+            }
+
+            end = segment.getOffset() + segment.getLength();
+            used += segment.getLength();
+        }
+
+        if ((long) end * STRIDE > arena.getDeviceAllocatedMemory()) {
+            throw new IllegalStateException("Segments extend past the end of the arena");
+        }
+
+        if (used * STRIDE != arena.getDeviceUsedMemory()) {
+            throw new IllegalStateException("Arena reports %d bytes in use, but the live segments hold %d bytes"
+                    .formatted(arena.getDeviceUsedMemory(), used * STRIDE));
+        }
+
+        if (commandList.getLiveBytes() != arena.getDeviceAllocatedMemory()) {
+            throw new IllegalStateException("Arena reports %d bytes allocated, but its buffer holds %d bytes"
+                    .formatted(arena.getDeviceAllocatedMemory(), commandList.getLiveBytes()));
+        }
+    }
+
+    /**
+     * Generates a trace which resembles the geometry arena of a region: the sections are first loaded in bursts, then
+     * rebuilt at random with meshes of a similar size, and occasionally a large part of the region is unloaded and
+     * loaded again. Compaction runs at the same rate as it would once per frame.
+     */
+    private static List<Op> generate(int sections, int rebuilds, long seed) {
+        Random random = new Random(seed);
+        List<Op> trace = new ArrayList<>();
+
+        int[] ids = new int[sections];
+        int[] sizes = new int[sections];
+        int nextId = 0;
+
+        for (int section = 0; section < sections; section++) {
+            ids[section] = -1;
+        }
+
+        for (int i = 0; i < rebuilds; i++) {
+            if (i % 8 == 0) {
+                trace.add(new Op(OP_COMPACT, 0, COMPACTION_BUDGET));
+            }
+
+            if (random.nextInt(5000) == 0) {
+                // Unload a contiguous part of the region, as happens when the camera moves away from it
+                int first = random.nextInt(sections);
+                int count = random.nextInt(sections / 2) + 1;
+
+                for (int section = first; section < Math.min(sections, first + count); section++) {
+                    if (ids[section] != -1) {
+                        trace.add(new Op(OP_FREE, ids[section], 0));
+                        ids[section] = -1;
+                    }
+                }
+
+                continue;
+            }
+
+            int section = random.nextInt(sections);
+
+            if (ids[section] != -1) {
+                trace.add(new Op(OP_FREE, ids[section], 0));
+            }
+
+            // Rebuilt sections usually change by a few blocks, while new sections have any size between an almost
+            // empty section and a very dense one
+            int size;
+
+            if (ids[section] != -1 && random.nextInt(4) != 0) {
+                size = Math.max(4, sizes[section] + ((random.nextInt(17) - 8) * 4));
+            } else {
+                size = (int) Math.exp(Math.log(4) + (random.nextDouble() * (Math.log(24_000) - Math.log(4)))) & ~3;
+            }
+
+            ids[section] = nextId++;
+            sizes[section] = Math.max(4, size);
+
+            trace.add(new Op(OP_ALLOC, ids[section], sizes[section]));
+        }
+
+        return trace;
+    }
+
+    private static List<Op> read(Path path) throws IOException {
+        List<Op> trace = new ArrayList<>();
+        int lineNumber = 0;
+
+        for (String line : Files.readAllLines(path)) {
+            lineNumber++;
+            line = line.trim();
+
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] parts = line.split("\\s+");
+
+            try {
+                trace.add(switch (parts[0]) {
+                    case "alloc" -> new Op(OP_ALLOC, Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                    case "free" -> new Op(OP_FREE, Integer.parseInt(parts[1]), 0);
+                    case "compact" -> new Op(OP_COMPACT, 0, Integer.parseInt(parts[1]));
+                    default -> throw new IllegalArgumentException("Unknown operation " + parts[0]);
+                });
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid trace at line " + lineNumber + ": " + line, e);
+            }
+        }
+
+        return trace;
+    }
+
+    private static void write(Path path, List<Op> trace) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("# Generated by GlBufferArenaTraceReplay, stride " + STRIDE);
+            writer.newLine();
+
+            for (Op op : trace) {
+                writer.write(switch (op.type) {
+                    case OP_ALLOC -> "alloc " + op.id + " " + op.value;
+                    case OP_FREE -> "free " + op.id;
+                    case OP_COMPACT -> "compact " + op.value;
+                    default -> throw new IllegalStateException();
+                });
+                writer.newLine();
+            }
+        }
+    }
+}
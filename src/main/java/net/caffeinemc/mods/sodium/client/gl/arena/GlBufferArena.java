@@ -5,20 +5,31 @@ import net.caffeinemc.mods.sodium.client.gl.buffer.GlBuffer;
 import net.caffeinemc.mods.sodium.client.gl.buffer.GlBufferUsage;
 import net.caffeinemc.mods.sodium.client.gl.buffer.GlMutableBuffer;
 import net.caffeinemc.mods.sodium.client.gl.device.CommandList;
+import org.jetbrains.annotations.Nullable;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class GlBufferArena {
-    static final boolean CHECK_ASSERTIONS = false;
+    // Verifies the segment list and free lists after every allocation, which is very slow and only useful for debugging
+    static final boolean CHECK_ASSERTIONS = Boolean.parseBoolean(System.getProperty("sodium.arena.checkAssertions", "false"));
 
     private static final GlBufferUsage BUFFER_USAGE = GlBufferUsage.STATIC_DRAW;
 
+    // The size class of a free segment is the index of the highest set bit in its length
+    private static final int SIZE_CLASS_COUNT = Integer.SIZE;
+
+    // The fraction of free memory outside the largest free segment above which the arena will be compacted
+    private static final float COMPACTION_THRESHOLD = 0.25f;
+
+    private final int initialCapacity;
     private final int resizeIncrement;
 
     private final StagingBuffer stagingBuffer;
@@ -26,6 +37,15 @@ public class GlBufferArena {
 
     private GlBufferSegment head;
 
+    // Free segments are additionally kept in unordered lists segregated by size class, so that allocations do not need
+    // to walk every segment in the arena. Each bit of the mask is set if the list for that size class is non-empty.
+    private final GlBufferSegment[] freeLists = new GlBufferSegment[SIZE_CLASS_COUNT];
+    private int freeListMask;
+    private int freeSegmentCount;
+
+    // Set when compaction could not find a hole for the last segment, and cleared once a segment is freed
+    private boolean compactionStalled;
+
     private int capacity;
     private int used;
 
@@ -33,6 +53,7 @@ public class GlBufferArena {
 
     public GlBufferArena(CommandList commands, int initialCapacity, int stride, StagingBuffer stagingBuffer) {
         this.capacity = initialCapacity;
+        this.initialCapacity = initialCapacity;
         this.resizeIncrement = initialCapacity / 16;
 
         this.stride = stride;
@@ -40,6 +61,8 @@ public class GlBufferArena {
         this.head = new GlBufferSegment(this, 0, initialCapacity);
         this.head.setFree(true);
 
+        this.addFreeSegment(this.head);
+
         this.arenaBuffer = commands.createMutableBuffer();
         commands.allocateStorage(this.arenaBuffer, this.capacity * stride, BUFFER_USAGE);
 
@@ -63,6 +86,12 @@ public class GlBufferArena {
         this.head = new GlBufferSegment(this, 0, tail);
         this.head.setFree(true);
 
+        // Every free segment was discarded by the compaction, leaving only the new head
+        this.clearFreeSegments();
+        this.addFreeSegment(this.head);
+
+        this.compactionStalled = false;
+
         if (usedSegments.isEmpty()) {
             this.head.setNext(null);
         } else {
@@ -161,7 +190,53 @@ public class GlBufferArena {
         return this.capacity * this.stride;
     }
 
-    private GlBufferSegment alloc(int size) {
+    public int getStride() {
+        return this.stride;
+    }
+
+    public int getFreeSegmentCount() {
+        return this.freeSegmentCount;
+    }
+
+    /**
+     * Returns the size of the largest free segment in bytes, which is the largest upload that can be serviced without
+     * resizing the arena.
+     */
+    public int getLargestFreeSegment() {
+        if (this.freeListMask == 0) {
+            return 0;
+        }
+
+        int largestClass = (Integer.SIZE - 1) - Integer.numberOfLeadingZeros(this.freeListMask);
+        int largest = 0;
+
+        for (GlBufferSegment entry = this.freeLists[largestClass]; entry != null; entry = entry.getNextFree()) {
+            largest = Math.max(largest, entry.getLength());
+        }
+
+        return largest * this.stride;
+    }
+
+    /**
+     * Returns the fraction of free memory which lies outside the largest free segment. A value of zero means that all
+     * free memory is contiguous, and values close to one mean that free memory is scattered across many small holes.
+     */
+    public float getFragmentation() {
+        int free = this.getDeviceAllocatedMemory() - this.getDeviceUsedMemory();
+
+        if (free <= 0) {
+            return 0.0f;
+        }
+
+        return 1.0f - ((float) this.getLargestFreeSegment() / free);
+    }
+
+    /**
+     * Allocates a segment of the given number of elements from the free space of the arena, without resizing it.
+     *
+     * @return The allocated segment, or null if there is no free segment large enough
+     */
+    GlBufferSegment alloc(int size) {
         GlBufferSegment a = this.findFree(size);
 
         if (a == null) {
@@ -170,6 +245,9 @@ public class GlBufferArena {
 
         GlBufferSegment result;
 
+        // The segment is either consumed entirely or shrinks, so it must be removed from its size class first
+        this.removeFreeSegment(a);
+
         if (a.getLength() == size) {
             a.setFree(false);
 
@@ -187,6 +265,8 @@ public class GlBufferArena {
             a.setLength(a.getLength() - size);
             a.setNext(b);
 
+            this.addFreeSegment(a);
+
             result = b;
         }
 
@@ -197,26 +277,108 @@ public class GlBufferArena {
     }
 
     private GlBufferSegment findFree(int size) {
-        GlBufferSegment entry = this.head;
+        int sizeClass = getSizeClass(Math.max(size, 1));
+
+        // The size class of the request can also contain segments which are too small, so find the best fit within it
         GlBufferSegment best = null;
 
-        while (entry != null) {
-            if (entry.isFree()) {
-                if (entry.getLength() == size) {
-                    return entry;
-                } else if (entry.getLength() >= size) {
-                    if (best == null || best.getLength() > entry.getLength()) {
-                        best = entry;
-                    }
+        for (GlBufferSegment entry = this.freeLists[sizeClass]; entry != null; entry = entry.getNextFree()) {
+            if (entry.getLength() == size) {
+                return entry;
+            } else if (entry.getLength() > size) {
+                if (best == null || best.getLength() > entry.getLength()) {
+                    best = entry;
                 }
             }
+        }
 
-            entry = entry.getNext();
+        if (best != null) {
+            return best;
+        }
+
+        // Any segment in a larger size class can hold the request, so take the smallest one from the first non-empty list
+        int largerClasses = sizeClass + 1 < SIZE_CLASS_COUNT ? this.freeListMask & (-1 << (sizeClass + 1)) : 0;
+
+        if (largerClasses == 0) {
+            return null;
+        }
+
+        return findSmallest(this.freeLists[Integer.numberOfTrailingZeros(largerClasses)]);
+    }
+
+    private static GlBufferSegment findSmallest(GlBufferSegment list) {
+        GlBufferSegment best = list;
+
+        for (GlBufferSegment entry = list; entry != null; entry = entry.getNextFree()) {
+            if (entry.getLength() < best.getLength()) {
+                best = entry;
+            }
         }
 
         return best;
     }
 
+    private static int getSizeClass(int length) {
+        return (Integer.SIZE - 1) - Integer.numberOfLeadingZeros(length);
+    }
+
+    private void addFreeSegment(GlBufferSegment segment) {
+        if (segment.getLength() <= 0) {
+            return;
+        }
+
+        int sizeClass = getSizeClass(segment.getLength());
+        GlBufferSegment first = this.freeLists[sizeClass];
+
+        segment.setPrevFree(null);
+        segment.setNextFree(first);
+
+        if (first != null) {
+            first.setPrevFree(segment);
+        }
+
+        this.freeLists[sizeClass] = segment;
+        this.freeListMask |= 1 << sizeClass;
+        this.freeSegmentCount++;
+    }
+
+    private void removeFreeSegment(GlBufferSegment segment) {
+        if (segment.getLength() <= 0) {
+            return;
+        }
+
+        int sizeClass = getSizeClass(segment.getLength());
+
+        GlBufferSegment prev = segment.getPrevFree();
+        GlBufferSegment next = segment.getNextFree();
+
+        if (prev != null) {
+            prev.setNextFree(next);
+        } else {
+            this.freeLists[sizeClass] = next;
+        }
+
+        if (next != null) {
+            next.setPrevFree(prev);
+        }
+
+        if (this.freeLists[sizeClass] == null) {
+            this.freeListMask &= ~(1 << sizeClass);
+        }
+
+        segment.setPrevFree(null);
+        segment.setNextFree(null);
+
+        this.freeSegmentCount--;
+    }
+
+    private void clearFreeSegments() {
+        Arrays.fill(this.freeLists, null);
+
+        this.freeListMask = 0;
+        this.freeSegmentCount = 0;
+    }
+
     public void free(GlBufferSegment entry) {
         if (entry.isFree()) {
             throw new IllegalStateException("Already freed");
@@ -225,20 +387,261 @@ public class GlBufferArena {
         entry.setFree(true);
 
         this.used -= entry.getLength();
+        this.compactionStalled = false;
+
+        this.coalesce(entry);
+
+        this.checkAssertions();
+    }
 
+    /**
+     * Merges a newly freed segment with its free neighbours, and adds the resulting segment to the free lists.
+     */
+    private GlBufferSegment coalesce(GlBufferSegment entry) {
+        // The neighbouring free segments leave their size classes, since their lengths change
         GlBufferSegment next = entry.getNext();
 
         if (next != null && next.isFree()) {
+            this.removeFreeSegment(next);
             entry.mergeInto(next);
         }
 
         GlBufferSegment prev = entry.getPrev();
 
         if (prev != null && prev.isFree()) {
+            this.removeFreeSegment(prev);
             prev.mergeInto(entry);
+
+            entry = prev;
+        }
+
+        this.addFreeSegment(entry);
+
+        return entry;
+    }
+
+    /**
+     * Incrementally compacts the arena by moving used segments from the end of the buffer into free space closer to
+     * the start, and releases trailing free space once at least half of the buffer is unused. Segments keep their
+     * identity, but their offsets will change, so the owners of any segments must re-read their offsets if this
+     * method returns a non-zero value. The buffer object will also change if the arena shrinks.
+     *
+     * @param commandList The command list to record buffer copies with
+     * @param maxBytes The number of bytes which can be copied, though the first segment moved is always allowed to
+     *                 exceed it. Shrinking the buffer never exceeds it.
+     * @return The number of bytes which were copied
+     */
+    public int compact(CommandList commandList, int maxBytes) {
+        return this.compact(commandList, maxBytes, null);
+    }
+
+    /**
+     * Compacts the arena as {@link #compact(CommandList, int)} does, and additionally reports every segment which was
+     * moved, so that only the owners of those segments need to re-read their offsets. Shrinking the arena doesn't move
+     * any segments, but still changes the buffer object.
+     *
+     * @param movedSegments Receives each segment after it has been moved, or null
+     */
+    public int compact(CommandList commandList, int maxBytes, @Nullable Consumer<GlBufferSegment> movedSegments) {
+        int maxElements = maxBytes / this.stride;
+        int copied = 0;
+
+        if (!this.compactionStalled && this.getFragmentation() > COMPACTION_THRESHOLD &&
+                (this.capacity - this.used) >= this.resizeIncrement) {
+            GlBufferSegment last = findLastUsed(this.head);
+
+            while (last != null) {
+                if (copied > 0 && copied + last.getLength() > maxElements) {
+                    break;
+                }
+
+                GlBufferSegment hole = this.findHoleBefore(last);
+
+                if (hole == null) {
+                    this.compactionStalled = true;
+                    break;
+                }
+
+                copied += last.getLength();
+
+                GlBufferSegment vacated = this.moveSegment(commandList, last, hole);
+
+                if (movedSegments != null) {
+                    movedSegments.accept(last);
+                }
+
+                last = findLastUsed(vacated);
+            }
+        }
+
+        if (copied < maxElements) {
+            copied += this.tryShrink(commandList, maxElements - copied);
         }
 
         this.checkAssertions();
+
+        return copied * this.stride;
+    }
+
+    /**
+     * Moves the used segment into the start of the hole, leaving free space behind. The hole must lie before the
+     * segment, and be at least as large as it.
+     *
+     * @return The free segment which contains the space the segment was moved out of
+     */
+    private GlBufferSegment moveSegment(CommandList commandList, GlBufferSegment segment, GlBufferSegment hole) {
+        int length = segment.getLength();
+        int readOffset = segment.getOffset();
+        int writeOffset = hole.getOffset();
+
+        var copy = new PendingBufferCopyCommand(readOffset, writeOffset, length);
+
+        // The ranges never overlap, since the hole ends before the segment starts
+        commandList.copyBufferSubData(this.arenaBuffer, this.arenaBuffer,
+                (long) copy.readOffset * this.stride,
+                (long) copy.writeOffset * this.stride,
+                (long) copy.length * this.stride);
+
+        // Leave free space behind in place of the segment, which may absorb the hole if they are adjacent
+        GlBufferSegment vacated = new GlBufferSegment(this, readOffset, length);
+        vacated.setFree(true);
+
+        this.replaceSegment(segment, vacated);
+        vacated = this.coalesce(vacated);
+
+        this.removeFreeSegment(hole);
+
+        // Insert the segment at the start of the hole, and shrink the hole by the same amount
+        segment.setOffset(writeOffset);
+
+        if (hole.getLength() == length) {
+            this.replaceSegment(hole, segment);
+        } else {
+            GlBufferSegment prev = hole.getPrev();
+
+            segment.setPrev(prev);
+            segment.setNext(hole);
+            hole.setPrev(segment);
+
+            if (prev != null) {
+                prev.setNext(segment);
+            } else {
+                this.head = segment;
+            }
+
+            hole.setOffset(writeOffset + length);
+            hole.setLength(hole.getLength() - length);
+
+            this.addFreeSegment(hole);
+        }
+
+        return vacated;
+    }
+
+    private void replaceSegment(GlBufferSegment prev, GlBufferSegment next) {
+        next.setPrev(prev.getPrev());
+        next.setNext(prev.getNext());
+
+        if (next.getPrev() != null) {
+            next.getPrev()
+                    .setNext(next);
+        } else {
+            this.head = next;
+        }
+
+        if (next.getNext() != null) {
+            next.getNext()
+                    .setPrev(next);
+        }
+    }
+
+    /**
+     * Finds the free segment closest to the start of the arena which lies before the given segment, and is large
+     * enough to hold it.
+     */
+    private GlBufferSegment findHoleBefore(GlBufferSegment segment) {
+        GlBufferSegment best = null;
+
+        int mask = this.freeListMask & (-1 << getSizeClass(segment.getLength()));
+
+        while (mask != 0) {
+            int sizeClass = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+
+            for (GlBufferSegment entry = this.freeLists[sizeClass]; entry != null; entry = entry.getNextFree()) {
+                if (entry.getLength() >= segment.getLength() && entry.getOffset() < segment.getOffset()) {
+                    if (best == null || entry.getOffset() < best.getOffset()) {
+                        best = entry;
+                    }
+                }
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Releases the free space at the end of the arena once the used region fits in half of the buffer or less. The
+     * used region is copied into a smaller buffer without moving any segments. The whole used region is copied at once,
+     * so the arena is not shrunk while it is larger than the number of elements which may be copied.
+     *
+     * @param maxElements The number of elements which may be copied
+     * @return The number of elements which were copied
+     */
+    private int tryShrink(CommandList commandList, int maxElements) {
+        if (this.capacity <= this.initialCapacity) {
+            return 0;
+        }
+
+        // The trailing free segment must span at least half of the buffer, so avoid walking the list otherwise
+        if (this.getLargestFreeSegment() < this.getDeviceAllocatedMemory() / 2) {
+            return 0;
+        }
+
+        GlBufferSegment last = findLastUsed(this.head);
+
+        if (last == null) {
+            return 0;
+        }
+
+        int end = last.getEnd();
+        int newCapacity = Math.max(this.initialCapacity, end + this.resizeIncrement);
+
+        if (newCapacity > this.capacity / 2 || end > maxElements) {
+            return 0;
+        }
+
+        GlBufferSegment tail = last.getNext();
+
+        if (tail == null || !tail.isFree()) {
+            return 0;
+        }
+
+        this.transferSegments(commandList, List.of(new PendingBufferCopyCommand(0, 0, end)), newCapacity);
+
+        this.removeFreeSegment(tail);
+        tail.setLength(newCapacity - tail.getOffset());
+        this.addFreeSegment(tail);
+
+        return end;
+    }
+
+    private static GlBufferSegment findLastUsed(GlBufferSegment from) {
+        GlBufferSegment last = null;
+
+        // Walk forwards to the end of the list, then backwards to the first used segment
+        GlBufferSegment seg = from;
+
+        while (seg != null) {
+            last = seg;
+            seg = seg.getNext();
+        }
+
+        while (last != null && last.isFree()) {
+            last = last.getPrev();
+        }
+
+        return last;
     }
 
     public void delete(CommandList commands) {
@@ -332,6 +735,7 @@ public class GlBufferArena {
     private void checkAssertions0() {
         GlBufferSegment seg = this.head;
         int used = 0;
+        int free = 0;
 
         while (seg != null) {
             if (seg.getOffset() < 0) {
@@ -342,6 +746,8 @@ public class GlBufferArena {
 
             if (!seg.isFree()) {
                 used += seg.getLength();
+            } else if (seg.getLength() > 0) {
+                free++;
             }
 
             GlBufferSegment next = seg.getNext();
@@ -388,6 +794,28 @@ public class GlBufferArena {
         if (this.used != used) {
             throw new IllegalStateException("arena.used is invalid");
         }
+
+        int listed = 0;
+
+        for (int sizeClass = 0; sizeClass < SIZE_CLASS_COUNT; sizeClass++) {
+            for (GlBufferSegment entry = this.freeLists[sizeClass]; entry != null; entry = entry.getNextFree()) {
+                if (!entry.isFree()) {
+                    throw new IllegalStateException("free list contains a segment which is in use");
+                } else if (getSizeClass(entry.getLength()) != sizeClass) {
+                    throw new IllegalStateException("free list contains a segment of the wrong size class");
+                }
+
+                listed++;
+            }
+
+            if (((this.freeListMask >>> sizeClass) & 1) != (this.freeLists[sizeClass] != null ? 1 : 0)) {
+                throw new IllegalStateException("free list mask does not match the free lists");
+            }
+        }
+
+        if (listed != free || listed != this.freeSegmentCount) {
+            throw new IllegalStateException("free lists do not contain every free segment");
+        }
     }
 
 }
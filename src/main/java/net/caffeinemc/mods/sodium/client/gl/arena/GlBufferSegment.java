@@ -11,6 +11,13 @@ public class GlBufferSegment {
     private GlBufferSegment next;
     private GlBufferSegment prev;
 
+    // The object which the segment was allocated for, so that it can be found again after the segment has been moved
+    private Object owner;
+
+    // The neighbours of this segment within the arena's free list for its size class, if the segment is free
+    private GlBufferSegment nextFree;
+    private GlBufferSegment prevFree;
+
     public GlBufferSegment(GlBufferArena arena, int offset, int length) {
         this.arena = arena;
         this.offset = offset;
@@ -21,6 +28,14 @@ public class GlBufferSegment {
         this.arena.free(this);
     }
 
+    public Object getOwner() {
+        return this.owner;
+    }
+
+    public void setOwner(Object owner) {
+        this.owner = owner;
+    }
+
     protected int getEnd() {
         return this.offset + this.length;
     }
@@ -73,6 +88,22 @@ public class GlBufferSegment {
         this.prev = prev;
     }
 
+    protected GlBufferSegment getNextFree() {
+        return this.nextFree;
+    }
+
+    protected void setNextFree(GlBufferSegment nextFree) {
+        this.nextFree = nextFree;
+    }
+
+    protected GlBufferSegment getPrevFree() {
+        return this.prevFree;
+    }
+
+    protected void setPrevFree(GlBufferSegment prevFree) {
+        this.prevFree = prevFree;
+    }
+
     protected void mergeInto(GlBufferSegment entry) {
         this.setLength(this.getLength() + entry.getLength());
         this.setNext(entry.getNext());
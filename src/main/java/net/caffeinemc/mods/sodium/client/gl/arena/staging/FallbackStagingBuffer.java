@@ -6,6 +6,7 @@ import net.caffeinemc.mods.sodium.client.gl.buffer.GlMutableBuffer;
 import net.caffeinemc.mods.sodium.client.gl.device.CommandList;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 public class FallbackStagingBuffer implements StagingBuffer {
     private final GlMutableBuffer fallbackBufferObject;
@@ -36,7 +37,7 @@ public class FallbackStagingBuffer implements StagingBuffer {
     }
 
     @Override
-    public String toString() {
-        return "Fallback";
+    public void addDebugStrings(List<String> list) {
+        list.add("Transfer Queue: Fallback");
     }
 }
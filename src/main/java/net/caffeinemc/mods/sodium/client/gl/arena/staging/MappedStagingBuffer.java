@@ -14,6 +14,12 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * A staging buffer made up of persistently mapped segments, each of which is used as a ring buffer whose memory is
+ * reclaimed once the fences of the copies out of it have completed. The number of segments is adjusted based on the
+ * observed upload volume per frame and how many frames it takes for fences to complete, so that uploads rarely need to
+ * fall back to the slow path while little memory is wasted when few uploads happen.
+ */
 public class MappedStagingBuffer implements StagingBuffer {
     private static final EnumBitField<GlBufferStorageFlags> STORAGE_FLAGS =
             EnumBitField.of(GlBufferStorageFlags.PERSISTENT, GlBufferStorageFlags.CLIENT_STORAGE, GlBufferStorageFlags.MAP_WRITE);
@@ -21,30 +27,49 @@ public class MappedStagingBuffer implements StagingBuffer {
     private static final EnumBitField<GlBufferMapFlags> MAP_FLAGS =
             EnumBitField.of(GlBufferMapFlags.PERSISTENT, GlBufferMapFlags.INVALIDATE_BUFFER, GlBufferMapFlags.WRITE, GlBufferMapFlags.EXPLICIT_FLUSH);
 
+    private static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024 * 8; /* 8 MB */
+
+    // The number of segments which are always kept, and the number of segments which the buffer may grow to
+    private static final int MIN_SEGMENTS = 2;
+    private static final int MAX_SEGMENTS = 16;
+
+    // The number of frames the last segment must have been idle and unneeded for before it is released
+    private static final int SHRINK_DELAY_FRAMES = 300;
+
+    // The weight of each new sample in the moving averages of upload volume, fence latency and fallback copy time
+    private static final float AVERAGE_WEIGHT = 0.05f;
+
+    // The factor by which the buffer's capacity should exceed the expected amount of memory in flight
+    private static final float CAPACITY_HEADROOM = 1.5f;
+
     private final FallbackStagingBuffer fallbackStagingBuffer;
 
-    private final MappedBuffer mappedBuffer;
-    private final PriorityQueue<CopyCommand> pendingCopies = new ObjectArrayFIFOQueue<>();
-    private final PriorityQueue<FencedMemoryRegion> fencedRegions = new ObjectArrayFIFOQueue<>();
+    private final List<Segment> segments = new ArrayList<>();
+    private final int segmentSize;
+
+    private int frame;
+    private int shrinkDelay;
 
-    private int start = 0;
-    private int pos = 0;
+    private long uploadedBytes;
+    private long fallbackNanos;
 
-    private final int capacity;
-    private int remaining;
+    private float averageUploadBytes;
+    private float averageLatency;
+    private float averageFallbackTime;
+
+    private long fallbackCount;
 
     public MappedStagingBuffer(CommandList commandList) {
-        this(commandList, 1024 * 1024 * 16 /* 16 MB */);
+        this(commandList, DEFAULT_SEGMENT_SIZE);
     }
 
-    public MappedStagingBuffer(CommandList commandList, int capacity) {
-        GlImmutableBuffer buffer = commandList.createImmutableBuffer(capacity, STORAGE_FLAGS);
-        GlBufferMapping map = commandList.mapBuffer(buffer, 0, capacity, MAP_FLAGS);
-
-        this.mappedBuffer = new MappedBuffer(buffer, map);
+    public MappedStagingBuffer(CommandList commandList, int segmentSize) {
+        this.segmentSize = segmentSize;
         this.fallbackStagingBuffer = new FallbackStagingBuffer(commandList);
-        this.capacity = capacity;
-        this.remaining = this.capacity;
+
+        for (int i = 0; i < MIN_SEGMENTS; i++) {
+            this.segments.add(new Segment(commandList, segmentSize));
+        }
     }
 
     public static boolean isSupported(RenderDevice instance) {
@@ -55,59 +80,264 @@ public class MappedStagingBuffer implements StagingBuffer {
     public void enqueueCopy(CommandList commandList, ByteBuffer data, GlBuffer dst, long writeOffset) {
         int length = data.remaining();
 
-        if (length > this.remaining) {
-            this.fallbackStagingBuffer.enqueueCopy(commandList, data, dst, writeOffset);
+        // Prefer a single segment, so that the copy does not need to be split
+        for (Segment segment : this.segments) {
+            if (segment.tryEnqueueCopy(data, dst, writeOffset)) {
+                this.uploadedBytes += length;
+
+                return;
+            }
+        }
+
+        // Otherwise, grow the buffer until there is enough free memory across all segments and spread the copy over
+        // them, which also allows uploads larger than a single segment to be staged
+        while (this.getRemaining() < length && this.segments.size() < MAX_SEGMENTS) {
+            this.segments.add(new Segment(commandList, this.segmentSize));
+        }
+
+        if (this.getRemaining() >= length) {
+            this.enqueueSplitCopy(data, dst, writeOffset);
+            this.uploadedBytes += length;
 
             return;
         }
 
-        int remaining = this.capacity - this.pos;
+        long start = System.nanoTime();
 
-        // Split the transfer in two if we have enough available memory at the end and start of the buffer
-        if (length > remaining) {
-            int split = length - remaining;
+        this.fallbackStagingBuffer.enqueueCopy(commandList, data, dst, writeOffset);
+        this.fallbackCount++;
 
-            this.addTransfer(data.slice(0, remaining), dst, this.pos, writeOffset);
-            this.addTransfer(data.slice(remaining, split), dst, 0, writeOffset + remaining);
+        this.fallbackNanos += System.nanoTime() - start;
+    }
 
-            this.pos = split;
-        } else {
-            this.addTransfer(data, dst, this.pos, writeOffset);
-            this.pos += length;
-        }
+    private void enqueueSplitCopy(ByteBuffer data, GlBuffer dst, long writeOffset) {
+        int length = data.remaining();
+        int offset = 0;
 
-        this.remaining -= length;
+        for (Segment segment : this.segments) {
+            int count = Math.min(segment.remaining, length - offset);
+
+            if (count <= 0) {
+                continue;
+            }
+
+            if (!segment.tryEnqueueCopy(data.slice(data.position() + offset, count), dst, writeOffset + offset)) {
+                throw new IllegalStateException("Segment rejected a copy which fits within its remaining memory");
+            }
+
+            offset += count;
+
+            if (offset == length) {
+                break;
+            }
+        }
     }
 
-    private void addTransfer(ByteBuffer data, GlBuffer dst, long readOffset, long writeOffset) {
-        this.mappedBuffer.map.write(data, (int) readOffset);
-        this.pendingCopies.enqueue(new CopyCommand(dst, readOffset, writeOffset, data.remaining()));
+    private long getRemaining() {
+        long remaining = 0;
+
+        for (Segment segment : this.segments) {
+            remaining += segment.remaining;
+        }
+
+        return remaining;
     }
 
     @Override
     public void flush(CommandList commandList) {
-        if (this.pendingCopies.isEmpty()) {
-            return;
+        for (Segment segment : this.segments) {
+            segment.flush(commandList);
+        }
+    }
+
+    @Override
+    public void delete(CommandList commandList) {
+        for (Segment segment : this.segments) {
+            segment.delete(commandList);
+        }
+
+        this.segments.clear();
+        this.fallbackStagingBuffer.delete(commandList);
+    }
+
+    @Override
+    public void flip() {
+        for (Segment segment : this.segments) {
+            segment.reclaim();
         }
 
-        if (this.pos < this.start) {
-            commandList.flushMappedRange(this.mappedBuffer.map, this.start, this.capacity - this.start);
-            commandList.flushMappedRange(this.mappedBuffer.map, 0, this.pos);
+        this.averageUploadBytes = average(this.averageUploadBytes, this.uploadedBytes);
+        this.averageFallbackTime = average(this.averageFallbackTime, this.fallbackNanos / 1_000_000.0f);
+
+        this.uploadedBytes = 0;
+        this.fallbackNanos = 0;
+
+        this.frame++;
+
+        this.resize();
+    }
+
+    private void resize() {
+        // Every frame of uploads stays in flight until its fence completes, so the buffer needs to hold as many
+        // frames of uploads as it takes for a fence to complete
+        long required = (long) (this.averageUploadBytes * (this.averageLatency + 1.0f) * CAPACITY_HEADROOM);
+        long capacity = (long) this.segments.size() * this.segmentSize;
+
+        if (required > capacity && this.segments.size() < MAX_SEGMENTS) {
+            try (CommandList commandList = RenderDevice.INSTANCE.createCommandList()) {
+                this.segments.add(new Segment(commandList, this.segmentSize));
+            }
+
+            this.shrinkDelay = 0;
+        } else if (required < capacity - this.segmentSize && this.segments.size() > MIN_SEGMENTS
+                && this.segments.get(this.segments.size() - 1).isIdle()) {
+            if (++this.shrinkDelay >= SHRINK_DELAY_FRAMES) {
+                try (CommandList commandList = RenderDevice.INSTANCE.createCommandList()) {
+                    this.segments.remove(this.segments.size() - 1)
+                            .delete(commandList);
+                }
+
+                this.shrinkDelay = 0;
+            }
         } else {
-            commandList.flushMappedRange(this.mappedBuffer.map, this.start, this.pos - this.start);
+            this.shrinkDelay = 0;
         }
+    }
 
-        int bytes = 0;
+    private void onFenceCompleted(int latency) {
+        this.averageLatency = average(this.averageLatency, latency);
+    }
 
-        for (CopyCommand command : consolidateCopies(this.pendingCopies)) {
-            bytes += command.bytes;
+    private static float average(float average, float sample) {
+        return average + ((sample - average) * AVERAGE_WEIGHT);
+    }
 
-            commandList.copyBufferSubData(this.mappedBuffer.buffer, command.buffer, command.readOffset, command.writeOffset, command.bytes);
+    @Override
+    public void addDebugStrings(List<String> list) {
+        long capacity = 0;
+        long used = 0;
+
+        for (Segment segment : this.segments) {
+            capacity += segment.capacity;
+            used += segment.capacity - segment.remaining;
         }
 
-        this.fencedRegions.enqueue(new FencedMemoryRegion(commandList.createFence(), bytes));
+        list.add("Transfer Queue: Mapped %s/%s MiB (%d segments, %.0f%% used)".formatted(
+                MathUtil.toMib(used), MathUtil.toMib(capacity), this.segments.size(),
+                capacity > 0 ? (used * 100.0f) / capacity : 0.0f));
+        list.add("Transfer Queue: Fallbacks=%d (%.2fms/frame) Latency=%.1f frames".formatted(
+                this.fallbackCount, this.averageFallbackTime, this.averageLatency));
+    }
 
-        this.start = this.pos;
+    private final class Segment {
+        private final MappedBuffer mappedBuffer;
+        private final PriorityQueue<CopyCommand> pendingCopies = new ObjectArrayFIFOQueue<>();
+        private final PriorityQueue<FencedMemoryRegion> fencedRegions = new ObjectArrayFIFOQueue<>();
+
+        private int start = 0;
+        private int pos = 0;
+
+        private final int capacity;
+        private int remaining;
+
+        private Segment(CommandList commandList, int capacity) {
+            GlImmutableBuffer buffer = commandList.createImmutableBuffer(capacity, STORAGE_FLAGS);
+            GlBufferMapping map = commandList.mapBuffer(buffer, 0, capacity, MAP_FLAGS);
+
+            this.mappedBuffer = new MappedBuffer(buffer, map);
+            this.capacity = capacity;
+            this.remaining = this.capacity;
+        }
+
+        private boolean tryEnqueueCopy(ByteBuffer data, GlBuffer dst, long writeOffset) {
+            int length = data.remaining();
+
+            if (length > this.remaining) {
+                return false;
+            }
+
+            int remaining = this.capacity - this.pos;
+
+            // Split the transfer in two if we have enough available memory at the end and start of the buffer
+            if (length > remaining) {
+                int split = length - remaining;
+
+                this.addTransfer(data.slice(0, remaining), dst, this.pos, writeOffset);
+                this.addTransfer(data.slice(remaining, split), dst, 0, writeOffset + remaining);
+
+                this.pos = split;
+            } else {
+                this.addTransfer(data, dst, this.pos, writeOffset);
+                this.pos += length;
+            }
+
+            this.remaining -= length;
+
+            return true;
+        }
+
+        private void addTransfer(ByteBuffer data, GlBuffer dst, long readOffset, long writeOffset) {
+            this.mappedBuffer.map.write(data, (int) readOffset);
+            this.pendingCopies.enqueue(new CopyCommand(dst, readOffset, writeOffset, data.remaining()));
+        }
+
+        private void flush(CommandList commandList) {
+            if (this.pendingCopies.isEmpty()) {
+                return;
+            }
+
+            if (this.pos < this.start) {
+                commandList.flushMappedRange(this.mappedBuffer.map, this.start, this.capacity - this.start);
+                commandList.flushMappedRange(this.mappedBuffer.map, 0, this.pos);
+            } else {
+                commandList.flushMappedRange(this.mappedBuffer.map, this.start, this.pos - this.start);
+            }
+
+            int bytes = 0;
+
+            for (CopyCommand command : consolidateCopies(this.pendingCopies)) {
+                bytes += command.bytes;
+
+                commandList.copyBufferSubData(this.mappedBuffer.buffer, command.buffer, command.readOffset, command.writeOffset, command.bytes);
+            }
+
+            this.fencedRegions.enqueue(new FencedMemoryRegion(commandList.createFence(), bytes, MappedStagingBuffer.this.frame));
+
+            this.start = this.pos;
+        }
+
+        private void reclaim() {
+            while (!this.fencedRegions.isEmpty()) {
+                var region = this.fencedRegions.first();
+                var fence = region.fence();
+
+                if (!fence.isCompleted()) {
+                    break;
+                }
+
+                fence.delete();
+
+                this.fencedRegions.dequeue();
+                this.remaining += region.length();
+
+                MappedStagingBuffer.this.onFenceCompleted(MappedStagingBuffer.this.frame - region.frame());
+            }
+        }
+
+        private boolean isIdle() {
+            return this.fencedRegions.isEmpty() && this.pendingCopies.isEmpty();
+        }
+
+        private void delete(CommandList commandList) {
+            while (!this.fencedRegions.isEmpty()) {
+                this.fencedRegions.dequeue()
+                        .fence()
+                        .delete();
+            }
+
+            this.mappedBuffer.delete(commandList);
+            this.pendingCopies.clear();
+        }
     }
 
     private static List<CopyCommand> consolidateCopies(PriorityQueue<CopyCommand> queue) {
@@ -132,30 +362,6 @@ public class MappedStagingBuffer implements StagingBuffer {
         return merged;
     }
 
-    @Override
-    public void delete(CommandList commandList) {
-        this.mappedBuffer.delete(commandList);
-        this.fallbackStagingBuffer.delete(commandList);
-        this.pendingCopies.clear();
-    }
-
-    @Override
-    public void flip() {
-        while (!this.fencedRegions.isEmpty()) {
-            var region = this.fencedRegions.first();
-            var fence = region.fence();
-
-            if (!fence.isCompleted()) {
-                break;
-            }
-
-            fence.delete();
-
-            this.fencedRegions.dequeue();
-            this.remaining += region.length();
-        }
-    }
-
     private static final class CopyCommand {
         private final GlBuffer buffer;
         private final long readOffset;
@@ -186,12 +392,7 @@ public class MappedStagingBuffer implements StagingBuffer {
         }
     }
 
-    private record FencedMemoryRegion(GlFence fence, int length) {
+    private record FencedMemoryRegion(GlFence fence, int length, int frame) {
 
     }
-
-    @Override
-    public String toString() {
-        return "Mapped (%s/%s MiB)".formatted(MathUtil.toMib(this.remaining), MathUtil.toMib(this.capacity));
-    }
 }
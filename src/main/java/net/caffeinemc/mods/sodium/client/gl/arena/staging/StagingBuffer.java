@@ -4,6 +4,7 @@ import net.caffeinemc.mods.sodium.client.gl.buffer.GlBuffer;
 import net.caffeinemc.mods.sodium.client.gl.device.CommandList;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 public interface StagingBuffer {
     void enqueueCopy(CommandList commandList, ByteBuffer data, GlBuffer dst, long writeOffset);
@@ -13,4 +14,6 @@ public interface StagingBuffer {
     void delete(CommandList commandList);
 
     void flip();
+
+    void addDebugStrings(List<String> list);
 }
@@ -10,6 +10,13 @@ public abstract class GlBuffer extends GlObject {
         this.setHandle(GL20C.glGenBuffers());
     }
 
+    /**
+     * Wraps an existing handle instead of creating a new buffer, for command lists which do not talk to OpenGL.
+     */
+    protected GlBuffer(int handle) {
+        this.setHandle(handle);
+    }
+
     public GlBufferMapping getActiveMapping() {
         return this.activeMapping;
     }
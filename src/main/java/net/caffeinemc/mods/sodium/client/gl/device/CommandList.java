@@ -23,8 +23,12 @@ public interface CommandList extends AutoCloseable {
 
     void copyBufferSubData(GlBuffer src, GlBuffer dst, long readOffset, long writeOffset, long bytes);
 
+    void getBufferSubData(GlBuffer buffer, long offset, ByteBuffer data);
+
     void bindBuffer(GlBufferTarget target, GlBuffer buffer);
 
+    void bindBufferBase(GlBufferTarget target, int index, GlBuffer buffer);
+
     void unbindVertexArray();
 
     void allocateStorage(GlMutableBuffer buffer, long bufferSize, GlBufferUsage usage);
@@ -1,10 +1,17 @@
 package net.caffeinemc.mods.sodium.client.gl.device;
 
+import net.caffeinemc.mods.sodium.client.gl.buffer.GlBuffer;
 import net.caffeinemc.mods.sodium.client.gl.tessellation.GlIndexType;
 
 public interface DrawCommandList extends AutoCloseable {
     void multiDrawElementsBaseVertex(MultiDrawBatch batch, GlIndexType indexType);
 
+    /**
+     * Issues the draw commands which are stored as tightly packed {@code DrawElementsIndirectCommand} records in the
+     * given buffer, starting at the given offset in bytes.
+     */
+    void multiDrawElementsIndirect(GlBuffer indirectBuffer, long indirectOffset, int drawCount, GlIndexType indexType);
+
     void endTessellating();
 
     void flush();
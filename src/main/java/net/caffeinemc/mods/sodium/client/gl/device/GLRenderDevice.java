@@ -96,6 +96,13 @@ public class GLRenderDevice implements RenderDevice {
             GL31C.glCopyBufferSubData(GL31C.GL_COPY_READ_BUFFER, GL31C.GL_COPY_WRITE_BUFFER, readOffset, writeOffset, bytes);
         }
 
+        @Override
+        public void getBufferSubData(GlBuffer buffer, long offset, ByteBuffer data) {
+            this.bindBuffer(GlBufferTarget.COPY_READ_BUFFER, buffer);
+
+            GL15C.glGetBufferSubData(GL31C.GL_COPY_READ_BUFFER, offset, data);
+        }
+
         @Override
         public void bindBuffer(GlBufferTarget target, GlBuffer buffer) {
             if (this.stateTracker.makeBufferActive(target, buffer)) {
@@ -103,6 +110,14 @@ public class GLRenderDevice implements RenderDevice {
             }
         }
 
+        @Override
+        public void bindBufferBase(GlBufferTarget target, int index, GlBuffer buffer) {
+            // Binding to an indexed target also replaces the generic binding point of that target
+            this.stateTracker.makeBufferActive(target, buffer);
+
+            GL30C.glBindBufferBase(target.getTargetParameter(), index, buffer.handle());
+        }
+
         @Override
         public void unbindVertexArray() {
             if (this.stateTracker.makeVertexArrayActive(null)) {
@@ -278,6 +293,15 @@ public class GLRenderDevice implements RenderDevice {
                     batch.pBaseVertex);
         }
 
+        @Override
+        public void multiDrawElementsIndirect(GlBuffer indirectBuffer, long indirectOffset, int drawCount, GlIndexType indexType) {
+            GlPrimitiveType primitiveType = GLRenderDevice.this.activeTessellation.getPrimitiveType();
+
+            GLRenderDevice.this.commandList.bindBuffer(GlBufferTarget.DRAW_INDIRECT_BUFFER, indirectBuffer);
+            GLRenderDevice.this.functions.getMultiDrawIndirectFunctions()
+                    .multiDrawElementsIndirect(primitiveType.getId(), indexType.getFormatId(), indirectOffset, drawCount, 0);
+        }
+
         @Override
         public void endTessellating() {
             GLRenderDevice.this.activeTessellation.unbind(GLRenderDevice.this.commandList);
@@ -1,5 +1,7 @@
 package net.caffeinemc.mods.sodium.client.gl.device;
 
+import net.caffeinemc.mods.sodium.client.gl.tessellation.GlIndexType;
+import net.caffeinemc.mods.sodium.client.util.NativeMemoryTracker;
 import org.lwjgl.PointerBuffer;
 import org.lwjgl.system.MemoryUtil;
 import org.lwjgl.system.Pointer;
@@ -18,12 +20,15 @@ public final class MultiDrawBatch {
 
     public int size;
 
+    // The type of the indices referenced by every command in the batch
+    public GlIndexType indexType = GlIndexType.UNSIGNED_INT;
+
     public MultiDrawBatch(int capacity) {
-        this.pElementPointer = MemoryUtil.nmemAlignedAlloc(32, (long) capacity * Pointer.POINTER_SIZE);
+        this.pElementPointer = NativeMemoryTracker.alignedAlloc(NativeMemoryTracker.Tag.DRAW_COMMANDS, 32, (long) capacity * Pointer.POINTER_SIZE);
         MemoryUtil.memSet(this.pElementPointer, 0x0, (long) capacity * Pointer.POINTER_SIZE);
 
-        this.pElementCount = MemoryUtil.nmemAlignedAlloc(32, (long) capacity * Integer.BYTES);
-        this.pBaseVertex = MemoryUtil.nmemAlignedAlloc(32, (long) capacity * Integer.BYTES);
+        this.pElementCount = NativeMemoryTracker.alignedAlloc(NativeMemoryTracker.Tag.DRAW_COMMANDS, 32, (long) capacity * Integer.BYTES);
+        this.pBaseVertex = NativeMemoryTracker.alignedAlloc(NativeMemoryTracker.Tag.DRAW_COMMANDS, 32, (long) capacity * Integer.BYTES);
 
         this.capacity = capacity;
     }
@@ -38,12 +43,13 @@ public final class MultiDrawBatch {
 
     public void clear() {
         this.size = 0;
+        this.indexType = GlIndexType.UNSIGNED_INT;
     }
 
     public void delete() {
-        MemoryUtil.nmemAlignedFree(this.pElementPointer);
-        MemoryUtil.nmemAlignedFree(this.pElementCount);
-        MemoryUtil.nmemAlignedFree(this.pBaseVertex);
+        NativeMemoryTracker.alignedFree(NativeMemoryTracker.Tag.DRAW_COMMANDS, this.pElementPointer, (long) this.capacity * Pointer.POINTER_SIZE);
+        NativeMemoryTracker.alignedFree(NativeMemoryTracker.Tag.DRAW_COMMANDS, this.pElementCount, (long) this.capacity * Integer.BYTES);
+        NativeMemoryTracker.alignedFree(NativeMemoryTracker.Tag.DRAW_COMMANDS, this.pBaseVertex, (long) this.capacity * Integer.BYTES);
     }
 
     public boolean isEmpty() {
@@ -4,12 +4,18 @@ import net.caffeinemc.mods.sodium.client.gl.device.RenderDevice;
 
 public class DeviceFunctions {
     private final BufferStorageFunctions bufferStorageFunctions;
+    private final MultiDrawIndirectFunctions multiDrawIndirectFunctions;
 
     public DeviceFunctions(RenderDevice device) {
         this.bufferStorageFunctions = BufferStorageFunctions.pickBest(device);
+        this.multiDrawIndirectFunctions = MultiDrawIndirectFunctions.pickBest(device);
     }
 
     public BufferStorageFunctions getBufferStorageFunctions() {
         return this.bufferStorageFunctions;
     }
+
+    public MultiDrawIndirectFunctions getMultiDrawIndirectFunctions() {
+        return this.multiDrawIndirectFunctions;
+    }
 }
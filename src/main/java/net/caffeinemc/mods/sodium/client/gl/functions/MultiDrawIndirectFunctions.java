@@ -0,0 +1,45 @@
+package net.caffeinemc.mods.sodium.client.gl.functions;
+
+import net.caffeinemc.mods.sodium.client.gl.device.RenderDevice;
+import org.lwjgl.opengl.ARBMultiDrawIndirect;
+import org.lwjgl.opengl.GL43C;
+import org.lwjgl.opengl.GLCapabilities;
+
+public enum MultiDrawIndirectFunctions {
+    NONE {
+        @Override
+        public void multiDrawElementsIndirect(int mode, int type, long indirect, int drawCount, int stride) {
+            throw new UnsupportedOperationException();
+        }
+    },
+    CORE {
+        @Override
+        public void multiDrawElementsIndirect(int mode, int type, long indirect, int drawCount, int stride) {
+            GL43C.nglMultiDrawElementsIndirect(mode, type, indirect, drawCount, stride);
+        }
+    },
+    ARB {
+        @Override
+        public void multiDrawElementsIndirect(int mode, int type, long indirect, int drawCount, int stride) {
+            ARBMultiDrawIndirect.nglMultiDrawElementsIndirect(mode, type, indirect, drawCount, stride);
+        }
+    };
+
+    public static MultiDrawIndirectFunctions pickBest(RenderDevice device) {
+        GLCapabilities capabilities = device.getCapabilities();
+
+        if (capabilities.OpenGL43) {
+            return CORE;
+        } else if (capabilities.GL_ARB_multi_draw_indirect && (capabilities.OpenGL40 || capabilities.GL_ARB_draw_indirect)) {
+            return ARB;
+        } else {
+            return NONE;
+        }
+    }
+
+    /**
+     * @param indirect The offset of the first command within the bound draw indirect buffer
+     * @param stride The distance in bytes between commands, or zero if they are tightly packed
+     */
+    public abstract void multiDrawElementsIndirect(int mode, int type, long indirect, int drawCount, int stride);
+}
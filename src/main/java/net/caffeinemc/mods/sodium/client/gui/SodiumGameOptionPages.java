@@ -13,6 +13,7 @@ import net.caffeinemc.mods.sodium.client.gui.options.control.SliderControl;
 import net.caffeinemc.mods.sodium.client.gui.options.control.TickBoxControl;
 import net.caffeinemc.mods.sodium.client.gui.options.storage.MinecraftOptionsStorage;
 import net.caffeinemc.mods.sodium.client.gui.options.storage.SodiumOptionsStorage;
+import net.caffeinemc.mods.sodium.client.render.chunk.DefaultChunkRenderer;
 import net.caffeinemc.mods.sodium.client.compatibility.workarounds.Workarounds;
 import net.minecraft.client.AttackIndicatorStatus;
 import net.minecraft.client.CloudStatus;
@@ -321,6 +322,14 @@ public class SodiumGameOptionPages {
                         .setImpact(OptionImpact.LOW)
                         .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
                         .build())
+                .add(OptionImpl.createBuilder(int.class, sodiumOpts)
+                        .setName(Component.translatable("sodium.options.quad_merging_distance.name"))
+                        .setTooltip(Component.translatable("sodium.options.quad_merging_distance.tooltip"))
+                        .setControl(option -> new SliderControl(option, 0, 32, 1, ControlValueFormatter.quantityOrDisabled("chunks", "Off")))
+                        .setBinding((opts, value) -> opts.performance.quadMergingDistance = value, opts -> opts.performance.quadMergingDistance)
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build())
                 .build());
 
         return new OptionPage(Component.translatable("sodium.options.pages.performance"), ImmutableList.copyOf(groups));
@@ -346,6 +355,98 @@ public class SodiumGameOptionPages {
                         .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
                         .build()
                 )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(Component.translatable("sodium.options.use_quantized_vertex_format.name"))
+                        .setTooltip(Component.translatable("sodium.options.use_quantized_vertex_format.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setBinding((opts, value) -> opts.advanced.useQuantizedVertexFormat = value, opts -> opts.advanced.useQuantizedVertexFormat)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(Component.translatable("sodium.options.use_vertex_pulling.name"))
+                        .setTooltip(Component.translatable("sodium.options.use_vertex_pulling.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setEnabled(DefaultChunkRenderer.supportsVertexPulling(RenderDevice.INSTANCE))
+                        .setBinding((opts, value) -> opts.advanced.useVertexPulling = value, opts -> opts.advanced.useVertexPulling)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(Component.translatable("sodium.options.use_shared_geometry_heap.name"))
+                        .setTooltip(Component.translatable("sodium.options.use_shared_geometry_heap.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.LOW)
+                        .setBinding((opts, value) -> opts.advanced.useSharedGeometryHeap = value, opts -> opts.advanced.useSharedGeometryHeap)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(Component.translatable("sodium.options.use_parallel_command_buffers.name"))
+                        .setTooltip(Component.translatable("sodium.options.use_parallel_command_buffers.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.LOW)
+                        .setBinding((opts, value) -> opts.advanced.useParallelCommandBuffers = value, opts -> opts.advanced.useParallelCommandBuffers)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(Component.translatable("sodium.options.use_indirect_draws.name"))
+                        .setTooltip(Component.translatable("sodium.options.use_indirect_draws.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.LOW)
+                        .setEnabled(DefaultChunkRenderer.supportsIndirectDraws(RenderDevice.INSTANCE))
+                        .setBinding((opts, value) -> opts.advanced.useIndirectDraws = value, opts -> opts.advanced.useIndirectDraws)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(Component.translatable("sodium.options.use_async_occlusion_culling.name"))
+                        .setTooltip(Component.translatable("sodium.options.use_async_occlusion_culling.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.LOW)
+                        .setBinding((opts, value) -> opts.advanced.useAsyncOcclusionCulling = value, opts -> opts.advanced.useAsyncOcclusionCulling)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(Component.translatable("sodium.options.use_software_occlusion_culling.name"))
+                        .setTooltip(Component.translatable("sodium.options.use_software_occlusion_culling.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.LOW)
+                        .setBinding((opts, value) -> opts.advanced.useSoftwareOcclusionCulling = value, opts -> opts.advanced.useSoftwareOcclusionCulling)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(int.class, sodiumOpts)
+                        .setName(Component.translatable("sodium.options.geometry_memory_budget.name"))
+                        .setTooltip(Component.translatable("sodium.options.geometry_memory_budget.tooltip"))
+                        .setControl(option -> new SliderControl(option, 0, 4096, 128, ControlValueFormatter.quantityOrDisabled("MiB", "Unlimited")))
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setBinding((opts, value) -> opts.advanced.geometryMemoryBudget = value, opts -> opts.advanced.geometryMemoryBudget)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(int.class, sodiumOpts)
+                        .setName(Component.translatable("sodium.options.mesh_cache_size.name"))
+                        .setTooltip(Component.translatable("sodium.options.mesh_cache_size.tooltip"))
+                        .setControl(option -> new SliderControl(option, 0, 1024, 32, ControlValueFormatter.quantityOrDisabled("MiB", "Off")))
+                        .setImpact(OptionImpact.LOW)
+                        .setBinding((opts, value) -> opts.advanced.meshCacheSize = value, opts -> opts.advanced.meshCacheSize)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(int.class, sodiumOpts)
+                        .setName(Component.translatable("sodium.options.disk_mesh_cache_size.name"))
+                        .setTooltip(Component.translatable("sodium.options.disk_mesh_cache_size.tooltip"))
+                        .setControl(option -> new SliderControl(option, 0, 4096, 256, ControlValueFormatter.quantityOrDisabled("MiB", "Off")))
+                        .setImpact(OptionImpact.LOW)
+                        .setBinding((opts, value) -> opts.advanced.diskMeshCacheSize = value, opts -> opts.advanced.diskMeshCacheSize)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
                 .build());
 
         groups.add(OptionGroup.createBuilder()
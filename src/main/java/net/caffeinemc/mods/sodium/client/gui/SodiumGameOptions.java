@@ -48,6 +48,8 @@ public class SodiumGameOptions {
 
         public boolean sortingEnabled = true;
 
+        public int quadMergingDistance = 0;
+
         public SortBehavior getSortBehavior() {
             return this.sortingEnabled ? SortBehavior.DYNAMIC_DEFER_NEARBY_ZERO_FRAMES : SortBehavior.OFF;
         }
@@ -56,6 +58,16 @@ public class SodiumGameOptions {
     public static class AdvancedSettings {
         public boolean enableMemoryTracing = false;
         public boolean useAdvancedStagingBuffers = true;
+        public boolean useQuantizedVertexFormat = false;
+        public boolean useVertexPulling = false;
+        public boolean useSharedGeometryHeap = false;
+        public boolean useParallelCommandBuffers = false;
+        public boolean useIndirectDraws = true;
+        public boolean useAsyncOcclusionCulling = false;
+        public boolean useSoftwareOcclusionCulling = false;
+        public int geometryMemoryBudget = 0;
+        public int meshCacheSize = 0;
+        public int diskMeshCacheSize = 0;
 
         public int cpuRenderAheadLimit = 3;
     }
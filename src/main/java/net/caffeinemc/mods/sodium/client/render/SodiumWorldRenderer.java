@@ -19,6 +19,7 @@ import net.caffeinemc.mods.sodium.client.render.chunk.terrain.DefaultTerrainRend
 import net.caffeinemc.mods.sodium.client.render.chunk.translucent_sorting.trigger.CameraMovement;
 import net.caffeinemc.mods.sodium.client.render.viewport.Viewport;
 import net.caffeinemc.mods.sodium.client.util.NativeBuffer;
+import net.caffeinemc.mods.sodium.client.util.NativeMemoryTracker;
 import net.caffeinemc.mods.sodium.client.world.LevelRendererExtension;
 import net.minecraft.client.Camera;
 import net.minecraft.client.Minecraft;
@@ -124,6 +125,10 @@ public class SodiumWorldRenderer {
         }
 
         this.level = null;
+
+        // Everything belonging to the level has been released, so any native memory still held by it has leaked
+        NativeBuffer.reclaim(false);
+        NativeMemoryTracker.checkForLeaks();
     }
 
     /**
@@ -139,7 +144,7 @@ public class SodiumWorldRenderer {
     public void scheduleTerrainUpdate() {
         // BUG: seems to be called before init
         if (this.renderSectionManager != null) {
-            this.renderSectionManager.markGraphDirty();
+            this.renderSectionManager.markGraphChanged();
         }
     }
 
@@ -155,11 +160,15 @@ public class SodiumWorldRenderer {
      */
     public void setupTerrain(Camera camera,
                              Viewport viewport,
+                             Viewport expandedViewport,
                              @Deprecated(forRemoval = true) int frame,
                              boolean spectator,
                              boolean updateChunksImmediately) {
         NativeBuffer.reclaim(false);
 
+        // The graph can't be modified while it is being searched on the culling thread
+        this.renderSectionManager.awaitAsyncUpdate();
+
         this.processChunkEvents();
 
         this.useEntityCulling = SodiumClientMod.options().performance.useEntityCulling;
@@ -210,7 +219,7 @@ public class SodiumWorldRenderer {
         if (this.renderSectionManager.needsUpdate()) {
             profiler.popPush("chunk_render_lists");
 
-            this.renderSectionManager.update(camera, viewport, frame, spectator);
+            this.renderSectionManager.update(camera, viewport, spectator);
         }
 
         profiler.popPush("chunk_update");
@@ -226,6 +235,14 @@ public class SodiumWorldRenderer {
 
         this.renderSectionManager.tickVisibleRenders();
 
+        profiler.popPush("chunk_command_buffers");
+
+        this.renderSectionManager.prepareRender();
+
+        profiler.popPush("chunk_render_lists_async");
+
+        this.renderSectionManager.startAsyncUpdate(camera, expandedViewport, spectator);
+
         profiler.pop();
 
         Entity.setViewScale(Mth.clamp((double) this.client.options.getEffectiveRenderDistance() / 8.0D, 1.0D, 2.5D) * this.client.options.entityDistanceScaling().get());
@@ -433,17 +450,7 @@ public class SodiumWorldRenderer {
         int maxY = SectionPos.posToSectionCoord(y2 + 0.5D);
         int maxZ = SectionPos.posToSectionCoord(z2 + 0.5D);
 
-        for (int x = minX; x <= maxX; x++) {
-            for (int z = minZ; z <= maxZ; z++) {
-                for (int y = minY; y <= maxY; y++) {
-                    if (this.renderSectionManager.isSectionVisible(x, y, z)) {
-                        return true;
-                    }
-                }
-            }
-        }
-
-        return false;
+        return this.renderSectionManager.isBoxVisible(minX, minY, minZ, maxX, maxY, maxZ);
     }
 
     public String getChunksDebugString() {
@@ -0,0 +1,164 @@
+package net.caffeinemc.mods.sodium.client.render.chunk;
+
+import net.caffeinemc.mods.sodium.client.render.chunk.lists.VisibleChunkCollector;
+import net.caffeinemc.mods.sodium.client.render.chunk.occlusion.OcclusionCuller;
+import net.caffeinemc.mods.sodium.client.render.viewport.Viewport;
+import net.minecraft.core.SectionPos;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the occlusion culler on a dedicated thread, so that the render lists for the next frame can be created while
+ * the current frame is being rendered. The search uses the camera of the frame in which it was started, with a wider
+ * field of view so that its result still covers the screen after the camera has turned slightly.
+ *
+ * The section graph must not be modified while a search is running, so {@link #await()} must be called before any
+ * changes are made to it, or the changes must be deferred until then. The result of a search is only used if the
+ * camera is still inside the same section and hasn't turned too far, and if the graph has not changed since the search
+ * started. The render thread searches the graph itself otherwise. Since the camera may move within its section before
+ * the result is used, the search doesn't use the tests which depend on the exact position of the camera.
+ */
+public class AsyncOcclusionCuller {
+    // The factor by which the field of view of the frustum is widened for searches on the culling thread
+    public static final float FRUSTUM_EXPANSION = 1.25f;
+
+    // The largest rotation of the camera, in degrees, for which the result of a search can still be used. This is kept
+    // well below the margin which the expanded frustum provides at the default field of view.
+    private static final float MAX_ROTATION = 5.0f;
+    private static final float MIN_ROTATION_COS = (float) Math.cos(Math.toRadians(MAX_ROTATION));
+
+    private final OcclusionCuller culler;
+    private final ExecutorService executor;
+
+    private @Nullable Search search;
+
+    // Set when the graph has changed after the pending search was started, which the search can't see
+    private boolean searchInvalidated;
+
+    private int usedSearches;
+    private int discardedSearches;
+
+    public AsyncOcclusionCuller(OcclusionCuller culler) {
+        this.culler = culler;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Sodium Occlusion Culler");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * Starts searching the graph on the culling thread. Any previous search must have been taken or discarded.
+     */
+    public void start(VisibleChunkCollector collector, Viewport viewport, Vector3fc lookVector, float searchDistance,
+                      boolean useOcclusionCulling)
+    {
+        if (this.search != null) {
+            throw new IllegalStateException("A search is already pending");
+        }
+
+        var task = CompletableFuture.runAsync(() -> this.culler.findVisible(collector, viewport, searchDistance,
+                useOcclusionCulling, false, collector.getFrame()), this.executor);
+
+        this.search = new Search(collector, task, viewport.getChunkCoord(), new Vector3f(lookVector), searchDistance,
+                useOcclusionCulling);
+        this.searchInvalidated = false;
+    }
+
+    /**
+     * @return True if a search is still running on the culling thread, during which the graph must not be modified
+     */
+    public boolean isRunning() {
+        return this.search != null && !this.search.task.isDone();
+    }
+
+    /**
+     * Marks the result of the pending search as unusable, which must be done when the graph has changed in a way which
+     * the search could not have seen, such as when a section has been scheduled for a rebuild. Movements of the camera
+     * are checked when the result is taken instead.
+     */
+    public void invalidate() {
+        if (this.search != null) {
+            this.searchInvalidated = true;
+        }
+    }
+
+    /**
+     * Waits for the pending search to complete, if there is one. Its result is kept until it is taken or discarded.
+     */
+    public void await() {
+        if (this.search != null) {
+            this.search.task.join();
+        }
+    }
+
+    /**
+     * Discards the result of the pending search, which must be done when the graph has changed in a way which the
+     * search could not have seen, such as when sections are added or removed.
+     */
+    public void discard() {
+        if (this.search != null) {
+            this.await();
+            this.search = null;
+            this.discardedSearches++;
+        }
+    }
+
+    /**
+     * Takes the result of the pending search, if it can be used in place of searching the graph with the current
+     * camera. The pending search is cleared in either case.
+     *
+     * @return The visitor which collected the result of the search, or null if the graph must be searched again
+     */
+    public @Nullable VisibleChunkCollector take(Viewport viewport, Vector3fc lookVector, float searchDistance,
+                                                boolean useOcclusionCulling)
+    {
+        var search = this.search;
+
+        if (search == null) {
+            return null;
+        }
+
+        this.await();
+        this.search = null;
+
+        // The search starts from the section which contains the camera, and the wider frustum only covers the screen as
+        // long as the camera hasn't turned further than the expansion allows
+        if (this.searchInvalidated
+                || !search.origin.equals(viewport.getChunkCoord())
+                || search.searchDistance != searchDistance
+                || search.useOcclusionCulling != useOcclusionCulling
+                || search.lookVector.dot(lookVector) < MIN_ROTATION_COS)
+        {
+            this.discardedSearches++;
+            return null;
+        }
+
+        this.usedSearches++;
+
+        return search.collector;
+    }
+
+    public void addDebugStrings(List<String> list) {
+        int total = this.usedSearches + this.discardedSearches;
+
+        list.add("Async culling: %d%% of searches used".formatted(total > 0 ? (this.usedSearches * 100) / total : 0));
+    }
+
+    public void destroy() {
+        this.discard();
+        this.executor.shutdown();
+    }
+
+    private record Search(VisibleChunkCollector collector, CompletableFuture<Void> task, SectionPos origin,
+                          Vector3f lookVector, float searchDistance, boolean useOcclusionCulling) {
+
+    }
+}
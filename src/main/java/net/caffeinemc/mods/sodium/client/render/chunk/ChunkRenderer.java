@@ -21,6 +21,17 @@ public interface ChunkRenderer {
      */
     void render(ChunkRenderMatrices matrices, CommandList commandList, ChunkRenderListIterable renderLists, TerrainRenderPass pass, CameraTransform camera);
 
+    /**
+     * Prepares the draw commands for the given render lists ahead of rendering, if the renderer supports doing so. This
+     * is called once per frame, after the render lists have been updated and all chunk uploads have completed.
+     *
+     * @param renderLists The collection of render lists which will be rendered
+     * @param camera      The camera context which will be used for rendering
+     */
+    default void prepare(ChunkRenderListIterable renderLists, CameraTransform camera) {
+
+    }
+
     /**
      * Deletes this render backend and any resources attached to it.
      */
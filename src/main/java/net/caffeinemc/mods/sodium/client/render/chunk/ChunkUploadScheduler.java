@@ -0,0 +1,179 @@
+package net.caffeinemc.mods.sodium.client.render.chunk;
+
+import it.unimi.dsi.fastutil.objects.Reference2ReferenceLinkedOpenHashMap;
+import net.caffeinemc.mods.sodium.client.render.chunk.compile.BuilderTaskOutput;
+import net.caffeinemc.mods.sodium.client.render.chunk.compile.ChunkBuildOutput;
+import net.caffeinemc.mods.sodium.client.render.chunk.compile.ChunkSortOutput;
+import net.caffeinemc.mods.sodium.client.render.chunk.data.BuiltSectionMeshParts;
+import net.minecraft.core.BlockPos;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Limits the amount of mesh and index data which is uploaded each frame, so that large bursts of build results do not
+ * overflow the staging buffer. Results are uploaded in order of priority, and any results which do not fit within the
+ * budget of a frame are carried over to the next frame.
+ */
+public class ChunkUploadScheduler {
+    // The number of bytes which can be uploaded each frame, beyond which further results are deferred
+    private static final long UPLOAD_BYTES_PER_FRAME = 8L * 1024L * 1024L;
+
+    // The number of deferred bytes above which no further deferred build tasks should be scheduled, since their results
+    // would only be added to the backlog
+    private static final long MAX_DEFERRED_BYTES = 4L * UPLOAD_BYTES_PER_FRAME;
+
+    // Sections within this (squared) distance of the camera are uploaded first, even if they are not visible
+    private static final float NEAR_DISTANCE_SQUARED = 32.0f * 32.0f;
+
+    private static final int PRIORITY_VISIBLE = 0;
+    private static final int PRIORITY_SORT = 1;
+    private static final int PRIORITY_MESH = 2;
+
+    private final List<BuilderTaskOutput> pending = new ArrayList<>();
+
+    private long deferredBytes;
+
+    public void add(BuilderTaskOutput output) {
+        this.pending.add(output);
+    }
+
+    public boolean isEmpty() {
+        return this.pending.isEmpty();
+    }
+
+    /**
+     * Removes the results which should be uploaded this frame from the queue. Outdated or superseded results are
+     * destroyed, and the remaining results are kept for the following frames.
+     *
+     * @param renderListBuffer The buffer of each region's render lists which holds the current render lists
+     * @param visibleFrame The frame in which the current render lists were created
+     * @param cameraPos The position of the camera, or null if it isn't known
+     * @param uploadAll Whether every result should be uploaded regardless of the budget
+     * @return The results which should be uploaded, in order of priority
+     */
+    public List<BuilderTaskOutput> schedule(int renderListBuffer, int visibleFrame, @Nullable BlockPos cameraPos, boolean uploadAll) {
+        var outputs = this.filterOutputs();
+        this.pending.clear();
+        this.deferredBytes = 0;
+
+        if (uploadAll) {
+            return outputs;
+        }
+
+        outputs.sort(Comparator.<BuilderTaskOutput>comparingInt(output -> getPriority(output, renderListBuffer, visibleFrame, cameraPos))
+                .thenComparingDouble(output -> cameraPos != null ? output.render.getSquaredDistance(cameraPos) : 0.0f));
+
+        var scheduled = new ArrayList<BuilderTaskOutput>();
+        long remaining = UPLOAD_BYTES_PER_FRAME;
+
+        for (var output : outputs) {
+            long size = getUploadSize(output);
+
+            // Always upload at least one result, so that a result larger than the budget cannot stall the queue
+            if (remaining > 0 && (size <= remaining || scheduled.isEmpty())) {
+                scheduled.add(output);
+                remaining -= size;
+            } else {
+                this.pending.add(output);
+                this.deferredBytes += size;
+            }
+        }
+
+        return scheduled;
+    }
+
+    private List<BuilderTaskOutput> filterOutputs() {
+        var map = new Reference2ReferenceLinkedOpenHashMap<RenderSection, BuilderTaskOutput>();
+
+        for (var output : this.pending) {
+            // throw out outdated or duplicate outputs
+            if (output.render.isDisposed() || output.render.getLastUploadFrame() > output.submitTime) {
+                output.destroy();
+                continue;
+            }
+
+            var render = output.render;
+            var previous = map.get(render);
+
+            if (previous == null) {
+                map.put(render, output);
+            } else if (previous.submitTime < output.submitTime && !isStaleSort(previous, output)) {
+                map.put(render, output);
+                previous.destroy();
+            } else {
+                output.destroy();
+            }
+        }
+
+        return new ArrayList<>(map.values());
+    }
+
+    /**
+     * A sort result which was created while a rebuild of the same section was still waiting to be uploaded was based
+     * on the section's old translucent data, and must not replace the rebuild.
+     */
+    private static boolean isStaleSort(BuilderTaskOutput previous, BuilderTaskOutput output) {
+        return previous instanceof ChunkBuildOutput && !(output instanceof ChunkBuildOutput);
+    }
+
+    /**
+     * Visibility is taken from the current render lists rather than the frame in which the graph last visited each
+     * section, since the graph is also visited by searches whose results are never used.
+     */
+    private static int getPriority(BuilderTaskOutput output, int renderListBuffer, int visibleFrame, @Nullable BlockPos cameraPos) {
+        var render = output.render;
+        var renderList = render.getRegion().getRenderList(renderListBuffer);
+
+        if ((renderList.getLastVisibleFrame() == visibleFrame && renderList.isVisible(render.getSectionIndex()))
+                || (cameraPos != null && render.getSquaredDistance(cameraPos) < NEAR_DISTANCE_SQUARED)) {
+            return PRIORITY_VISIBLE;
+        }
+
+        return output instanceof ChunkBuildOutput ? PRIORITY_MESH : PRIORITY_SORT;
+    }
+
+    private static long getUploadSize(BuilderTaskOutput output) {
+        long size = 0;
+
+        if (output instanceof ChunkBuildOutput buildOutput) {
+            for (BuiltSectionMeshParts mesh : buildOutput.meshes.values()) {
+                size += mesh.getVertexData().getLength();
+            }
+        }
+
+        if (output instanceof ChunkSortOutput sortOutput && !sortOutput.isReusingUploadedIndexData()
+                && sortOutput.getIndexBuffer() != null) {
+            size += sortOutput.getIndexBuffer().getLength();
+        }
+
+        return size;
+    }
+
+    public int getDeferredCount() {
+        return this.pending.size();
+    }
+
+    public long getDeferredBytes() {
+        return this.deferredBytes;
+    }
+
+    /**
+     * @return True if the results which were deferred in the last frame would take more than a few frames to upload,
+     * in which case deferred build tasks should not be scheduled until the backlog has been drained
+     */
+    public boolean isBacklogged() {
+        return this.deferredBytes > MAX_DEFERRED_BYTES;
+    }
+
+    public void destroy() {
+        for (var output : this.pending) {
+            output.destroy();
+        }
+
+        this.pending.clear();
+        this.deferredBytes = 0;
+    }
+}
@@ -2,6 +2,8 @@ package net.caffeinemc.mods.sodium.client.render.chunk;
 
 import net.caffeinemc.mods.sodium.client.SodiumClientMod;
 import net.caffeinemc.mods.sodium.client.gl.attribute.GlVertexAttributeBinding;
+import net.caffeinemc.mods.sodium.client.gl.attribute.GlVertexFormat;
+import net.caffeinemc.mods.sodium.client.gl.buffer.GlBufferTarget;
 import net.caffeinemc.mods.sodium.client.gl.device.CommandList;
 import net.caffeinemc.mods.sodium.client.gl.device.DrawCommandList;
 import net.caffeinemc.mods.sodium.client.gl.device.MultiDrawBatch;
@@ -22,9 +24,14 @@ import net.caffeinemc.mods.sodium.client.render.chunk.terrain.DefaultTerrainRend
 import net.caffeinemc.mods.sodium.client.render.chunk.terrain.TerrainRenderPass;
 import net.caffeinemc.mods.sodium.client.render.chunk.translucent_sorting.SortBehavior;
 import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkMeshAttribute;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkMeshFormats;
 import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
 import net.caffeinemc.mods.sodium.client.render.viewport.CameraTransform;
 import net.caffeinemc.mods.sodium.client.util.BitwiseMath;
+import net.caffeinemc.mods.sodium.client.util.iterator.ByteIterator;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.opengl.GL11C;
+import org.lwjgl.opengl.GL43C;
 import org.lwjgl.system.MemoryUtil;
 import java.util.Iterator;
 
@@ -33,17 +40,69 @@ public class DefaultChunkRenderer extends ShaderChunkRenderer {
 
     private final SharedQuadIndexBuffer sharedIndexBuffer;
 
+    // The format of the vertex attributes of the region tessellations. With the quad record format, only the
+    // translucent pass is drawn with vertex attributes, since the shader reads the geometry of the other passes itself.
+    private final GlVertexFormat<ChunkMeshAttribute> attributeFormat;
+
+    // The tessellation of passes which read their geometry from a storage buffer, which only binds the shared index
+    // buffer and so can be used for every region
+    private @Nullable GlTessellation vertexPullingTessellation;
+
+    // When supported and enabled, the draw commands are issued from this buffer with glMultiDrawElementsIndirect
+    private final @Nullable IndirectCommandBuffer indirectCommandBuffer;
+
+    // When enabled, the command buffers of all regions are filled on worker threads before rendering
+    private final @Nullable PreparedCommandBuffers preparedCommandBuffers;
+
     public DefaultChunkRenderer(RenderDevice device, ChunkVertexType vertexType) {
         super(device, vertexType);
 
         this.batch = new MultiDrawBatch((ModelQuadFacing.COUNT * RenderRegion.REGION_SIZE) + 1);
         this.sharedIndexBuffer = new SharedQuadIndexBuffer(device.createCommandList(), SharedQuadIndexBuffer.IndexType.INTEGER);
+        this.attributeFormat = vertexType.forRenderPass(DefaultTerrainRenderPasses.TRANSLUCENT).getVertexFormat();
+
+        if (SodiumClientMod.options().advanced.useIndirectDraws && supportsIndirectDraws(device)) {
+            this.indirectCommandBuffer = new IndirectCommandBuffer(device.createCommandList());
+        } else {
+            this.indirectCommandBuffer = null;
+        }
+
+        if (SodiumClientMod.options().advanced.useParallelCommandBuffers) {
+            this.preparedCommandBuffers = new PreparedCommandBuffers();
+        } else {
+            this.preparedCommandBuffers = null;
+        }
+    }
+
+    /**
+     * @return True if the draw commands can be issued from a buffer with glMultiDrawElementsIndirect, rather than with
+     * glMultiDrawElementsBaseVertex
+     */
+    public static boolean supportsIndirectDraws(RenderDevice device) {
+        return IndirectCommandBuffer.isSupported(device);
+    }
+
+    /**
+     * @return True if the vertex shader can read the geometry of a region from a shader storage buffer, which is
+     * required by the {@link ChunkMeshFormats#QUAD_RECORDS} format
+     */
+    public static boolean supportsVertexPulling(RenderDevice device) {
+        return device.getCapabilities().GL_ARB_shader_storage_buffer_object
+                && GL11C.glGetInteger(GL43C.GL_MAX_VERTEX_SHADER_STORAGE_BLOCKS) > 0;
+    }
+
+    @Override
+    public void prepare(ChunkRenderListIterable renderLists, CameraTransform camera) {
+        if (this.preparedCommandBuffers != null) {
+            this.preparedCommandBuffers.prepare(renderLists, camera, SodiumClientMod.options().performance.useBlockFaceCulling);
+        }
     }
 
     /**
      * Renders the terrain for a particular render pass. Each region is rendered
      * with one draw call. The command buffer for each draw command is filled by
-     * iterating the sections and adding the draw commands for each section.
+     * iterating the sections and adding the draw commands for each section,
+     * unless the command buffers have already been prepared for this frame.
      */
     @Override
     public void render(ChunkRenderMatrices matrices,
@@ -53,13 +112,41 @@ public class DefaultChunkRenderer extends ShaderChunkRenderer {
                        CameraTransform camera) {
         super.begin(renderPass);
 
+        if (this.indirectCommandBuffer != null) {
+            this.indirectCommandBuffer.reclaim();
+        }
+
         final boolean useBlockFaceCulling = SodiumClientMod.options().performance.useBlockFaceCulling;
         final boolean useIndexedTessellation = isTranslucentRenderPass(renderPass);
+        final boolean useVertexPulling = this.vertexType.forRenderPass(renderPass) == ChunkMeshFormats.QUAD_RECORDS;
 
         ChunkShaderInterface shader = this.activeProgram.getInterface();
         shader.setProjectionMatrix(matrices.projection());
         shader.setModelViewMatrix(matrices.modelView());
 
+        if (this.preparedCommandBuffers != null && this.preparedCommandBuffers.isValidFor(renderLists, camera, useBlockFaceCulling)) {
+            this.renderPrepared(commandList, shader, this.preparedCommandBuffers, renderPass, camera,
+                    useIndexedTessellation, useVertexPulling);
+        } else {
+            this.renderImmediate(commandList, shader, renderLists, renderPass, camera, useBlockFaceCulling,
+                    useIndexedTessellation, useVertexPulling);
+        }
+
+        if (this.indirectCommandBuffer != null) {
+            this.indirectCommandBuffer.fence(commandList);
+        }
+
+        super.end(renderPass);
+    }
+
+    private void renderImmediate(CommandList commandList,
+                                 ChunkShaderInterface shader,
+                                 ChunkRenderListIterable renderLists,
+                                 TerrainRenderPass renderPass,
+                                 CameraTransform camera,
+                                 boolean useBlockFaceCulling,
+                                 boolean useIndexedTessellation,
+                                 boolean useVertexPulling) {
         Iterator<ChunkRenderList> iterator = renderLists.iterator(renderPass.isTranslucent());
 
         while (iterator.hasNext()) {
@@ -72,31 +159,89 @@ public class DefaultChunkRenderer extends ShaderChunkRenderer {
                 continue;
             }
 
-            fillCommandBuffer(this.batch, region, storage, renderList, camera, renderPass, useBlockFaceCulling);
+            var sectionIterator = renderList.sectionsWithGeometryIterator(renderPass.isTranslucent());
 
-            if (this.batch.isEmpty()) {
+            if (sectionIterator == null) {
                 continue;
             }
 
-            // When the shared index buffer is being used, we must ensure the storage has been allocated *before*
-            // the tessellation is prepared.
-            if (!useIndexedTessellation) {
-                this.sharedIndexBuffer.ensureCapacity(commandList, this.batch.getIndexBufferSize());
+            // A batch can only reference indices of one type, so the region is split into multiple batches in the
+            // rare case that its sections use both 16-bit and 32-bit index buffers. This keeps the draw order intact.
+            int pendingSectionIndex = NO_PENDING_SECTION;
+
+            do {
+                pendingSectionIndex = fillCommandBuffer(this.batch, region, storage, sectionIterator, pendingSectionIndex,
+                        camera, useBlockFaceCulling);
+
+                if (this.batch.isEmpty()) {
+                    continue;
+                }
+
+                // When the shared index buffer is being used, we must ensure the storage has been allocated *before*
+                // the tessellation is prepared.
+                if (!useIndexedTessellation) {
+                    this.sharedIndexBuffer.ensureCapacity(commandList, this.batch.getIndexBufferSize());
+                }
+
+                this.drawBatch(commandList, shader, region, this.batch, camera, useIndexedTessellation, useVertexPulling);
+            } while (pendingSectionIndex != NO_PENDING_SECTION);
+        }
+    }
+
+    private void renderPrepared(CommandList commandList,
+                                ChunkShaderInterface shader,
+                                PreparedCommandBuffers commandBuffers,
+                                TerrainRenderPass renderPass,
+                                CameraTransform camera,
+                                boolean useIndexedTessellation,
+                                boolean useVertexPulling) {
+        final boolean reverse = renderPass.isTranslucent();
+        final int regionCount = commandBuffers.getRegionCount();
+
+        for (int i = 0; i < regionCount; i++) {
+            var regionCommands = commandBuffers.getRegion(reverse ? regionCount - 1 - i : i);
+            var passCommands = regionCommands.getPass(renderPass);
+
+            if (passCommands.getBatchCount() == 0) {
+                continue;
             }
 
-            GlTessellation tessellation;
+            var region = regionCommands.getRegion();
 
-            if (useIndexedTessellation) {
-                tessellation = this.prepareIndexedTessellation(commandList, region);
-            } else {
-                tessellation = this.prepareTessellation(commandList, region);
+            if (!useIndexedTessellation) {
+                this.sharedIndexBuffer.ensureCapacity(commandList, passCommands.getIndexBufferSize());
             }
 
-            setModelMatrixUniforms(shader, region, camera);
-            executeDrawBatch(commandList, tessellation, this.batch);
+            for (int batchIndex = 0; batchIndex < passCommands.getBatchCount(); batchIndex++) {
+                this.drawBatch(commandList, shader, region, passCommands.getBatch(batchIndex), camera,
+                        useIndexedTessellation, useVertexPulling);
+            }
         }
+    }
 
-        super.end(renderPass);
+    private void drawBatch(CommandList commandList,
+                           ChunkShaderInterface shader,
+                           RenderRegion region,
+                           MultiDrawBatch batch,
+                           CameraTransform camera,
+                           boolean useIndexedTessellation,
+                           boolean useVertexPulling) {
+        GlTessellation tessellation;
+
+        if (useVertexPulling) {
+            tessellation = this.prepareVertexPullingTessellation(commandList);
+
+            // The draws use a base vertex, so the shader finds each vertex's record at its ID within this buffer
+            commandList.bindBufferBase(GlBufferTarget.SHADER_STORAGE_BUFFER, ChunkShaderBindingPoints.BUFFER_VERTEX_DATA,
+                    region.getResources().getGeometryBuffer());
+        } else if (useIndexedTessellation) {
+            tessellation = this.prepareIndexedTessellation(commandList, region);
+        } else {
+            tessellation = this.prepareTessellation(commandList, region);
+        }
+
+        setModelMatrixUniforms(shader, region, camera);
+        this.executeDrawBatch(commandList, tessellation, batch);
     }
 
     private static boolean isTranslucentRenderPass(TerrainRenderPass renderPass) {
@@ -104,28 +249,38 @@ public class DefaultChunkRenderer extends ShaderChunkRenderer {
                 && SodiumClientMod.options().performance.getSortBehavior() != SortBehavior.OFF;
     }
 
-    private static void fillCommandBuffer(MultiDrawBatch batch,
-                                          RenderRegion renderRegion,
-                                          SectionRenderDataStorage renderDataStorage,
-                                          ChunkRenderList renderList,
-                                          CameraTransform camera,
-                                          TerrainRenderPass pass,
-                                          boolean useBlockFaceCulling) {
-        batch.clear();
+    static final int NO_PENDING_SECTION = -1;
 
-        var iterator = renderList.sectionsWithGeometryIterator(pass.isTranslucent());
-
-        if (iterator == null) {
-            return;
-        }
+    /**
+     * Fills the batch with the draw commands of the sections returned by the iterator, starting with the pending
+     * section if there is one.
+     *
+     * @return The section which did not fit into the batch because it uses a different index type, which must be
+     * passed to the next call, or {@link #NO_PENDING_SECTION} if the iterator has been exhausted
+     */
+    static int fillCommandBuffer(MultiDrawBatch batch,
+                                 RenderRegion renderRegion,
+                                 SectionRenderDataStorage renderDataStorage,
+                                 ByteIterator iterator,
+                                 int pendingSectionIndex,
+                                 CameraTransform camera,
+                                 boolean useBlockFaceCulling) {
+        batch.clear();
 
         // The origin of the chunk in world space
         int originX = renderRegion.getChunkX();
         int originY = renderRegion.getChunkY();
         int originZ = renderRegion.getChunkZ();
 
-        while (iterator.hasNext()) {
-            int sectionIndex = iterator.nextByteAsInt();
+        while (pendingSectionIndex != NO_PENDING_SECTION || iterator.hasNext()) {
+            int sectionIndex;
+
+            if (pendingSectionIndex != NO_PENDING_SECTION) {
+                sectionIndex = pendingSectionIndex;
+                pendingSectionIndex = NO_PENDING_SECTION;
+            } else {
+                sectionIndex = iterator.nextByteAsInt();
+            }
 
             var pMeshData = renderDataStorage.getDataPointer(sectionIndex);
 
@@ -150,8 +305,29 @@ public class DefaultChunkRenderer extends ShaderChunkRenderer {
                 continue;
             }
 
+            var indexType = getIndexType(pMeshData);
+
+            if (batch.isEmpty()) {
+                batch.indexType = indexType;
+            } else if (batch.indexType != indexType) {
+                return sectionIndex;
+            }
+
             addDrawCommands(batch, pMeshData, slices);
         }
+
+        return NO_PENDING_SECTION;
+    }
+
+    private static GlIndexType getIndexType(long pMeshData) {
+        int baseElement = SectionRenderDataUnsafe.getBaseElement(pMeshData);
+
+        // Only sections with their own index buffer can use 16-bit indices, the shared index buffer is always 32-bit
+        if ((baseElement & SectionRenderDataUnsafe.BASE_ELEMENT_SHORT_INDICES) != 0) {
+            return GlIndexType.UNSIGNED_SHORT;
+        }
+
+        return GlIndexType.UNSIGNED_INT;
     }
 
     /**
@@ -207,21 +383,23 @@ public class DefaultChunkRenderer extends ShaderChunkRenderer {
 
         int size = batch.size;
 
-        int elementOffset = SectionRenderDataUnsafe.getBaseElement(pMeshData)
-                & ~SectionRenderDataUnsafe.BASE_ELEMENT_MSB;
+        int baseElement = SectionRenderDataUnsafe.getBaseElement(pMeshData);
+
+        // the section render data storage stores the offset of the index data in 32-bit words, which is converted to
+        // bytes here, while the facings within the index data are addressed in indices (also called elements)
+        long elementPointer = (long) (baseElement & SectionRenderDataUnsafe.BASE_ELEMENT_OFFSET_MASK) << 2;
+        int indexShift = (baseElement & SectionRenderDataUnsafe.BASE_ELEMENT_SHORT_INDICES) != 0 ? 1 : 2;
 
         for (int facing = 0; facing < ModelQuadFacing.COUNT; facing++) {
             final var elementCount = SectionRenderDataUnsafe.getElementCount(pMeshData, facing);
 
+            // the indices of each facing are relative to its first vertex, which is passed as the base vertex
             MemoryUtil.memPutInt(pBaseVertex + (size << 2), SectionRenderDataUnsafe.getVertexOffset(pMeshData, facing));
             MemoryUtil.memPutInt(pElementCount + (size << 2), elementCount);
-
-            // * 4 to convert to bytes (the buffer contains 32-bit integers)
-            // the section render data storage for the indices stores the offset in indices (also called elements)
-            MemoryUtil.memPutAddress(pElementPointer + (size << 3), elementOffset << 2);
+            MemoryUtil.memPutAddress(pElementPointer + (size << 3), elementPointer);
 
             // adding the number of elements works because the index data has one index per element (which are the indices)
-            elementOffset += elementCount;
+            elementPointer += (long) elementCount << indexShift;
             size += (mask >> facing) & 1;
         }
 
@@ -315,19 +493,29 @@ public class DefaultChunkRenderer extends ShaderChunkRenderer {
         return tessellation;
     }
 
+    private GlTessellation prepareVertexPullingTessellation(CommandList commandList) {
+        if (this.vertexPullingTessellation == null) {
+            this.vertexPullingTessellation = commandList.createTessellation(GlPrimitiveType.TRIANGLES, new TessellationBinding[] {
+                    TessellationBinding.forElementBuffer(this.sharedIndexBuffer.getBufferObject())
+            });
+        }
+
+        return this.vertexPullingTessellation;
+    }
+
     private GlTessellation createRegionTessellation(CommandList commandList, RenderRegion.DeviceResources resources, boolean useSharedIndexBuffer) {
         return commandList.createTessellation(GlPrimitiveType.TRIANGLES, new TessellationBinding[] {
                 TessellationBinding.forVertexBuffer(resources.getGeometryBuffer(), new GlVertexAttributeBinding[] {
                         new GlVertexAttributeBinding(ChunkShaderBindingPoints.ATTRIBUTE_POSITION_HI,
-                                this.vertexFormat.getAttribute(ChunkMeshAttribute.POSITION_HI)),
+                                this.attributeFormat.getAttribute(ChunkMeshAttribute.POSITION_HI)),
                         new GlVertexAttributeBinding(ChunkShaderBindingPoints.ATTRIBUTE_POSITION_LO,
-                                this.vertexFormat.getAttribute(ChunkMeshAttribute.POSITION_LO)),
+                                this.attributeFormat.getAttribute(ChunkMeshAttribute.POSITION_LO)),
                         new GlVertexAttributeBinding(ChunkShaderBindingPoints.ATTRIBUTE_COLOR,
-                                this.vertexFormat.getAttribute(ChunkMeshAttribute.COLOR)),
+                                this.attributeFormat.getAttribute(ChunkMeshAttribute.COLOR)),
                         new GlVertexAttributeBinding(ChunkShaderBindingPoints.ATTRIBUTE_TEXTURE,
-                                this.vertexFormat.getAttribute(ChunkMeshAttribute.TEXTURE)),
+                                this.attributeFormat.getAttribute(ChunkMeshAttribute.TEXTURE)),
                         new GlVertexAttributeBinding(ChunkShaderBindingPoints.ATTRIBUTE_LIGHT_MATERIAL_INDEX,
-                                this.vertexFormat.getAttribute(ChunkMeshAttribute.LIGHT_MATERIAL_INDEX))
+                                this.attributeFormat.getAttribute(ChunkMeshAttribute.LIGHT_MATERIAL_INDEX))
                 }),
                 TessellationBinding.forElementBuffer(useSharedIndexBuffer
                         ? this.sharedIndexBuffer.getBufferObject()
@@ -335,9 +523,20 @@ public class DefaultChunkRenderer extends ShaderChunkRenderer {
         });
     }
 
-    private static void executeDrawBatch(CommandList commandList, GlTessellation tessellation, MultiDrawBatch batch) {
+    private void executeDrawBatch(CommandList commandList, GlTessellation tessellation, MultiDrawBatch batch) {
         try (DrawCommandList drawCommandList = commandList.beginTessellating(tessellation)) {
-            drawCommandList.multiDrawElementsBaseVertex(batch, GlIndexType.UNSIGNED_INT);
+            if (this.indirectCommandBuffer != null) {
+                long offset = this.indirectCommandBuffer.write(commandList, batch);
+
+                if (offset != -1) {
+                    drawCommandList.multiDrawElementsIndirect(this.indirectCommandBuffer.getBufferObject(), offset,
+                            batch.size(), batch.indexType);
+                    return;
+                }
+            }
+
+            // Either indirect draws aren't supported, or the command buffer is full
+            drawCommandList.multiDrawElementsBaseVertex(batch, batch.indexType);
         }
     }
 
@@ -347,5 +546,17 @@ public class DefaultChunkRenderer extends ShaderChunkRenderer {
 
         this.sharedIndexBuffer.delete(commandList);
         this.batch.delete();
+
+        if (this.vertexPullingTessellation != null) {
+            this.vertexPullingTessellation.delete(commandList);
+        }
+
+        if (this.preparedCommandBuffers != null) {
+            this.preparedCommandBuffers.delete();
+        }
+
+        if (this.indirectCommandBuffer != null) {
+            this.indirectCommandBuffer.delete(commandList);
+        }
     }
 }
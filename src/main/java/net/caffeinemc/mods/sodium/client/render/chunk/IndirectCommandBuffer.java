@@ -0,0 +1,168 @@
+package net.caffeinemc.mods.sodium.client.render.chunk;
+
+import it.unimi.dsi.fastutil.PriorityQueue;
+import it.unimi.dsi.fastutil.objects.ObjectArrayFIFOQueue;
+import net.caffeinemc.mods.sodium.client.gl.buffer.GlBuffer;
+import net.caffeinemc.mods.sodium.client.gl.buffer.GlBufferMapFlags;
+import net.caffeinemc.mods.sodium.client.gl.buffer.GlBufferMapping;
+import net.caffeinemc.mods.sodium.client.gl.buffer.GlBufferStorageFlags;
+import net.caffeinemc.mods.sodium.client.gl.buffer.GlImmutableBuffer;
+import net.caffeinemc.mods.sodium.client.gl.device.CommandList;
+import net.caffeinemc.mods.sodium.client.gl.device.MultiDrawBatch;
+import net.caffeinemc.mods.sodium.client.gl.device.RenderDevice;
+import net.caffeinemc.mods.sodium.client.gl.functions.BufferStorageFunctions;
+import net.caffeinemc.mods.sodium.client.gl.functions.MultiDrawIndirectFunctions;
+import net.caffeinemc.mods.sodium.client.gl.sync.GlFence;
+import net.caffeinemc.mods.sodium.client.gl.util.EnumBitField;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.system.Pointer;
+
+/**
+ * A persistently mapped ring buffer which holds the draw commands of each {@link MultiDrawBatch} as
+ * {@code DrawElementsIndirectCommand} records, so that they can be issued with {@code glMultiDrawElementsIndirect}
+ * instead of passing the command arrays to the driver. The memory used by each render pass is reclaimed once the fence
+ * created after the pass has completed.
+ *
+ * <pre>
+ * struct DrawElementsIndirectCommand { // 20 bytes
+ *   count: u32,
+ *   instance_count: u32,
+ *   first_index: u32,
+ *   base_vertex: i32,
+ *   base_instance: u32
+ * }
+ * </pre>
+ */
+class IndirectCommandBuffer {
+    private static final EnumBitField<GlBufferStorageFlags> STORAGE_FLAGS =
+            EnumBitField.of(GlBufferStorageFlags.PERSISTENT, GlBufferStorageFlags.MAP_WRITE);
+
+    private static final EnumBitField<GlBufferMapFlags> MAP_FLAGS =
+            EnumBitField.of(GlBufferMapFlags.PERSISTENT, GlBufferMapFlags.INVALIDATE_BUFFER, GlBufferMapFlags.WRITE, GlBufferMapFlags.EXPLICIT_FLUSH);
+
+    private static final int COMMAND_SIZE = 20;
+
+    // Enough for a few frames of draw commands with every region of a large render distance visible
+    private static final int CAPACITY = 1024 * 1024 * 4; /* 4 MB */
+
+    private final GlImmutableBuffer buffer;
+    private final GlBufferMapping mapping;
+    private final long pMapping;
+
+    private final PriorityQueue<FencedRegion> fencedRegions = new ObjectArrayFIFOQueue<>();
+
+    private int pos = 0;
+    private int remaining = CAPACITY;
+
+    // The number of bytes written since the last fence was created
+    private int unfenced = 0;
+
+    IndirectCommandBuffer(CommandList commandList) {
+        this.buffer = commandList.createImmutableBuffer(CAPACITY, STORAGE_FLAGS);
+        this.mapping = commandList.mapBuffer(this.buffer, 0, CAPACITY, MAP_FLAGS);
+        this.pMapping = MemoryUtil.memAddress(this.mapping.getMemoryBuffer());
+    }
+
+    static boolean isSupported(RenderDevice device) {
+        var functions = device.getDeviceFunctions();
+
+        return functions.getMultiDrawIndirectFunctions() != MultiDrawIndirectFunctions.NONE
+                && functions.getBufferStorageFunctions() != BufferStorageFunctions.NONE;
+    }
+
+    /**
+     * Writes the commands of the batch into the buffer.
+     *
+     * @return The offset of the first command in bytes, or -1 if there is not enough space left in the buffer, in
+     * which case the batch must be drawn directly instead
+     */
+    long write(CommandList commandList, MultiDrawBatch batch) {
+        int length = batch.size() * COMMAND_SIZE;
+
+        // The commands of a batch must be contiguous, so any space at the end of the buffer which is too small to
+        // hold them is skipped
+        int tail = CAPACITY - this.pos;
+        boolean wrap = length > tail;
+        int skipped = wrap ? tail : 0;
+
+        if (length + skipped > this.remaining) {
+            return -1;
+        }
+
+        if (wrap) {
+            this.pos = 0;
+        }
+
+        int offset = this.pos;
+        int indexStride = batch.indexType.getStride();
+
+        for (int i = 0; i < batch.size(); i++) {
+            long pCommand = this.pMapping + offset + ((long) i * COMMAND_SIZE);
+            long elementPointer = MemoryUtil.memGetAddress(batch.pElementPointer + ((long) i * Pointer.POINTER_SIZE));
+
+            MemoryUtil.memPutInt(pCommand + 0L, MemoryUtil.memGetInt(batch.pElementCount + ((long) i * Integer.BYTES)));
+            MemoryUtil.memPutInt(pCommand + 4L, 1);
+            MemoryUtil.memPutInt(pCommand + 8L, (int) (elementPointer / indexStride));
+            MemoryUtil.memPutInt(pCommand + 12L, MemoryUtil.memGetInt(batch.pBaseVertex + ((long) i * Integer.BYTES)));
+            MemoryUtil.memPutInt(pCommand + 16L, 0);
+        }
+
+        commandList.flushMappedRange(this.mapping, offset, length);
+
+        this.pos = offset + length;
+        this.remaining -= length + skipped;
+        this.unfenced += length + skipped;
+
+        return offset;
+    }
+
+    /**
+     * Creates a fence for the commands which were written since the last fence. This must be called after the draws
+     * which use them have been issued.
+     */
+    void fence(CommandList commandList) {
+        if (this.unfenced == 0) {
+            return;
+        }
+
+        this.fencedRegions.enqueue(new FencedRegion(commandList.createFence(), this.unfenced));
+        this.unfenced = 0;
+    }
+
+    /**
+     * Releases the memory of all commands whose fences have completed.
+     */
+    void reclaim() {
+        while (!this.fencedRegions.isEmpty()) {
+            var region = this.fencedRegions.first();
+
+            if (!region.fence().isCompleted()) {
+                break;
+            }
+
+            region.fence().delete();
+
+            this.fencedRegions.dequeue();
+            this.remaining += region.length();
+        }
+    }
+
+    GlBuffer getBufferObject() {
+        return this.buffer;
+    }
+
+    void delete(CommandList commandList) {
+        while (!this.fencedRegions.isEmpty()) {
+            this.fencedRegions.dequeue()
+                    .fence()
+                    .delete();
+        }
+
+        commandList.unmap(this.mapping);
+        commandList.deleteBuffer(this.buffer);
+    }
+
+    private record FencedRegion(GlFence fence, int length) {
+
+    }
+}
@@ -0,0 +1,219 @@
+package net.caffeinemc.mods.sodium.client.render.chunk;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.caffeinemc.mods.sodium.client.gl.device.MultiDrawBatch;
+import net.caffeinemc.mods.sodium.client.model.quad.properties.ModelQuadFacing;
+import net.caffeinemc.mods.sodium.client.render.chunk.lists.ChunkRenderList;
+import net.caffeinemc.mods.sodium.client.render.chunk.lists.ChunkRenderListIterable;
+import net.caffeinemc.mods.sodium.client.render.chunk.region.RenderRegion;
+import net.caffeinemc.mods.sodium.client.render.chunk.terrain.DefaultTerrainRenderPasses;
+import net.caffeinemc.mods.sodium.client.render.chunk.terrain.TerrainRenderPass;
+import net.caffeinemc.mods.sodium.client.render.viewport.CameraTransform;
+import net.minecraft.util.Mth;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.stream.IntStream;
+
+/**
+ * Fills the command buffers of every visible region for all terrain render passes ahead of rendering, with the regions
+ * spread across worker threads. Each region has its own {@link MultiDrawBatch} per render pass (or several, if its
+ * sections use different index types), so that the render thread only needs to issue the draw calls.
+ *
+ * The batches reference the render data of sections, so they must be prepared after all uploads of the frame have
+ * completed. They are only used for the render lists and camera position which they were prepared with.
+ */
+class PreparedCommandBuffers {
+    private static final TerrainRenderPass[] PASSES = DefaultTerrainRenderPasses.ALL;
+
+    private static final int MIN_BATCH_CAPACITY = 64;
+    private static final int MAX_BATCH_CAPACITY = (ModelQuadFacing.COUNT * RenderRegion.REGION_SIZE) + 1;
+
+    // The batches of regions are kept across frames, so that their memory can be re-used
+    private final ObjectArrayList<RegionCommands> regions = new ObjectArrayList<>();
+    private int regionCount;
+
+    private @Nullable ChunkRenderListIterable renderLists;
+    private int cameraX, cameraY, cameraZ;
+    private boolean useBlockFaceCulling;
+
+    void prepare(ChunkRenderListIterable renderLists, CameraTransform camera, boolean useBlockFaceCulling) {
+        this.regionCount = 0;
+
+        Iterator<ChunkRenderList> iterator = renderLists.iterator();
+
+        while (iterator.hasNext()) {
+            if (this.regionCount == this.regions.size()) {
+                this.regions.add(new RegionCommands());
+            }
+
+            this.regions.get(this.regionCount++).renderList = iterator.next();
+        }
+
+        IntStream.range(0, this.regionCount)
+                .parallel()
+                .forEach(index -> this.regions.get(index).fill(camera, useBlockFaceCulling));
+
+        this.renderLists = renderLists;
+        this.cameraX = camera.intX;
+        this.cameraY = camera.intY;
+        this.cameraZ = camera.intZ;
+        this.useBlockFaceCulling = useBlockFaceCulling;
+    }
+
+    /**
+     * @return True if the batches were prepared for the given render lists and camera position, and can be drawn in
+     * place of filling the command buffers on the render thread
+     */
+    boolean isValidFor(ChunkRenderListIterable renderLists, CameraTransform camera, boolean useBlockFaceCulling) {
+        return this.renderLists == renderLists
+                && this.cameraX == camera.intX
+                && this.cameraY == camera.intY
+                && this.cameraZ == camera.intZ
+                && this.useBlockFaceCulling == useBlockFaceCulling;
+    }
+
+    int getRegionCount() {
+        return this.regionCount;
+    }
+
+    RegionCommands getRegion(int index) {
+        return this.regions.get(index);
+    }
+
+    void delete() {
+        for (var region : this.regions) {
+            region.delete();
+        }
+
+        this.regions.clear();
+        this.regionCount = 0;
+        this.renderLists = null;
+    }
+
+    private static int getPassIndex(TerrainRenderPass pass) {
+        for (int i = 0; i < PASSES.length; i++) {
+            if (PASSES[i] == pass) {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown render pass");
+    }
+
+    static final class RegionCommands {
+        private ChunkRenderList renderList;
+        private final PassCommands[] passes = new PassCommands[PASSES.length];
+
+        private RegionCommands() {
+            for (int i = 0; i < this.passes.length; i++) {
+                this.passes[i] = new PassCommands();
+            }
+        }
+
+        private void fill(CameraTransform camera, boolean useBlockFaceCulling) {
+            for (int i = 0; i < PASSES.length; i++) {
+                this.passes[i].fill(this.renderList, PASSES[i], camera, useBlockFaceCulling);
+            }
+        }
+
+        RenderRegion getRegion() {
+            return this.renderList.getRegion();
+        }
+
+        PassCommands getPass(TerrainRenderPass pass) {
+            return this.passes[getPassIndex(pass)];
+        }
+
+        private void delete() {
+            for (var pass : this.passes) {
+                pass.delete();
+            }
+        }
+    }
+
+    static final class PassCommands {
+        private final ObjectArrayList<MultiDrawBatch> batches = new ObjectArrayList<>();
+        private int batchCount;
+
+        // The largest number of elements drawn by any command, which the shared index buffer must be able to hold
+        private int indexBufferSize;
+
+        private void fill(ChunkRenderList renderList, TerrainRenderPass pass, CameraTransform camera, boolean useBlockFaceCulling) {
+            this.batchCount = 0;
+            this.indexBufferSize = 0;
+
+            var region = renderList.getRegion();
+            var storage = region.getStorage(pass);
+
+            if (storage == null) {
+                return;
+            }
+
+            var sectionIterator = renderList.sectionsWithGeometryIterator(pass.isTranslucent());
+
+            if (sectionIterator == null) {
+                return;
+            }
+
+            int capacity = renderList.getSectionsWithGeometryCount() * ModelQuadFacing.COUNT;
+            int pendingSectionIndex = DefaultChunkRenderer.NO_PENDING_SECTION;
+
+            do {
+                var batch = this.nextBatch(capacity);
+
+                pendingSectionIndex = DefaultChunkRenderer.fillCommandBuffer(batch, region, storage, sectionIterator,
+                        pendingSectionIndex, camera, useBlockFaceCulling);
+
+                if (batch.isEmpty()) {
+                    this.batchCount--;
+                    continue;
+                }
+
+                this.indexBufferSize = Math.max(this.indexBufferSize, batch.getIndexBufferSize());
+            } while (pendingSectionIndex != DefaultChunkRenderer.NO_PENDING_SECTION);
+        }
+
+        private MultiDrawBatch nextBatch(int capacity) {
+            int index = this.batchCount++;
+
+            if (index < this.batches.size()) {
+                var batch = this.batches.get(index);
+
+                if (batch.capacity() >= capacity) {
+                    return batch;
+                }
+
+                batch.delete();
+            } else {
+                this.batches.add(null);
+            }
+
+            var batch = new MultiDrawBatch(Math.min(Math.max(Mth.smallestEncompassingPowerOfTwo(capacity), MIN_BATCH_CAPACITY), MAX_BATCH_CAPACITY));
+            this.batches.set(index, batch);
+
+            return batch;
+        }
+
+        int getBatchCount() {
+            return this.batchCount;
+        }
+
+        MultiDrawBatch getBatch(int index) {
+            return this.batches.get(index);
+        }
+
+        int getIndexBufferSize() {
+            return this.indexBufferSize;
+        }
+
+        private void delete() {
+            for (var batch : this.batches) {
+                batch.delete();
+            }
+
+            this.batches.clear();
+            this.batchCount = 0;
+        }
+    }
+}
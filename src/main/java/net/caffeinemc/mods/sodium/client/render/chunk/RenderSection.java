@@ -1,8 +1,7 @@
 package net.caffeinemc.mods.sodium.client.render.chunk;
 
 import net.caffeinemc.mods.sodium.client.render.chunk.data.BuiltSectionInfo;
-import net.caffeinemc.mods.sodium.client.render.chunk.occlusion.GraphDirection;
-import net.caffeinemc.mods.sodium.client.render.chunk.occlusion.GraphDirectionSet;
+import net.caffeinemc.mods.sodium.client.render.chunk.occlusion.OccluderEncoding;
 import net.caffeinemc.mods.sodium.client.render.chunk.occlusion.VisibilityEncoding;
 import net.caffeinemc.mods.sodium.client.render.chunk.region.RenderRegion;
 import net.caffeinemc.mods.sodium.client.render.chunk.translucent_sorting.data.TranslucentData;
@@ -28,19 +27,7 @@ public class RenderSection {
 
     // Occlusion Culling State
     private long visibilityData = VisibilityEncoding.NULL;
-
-    private int incomingDirections;
-    private int lastVisibleFrame = -1;
-
-    private int adjacentMask;
-    public RenderSection
-            adjacentDown,
-            adjacentUp,
-            adjacentNorth,
-            adjacentSouth,
-            adjacentWest,
-            adjacentEast;
-
+    private long occluderData = OccluderEncoding.NONE;
 
     // Rendering State
     private boolean built = false; // merge with the flags?
@@ -78,40 +65,6 @@ public class RenderSection {
         this.region = region;
     }
 
-    public RenderSection getAdjacent(int direction) {
-        return switch (direction) {
-            case GraphDirection.DOWN -> this.adjacentDown;
-            case GraphDirection.UP -> this.adjacentUp;
-            case GraphDirection.NORTH -> this.adjacentNorth;
-            case GraphDirection.SOUTH -> this.adjacentSouth;
-            case GraphDirection.WEST -> this.adjacentWest;
-            case GraphDirection.EAST -> this.adjacentEast;
-            default -> null;
-        };
-    }
-
-    public void setAdjacentNode(int direction, RenderSection node) {
-        if (node == null) {
-            this.adjacentMask &= ~GraphDirectionSet.of(direction);
-        } else {
-            this.adjacentMask |= GraphDirectionSet.of(direction);
-        }
-
-        switch (direction) {
-            case GraphDirection.DOWN -> this.adjacentDown = node;
-            case GraphDirection.UP -> this.adjacentUp = node;
-            case GraphDirection.NORTH -> this.adjacentNorth = node;
-            case GraphDirection.SOUTH -> this.adjacentSouth = node;
-            case GraphDirection.WEST -> this.adjacentWest = node;
-            case GraphDirection.EAST -> this.adjacentEast = node;
-            default -> { }
-        }
-    }
-
-    public int getAdjacentMask() {
-        return this.adjacentMask;
-    }
-
     public TranslucentData getTranslucentData() {
         return this.translucentData;
     }
@@ -151,6 +104,7 @@ public class RenderSection {
         this.built = true;
         this.flags = info.flags;
         this.visibilityData = info.visibilityData;
+        this.occluderData = info.occluderData;
         this.globalBlockEntities = info.globalBlockEntities;
         this.culledBlockEntities = info.culledBlockEntities;
         this.animatedSprites = info.animatedSprites;
@@ -160,6 +114,7 @@ public class RenderSection {
         this.built = false;
         this.flags = RenderSectionFlags.NONE;
         this.visibilityData = VisibilityEncoding.NULL;
+        this.occluderData = OccluderEncoding.NONE;
         this.globalBlockEntities = null;
         this.culledBlockEntities = null;
         this.animatedSprites = null;
@@ -269,26 +224,6 @@ public class RenderSection {
         return this.region;
     }
 
-    public void setLastVisibleFrame(int frame) {
-        this.lastVisibleFrame = frame;
-    }
-
-    public int getLastVisibleFrame() {
-        return this.lastVisibleFrame;
-    }
-
-    public int getIncomingDirections() {
-        return this.incomingDirections;
-    }
-
-    public void addIncomingDirections(int directions) {
-        this.incomingDirections |= directions;
-    }
-
-    public void setIncomingDirections(int directions) {
-        this.incomingDirections = directions;
-    }
-
     /**
      * Returns a bitfield containing the {@link RenderSectionFlags} for this built section.
      */
@@ -303,6 +238,14 @@ public class RenderSection {
         return this.visibilityData;
     }
 
+    /**
+     * Returns the layers of this chunk which are made up entirely of opaque blocks, as encoded by
+     * {@link OccluderEncoding}.
+     */
+    public long getOccluderData() {
+        return this.occluderData;
+    }
+
     /**
      * Returns the collection of animated sprites contained by this rendered chunk section.
      */
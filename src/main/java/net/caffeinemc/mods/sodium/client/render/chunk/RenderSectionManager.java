@@ -2,9 +2,8 @@ package net.caffeinemc.mods.sodium.client.render.chunk;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 import it.unimi.dsi.fastutil.longs.Long2ReferenceMap;
-import it.unimi.dsi.fastutil.longs.Long2ReferenceMaps;
 import it.unimi.dsi.fastutil.longs.Long2ReferenceOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Reference2ReferenceLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
 import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import it.unimi.dsi.fastutil.objects.ReferenceSet;
 import it.unimi.dsi.fastutil.objects.ReferenceSets;
@@ -14,6 +13,8 @@ import net.caffeinemc.mods.sodium.client.gl.device.RenderDevice;
 import net.caffeinemc.mods.sodium.client.render.chunk.compile.BuilderTaskOutput;
 import net.caffeinemc.mods.sodium.client.render.chunk.compile.ChunkBuildOutput;
 import net.caffeinemc.mods.sodium.client.render.chunk.compile.ChunkSortOutput;
+import net.caffeinemc.mods.sodium.client.render.chunk.compile.cache.SectionMeshCache;
+import net.caffeinemc.mods.sodium.client.render.chunk.compile.cache.SectionMeshDiskCache;
 import net.caffeinemc.mods.sodium.client.render.chunk.compile.executor.ChunkBuilder;
 import net.caffeinemc.mods.sodium.client.render.chunk.compile.executor.ChunkJobResult;
 import net.caffeinemc.mods.sodium.client.render.chunk.compile.executor.ChunkJobCollector;
@@ -22,10 +23,13 @@ import net.caffeinemc.mods.sodium.client.render.chunk.compile.tasks.ChunkBuilder
 import net.caffeinemc.mods.sodium.client.render.chunk.compile.tasks.ChunkBuilderTask;
 import net.caffeinemc.mods.sodium.client.render.chunk.data.BuiltSectionInfo;
 import net.caffeinemc.mods.sodium.client.render.chunk.lists.ChunkRenderList;
+import net.caffeinemc.mods.sodium.client.render.chunk.lists.SectionVisibilityMap;
 import net.caffeinemc.mods.sodium.client.render.chunk.lists.SortedRenderLists;
 import net.caffeinemc.mods.sodium.client.render.chunk.lists.VisibleChunkCollector;
-import net.caffeinemc.mods.sodium.client.render.chunk.occlusion.GraphDirection;
+import net.caffeinemc.mods.sodium.client.render.chunk.occlusion.OccluderHeightmap;
 import net.caffeinemc.mods.sodium.client.render.chunk.occlusion.OcclusionCuller;
+import net.caffeinemc.mods.sodium.client.render.chunk.occlusion.OcclusionRasterizer;
+import net.caffeinemc.mods.sodium.client.render.chunk.occlusion.SectionGraph;
 import net.caffeinemc.mods.sodium.client.render.chunk.region.RenderRegion;
 import net.caffeinemc.mods.sodium.client.render.chunk.region.RenderRegionManager;
 import net.caffeinemc.mods.sodium.client.render.chunk.terrain.TerrainRenderPass;
@@ -37,6 +41,7 @@ import net.caffeinemc.mods.sodium.client.render.chunk.translucent_sorting.data.T
 import net.caffeinemc.mods.sodium.client.render.chunk.translucent_sorting.trigger.CameraMovement;
 import net.caffeinemc.mods.sodium.client.render.chunk.translucent_sorting.trigger.SortTriggering;
 import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkMeshFormats;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
 import net.caffeinemc.mods.sodium.client.render.texture.SpriteUtil;
 import net.caffeinemc.mods.sodium.client.render.util.RenderAsserts;
 import net.caffeinemc.mods.sodium.client.render.viewport.CameraTransform;
@@ -69,21 +74,46 @@ public class RenderSectionManager {
     private final ClonedChunkSectionCache sectionCache;
 
     private final Long2ReferenceMap<RenderSection> sectionByPosition = new Long2ReferenceOpenHashMap<>();
+    private final SectionGraph graph = new SectionGraph();
+
+    // The highest solid slab of each column of sections, which the occlusion culler uses to find regions below the
+    // terrain horizon
+    private final OccluderHeightmap heightmap;
+
+    // The sections which were visited by the search for each set of render lists, which is used to test the visibility
+    // of entities without looking up each section
+    private final SectionVisibilityMap[] visitedSections = new SectionVisibilityMap[RenderRegion.RENDER_LIST_BUFFERS];
 
     private final ConcurrentLinkedDeque<ChunkJobResult<? extends BuilderTaskOutput>> buildResults = new ConcurrentLinkedDeque<>();
 
+    private final ChunkUploadScheduler uploadScheduler = new ChunkUploadScheduler();
+    private boolean uploadAllResults;
+
     private final ChunkRenderer chunkRenderer;
 
     private final ClientLevel level;
 
     private final ReferenceSet<RenderSection> sectionsWithGlobalEntities = new ReferenceOpenHashSet<>();
 
+    // Sections whose faces were merged because they were far away, and which need to be rebuilt once the camera is near
+    private final ReferenceSet<RenderSection> sectionsWithMergedQuads = new ReferenceOpenHashSet<>();
+    private long lastMergedQuadsCheckPos = Long.MIN_VALUE;
+
     private final OcclusionCuller occlusionCuller;
+    private final @Nullable AsyncOcclusionCuller asyncOcclusionCuller;
+
+    // Sections whose pending update changed while a search was running on the culling thread, which are copied into
+    // the graph once the search has completed
+    private final ReferenceSet<RenderSection> deferredPendingUpdates = new ReferenceLinkedOpenHashSet<>();
 
     private final int renderDistance;
 
     private final SortTriggering sortTriggering;
 
+    private final ChunkVertexType vertexType;
+
+    private final @Nullable SectionMeshCache meshCache;
+
     private ChunkJobCollector lastBlockingCollector;
 
     @NotNull
@@ -94,27 +124,57 @@ public class RenderSectionManager {
 
     private int lastUpdatedFrame;
 
+    // The frame number of the last search of the graph. Each search is given its own number, which is used to stamp
+    // the sections and render lists it visits, since a search on the culling thread runs ahead of the frame that uses it.
+    private int lastSearchFrame;
+
+    // The render lists of each region which are used by the current render lists
+    private int renderListBuffer;
+
+    private boolean updatedThisFrame;
+
     private boolean needsGraphUpdate;
 
     private @Nullable BlockPos cameraBlockPos;
     private @Nullable Vector3dc cameraPosition;
 
     public RenderSectionManager(ClientLevel level, int renderDistance, CommandList commandList) {
-        this.chunkRenderer = new DefaultChunkRenderer(RenderDevice.INSTANCE, ChunkMeshFormats.COMPACT);
+        if (SodiumClientMod.options().advanced.useVertexPulling && DefaultChunkRenderer.supportsVertexPulling(RenderDevice.INSTANCE)) {
+            this.vertexType = ChunkMeshFormats.QUAD_RECORDS;
+        } else {
+            this.vertexType = ChunkMeshFormats.getPreferredFormat();
+        }
+
+        this.chunkRenderer = new DefaultChunkRenderer(RenderDevice.INSTANCE, this.vertexType);
 
         this.level = level;
-        this.builder = new ChunkBuilder(level, ChunkMeshFormats.COMPACT);
+        this.builder = new ChunkBuilder(level, this.vertexType);
 
         this.needsGraphUpdate = true;
         this.renderDistance = renderDistance;
 
         this.sortTriggering = new SortTriggering();
 
-        this.regions = new RenderRegionManager(commandList);
+        this.meshCache = createMeshCache(this.vertexType);
+
+        this.regions = new RenderRegionManager(commandList, this.vertexType);
         this.sectionCache = new ClonedChunkSectionCache(this.level);
 
         this.renderLists = SortedRenderLists.empty();
-        this.occlusionCuller = new OcclusionCuller(Long2ReferenceMaps.unmodifiable(this.sectionByPosition), this.level);
+        for (int i = 0; i < this.visitedSections.length; i++) {
+            // The reachable sections of a search can extend slightly beyond the render distance
+            this.visitedSections[i] = new SectionVisibilityMap(renderDistance + 2, this.level.getMinSection(), this.level.getSectionsCount());
+        }
+
+        this.heightmap = new OccluderHeightmap(this.level.getMinSection(), this.level.getSectionsCount(), renderDistance);
+        this.occlusionCuller = new OcclusionCuller(this.graph, this.heightmap, this.level,
+                SodiumClientMod.options().advanced.useSoftwareOcclusionCulling ? new OcclusionRasterizer() : null);
+
+        if (SodiumClientMod.options().advanced.useAsyncOcclusionCulling) {
+            this.asyncOcclusionCuller = new AsyncOcclusionCuller(this.occlusionCuller);
+        } else {
+            this.asyncOcclusionCuller = null;
+        }
 
         this.taskLists = new EnumMap<>(ChunkUpdateType.class);
 
@@ -123,30 +183,154 @@ public class RenderSectionManager {
         }
     }
 
+    private static @Nullable SectionMeshCache createMeshCache(ChunkVertexType vertexType) {
+        var options = SodiumClientMod.options().advanced;
+
+        long memoryCapacity = options.meshCacheSize * 1024L * 1024L;
+        SectionMeshDiskCache diskCache = null;
+
+        if (options.diskMeshCacheSize > 0) {
+            diskCache = SectionMeshDiskCache.open(SectionMeshDiskCache.getDefaultDirectory(), options.diskMeshCacheSize * 1024L * 1024L);
+        }
+
+        if (memoryCapacity <= 0 && diskCache == null) {
+            return null;
+        }
+
+        return new SectionMeshCache(memoryCapacity, diskCache, diskCache != null ? SectionMeshDiskCache.createFingerprint(vertexType) : 0L);
+    }
+
     public void updateCameraState(Vector3dc cameraPosition, Camera camera) {
         this.cameraBlockPos = camera.getBlockPosition();
         this.cameraPosition = cameraPosition;
+
+        this.scheduleMergedQuadRebuilds();
+    }
+
+    /**
+     * Schedules a rebuild of every section with merged faces which the camera has come close to, so that it is built
+     * again without merging. The sections are only checked when the camera enters another section, and only once the
+     * camera is half a section closer than the distance at which the faces were merged, which prevents sections at the
+     * boundary from being rebuilt over and over again as the camera moves back and forth.
+     */
+    private void scheduleMergedQuadRebuilds() {
+        long cameraSectionPos = SectionPos.asLong(this.cameraBlockPos);
+
+        if (cameraSectionPos == this.lastMergedQuadsCheckPos || this.sectionsWithMergedQuads.isEmpty()) {
+            return;
+        }
+
+        this.lastMergedQuadsCheckPos = cameraSectionPos;
+
+        int mergingDistance = SodiumClientMod.options().performance.quadMergingDistance;
+        float threshold = (mergingDistance * 16.0f) - 8.0f;
+
+        for (var section : this.sectionsWithMergedQuads) {
+            if (mergingDistance <= 0 || section.getSquaredDistance(this.cameraBlockPos) < threshold * threshold) {
+                this.scheduleRebuild(section, false);
+            }
+        }
     }
 
-    public void update(Camera camera, Viewport viewport, int frame, boolean spectator) {
-        this.createTerrainRenderList(camera, viewport, frame, spectator);
+    public void update(Camera camera, Viewport viewport, boolean spectator) {
+        this.createTerrainRenderList(camera, viewport, spectator);
 
         this.needsGraphUpdate = false;
-        this.lastUpdatedFrame = frame;
+        this.updatedThisFrame = true;
     }
 
-    private void createTerrainRenderList(Camera camera, Viewport viewport, int frame, boolean spectator) {
+    private void createTerrainRenderList(Camera camera, Viewport viewport, boolean spectator) {
         this.resetRenderLists();
 
         final var searchDistance = this.getSearchDistance();
         final var useOcclusionCulling = this.shouldUseOcclusionCulling(camera, spectator);
 
-        var visitor = new VisibleChunkCollector(frame);
+        VisibleChunkCollector visitor = null;
 
-        this.occlusionCuller.findVisible(visitor, viewport, searchDistance, useOcclusionCulling, frame);
+        if (this.asyncOcclusionCuller != null) {
+            // Use the search which was started during the last frame, unless the camera has moved into another section
+            // or turned too far since then
+            visitor = this.asyncOcclusionCuller.take(viewport, camera.getLookVector(), searchDistance, useOcclusionCulling);
+        }
+
+        if (visitor == null) {
+            visitor = this.createVisitor(viewport);
+
+            this.occlusionCuller.findVisible(visitor, viewport, searchDistance, useOcclusionCulling, true,
+                    visitor.getFrame());
+        }
 
         this.renderLists = visitor.createRenderLists();
         this.taskLists = visitor.getRebuildLists();
+
+        this.lastUpdatedFrame = visitor.getFrame();
+        this.renderListBuffer = visitor.getRenderListBuffer();
+    }
+
+    private VisibleChunkCollector createVisitor(Viewport viewport) {
+        // The render lists which are in use can't be modified by the search, so the other lists of each region are used,
+        // along with the other bitmap of visited sections
+        int renderListBuffer = (this.renderListBuffer + 1) % RenderRegion.RENDER_LIST_BUFFERS;
+
+        return new VisibleChunkCollector(this.graph, ++this.lastSearchFrame, renderListBuffer,
+                this.visitedSections[renderListBuffer], viewport.getChunkCoord());
+    }
+
+    /**
+     * Starts searching the graph for the next frame on the culling thread, if asynchronous culling is enabled. This
+     * must be called after all changes to the graph for the current frame have been made.
+     *
+     * @param viewport The viewport of the current frame, expanded by {@link AsyncOcclusionCuller#FRUSTUM_EXPANSION}
+     */
+    public void startAsyncUpdate(Camera camera, Viewport viewport, boolean spectator) {
+        if (this.asyncOcclusionCuller == null) {
+            return;
+        }
+
+        // The result of a search is only valid for the frame after the one it was started in, since the graph may have
+        // changed since then
+        this.asyncOcclusionCuller.discard();
+
+        // The graph will probably need to be searched again in the next frame if it was searched in this frame, since
+        // that means the camera is moving
+        if (this.updatedThisFrame || this.needsGraphUpdate) {
+            this.asyncOcclusionCuller.start(this.createVisitor(viewport), viewport, camera.getLookVector(),
+                    this.getSearchDistance(), this.shouldUseOcclusionCulling(camera, spectator));
+        }
+
+        this.updatedThisFrame = false;
+    }
+
+    /**
+     * Waits for the search on the culling thread to complete. This must be called before the graph is modified.
+     */
+    public void awaitAsyncUpdate() {
+        if (this.asyncOcclusionCuller != null) {
+            this.asyncOcclusionCuller.await();
+        }
+
+        if (!this.deferredPendingUpdates.isEmpty()) {
+            for (var section : this.deferredPendingUpdates) {
+                if (!section.isDisposed()) {
+                    this.graph.updatePendingUpdate(section);
+                }
+            }
+
+            this.deferredPendingUpdates.clear();
+        }
+    }
+
+    /**
+     * Copies the pending update of the section into the graph. Rebuilds and sorts can be scheduled outside of the
+     * frame, such as during the client tick, while a search may be reading the graph on the culling thread. In that
+     * case the change is deferred until the search has been awaited.
+     */
+    private void updatePendingUpdate(RenderSection section) {
+        if (this.asyncOcclusionCuller != null && this.asyncOcclusionCuller.isRunning()) {
+            this.deferredPendingUpdates.add(section);
+        } else {
+            this.graph.updatePendingUpdate(section);
+        }
     }
 
     private float getSearchDistance() {
@@ -184,6 +368,9 @@ public class RenderSectionManager {
     }
 
     public void onSectionAdded(int x, int y, int z) {
+        // sections are added to and removed from the graph directly, so any search reading it must complete first
+        this.awaitAsyncUpdate();
+
         long key = SectionPos.asLong(x, y, z);
 
         if (this.sectionByPosition.containsKey(key)) {
@@ -206,12 +393,17 @@ public class RenderSectionManager {
             renderSection.setPendingUpdate(ChunkUpdateType.INITIAL_BUILD);
         }
 
-        this.connectNeighborNodes(renderSection);
+        this.graph.add(renderSection);
 
+        this.discardAsyncUpdate();
+        this.occlusionCuller.invalidateReachableSections();
         this.needsGraphUpdate = true;
     }
 
     public void onSectionRemoved(int x, int y, int z) {
+        // sections are added to and removed from the graph directly, so any search reading it must complete first
+        this.awaitAsyncUpdate();
+
         long sectionPos = SectionPos.asLong(x, y, z);
         RenderSection section = this.sectionByPosition.remove(sectionPos);
 
@@ -229,14 +421,22 @@ public class RenderSectionManager {
             region.removeSection(section);
         }
 
-        this.disconnectNeighborNodes(section);
+        this.graph.remove(section);
         this.updateSectionInfo(section, null);
 
         section.delete();
 
+        this.discardAsyncUpdate();
+        this.occlusionCuller.invalidateReachableSections();
         this.needsGraphUpdate = true;
     }
 
+    private void discardAsyncUpdate() {
+        if (this.asyncOcclusionCuller != null) {
+            this.asyncOcclusionCuller.discard();
+        }
+    }
+
     public void renderLayer(ChunkRenderMatrices matrices, TerrainRenderPass pass, double x, double y, double z) {
         RenderDevice device = RenderDevice.INSTANCE;
         CommandList commandList = device.createCommandList();
@@ -246,6 +446,15 @@ public class RenderSectionManager {
         commandList.flush();
     }
 
+    public void prepareRender() {
+        if (this.cameraPosition == null) {
+            return;
+        }
+
+        this.chunkRenderer.prepare(this.renderLists,
+                new CameraTransform(this.cameraPosition.x(), this.cameraPosition.y(), this.cameraPosition.z()));
+    }
+
     public void tickVisibleRenders() {
         Iterator<ChunkRenderList> it = this.renderLists.iterator();
 
@@ -280,40 +489,48 @@ public class RenderSectionManager {
     }
 
     public boolean isSectionVisible(int x, int y, int z) {
-        RenderSection render = this.getRenderSection(x, y, z);
-
-        if (render == null) {
-            return false;
-        }
+        return this.visitedSections[this.renderListBuffer].contains(x, y, z);
+    }
 
-        return render.getLastVisibleFrame() == this.lastUpdatedFrame;
+    /**
+     * Tests whether any section within the bounds was visited by the search of the current frame. The bounds are
+     * inclusive, and are given in section coordinates.
+     */
+    public boolean isBoxVisible(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return this.visitedSections[this.renderListBuffer].containsAny(minX, minY, minZ, maxX, maxY, maxZ);
     }
 
     public void uploadChunks() {
-        var results = this.collectChunkBuildResults();
+        this.regions.updateResidency(RenderDevice.INSTANCE.createCommandList(), this.lastUpdatedFrame);
+
+        for (var result : this.collectChunkBuildResults()) {
+            this.uploadScheduler.add(result);
+        }
 
-        if (results.isEmpty()) {
+        if (this.uploadScheduler.isEmpty()) {
             return;
         }
 
+        var results = this.uploadScheduler.schedule(this.renderListBuffer, this.lastUpdatedFrame, this.cameraBlockPos, this.uploadAllResults);
+
         // only mark as needing a graph update if the uploads could have changed the graph
         // (sort results never change the graph)
         // generally there's no sort results without a camera movement, which would also trigger
         // a graph update, but it can sometimes happen because of async task execution
-        this.needsGraphUpdate = this.needsGraphUpdate || this.processChunkBuildResults(results);
+        if (this.processChunkBuildResults(results)) {
+            this.markGraphChanged();
+        }
 
         for (var result : results) {
             result.destroy();
         }
     }
 
-    private boolean processChunkBuildResults(ArrayList<BuilderTaskOutput> results) {
-        var filtered = filterChunkBuildResults(results);
-
-        this.regions.uploadResults(RenderDevice.INSTANCE.createCommandList(), filtered);
+    private boolean processChunkBuildResults(List<BuilderTaskOutput> results) {
+        this.regions.uploadResults(RenderDevice.INSTANCE.createCommandList(), results);
 
         boolean touchedSectionInfo = false;
-        for (var result : filtered) {
+        for (var result : results) {
             TranslucentData oldData = result.render.getTranslucentData();
             if (result instanceof ChunkBuildOutput chunkBuildOutput) {
                 this.updateSectionInfo(result.render, chunkBuildOutput.info);
@@ -337,6 +554,7 @@ public class RenderSectionManager {
             // active task) if this job is the most recent submitted job for this section
             if (job != null && result.submitTime >= result.render.getLastSubmittedFrame()) {
                 result.render.setTaskCancellationToken(null);
+                this.graph.updatePendingUpdate(result.render);
             }
 
             result.render.setLastUploadFrame(result.submitTime);
@@ -346,33 +564,29 @@ public class RenderSectionManager {
     }
 
     private void updateSectionInfo(RenderSection render, BuiltSectionInfo info) {
+        long prevVisibilityData = render.getVisibilityData();
+
         render.setInfo(info);
+        this.graph.updateSection(render);
+        this.heightmap.update(render.getChunkX(), render.getChunkY(), render.getChunkZ(), render.getOccluderData());
+
+        // Changes which only affect the contents of a section can be applied by re-using the reachable sections of the
+        // last graph search, but a change to how the section connects its neighbors requires searching the graph again
+        if (render.getVisibilityData() != prevVisibilityData) {
+            this.occlusionCuller.invalidateReachableSections();
+        }
 
         if (info == null || ArrayUtils.isEmpty(info.globalBlockEntities)) {
             this.sectionsWithGlobalEntities.remove(render);
         } else {
             this.sectionsWithGlobalEntities.add(render);
         }
-    }
-
-    private static List<BuilderTaskOutput> filterChunkBuildResults(ArrayList<BuilderTaskOutput> outputs) {
-        var map = new Reference2ReferenceLinkedOpenHashMap<RenderSection, BuilderTaskOutput>();
-
-        for (var output : outputs) {
-            // throw out outdated or duplicate outputs
-            if (output.render.isDisposed() || output.render.getLastUploadFrame() > output.submitTime) {
-                continue;
-            }
-
-            var render = output.render;
-            var previous = map.get(render);
 
-            if (previous == null || previous.submitTime < output.submitTime) {
-                map.put(render, output);
-            }
+        if (info == null || (info.flags & (1 << RenderSectionFlags.HAS_MERGED_QUADS)) == 0) {
+            this.sectionsWithMergedQuads.remove(render);
+        } else {
+            this.sectionsWithMergedQuads.add(render);
         }
-
-        return new ArrayList<>(map.values());
     }
 
     private ArrayList<BuilderTaskOutput> collectChunkBuildResults() {
@@ -392,6 +606,9 @@ public class RenderSectionManager {
     }
 
     public void updateChunks(boolean updateImmediately) {
+        // when every task is waited on, every result must also be uploaded in the same frame
+        this.uploadAllResults = updateImmediately;
+
         var thisFrameBlockingCollector = this.lastBlockingCollector;
         this.lastBlockingCollector = null;
         if (thisFrameBlockingCollector == null) {
@@ -406,10 +623,18 @@ public class RenderSectionManager {
             thisFrameBlockingCollector.awaitCompletion(this.builder);
         } else {
             var nextFrameBlockingCollector = new ChunkJobCollector(this.buildResults::add);
-            var deferredCollector = new ChunkJobCollector(
-                this.builder.getHighEffortSchedulingBudget(),
-                this.builder.getLowEffortSchedulingBudget(),
-                this.buildResults::add);
+            ChunkJobCollector deferredCollector;
+
+            // when the upload queue is backed up, building more sections would only grow it further, so deferred
+            // tasks are held back until it has drained. important tasks are always scheduled.
+            if (this.uploadScheduler.isBacklogged()) {
+                deferredCollector = new ChunkJobCollector(0, 0, this.buildResults::add);
+            } else {
+                deferredCollector = new ChunkJobCollector(
+                    this.builder.getHighEffortSchedulingBudget(),
+                    this.builder.getLowEffortSchedulingBudget(),
+                    this.buildResults::add);
+            }
 
             // if zero frame delay is allowed, submit important sorts with the current frame blocking collector.
             // otherwise submit with the collector that the next frame is blocking on.
@@ -501,6 +726,8 @@ public class RenderSectionManager {
 
             section.setLastSubmittedFrame(frame);
             section.setPendingUpdate(null);
+
+            this.graph.updatePendingUpdate(section);
         }
     }
 
@@ -511,7 +738,7 @@ public class RenderSectionManager {
             return null;
         }
 
-        return new ChunkBuilderMeshingTask(render, frame, this.cameraPosition, context);
+        return new ChunkBuilderMeshingTask(render, frame, this.cameraPosition, context, this.meshCache);
     }
 
     public ChunkBuilderSortingTask createSortTask(RenderSection render, int frame) {
@@ -522,10 +749,26 @@ public class RenderSectionManager {
         this.sortTriggering.triggerSections(this::scheduleSort, movement);
     }
 
+    /**
+     * Requests that the graph is searched again in the next frame, such as after the camera has moved. The result of a
+     * search which is pending on the culling thread checks the camera itself when it is taken.
+     */
     public void markGraphDirty() {
         this.needsGraphUpdate = true;
     }
 
+    /**
+     * Requests that the graph is searched again in the next frame after it has changed. The result of a search which
+     * is pending on the culling thread can't reflect the change, so it is also invalidated.
+     */
+    public void markGraphChanged() {
+        this.needsGraphUpdate = true;
+
+        if (this.asyncOcclusionCuller != null) {
+            this.asyncOcclusionCuller.invalidate();
+        }
+    }
+
     public boolean needsUpdate() {
         return this.needsGraphUpdate;
     }
@@ -535,12 +778,23 @@ public class RenderSectionManager {
     }
 
     public void destroy() {
+        if (this.asyncOcclusionCuller != null) {
+            this.asyncOcclusionCuller.destroy();
+        }
+
         this.builder.shutdown(); // stop all the workers, and cancel any tasks
 
+        // the workers are stopped, so nothing else can write into the cache
+        if (this.meshCache != null) {
+            this.meshCache.delete();
+        }
+
         for (var result : this.collectChunkBuildResults()) {
             result.destroy(); // delete resources for any pending tasks (including those that were cancelled)
         }
 
+        this.uploadScheduler.destroy();
+
         for (var section : this.sectionByPosition.values()) {
             section.delete();
         }
@@ -584,6 +838,8 @@ public class RenderSectionManager {
             if (pendingUpdate != null) {
                 section.setPendingUpdate(pendingUpdate);
                 section.prepareTrigger(isDirectTrigger);
+
+                this.updatePendingUpdate(section);
             }
         }
     }
@@ -595,7 +851,13 @@ public class RenderSectionManager {
 
         RenderSection section = this.sectionByPosition.get(SectionPos.asLong(x, y, z));
 
-        if (section != null && section.isBuilt()) {
+        if (section != null) {
+            this.scheduleRebuild(section, important);
+        }
+    }
+
+    private void scheduleRebuild(RenderSection section, boolean important) {
+        if (section.isBuilt()) {
             ChunkUpdateType pendingUpdate;
 
             if (allowImportantRebuilds() && (important || this.shouldPrioritizeTask(section, NEARBY_REBUILD_DISTANCE))) {
@@ -607,8 +869,9 @@ public class RenderSectionManager {
             pendingUpdate = ChunkUpdateType.getPromotionUpdateType(section.getPendingUpdate(), pendingUpdate);
             if (pendingUpdate != null) {
                 section.setPendingUpdate(pendingUpdate);
+                this.updatePendingUpdate(section);
 
-                this.needsGraphUpdate = true;
+                this.markGraphChanged();
             }
         }
     }
@@ -642,30 +905,6 @@ public class RenderSectionManager {
         return this.renderDistance * 16.0f;
     }
 
-    private void connectNeighborNodes(RenderSection render) {
-        for (int direction = 0; direction < GraphDirection.COUNT; direction++) {
-            RenderSection adj = this.getRenderSection(render.getChunkX() + GraphDirection.x(direction),
-                    render.getChunkY() + GraphDirection.y(direction),
-                    render.getChunkZ() + GraphDirection.z(direction));
-
-            if (adj != null) {
-                adj.setAdjacentNode(GraphDirection.opposite(direction), render);
-                render.setAdjacentNode(direction, adj);
-            }
-        }
-    }
-
-    private void disconnectNeighborNodes(RenderSection render) {
-        for (int direction = 0; direction < GraphDirection.COUNT; direction++) {
-            RenderSection adj = render.getAdjacent(direction);
-
-            if (adj != null) {
-                adj.setAdjacentNode(GraphDirection.opposite(direction), null);
-                render.setAdjacentNode(direction, null);
-            }
-        }
-    }
-
     private RenderSection getRenderSection(int x, int y, int z) {
         return this.sectionByPosition.get(SectionPos.asLong(x, y, z));
     }
@@ -678,23 +917,55 @@ public class RenderSectionManager {
         long deviceUsed = 0;
         long deviceAllocated = 0;
 
-        for (var region : this.regions.getLoadedRegions()) {
-            var resources = region.getResources();
-
-            if (resources == null) {
-                continue;
-            }
-
-            var buffer = resources.getGeometryArena();
+        long largestFree = 0;
+        int freeSegments = 0;
 
+        for (var buffer : this.regions.getGeometryArenas()) {
             deviceUsed += buffer.getDeviceUsedMemory();
             deviceAllocated += buffer.getDeviceAllocatedMemory();
 
+            largestFree += buffer.getLargestFreeSegment();
+            freeSegments += buffer.getFreeSegmentCount();
+
             count++;
         }
 
         list.add(String.format("Geometry Pool: %d/%d MiB (%d buffers)", MathUtil.toMib(deviceUsed), MathUtil.toMib(deviceAllocated), count));
-        list.add(String.format("Transfer Queue: %s", this.regions.getStagingBuffer().toString()));
+
+        // The fraction of free memory which lies outside the largest free segment of each buffer
+        long deviceFree = deviceAllocated - deviceUsed;
+        float fragmentation = deviceFree > 0 ? 1.0f - ((float) largestFree / deviceFree) : 0.0f;
+
+        list.add(String.format("Geometry Pool: %d free segments (%.0f%% fragmented)", freeSegments, fragmentation * 100.0f));
+
+        int evictedRegions = 0;
+        long evictedCompressed = 0;
+        long evictedUncompressed = 0;
+
+        for (var region : this.regions.getLoadedRegions()) {
+            var evicted = region.getEvictedMeshes();
+
+            if (evicted != null) {
+                evictedCompressed += evicted.getCompressedSize();
+                evictedUncompressed += evicted.getUncompressedSize();
+                evictedRegions++;
+            }
+        }
+
+        if (evictedRegions > 0) {
+            list.add(String.format("Evicted Geometry: %d regions (%d/%d MiB)", evictedRegions,
+                    MathUtil.toMib(evictedCompressed), MathUtil.toMib(evictedUncompressed)));
+        }
+
+        int stride = this.vertexType.getVertexFormat().getStride();
+        int referenceStride = ChunkMeshFormats.COMPACT.getVertexFormat().getStride();
+
+        // The stride of the quad record format is not the size of a vertex, so no saving per vertex can be given for it
+        if (stride != referenceStride && this.vertexType != ChunkMeshFormats.QUAD_RECORDS) {
+            long saved = (deviceUsed / stride) * (long) (referenceStride - stride);
+            list.add(String.format("Geometry Pool: %d B/vertex (saving %d MiB)", stride, MathUtil.toMib(saved)));
+        }
+        this.regions.getStagingBuffer().addDebugStrings(list);
 
         list.add(String.format("Chunk Builder: Permits=%02d (E %03d) | Busy=%02d | Total=%02d",
                 this.builder.getScheduledJobCount(), this.builder.getScheduledEffort(), this.builder.getBusyThreadCount(), this.builder.getTotalThreadCount())
@@ -707,6 +978,18 @@ public class RenderSectionManager {
                 this.taskLists.get(ChunkUpdateType.INITIAL_BUILD).size())
         );
 
+        list.add(String.format("Chunk Uploads: Deferred=%02d (%d MiB)",
+                this.uploadScheduler.getDeferredCount(), MathUtil.toMib(this.uploadScheduler.getDeferredBytes())));
+
+        if (this.meshCache != null) {
+            this.meshCache.addDebugStrings(list);
+        }
+
+        this.occlusionCuller.addDebugStrings(list);
+
+        if (this.asyncOcclusionCuller != null) {
+            this.asyncOcclusionCuller.addDebugStrings(list);
+        }
         this.sortTriggering.addDebugStrings(list);
 
         return list;
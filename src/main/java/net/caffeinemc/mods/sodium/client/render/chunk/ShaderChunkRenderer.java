@@ -1,11 +1,14 @@
 package net.caffeinemc.mods.sodium.client.render.chunk;
 
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import net.caffeinemc.mods.sodium.client.SodiumClientMod;
 import net.caffeinemc.mods.sodium.client.gl.attribute.GlVertexFormat;
 import net.caffeinemc.mods.sodium.client.gl.device.CommandList;
 import net.caffeinemc.mods.sodium.client.gl.device.RenderDevice;
+import net.caffeinemc.mods.sodium.client.render.chunk.terrain.DefaultTerrainRenderPasses;
 import net.caffeinemc.mods.sodium.client.render.chunk.terrain.TerrainRenderPass;
 import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkMeshAttribute;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkMeshFormats;
 import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
 import net.caffeinemc.mods.sodium.client.gl.shader.*;
 import net.caffeinemc.mods.sodium.client.render.chunk.shader.ChunkFogMode;
@@ -21,6 +24,10 @@ public abstract class ShaderChunkRenderer implements ChunkRenderer {
     protected final ChunkVertexType vertexType;
     protected final GlVertexFormat<ChunkMeshAttribute> vertexFormat;
 
+    // Whether the meshes of the solid pass may contain merged quads, whose textures must be repeated by the shader.
+    // Changing the merging distance reloads the renderer, so this can't change while the renderer is in use.
+    private final boolean useQuadTiling;
+
     protected final RenderDevice device;
 
     protected GlProgram<ChunkShaderInterface> activeProgram;
@@ -29,6 +36,7 @@ public abstract class ShaderChunkRenderer implements ChunkRenderer {
         this.device = device;
         this.vertexType = vertexType;
         this.vertexFormat = vertexType.getVertexFormat();
+        this.useQuadTiling = vertexType == ChunkMeshFormats.COMPACT && SodiumClientMod.options().performance.quadMergingDistance > 0;
     }
 
     protected GlProgram<ChunkShaderInterface> compileProgram(ChunkShaderOptions options) {
@@ -70,7 +78,8 @@ public abstract class ShaderChunkRenderer implements ChunkRenderer {
     protected void begin(TerrainRenderPass pass) {
         pass.startDrawing();
 
-        ChunkShaderOptions options = new ChunkShaderOptions(ChunkFogMode.SMOOTH, pass, this.vertexType);
+        ChunkShaderOptions options = new ChunkShaderOptions(ChunkFogMode.SMOOTH, pass, this.vertexType.forRenderPass(pass),
+                this.useQuadTiling && pass == DefaultTerrainRenderPasses.SOLID);
 
         this.activeProgram = this.compileProgram(options);
         this.activeProgram.bind();
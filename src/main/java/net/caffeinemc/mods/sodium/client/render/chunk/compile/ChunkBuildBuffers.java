@@ -11,8 +11,10 @@ import net.caffeinemc.mods.sodium.client.render.chunk.terrain.DefaultTerrainRend
 import net.caffeinemc.mods.sodium.client.render.chunk.terrain.TerrainRenderPass;
 import net.caffeinemc.mods.sodium.client.render.chunk.terrain.material.Material;
 import net.caffeinemc.mods.sodium.client.render.chunk.vertex.builder.ChunkMeshBufferBuilder;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkMeshFormats;
 import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
 import net.caffeinemc.mods.sodium.client.util.NativeBuffer;
+import net.caffeinemc.mods.sodium.client.util.NativeMemoryTracker;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -35,7 +37,7 @@ public class ChunkBuildBuffers {
             var vertexBuffers = new ChunkMeshBufferBuilder[ModelQuadFacing.COUNT];
 
             for (int facing = 0; facing < ModelQuadFacing.COUNT; facing++) {
-                vertexBuffers[facing] = new ChunkMeshBufferBuilder(this.vertexType, 128 * 1024);
+                vertexBuffers[facing] = new ChunkMeshBufferBuilder(this.vertexType.forRenderPass(pass), 128 * 1024);
             }
 
             this.builders.put(pass, new BakedChunkModelBuilder(vertexBuffers));
@@ -43,8 +45,21 @@ public class ChunkBuildBuffers {
     }
 
     public void init(BuiltSectionInfo.Builder renderData, int sectionIndex) {
-        for (var builder : this.builders.values()) {
-            builder.begin(renderData, sectionIndex);
+        this.init(renderData, sectionIndex, false);
+    }
+
+    /**
+     * Prepares the buffers for building the given section. If {@code mergeQuads} is true, adjacent faces in the solid
+     * render pass are merged when the mesh is created. Quad merging is only supported by the compact vertex format,
+     * and is ignored for any other format.
+     */
+    public void init(BuiltSectionInfo.Builder renderData, int sectionIndex, boolean mergeQuads) {
+        boolean canMergeQuads = mergeQuads && this.vertexType == ChunkMeshFormats.COMPACT;
+
+        renderData.setMergedQuads(canMergeQuads);
+
+        for (var entry : this.builders.reference2ReferenceEntrySet()) {
+            entry.getValue().begin(renderData, sectionIndex, canMergeQuads && entry.getKey() == DefaultTerrainRenderPasses.SOLID);
         }
     }
 
@@ -67,6 +82,7 @@ public class ChunkBuildBuffers {
 
         for (ModelQuadFacing facing : ModelQuadFacing.VALUES) {
             var buffer = builder.getVertexBuffer(facing);
+            buffer.flush();
 
             if (buffer.isEmpty()) {
                 continue;
@@ -88,7 +104,7 @@ public class ChunkBuildBuffers {
             vertexRanges[ModelQuadFacing.UNASSIGNED.ordinal()] = new VertexRange(0, vertexCount);
         }
 
-        var mergedBuffer = new NativeBuffer(vertexCount * this.vertexType.getVertexFormat().getStride());
+        var mergedBuffer = new NativeBuffer(vertexCount * this.vertexType.forRenderPass(pass).getVertexFormat().getStride(), NativeMemoryTracker.Tag.MESH_DATA);
         var mergedBufferBuilder = mergedBuffer.getDirectBuffer();
 
         for (var buffer : vertexBuffers) {
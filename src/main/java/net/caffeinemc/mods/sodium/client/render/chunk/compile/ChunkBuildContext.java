@@ -1,5 +1,6 @@
 package net.caffeinemc.mods.sodium.client.render.chunk.compile;
 
+import net.caffeinemc.mods.sodium.client.render.chunk.compile.cache.SectionMeshCompressor;
 import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
 import net.caffeinemc.mods.sodium.client.render.chunk.compile.pipeline.BlockRenderCache;
 import net.minecraft.client.Minecraft;
@@ -8,14 +9,17 @@ import net.minecraft.client.multiplayer.ClientLevel;
 public class ChunkBuildContext {
     public final ChunkBuildBuffers buffers;
     public final BlockRenderCache cache;
+    public final SectionMeshCompressor meshCompressor;
 
     public ChunkBuildContext(ClientLevel level, ChunkVertexType vertexType) {
         this.buffers = new ChunkBuildBuffers(vertexType);
         this.cache = new BlockRenderCache(Minecraft.getInstance(), level);
+        this.meshCompressor = new SectionMeshCompressor(vertexType.getVertexFormat().getStride());
     }
 
     public void cleanup() {
         this.buffers.destroy();
         this.cache.cleanup();
+        this.meshCompressor.delete();
     }
 }
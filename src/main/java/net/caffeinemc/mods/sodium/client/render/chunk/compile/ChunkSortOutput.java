@@ -8,6 +8,7 @@ import net.caffeinemc.mods.sodium.client.util.NativeBuffer;
 
 public class ChunkSortOutput extends BuilderTaskOutput implements SortData {
     private NativeBuffer indexBuffer;
+    private boolean shortIndices;
     private boolean reuseUploadedIndexData;
     private DynamicTopoData.DynamicTopoSorter topoSorter;
 
@@ -22,6 +23,7 @@ public class ChunkSortOutput extends BuilderTaskOutput implements SortData {
 
     public void copyResultFrom(Sorter sorter) {
         this.indexBuffer = sorter.getIndexBuffer();
+        this.shortIndices = sorter.hasShortIndices();
         this.reuseUploadedIndexData = false;
         if (sorter instanceof DynamicTopoData.DynamicTopoSorter topoSorterInstance) {
             this.topoSorter = topoSorterInstance;
@@ -37,6 +39,11 @@ public class ChunkSortOutput extends BuilderTaskOutput implements SortData {
         return this.indexBuffer;
     }
 
+    @Override
+    public boolean hasShortIndices() {
+        return this.shortIndices;
+    }
+
     @Override
     public boolean isReusingUploadedIndexData() {
         return this.reuseUploadedIndexData;
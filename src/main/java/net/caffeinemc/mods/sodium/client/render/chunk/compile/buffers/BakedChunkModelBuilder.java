@@ -40,11 +40,11 @@ public class BakedChunkModelBuilder implements ChunkModelBuilder {
         }
     }
 
-    public void begin(BuiltSectionInfo.Builder renderData, int sectionIndex) {
+    public void begin(BuiltSectionInfo.Builder renderData, int sectionIndex, boolean mergeQuads) {
         this.renderData = renderData;
 
         for (var vertexBuffer : this.vertexBuffers) {
-            vertexBuffer.start(sectionIndex);
+            vertexBuffer.start(sectionIndex, mergeQuads);
         }
     }
 }
@@ -0,0 +1,68 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.compile.cache;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import net.caffeinemc.mods.sodium.client.world.LevelSlice;
+import net.caffeinemc.mods.sodium.client.world.cloned.ChunkRenderContext;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.LightLayer;
+import net.minecraft.world.level.block.Block;
+
+/**
+ * Computes a hash of all the level data which the mesh of a section can depend on, which is used to tell whether a
+ * cached mesh can be re-used instead of building the section again.
+ */
+public class SectionContentHash {
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Hashes the block states and light levels within the volume of the slice, and the biomes of every section in the
+     * render context, since biome colors are blended across section boundaries.
+     *
+     * @param slice The level slice, which must have been initialized with the given context
+     * @param context The render context of the section
+     * @param salt Any further state which affects the mesh, such as whether faces are merged
+     */
+    public static long compute(LevelSlice slice, ChunkRenderContext context, long salt) {
+        long hash = mix(context.getOrigin().asLong(), salt);
+
+        var volume = context.getVolume();
+        var pos = new BlockPos.MutableBlockPos();
+
+        for (int y = volume.minY(); y <= volume.maxY(); y++) {
+            for (int z = volume.minZ(); z <= volume.maxZ(); z++) {
+                for (int x = volume.minX(); x <= volume.maxX(); x++) {
+                    pos.set(x, y, z);
+
+                    hash = mix(hash, Block.getId(slice.getBlockState(x, y, z)));
+                    hash = mix(hash, (slice.getBrightness(LightLayer.BLOCK, pos) << 4) | slice.getBrightness(LightLayer.SKY, pos));
+                }
+            }
+        }
+
+        for (var section : context.getSections()) {
+            var biomes = section.getBiomeData();
+
+            if (biomes == null) {
+                hash = mix(hash, 0);
+                continue;
+            }
+
+            for (int y = 0; y < 4; y++) {
+                for (int z = 0; z < 4; z++) {
+                    for (int x = 0; x < 4; x++) {
+                        var biome = biomes.get(x, y, z);
+                        hash = mix(hash, biome.unwrapKey()
+                                .map(key -> key.location().hashCode())
+                                .orElse(0));
+                    }
+                }
+            }
+        }
+
+        return HashCommon.mix(hash);
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash + value) * MULTIPLIER;
+    }
+}
@@ -0,0 +1,296 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.compile.cache;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.objects.Reference2ReferenceOpenHashMap;
+import net.caffeinemc.mods.sodium.client.gl.util.VertexRange;
+import net.caffeinemc.mods.sodium.client.model.quad.properties.ModelQuadFacing;
+import net.caffeinemc.mods.sodium.client.render.chunk.data.BuiltSectionInfo;
+import net.caffeinemc.mods.sodium.client.render.chunk.terrain.DefaultTerrainRenderPasses;
+import net.caffeinemc.mods.sodium.client.render.chunk.terrain.TerrainRenderPass;
+import net.caffeinemc.mods.sodium.client.util.MathUtil;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+import net.minecraft.resources.ResourceLocation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the compressed meshes of recently built sections in system memory, so that sections which are unloaded and
+ * later loaded again without any changes, such as when walking back and forth through an area, can be restored without
+ * meshing them again. Entries are keyed by section position and validated against a hash of the section's content, and
+ * the least recently used entries are discarded once the cache exceeds its capacity.
+ *
+ * If a {@link SectionMeshDiskCache} is attached, every entry is also written to it, and entries which are not held in
+ * memory are looked up on disk using the content hash combined with a fingerprint of the resources and options which
+ * affect meshes.
+ *
+ * The cache is accessed from the builder threads. Access to the entries held in memory is synchronized, while entries
+ * are serialized and read from or written to disk outside of the lock, so that disk access by one thread does not
+ * block lookups by the others.
+ */
+public class SectionMeshCache {
+    private static final Logger LOGGER = LogManager.getLogger(SectionMeshCache.class);
+
+    private final long capacity;
+
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long size;
+
+    private final @Nullable SectionMeshDiskCache diskCache;
+    private final long fingerprint;
+
+    private long hits;
+    private long diskHits;
+    private long misses;
+
+    public SectionMeshCache(long capacity) {
+        this(capacity, null, 0L);
+    }
+
+    public SectionMeshCache(long capacity, @Nullable SectionMeshDiskCache diskCache, long fingerprint) {
+        this.capacity = capacity;
+        this.diskCache = diskCache;
+        this.fingerprint = fingerprint;
+    }
+
+    public @Nullable Entry get(long sectionPos, long contentHash) {
+        synchronized (this) {
+            var entry = this.entries.get(sectionPos);
+
+            if (entry != null && entry.contentHash() == contentHash) {
+                this.hits++;
+                return entry;
+            }
+
+            if (this.diskCache == null) {
+                this.misses++;
+                return null;
+            }
+        }
+
+        var entry = this.readFromDisk(contentHash);
+
+        synchronized (this) {
+            if (entry == null) {
+                this.misses++;
+                return null;
+            }
+
+            // Another thread may have stored a mesh for this section in the meantime, which must not be replaced
+            if (!this.entries.containsKey(sectionPos)) {
+                this.putInMemory(sectionPos, entry);
+            }
+
+            this.diskHits++;
+        }
+
+        return entry;
+    }
+
+    public void put(long sectionPos, Entry entry) {
+        synchronized (this) {
+            this.putInMemory(sectionPos, entry);
+        }
+
+        if (this.diskCache != null) {
+            this.diskCache.write(this.getDiskKey(entry.contentHash()), serialize(entry));
+        }
+    }
+
+    private void putInMemory(long sectionPos, Entry entry) {
+        if (entry.size() > this.capacity) {
+            return;
+        }
+
+        var prev = this.entries.put(sectionPos, entry);
+
+        if (prev != null) {
+            this.size -= prev.size();
+        }
+
+        this.size += entry.size();
+
+        Iterator<Entry> it = this.entries.values()
+                .iterator();
+
+        while (this.size > this.capacity && it.hasNext()) {
+            this.size -= it.next().size();
+            it.remove();
+        }
+    }
+
+    private @Nullable Entry readFromDisk(long contentHash) {
+        byte[] data = this.diskCache.read(this.getDiskKey(contentHash));
+
+        if (data == null) {
+            return null;
+        }
+
+        try {
+            var entry = deserialize(data);
+
+            // the key is a hash, so make sure the entry actually belongs to this section
+            return entry.contentHash() == contentHash ? entry : null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Discarding corrupt mesh cache entry", e);
+            return null;
+        }
+    }
+
+    private long getDiskKey(long contentHash) {
+        return HashCommon.mix(contentHash ^ this.fingerprint);
+    }
+
+    private static byte[] serialize(Entry entry) {
+        var bytes = new ByteArrayOutputStream((int) Math.min(entry.size() + 256, Integer.MAX_VALUE));
+
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeLong(entry.contentHash());
+            out.writeInt(entry.info().flags);
+            out.writeLong(entry.info().visibilityData);
+            out.writeLong(entry.info().occluderData);
+
+            var sprites = entry.info().animatedSprites;
+            out.writeInt(sprites != null ? sprites.length : 0);
+
+            if (sprites != null) {
+                for (var sprite : sprites) {
+                    out.writeUTF(sprite.atlasLocation().toString());
+                    out.writeUTF(sprite.contents().name().toString());
+                }
+            }
+
+            out.writeInt(entry.meshes().size());
+
+            for (var mesh : entry.meshes().entrySet()) {
+                out.writeByte(getPassIndex(mesh.getKey()));
+
+                for (var range : mesh.getValue().ranges()) {
+                    out.writeInt(range != null ? range.vertexStart() : -1);
+                    out.writeInt(range != null ? range.vertexCount() : -1);
+                }
+
+                out.writeInt(mesh.getValue().length());
+                out.writeInt(mesh.getValue().data().length);
+                out.write(mesh.getValue().data());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to serialize mesh cache entry", e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static Entry deserialize(byte[] data) throws IOException {
+        try (var in = new DataInputStream(new ByteArrayInputStream(data))) {
+            long contentHash = in.readLong();
+            int flags = in.readInt();
+            long visibilityData = in.readLong();
+            long occluderData = in.readLong();
+
+            int spriteCount = in.readInt();
+            TextureAtlasSprite[] sprites = null;
+
+            if (spriteCount > 0) {
+                sprites = new TextureAtlasSprite[spriteCount];
+
+                for (int i = 0; i < spriteCount; i++) {
+                    var atlas = ResourceLocation.parse(in.readUTF());
+                    var name = ResourceLocation.parse(in.readUTF());
+
+                    sprites[i] = Minecraft.getInstance()
+                            .getModelManager()
+                            .getAtlas(atlas)
+                            .getSprite(name);
+                }
+            }
+
+            int meshCount = in.readInt();
+            Map<TerrainRenderPass, Mesh> meshes = new Reference2ReferenceOpenHashMap<>();
+
+            for (int i = 0; i < meshCount; i++) {
+                var pass = DefaultTerrainRenderPasses.ALL[in.readByte()];
+                var ranges = new VertexRange[ModelQuadFacing.COUNT];
+
+                for (int facing = 0; facing < ModelQuadFacing.COUNT; facing++) {
+                    int vertexStart = in.readInt();
+                    int vertexCount = in.readInt();
+
+                    if (vertexCount >= 0) {
+                        ranges[facing] = new VertexRange(vertexStart, vertexCount);
+                    }
+                }
+
+                int length = in.readInt();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+
+                meshes.put(pass, new Mesh(bytes, length, ranges));
+            }
+
+            return Entry.create(contentHash, BuiltSectionInfo.restore(flags, visibilityData, occluderData, sprites), meshes);
+        }
+    }
+
+    private static int getPassIndex(TerrainRenderPass pass) {
+        for (int i = 0; i < DefaultTerrainRenderPasses.ALL.length; i++) {
+            if (DefaultTerrainRenderPasses.ALL[i] == pass) {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown render pass");
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+        this.size = 0;
+    }
+
+    public synchronized void delete() {
+        this.clear();
+
+        if (this.diskCache != null) {
+            this.diskCache.close();
+        }
+    }
+
+    public synchronized void addDebugStrings(List<String> list) {
+        long lookups = this.hits + this.diskHits + this.misses;
+
+        list.add("Mesh Cache: %d entries (%d/%d MiB) Hits=%.0f%%".formatted(this.entries.size(),
+                MathUtil.toMib(this.size), MathUtil.toMib(this.capacity),
+                lookups > 0 ? (this.hits * 100.0f) / lookups : 0.0f));
+
+        if (this.diskCache != null) {
+            list.add("Mesh Cache: %d on disk, Hits=%.0f%%".formatted(this.diskCache.getEntryCount(),
+                    lookups > 0 ? (this.diskHits * 100.0f) / lookups : 0.0f));
+        }
+    }
+
+    public record Entry(long contentHash, BuiltSectionInfo info, Map<TerrainRenderPass, Mesh> meshes, long size) {
+        public static Entry create(long contentHash, BuiltSectionInfo info, Map<TerrainRenderPass, Mesh> meshes) {
+            long size = 0;
+
+            for (var mesh : meshes.values()) {
+                size += mesh.data().length;
+            }
+
+            return new Entry(contentHash, info, meshes, size);
+        }
+    }
+
+    public record Mesh(byte[] data, int length, VertexRange[] ranges) {
+    }
+}
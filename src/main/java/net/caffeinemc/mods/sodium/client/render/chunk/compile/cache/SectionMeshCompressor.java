@@ -0,0 +1,95 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.compile.cache;
+
+import net.caffeinemc.mods.sodium.client.util.NativeBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses the vertex data of section meshes on the builder threads. Before compression, each byte of a vertex is
+ * replaced with its difference to the same byte of the previous vertex. Neighbouring vertices of a mesh tend to have
+ * similar positions, colors and texture coordinates, so this turns most of the data into small values which Deflate
+ * can compress well.
+ */
+public class SectionMeshCompressor {
+    private final int stride;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+
+    private byte[] scratch = new byte[0];
+
+    public SectionMeshCompressor(int stride) {
+        this.stride = stride;
+    }
+
+    public byte[] compress(ByteBuffer data) {
+        int length = data.remaining();
+        byte[] bytes = this.getScratch(length);
+
+        data.get(data.position(), bytes, 0, length);
+
+        // Iterate backwards so that every byte is compared against the unmodified byte of the previous vertex
+        for (int i = length - 1; i >= this.stride; i--) {
+            bytes[i] -= bytes[i - this.stride];
+        }
+
+        this.deflater.reset();
+        this.deflater.setInput(bytes, 0, length);
+        this.deflater.finish();
+
+        byte[] compressed = new byte[Math.max(64, length / 4)];
+        int size = 0;
+
+        while (!this.deflater.finished()) {
+            if (size == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+
+            size += this.deflater.deflate(compressed, size, compressed.length - size);
+        }
+
+        return Arrays.copyOf(compressed, size);
+    }
+
+    public NativeBuffer decompress(byte[] compressed, int length) {
+        byte[] bytes = this.getScratch(length);
+
+        this.inflater.reset();
+        this.inflater.setInput(compressed);
+
+        try {
+            if (this.inflater.inflate(bytes, 0, length) != length) {
+                throw new IllegalStateException("Compressed mesh data is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new RuntimeException("Failed to decompress cached mesh data", e);
+        }
+
+        for (int i = this.stride; i < length; i++) {
+            bytes[i] += bytes[i - this.stride];
+        }
+
+        var buffer = new NativeBuffer(length);
+        buffer.getDirectBuffer()
+                .put(0, bytes, 0, length);
+
+        return buffer;
+    }
+
+    private byte[] getScratch(int length) {
+        if (this.scratch.length < length) {
+            this.scratch = new byte[length];
+        }
+
+        return this.scratch;
+    }
+
+    public void delete() {
+        this.deflater.end();
+        this.inflater.end();
+    }
+}
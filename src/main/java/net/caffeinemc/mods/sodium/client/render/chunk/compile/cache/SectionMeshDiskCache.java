@@ -0,0 +1,379 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.compile.cache;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import net.caffeinemc.mods.sodium.client.SodiumClientMod;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.SharedConstants;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.texture.TextureAtlas;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * The persistent tier of the {@link SectionMeshCache}, which keeps cache entries in a ring of memory-mapped bucket files
+ * so that meshes can be re-used when joining the same world again.
+ *
+ * Entries are appended to the current bucket. Once it is full, writing moves on to the next bucket in the ring, and the
+ * entries which were previously stored in that bucket are discarded. Entries which are read from the older half of the
+ * ring are appended to the current bucket again, so that the least recently used entries are the ones discarded. The
+ * index of entries is not stored, and is instead rebuilt from the entry headers when the cache is opened.
+ */
+public class SectionMeshDiskCache {
+    private static final Logger LOGGER = LogManager.getLogger(SectionMeshDiskCache.class);
+
+    private static final int BUCKET_SIZE = 32 * 1024 * 1024;
+    private static final int MIN_BUCKETS = 2;
+
+    private static final int BUCKET_MAGIC = 0x534D4342; // "SMCB"
+    private static final int ENTRY_MAGIC = 0x534D4345; // "SMCE"
+    private static final int VERSION = 3;
+
+    // magic (int), version (int), generation (long)
+    private static final int BUCKET_HEADER_SIZE = 16;
+
+    // magic (int), length (int), key (long), checksum (int)
+    private static final int ENTRY_HEADER_SIZE = 20;
+
+    private final Bucket[] buckets;
+
+    // (Key -> Bucket Index << 32 | Offset) table
+    private final Long2LongOpenHashMap index = new Long2LongOpenHashMap();
+
+    private int current;
+    private long generation;
+
+    private boolean closed;
+
+    private SectionMeshDiskCache(Bucket[] buckets) {
+        this.buckets = buckets;
+        this.index.defaultReturnValue(-1L);
+
+        // Index the buckets from oldest to newest, so that newer copies of an entry replace older ones
+        var order = IntStream.range(0, buckets.length)
+                .boxed()
+                .sorted(Comparator.comparingLong(i -> buckets[i].generation))
+                .toList();
+
+        for (int bucketIndex : order) {
+            this.scan(bucketIndex);
+        }
+
+        this.current = order.get(order.size() - 1);
+        this.generation = buckets[this.current].generation;
+    }
+
+    /**
+     * Opens the cache in the given directory, creating any bucket files which do not exist yet.
+     *
+     * @param quota The maximum size of the cache in bytes
+     * @return The cache, or null if it could not be opened
+     */
+    public static @Nullable SectionMeshDiskCache open(Path directory, long quota) {
+        int bucketCount = (int) Math.max(MIN_BUCKETS, quota / BUCKET_SIZE);
+        List<Bucket> buckets = new ArrayList<>();
+
+        try {
+            Files.createDirectories(directory);
+
+            // Remove the buckets left over from a previously larger quota
+            for (int i = bucketCount; Files.exists(getBucketPath(directory, i)); i++) {
+                Files.delete(getBucketPath(directory, i));
+            }
+
+            for (int i = 0; i < bucketCount; i++) {
+                buckets.add(Bucket.open(getBucketPath(directory, i)));
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to open mesh cache in {}", directory, e);
+
+            for (var bucket : buckets) {
+                bucket.close();
+            }
+
+            return null;
+        }
+
+        return new SectionMeshDiskCache(buckets.toArray(Bucket[]::new));
+    }
+
+    private static Path getBucketPath(Path directory, int index) {
+        return directory.resolve("bucket-%d.bin".formatted(index));
+    }
+
+    public static Path getDefaultDirectory() {
+        return FabricLoader.getInstance()
+                .getGameDir()
+                .resolve("sodium-cache")
+                .resolve("meshes");
+    }
+
+    /**
+     * Returns a hash of everything outside the level which affects the meshes of sections, which is combined with the
+     * content hash of each section to form the keys of the cache. Changing resource packs, mods or render options which
+     * affect chunk meshes will cause none of the existing entries to be found. Since a pack's textures can change without
+     * its ID changing, the layout of the block atlas is hashed as well.
+     */
+    public static long createFingerprint(ChunkVertexType vertexType) {
+        var client = Minecraft.getInstance();
+        var options = client.options;
+
+        long hash = SharedConstants.getCurrentVersion().getName().hashCode();
+        hash = mix(hash, VERSION);
+        hash = mix(hash, vertexType.getVertexFormat().getStride());
+        hash = mix(hash, vertexType.getClass().getName().hashCode());
+
+        for (String id : client.getResourcePackRepository().getSelectedIds()) {
+            hash = mix(hash, id.hashCode());
+        }
+
+        hash = mix(hash, getBlockAtlasHash(client));
+
+        for (var mod : FabricLoader.getInstance().getAllMods()) {
+            var metadata = mod.getMetadata();
+            hash = mix(hash, (metadata.getId() + "@" + metadata.getVersion().getFriendlyString()).hashCode());
+        }
+
+        hash = mix(hash, options.ambientOcclusion().get() ? 1 : 0);
+        hash = mix(hash, options.biomeBlendRadius().get());
+        hash = mix(hash, options.graphicsMode().get().ordinal());
+        hash = mix(hash, SodiumClientMod.options().quality.leavesQuality.ordinal());
+
+        return HashCommon.mix(hash);
+    }
+
+    /**
+     * Hashes the name and texture coordinates of every sprite in the block atlas, which the meshes store.
+     */
+    private static long getBlockAtlasHash(Minecraft client) {
+        TextureAtlas atlas = client.getModelManager().getAtlas(TextureAtlas.LOCATION_BLOCKS);
+
+        long hash = 0L;
+
+        // The sprites are not kept in any particular order, so the hashes of the sprites are summed
+        for (var entry : atlas.texturesByName.entrySet()) {
+            var sprite = entry.getValue();
+
+            long spriteHash = entry.getKey().hashCode();
+            spriteHash = mix(spriteHash, Float.floatToIntBits(sprite.getU0()));
+            spriteHash = mix(spriteHash, Float.floatToIntBits(sprite.getV0()));
+            spriteHash = mix(spriteHash, Float.floatToIntBits(sprite.getU1()));
+            spriteHash = mix(spriteHash, Float.floatToIntBits(sprite.getV1()));
+
+            hash += HashCommon.mix(spriteHash);
+        }
+
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash + value) * 0x9E3779B97F4A7C15L;
+    }
+
+    private void scan(int bucketIndex) {
+        var bucket = this.buckets[bucketIndex];
+        var buffer = bucket.buffer;
+
+        int pos = BUCKET_HEADER_SIZE;
+
+        while (pos + ENTRY_HEADER_SIZE <= BUCKET_SIZE && buffer.getInt(pos) == ENTRY_MAGIC) {
+            int length = buffer.getInt(pos + 4);
+
+            if (length < 0 || length > BUCKET_SIZE - pos - ENTRY_HEADER_SIZE) {
+                break;
+            }
+
+            this.index.put(buffer.getLong(pos + 8), ((long) bucketIndex << 32) | pos);
+
+            pos += ENTRY_HEADER_SIZE + length;
+        }
+
+        bucket.position = pos;
+    }
+
+    public synchronized byte @Nullable[] read(long key) {
+        if (this.closed) {
+            return null;
+        }
+
+        long location = this.index.get(key);
+
+        if (location == -1L) {
+            return null;
+        }
+
+        int bucketIndex = (int) (location >>> 32);
+        int offset = (int) location;
+
+        var buffer = this.buckets[bucketIndex].buffer;
+
+        if (buffer.getInt(offset) != ENTRY_MAGIC || buffer.getLong(offset + 8) != key) {
+            this.index.remove(key);
+            return null;
+        }
+
+        byte[] data = new byte[buffer.getInt(offset + 4)];
+        buffer.get(offset + ENTRY_HEADER_SIZE, data);
+
+        // The files may have been damaged outside the game, or only partially written when the game exited
+        if (buffer.getInt(offset + 16) != checksum(data)) {
+            LOGGER.warn("Discarding mesh cache entry with a mismatched checksum");
+
+            this.index.remove(key);
+            return null;
+        }
+
+        // Move entries which are at risk of being discarded soon to the current bucket
+        int age = Math.floorMod(this.current - bucketIndex, this.buckets.length);
+
+        if (age >= this.buckets.length / 2) {
+            this.write(key, data);
+        }
+
+        return data;
+    }
+
+    public synchronized void write(long key, byte[] data) {
+        int size = ENTRY_HEADER_SIZE + data.length;
+
+        if (this.closed || size > BUCKET_SIZE - BUCKET_HEADER_SIZE) {
+            return;
+        }
+
+        var bucket = this.buckets[this.current];
+
+        if (bucket.position + size > BUCKET_SIZE) {
+            bucket = this.advance();
+        }
+
+        var buffer = bucket.buffer;
+        int pos = bucket.position;
+
+        buffer.put(pos + ENTRY_HEADER_SIZE, data);
+        buffer.putInt(pos + 16, checksum(data));
+        buffer.putLong(pos + 8, key);
+        buffer.putInt(pos + 4, data.length);
+        buffer.putInt(pos, ENTRY_MAGIC);
+
+        bucket.position = pos + size;
+        bucket.terminate();
+
+        this.index.put(key, ((long) this.current << 32) | pos);
+    }
+
+    private static int checksum(byte[] data) {
+        var crc = new CRC32();
+        crc.update(data);
+
+        return (int) crc.getValue();
+    }
+
+    private Bucket advance() {
+        int next = (this.current + 1) % this.buckets.length;
+
+        // Every entry stored in the next bucket is about to be overwritten
+        this.index.long2LongEntrySet()
+                .removeIf(entry -> (int) (entry.getLongValue() >>> 32) == next);
+
+        var bucket = this.buckets[next];
+        bucket.reset(++this.generation);
+
+        this.current = next;
+
+        return bucket;
+    }
+
+    public synchronized int getEntryCount() {
+        return this.index.size();
+    }
+
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+
+        this.closed = true;
+        this.index.clear();
+
+        for (var bucket : this.buckets) {
+            bucket.close();
+        }
+    }
+
+    private static class Bucket {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private long generation;
+        private int position;
+
+        private Bucket(FileChannel channel, MappedByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private static Bucket open(Path path) throws IOException {
+            var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Bucket bucket;
+
+            try {
+                // Mapping a region beyond the end of the file grows the file to the required size
+                bucket = new Bucket(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, BUCKET_SIZE));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+
+            var buffer = bucket.buffer;
+
+            if (buffer.getInt(0) == BUCKET_MAGIC && buffer.getInt(4) == VERSION) {
+                bucket.generation = buffer.getLong(8);
+            } else {
+                bucket.reset(0);
+            }
+
+            return bucket;
+        }
+
+        private void reset(long generation) {
+            this.generation = generation;
+            this.position = BUCKET_HEADER_SIZE;
+
+            this.buffer.putInt(0, BUCKET_MAGIC);
+            this.buffer.putInt(4, VERSION);
+            this.buffer.putLong(8, generation);
+
+            this.terminate();
+        }
+
+        // Marks the end of the entries, since the rest of the bucket may still contain entries of an older generation
+        private void terminate() {
+            if (this.position + Integer.BYTES <= BUCKET_SIZE) {
+                this.buffer.putInt(this.position, 0);
+            }
+        }
+
+        private void close() {
+            try {
+                this.buffer.force();
+                this.channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close mesh cache bucket", e);
+            }
+        }
+    }
+}
@@ -6,16 +6,20 @@ import net.caffeinemc.mods.sodium.client.render.chunk.RenderSection;
 import net.caffeinemc.mods.sodium.client.render.chunk.compile.ChunkBuildBuffers;
 import net.caffeinemc.mods.sodium.client.render.chunk.compile.ChunkBuildContext;
 import net.caffeinemc.mods.sodium.client.render.chunk.compile.ChunkBuildOutput;
+import net.caffeinemc.mods.sodium.client.render.chunk.compile.cache.SectionContentHash;
+import net.caffeinemc.mods.sodium.client.render.chunk.compile.cache.SectionMeshCache;
 import net.caffeinemc.mods.sodium.client.render.chunk.compile.executor.ChunkBuilder;
 import net.caffeinemc.mods.sodium.client.render.chunk.compile.pipeline.BlockRenderCache;
 import net.caffeinemc.mods.sodium.client.render.chunk.compile.pipeline.BlockRenderContext;
 import net.caffeinemc.mods.sodium.client.render.chunk.data.BuiltSectionInfo;
 import net.caffeinemc.mods.sodium.client.render.chunk.data.BuiltSectionMeshParts;
+import net.caffeinemc.mods.sodium.client.render.chunk.occlusion.OccluderEncoding;
 import net.caffeinemc.mods.sodium.client.render.chunk.terrain.DefaultTerrainRenderPasses;
 import net.caffeinemc.mods.sodium.client.render.chunk.terrain.TerrainRenderPass;
 import net.caffeinemc.mods.sodium.client.render.chunk.translucent_sorting.SortBehavior;
 import net.caffeinemc.mods.sodium.client.render.chunk.translucent_sorting.SortType;
 import net.caffeinemc.mods.sodium.client.render.chunk.translucent_sorting.TranslucentGeometryCollector;
+import net.caffeinemc.mods.sodium.client.render.chunk.translucent_sorting.data.NoData;
 import net.caffeinemc.mods.sodium.client.render.chunk.translucent_sorting.data.PresentTranslucentData;
 import net.caffeinemc.mods.sodium.client.render.chunk.translucent_sorting.data.TranslucentData;
 import net.caffeinemc.mods.sodium.client.util.task.CancellationToken;
@@ -35,6 +39,9 @@ import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.material.FluidState;
 import java.util.Map;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector3dc;
 
 /**
@@ -45,26 +52,55 @@ import org.joml.Vector3dc;
  * array allocations, they are pooled to ensure that the garbage collector doesn't become overloaded.
  */
 public class ChunkBuilderMeshingTask extends ChunkBuilderTask<ChunkBuildOutput> {
+    private static final Logger LOGGER = LogManager.getLogger(ChunkBuilderMeshingTask.class);
+
     private final ChunkRenderContext renderContext;
+    private final @Nullable SectionMeshCache meshCache;
 
     public ChunkBuilderMeshingTask(RenderSection render, int buildTime, Vector3dc absoluteCameraPos, ChunkRenderContext renderContext) {
+        this(render, buildTime, absoluteCameraPos, renderContext, null);
+    }
+
+    public ChunkBuilderMeshingTask(RenderSection render, int buildTime, Vector3dc absoluteCameraPos, ChunkRenderContext renderContext,
+                                   @Nullable SectionMeshCache meshCache) {
         super(render, buildTime, absoluteCameraPos);
         this.renderContext = renderContext;
+        this.meshCache = meshCache;
     }
 
     @Override
     public ChunkBuildOutput execute(ChunkBuildContext buildContext, CancellationToken cancellationToken) {
         BuiltSectionInfo.Builder renderData = new BuiltSectionInfo.Builder();
         VisGraph occluder = new VisGraph();
+        OccluderEncoding.Builder occluderLayers = new OccluderEncoding.Builder();
+
+        boolean mergeQuads = this.shouldMergeQuads();
 
         ChunkBuildBuffers buffers = buildContext.buffers;
-        buffers.init(renderData, this.render.getSectionIndex());
+        buffers.init(renderData, this.render.getSectionIndex(), mergeQuads);
 
         BlockRenderCache cache = buildContext.cache;
         cache.init(this.renderContext);
 
         LevelSlice slice = cache.getWorldSlice();
 
+        long contentHash = 0L;
+
+        if (this.meshCache != null) {
+            contentHash = SectionContentHash.compute(slice, this.renderContext, mergeQuads ? 1L : 0L);
+
+            var entry = this.meshCache.get(this.render.getPosition().asLong(), contentHash);
+
+            if (entry != null) {
+                var output = this.restoreCachedMeshes(buildContext, entry);
+
+                // the entry could not be decompressed, so mesh the section normally, which also replaces the entry
+                if (output != null) {
+                    return output;
+                }
+            }
+        }
+
         int minX = this.render.getOriginX();
         int minY = this.render.getOriginY();
         int minZ = this.render.getOriginZ();
@@ -131,6 +167,7 @@ public class ChunkBuilderMeshingTask extends ChunkBuilderTask<ChunkBuildOutput>
 
                         if (blockState.isSolidRender(slice, blockPos)) {
                             occluder.setOpaque(blockPos);
+                            occluderLayers.setOpaque(blockPos);
                         }
                     }
                 }
@@ -168,6 +205,7 @@ public class ChunkBuilderMeshingTask extends ChunkBuilderTask<ChunkBuildOutput>
         }
 
         renderData.setOcclusionData(occluder.resolve());
+        renderData.setOccluderData(occluderLayers.encode());
 
         boolean reuseUploadedData = false;
         TranslucentData translucentData = null;
@@ -178,7 +216,13 @@ public class ChunkBuilderMeshingTask extends ChunkBuilderTask<ChunkBuildOutput>
             reuseUploadedData = translucentData == oldData;
         }
 
-        var output = new ChunkBuildOutput(this.render, this.submitTime, translucentData, renderData.build(), meshes);
+        var info = renderData.build();
+
+        if (this.meshCache != null && isCacheable(info, meshes)) {
+            this.meshCache.put(this.render.getPosition().asLong(), createCacheEntry(buildContext, contentHash, info, meshes));
+        }
+
+        var output = new ChunkBuildOutput(this.render, this.submitTime, translucentData, info, meshes);
         if (collector != null) {
             if (reuseUploadedData) {
                 output.markAsReusingUploadedData();
@@ -192,6 +236,80 @@ public class ChunkBuilderMeshingTask extends ChunkBuilderTask<ChunkBuildOutput>
         return output;
     }
 
+    /**
+     * Only sections without block entities or translucent geometry are cached, since block entities are bound to the
+     * chunk they were loaded with, and translucent geometry needs to be sorted with respect to the camera.
+     */
+    private static boolean isCacheable(BuiltSectionInfo info, Map<TerrainRenderPass, BuiltSectionMeshParts> meshes) {
+        return info.globalBlockEntities == null && info.culledBlockEntities == null
+                && !meshes.containsKey(DefaultTerrainRenderPasses.TRANSLUCENT);
+    }
+
+    private static SectionMeshCache.Entry createCacheEntry(ChunkBuildContext buildContext, long contentHash,
+                                                           BuiltSectionInfo info, Map<TerrainRenderPass, BuiltSectionMeshParts> meshes) {
+        Map<TerrainRenderPass, SectionMeshCache.Mesh> compressed = new Reference2ReferenceOpenHashMap<>();
+
+        for (var entry : meshes.entrySet()) {
+            var mesh = entry.getValue();
+            var data = mesh.getVertexData();
+
+            compressed.put(entry.getKey(), new SectionMeshCache.Mesh(buildContext.meshCompressor.compress(data.getDirectBuffer()),
+                    data.getLength(), mesh.getVertexRanges()));
+        }
+
+        return SectionMeshCache.Entry.create(contentHash, info, compressed);
+    }
+
+    /**
+     * @return The output with the cached meshes, or null if the cached mesh data is corrupt
+     */
+    private @Nullable ChunkBuildOutput restoreCachedMeshes(ChunkBuildContext buildContext, SectionMeshCache.Entry entry) {
+        Map<TerrainRenderPass, BuiltSectionMeshParts> meshes = new Reference2ReferenceOpenHashMap<>();
+
+        try {
+            for (var mesh : entry.meshes().entrySet()) {
+                var data = buildContext.meshCompressor.decompress(mesh.getValue().data(), mesh.getValue().length());
+                meshes.put(mesh.getKey(), new BuiltSectionMeshParts(data, mesh.getValue().ranges()));
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Discarding corrupt mesh cache entry for section {}", this.render.getPosition(), e);
+
+            for (var mesh : meshes.values()) {
+                mesh.getVertexData().free();
+            }
+
+            return null;
+        }
+
+        // cached sections never contain translucent geometry
+        TranslucentData translucentData = null;
+        if (SodiumClientMod.options().performance.getSortBehavior() != SortBehavior.OFF) {
+            translucentData = NoData.forNoTranslucent(this.render.getPosition());
+        }
+
+        return new ChunkBuildOutput(this.render, this.submitTime, translucentData, entry.info(), meshes);
+    }
+
+    /**
+     * Returns whether the faces of this section should be merged, which is the case when the center of the section is
+     * at least the configured distance away from the camera at the time the task was created.
+     */
+    private boolean shouldMergeQuads() {
+        int distance = SodiumClientMod.options().performance.quadMergingDistance;
+
+        if (distance <= 0) {
+            return false;
+        }
+
+        float dx = this.cameraPos.x() - 8.0f;
+        float dy = this.cameraPos.y() - 8.0f;
+        float dz = this.cameraPos.z() - 8.0f;
+
+        float threshold = distance * 16.0f;
+
+        return (dx * dx) + (dy * dy) + (dz * dz) >= threshold * threshold;
+    }
+
     private ReportedException fillCrashInfo(CrashReport report, LevelSlice slice, BlockPos pos) {
         CrashReportCategory crashReportSection = report.addCategory("Block being rendered", 1);
 
@@ -2,6 +2,7 @@ package net.caffeinemc.mods.sodium.client.render.chunk.data;
 
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import net.caffeinemc.mods.sodium.client.render.chunk.RenderSectionFlags;
+import net.caffeinemc.mods.sodium.client.render.chunk.occlusion.OccluderEncoding;
 import net.caffeinemc.mods.sodium.client.render.chunk.occlusion.VisibilityEncoding;
 import net.caffeinemc.mods.sodium.client.render.chunk.terrain.TerrainRenderPass;
 import net.caffeinemc.mods.sodium.client.render.texture.SpriteUtil;
@@ -24,6 +25,7 @@ public class BuiltSectionInfo {
 
     public final int flags;
     public final long visibilityData;
+    public final long occluderData;
 
     public final BlockEntity @Nullable[] globalBlockEntities;
     public final BlockEntity @Nullable[] culledBlockEntities;
@@ -33,7 +35,9 @@ public class BuiltSectionInfo {
                              @NotNull Collection<BlockEntity> globalBlockEntities,
                              @NotNull Collection<BlockEntity> culledBlockEntities,
                              @NotNull Collection<TextureAtlasSprite> animatedSprites,
-                             @NotNull VisibilitySet occlusionData) {
+                             @NotNull VisibilitySet occlusionData,
+                             long occluderData,
+                             boolean mergedQuads) {
         this.globalBlockEntities = toArray(globalBlockEntities, BlockEntity[]::new);
         this.culledBlockEntities = toArray(culledBlockEntities, BlockEntity[]::new);
         this.animatedSprites = toArray(animatedSprites, TextureAtlasSprite[]::new);
@@ -52,9 +56,38 @@ public class BuiltSectionInfo {
             flags |= 1 << RenderSectionFlags.HAS_ANIMATED_SPRITES;
         }
 
+        if (mergedQuads && !blockRenderPasses.isEmpty()) {
+            flags |= 1 << RenderSectionFlags.HAS_MERGED_QUADS;
+        }
+
         this.flags = flags;
 
         this.visibilityData = VisibilityEncoding.encode(occlusionData);
+        this.occluderData = occluderData;
+    }
+
+    private BuiltSectionInfo(int flags, long visibilityData, long occluderData,
+                             TextureAtlasSprite @Nullable[] animatedSprites) {
+        this.globalBlockEntities = null;
+        this.culledBlockEntities = null;
+        this.animatedSprites = animatedSprites;
+
+        this.flags = flags;
+        this.visibilityData = visibilityData;
+        this.occluderData = occluderData;
+    }
+
+    /**
+     * Re-creates the render data of a section without block entities from its encoded flags, visibility and occluder
+     * data, such as when it is read from a mesh cache.
+     */
+    public static BuiltSectionInfo restore(int flags, long visibilityData, long occluderData,
+                                           TextureAtlasSprite @Nullable[] animatedSprites) {
+        if ((flags & (1 << RenderSectionFlags.HAS_BLOCK_ENTITIES)) != 0) {
+            throw new IllegalArgumentException("Render data with block entities cannot be restored");
+        }
+
+        return new BuiltSectionInfo(flags, visibilityData, occluderData, animatedSprites);
     }
 
     public static class Builder {
@@ -64,6 +97,8 @@ public class BuiltSectionInfo {
         private final Set<TextureAtlasSprite> animatedSprites = new ObjectOpenHashSet<>();
 
         private VisibilitySet occlusionData;
+        private long occluderData = OccluderEncoding.NONE;
+        private boolean mergedQuads;
 
         public void addRenderPass(TerrainRenderPass pass) {
             this.blockRenderPasses.add(pass);
@@ -73,6 +108,17 @@ public class BuiltSectionInfo {
             this.occlusionData = data;
         }
 
+        public void setOccluderData(long data) {
+            this.occluderData = data;
+        }
+
+        /**
+         * Marks the section as containing merged quads, which must be rebuilt once the camera comes close to it.
+         */
+        public void setMergedQuads(boolean mergedQuads) {
+            this.mergedQuads = mergedQuads;
+        }
+
         /**
          * Adds a sprite to this data container for tracking. If the sprite is tickable, it will be ticked every frame
          * before rendering as necessary.
@@ -94,7 +140,7 @@ public class BuiltSectionInfo {
         }
 
         public BuiltSectionInfo build() {
-            return new BuiltSectionInfo(this.blockRenderPasses, this.globalBlockEntities, this.culledBlockEntities, this.animatedSprites, this.occlusionData);
+            return new BuiltSectionInfo(this.blockRenderPasses, this.globalBlockEntities, this.culledBlockEntities, this.animatedSprites, this.occlusionData, this.occluderData, this.mergedQuads);
         }
     }
 
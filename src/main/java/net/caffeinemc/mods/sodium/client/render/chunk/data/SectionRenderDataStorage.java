@@ -18,9 +18,9 @@ import java.util.Arrays;
  * by {@code pMeshDataArray} and accessed through
  * {@link SectionRenderDataUnsafe}.
  * 
- * When the backing buffer (from the gl buffer arena) is resized, the storage
- * object is notified and then it updates the changed offsets of the buffer
- * segments. Since the index data's size and alignment directly corresponds to
+ * When the backing buffer (from the gl buffer arena) is resized or compacted,
+ * the storage object is notified and then it updates the changed offsets of
+ * the buffer segments. Since the index data's size and alignment directly corresponds to
  * that of the vertex data except for the vertex/index scaling of two thirds,
  * only an offset to the index data within the index data buffer arena is
  * stored.
@@ -34,7 +34,12 @@ public class SectionRenderDataStorage {
 
     private final long pMeshDataArray;
 
-    public SectionRenderDataStorage(boolean storesIndices) {
+    // The number of buffer elements which hold each vertex, for passes whose vertex format is larger than the stride
+    // of the geometry buffer (see ChunkVertexType#forRenderPass)
+    private final int elementsPerVertex;
+
+    public SectionRenderDataStorage(boolean storesIndices, int elementsPerVertex) {
+        this.elementsPerVertex = elementsPerVertex;
         this.vertexAllocations = new GlBufferSegment[RenderRegion.REGION_SIZE];
 
         if (storesIndices) {
@@ -59,7 +64,7 @@ public class SectionRenderDataStorage {
         var pMeshData = this.getDataPointer(localSectionIndex);
 
         int sliceMask = 0;
-        int vertexOffset = allocation.getOffset();
+        int vertexOffset = allocation.getOffset() / this.elementsPerVertex;
 
         for (int facingIndex = 0; facingIndex < ModelQuadFacing.COUNT; facingIndex++) {
             VertexRange vertexRange = ranges[facingIndex];
@@ -84,7 +89,13 @@ public class SectionRenderDataStorage {
         SectionRenderDataUnsafe.setSliceMask(pMeshData, sliceMask);
     }
 
-    public void setIndexData(int localSectionIndex, GlBufferSegment allocation) {
+    /**
+     * Sets the index data of the section. The allocation is in units of 32-bit words, so when the index data consists
+     * of 16-bit indices, every unit of the allocation holds two indices.
+     *
+     * @param shortIndices Whether the index data consists of 16-bit indices
+     */
+    public void setIndexData(int localSectionIndex, GlBufferSegment allocation, boolean shortIndices) {
         if (this.elementAllocations == null) {
             throw new IllegalStateException("Cannot set index data when storesIndices is false");
         }
@@ -99,8 +110,17 @@ public class SectionRenderDataStorage {
 
         var pMeshData = this.getDataPointer(localSectionIndex);
 
-        SectionRenderDataUnsafe.setBaseElement(pMeshData,
-                allocation.getOffset() | SectionRenderDataUnsafe.BASE_ELEMENT_MSB);
+        SectionRenderDataUnsafe.setBaseElement(pMeshData, encodeBaseElement(allocation, shortIndices));
+    }
+
+    private static int encodeBaseElement(GlBufferSegment allocation, boolean shortIndices) {
+        int baseElement = allocation.getOffset() | SectionRenderDataUnsafe.BASE_ELEMENT_MSB;
+
+        if (shortIndices) {
+            baseElement |= SectionRenderDataUnsafe.BASE_ELEMENT_SHORT_INDICES;
+        }
+
+        return baseElement;
     }
 
     public void removeData(int localSectionIndex) {
@@ -152,6 +172,49 @@ public class SectionRenderDataStorage {
         allocations[localSectionIndex] = null;
     }
 
+    public @Nullable GlBufferSegment getVertexAllocation(int localSectionIndex) {
+        return this.vertexAllocations[localSectionIndex];
+    }
+
+    public @Nullable GlBufferSegment getIndexAllocation(int localSectionIndex) {
+        if (this.elementAllocations == null) {
+            return null;
+        }
+
+        return this.elementAllocations[localSectionIndex];
+    }
+
+    public boolean hasShortIndices(int localSectionIndex) {
+        return hasShortIndices(this.getDataPointer(localSectionIndex));
+    }
+
+    private static boolean hasShortIndices(long pMeshData) {
+        return (SectionRenderDataUnsafe.getBaseElement(pMeshData) & SectionRenderDataUnsafe.BASE_ELEMENT_SHORT_INDICES) != 0;
+    }
+
+    /**
+     * Reconstructs the vertex ranges of the section's uploaded mesh from the stored element counts, such that the
+     * mesh can later be uploaded again with {@link #setVertexData(int, GlBufferSegment, VertexRange[])}.
+     */
+    public VertexRange[] getVertexRanges(int localSectionIndex) {
+        var ranges = new VertexRange[ModelQuadFacing.COUNT];
+        var data = this.getDataPointer(localSectionIndex);
+
+        int vertexStart = 0;
+
+        for (int facing = 0; facing < ModelQuadFacing.COUNT; facing++) {
+            int vertexCount = (SectionRenderDataUnsafe.getElementCount(data, facing) / 6) * 4;
+
+            if (vertexCount > 0) {
+                ranges[facing] = new VertexRange(vertexStart, vertexCount);
+            }
+
+            vertexStart += vertexCount;
+        }
+
+        return ranges;
+    }
+
     public void onBufferResized() {
         for (int sectionIndex = 0; sectionIndex < RenderRegion.REGION_SIZE; sectionIndex++) {
             this.updateMeshes(sectionIndex);
@@ -165,7 +228,7 @@ public class SectionRenderDataStorage {
             return;
         }
 
-        var offset = allocation.getOffset();
+        var offset = allocation.getOffset() / this.elementsPerVertex;
         var data = this.getDataPointer(sectionIndex);
 
         for (int facing = 0; facing < ModelQuadFacing.COUNT; facing++) {
@@ -185,8 +248,9 @@ public class SectionRenderDataStorage {
             var allocation = this.elementAllocations[sectionIndex];
 
             if (allocation != null) {
-                SectionRenderDataUnsafe.setBaseElement(this.getDataPointer(sectionIndex),
-                        allocation.getOffset() | SectionRenderDataUnsafe.BASE_ELEMENT_MSB);
+                var pMeshData = this.getDataPointer(sectionIndex);
+                SectionRenderDataUnsafe.setBaseElement(pMeshData,
+                        encodeBaseElement(allocation, hasShortIndices(pMeshData)));
             }
         }
     }
@@ -202,7 +266,7 @@ public class SectionRenderDataStorage {
             deleteAllocations(this.elementAllocations);
         }
 
-        SectionRenderDataUnsafe.freeHeap(this.pMeshDataArray);
+        SectionRenderDataUnsafe.freeHeap(this.pMeshDataArray, RenderRegion.REGION_SIZE);
     }
 
     private static void deleteAllocations(GlBufferSegment @NotNull [] allocations) {
@@ -1,5 +1,6 @@
 package net.caffeinemc.mods.sodium.client.render.chunk.data;
 
+import net.caffeinemc.mods.sodium.client.util.NativeMemoryTracker;
 import org.lwjgl.system.MemoryUtil;
 
 // This code is a terrible hack to get around the fact that we are so incredibly memory bound, and that we
@@ -16,7 +17,7 @@ import org.lwjgl.system.MemoryUtil;
 // three times slower than the most naive solution in literally any other language that LLVM can compile.
 
 // struct SectionRenderData { // 64 bytes
-//   base_element: u32
+//   base_element: u32 (msb: has index buffer, msb-1: 16-bit indices)
 //   mask: u32,
 //   ranges: [VertexRange; 7]
 // }
@@ -29,6 +30,14 @@ import org.lwjgl.system.MemoryUtil;
 public class SectionRenderDataUnsafe {
     public static final int BASE_ELEMENT_MSB = 1 << 31;
 
+    /**
+     * Set alongside {@link #BASE_ELEMENT_MSB} when the section's index buffer contains 16-bit indices. The base element
+     * is always specified in units of 32-bit words, since 16-bit index buffers hold an even number of indices.
+     */
+    public static final int BASE_ELEMENT_SHORT_INDICES = 1 << 30;
+
+    public static final int BASE_ELEMENT_OFFSET_MASK = ~(BASE_ELEMENT_MSB | BASE_ELEMENT_SHORT_INDICES);
+
     /**
      * When the "base element" field is not specified (indicated by setting the MSB to 0), the indices for the geometry set
      * should be sourced from a monotonic sequence (see {@link net.caffeinemc.mods.sodium.client.render.chunk.SharedQuadIndexBuffer}).
@@ -46,14 +55,14 @@ public class SectionRenderDataUnsafe {
     public static long allocateHeap(int count) {
         final var bytes = STRIDE * count;
 
-        final var ptr = MemoryUtil.nmemAlignedAlloc(ALIGNMENT, bytes);
+        final var ptr = NativeMemoryTracker.alignedAlloc(NativeMemoryTracker.Tag.SECTION_DATA, ALIGNMENT, bytes);
         MemoryUtil.memSet(ptr, 0, bytes);
 
         return ptr;
     }
 
-    public static void freeHeap(long pointer) {
-        MemoryUtil.nmemAlignedFree(pointer);
+    public static void freeHeap(long pointer, int count) {
+        NativeMemoryTracker.alignedFree(NativeMemoryTracker.Tag.SECTION_DATA, pointer, STRIDE * count);
     }
 
     public static void clear(long pointer) {
@@ -8,6 +8,8 @@ import net.caffeinemc.mods.sodium.client.util.iterator.ByteArrayIterator;
 import net.caffeinemc.mods.sodium.client.render.chunk.region.RenderRegion;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Arrays;
+
 public class ChunkRenderList {
     private final RenderRegion region;
 
@@ -22,6 +24,10 @@ public class ChunkRenderList {
 
     private int size;
 
+    // The sections which passed the visibility tests, including those without any render objects, which is used to
+    // prioritize the uploads of visible sections
+    private final long[] visibleSections = new long[RenderRegion.REGION_SIZE >> 6];
+
     private int lastVisibleFrame;
 
     public ChunkRenderList(RenderRegion region) {
@@ -35,18 +41,24 @@ public class ChunkRenderList {
 
         this.size = 0;
         this.lastVisibleFrame = frame;
+
+        Arrays.fill(this.visibleSections, 0L);
     }
 
     public void add(RenderSection render) {
+        this.add(render.getSectionIndex(), render.getFlags());
+    }
+
+    /**
+     * Adds the section with the given index within the region and render flags to the list.
+     */
+    public void add(int index, int flags) {
         if (this.size >= RenderRegion.REGION_SIZE) {
             throw new ArrayIndexOutOfBoundsException("Render list is full");
         }
 
         this.size++;
 
-        int index = render.getSectionIndex();
-        int flags = render.getFlags();
-
         this.sectionsWithGeometry[this.sectionsWithGeometryCount] = (byte) index;
         this.sectionsWithGeometryCount += (flags >>> RenderSectionFlags.HAS_BLOCK_GEOMETRY) & 1;
 
@@ -57,6 +69,18 @@ public class ChunkRenderList {
         this.sectionsWithEntitiesCount += (flags >>> RenderSectionFlags.HAS_BLOCK_ENTITIES) & 1;
     }
 
+    /**
+     * Marks the section with the given index within the region as visible, regardless of whether it was added to the
+     * list.
+     */
+    public void markVisible(int index) {
+        this.visibleSections[index >> 6] |= 1L << (index & 63);
+    }
+
+    public boolean isVisible(int index) {
+        return (this.visibleSections[index >> 6] & (1L << (index & 63))) != 0L;
+    }
+
     public @Nullable ByteIterator sectionsWithGeometryIterator(boolean reverse) {
         if (this.sectionsWithGeometryCount == 0) {
             return null;
@@ -0,0 +1,122 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.lists;
+
+import java.util.Arrays;
+
+/**
+ * A bitmap of the sections which were visited by a search of the graph, indexed by their position relative to the
+ * column of sections containing the camera. This allows the visibility of an entity to be tested with a few array
+ * reads, rather than looking up each section which it overlaps.
+ *
+ * Each row of the bitmap holds the sections along the X axis for one Y and Z coordinate, so that a box can be tested
+ * against a whole row with a single mask for each word.
+ */
+public class SectionVisibilityMap {
+    private final int radius;
+    private final int width;
+    private final int wordsPerRow;
+
+    private final int minSection;
+    private final int sectionCount;
+
+    private final long[] words;
+
+    private int originX, originZ;
+
+    /**
+     * @param radius The distance in sections around the origin which the bitmap covers on the X and Z axes
+     * @param minSection The lowest section coordinate on the Y axis
+     * @param sectionCount The number of sections on the Y axis
+     */
+    public SectionVisibilityMap(int radius, int minSection, int sectionCount) {
+        this.radius = radius;
+        this.width = (radius * 2) + 1;
+        this.wordsPerRow = (this.width + 63) >> 6;
+
+        this.minSection = minSection;
+        this.sectionCount = sectionCount;
+
+        this.words = new long[this.wordsPerRow * this.width * sectionCount];
+    }
+
+    /**
+     * Clears the bitmap and centers it on the given column of sections.
+     */
+    public void reset(int originX, int originZ) {
+        Arrays.fill(this.words, 0L);
+
+        this.originX = originX;
+        this.originZ = originZ;
+    }
+
+    /**
+     * Marks the section as visible. Sections outside the bitmap are ignored.
+     */
+    public void add(int x, int y, int z) {
+        int localX = (x - this.originX) + this.radius;
+        int localY = y - this.minSection;
+        int localZ = (z - this.originZ) + this.radius;
+
+        if (localX < 0 || localX >= this.width || localY < 0 || localY >= this.sectionCount || localZ < 0 || localZ >= this.width) {
+            return;
+        }
+
+        this.words[this.getRowOffset(localY, localZ) + (localX >> 6)] |= 1L << (localX & 63);
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return this.containsAny(x, y, z, x, y, z);
+    }
+
+    /**
+     * Tests whether any section within the bounds is visible. The bounds are inclusive, and are given in section
+     * coordinates.
+     */
+    public boolean containsAny(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        int localMinX = Math.max((minX - this.originX) + this.radius, 0);
+        int localMaxX = Math.min((maxX - this.originX) + this.radius, this.width - 1);
+
+        int localMinY = Math.max(minY - this.minSection, 0);
+        int localMaxY = Math.min(maxY - this.minSection, this.sectionCount - 1);
+
+        int localMinZ = Math.max((minZ - this.originZ) + this.radius, 0);
+        int localMaxZ = Math.min((maxZ - this.originZ) + this.radius, this.width - 1);
+
+        if (localMinX > localMaxX || localMinY > localMaxY || localMinZ > localMaxZ) {
+            return false;
+        }
+
+        int firstWord = localMinX >> 6;
+        int lastWord = localMaxX >> 6;
+
+        long firstMask = -1L << (localMinX & 63);
+        long lastMask = -1L >>> (63 - (localMaxX & 63));
+
+        for (int y = localMinY; y <= localMaxY; y++) {
+            for (int z = localMinZ; z <= localMaxZ; z++) {
+                int row = this.getRowOffset(y, z);
+
+                for (int word = firstWord; word <= lastWord; word++) {
+                    long mask = -1L;
+
+                    if (word == firstWord) {
+                        mask &= firstMask;
+                    }
+
+                    if (word == lastWord) {
+                        mask &= lastMask;
+                    }
+
+                    if ((this.words[row + word] & mask) != 0L) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private int getRowOffset(int localY, int localZ) {
+        return ((localY * this.width) + localZ) * this.wordsPerRow;
+    }
+}
@@ -4,22 +4,36 @@ import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.caffeinemc.mods.sodium.client.render.chunk.ChunkUpdateType;
 import net.caffeinemc.mods.sodium.client.render.chunk.RenderSection;
 import net.caffeinemc.mods.sodium.client.render.chunk.occlusion.OcclusionCuller;
+import net.caffeinemc.mods.sodium.client.render.chunk.occlusion.SectionGraph;
 import net.caffeinemc.mods.sodium.client.render.chunk.region.RenderRegion;
+import net.minecraft.core.SectionPos;
 
 import java.util.*;
 
 /**
  * The visible chunk collector is passed to the occlusion graph search culler to
- * collect the visible chunks.
+ * collect the visible chunks. Only the arrays of the section graph are read, except for sections which need to be
+ * rebuilt.
  */
 public class VisibleChunkCollector implements OcclusionCuller.Visitor {
     private final ObjectArrayList<ChunkRenderList> sortedRenderLists;
     private final EnumMap<ChunkUpdateType, ArrayDeque<RenderSection>> sortedRebuildLists;
 
+    private final SectionGraph graph;
     private final int frame;
+    private final int renderListBuffer;
 
-    public VisibleChunkCollector(int frame) {
+    // The sections which were visited by the search, which is used to test the visibility of entities
+    private final SectionVisibilityMap visitedSections;
+
+    public VisibleChunkCollector(SectionGraph graph, int frame, int renderListBuffer,
+                                 SectionVisibilityMap visitedSections, SectionPos origin) {
+        this.graph = graph;
         this.frame = frame;
+        this.renderListBuffer = renderListBuffer;
+
+        this.visitedSections = visitedSections;
+        this.visitedSections.reset(origin.getX(), origin.getZ());
 
         this.sortedRenderLists = new ObjectArrayList<>();
         this.sortedRebuildLists = new EnumMap<>(ChunkUpdateType.class);
@@ -30,9 +44,9 @@ public class VisibleChunkCollector implements OcclusionCuller.Visitor {
     }
 
     @Override
-    public void visit(RenderSection section, boolean visible) {
-        RenderRegion region = section.getRegion();
-        ChunkRenderList renderList = region.getRenderList();
+    public void visit(int id, boolean visible) {
+        RenderRegion region = this.graph.getRegion(id);
+        ChunkRenderList renderList = region.getRenderList(this.renderListBuffer);
 
         // Even if a section does not have render objects, we must ensure the render list is initialized and put
         // into the sorted queue of lists, so that we maintain the correct order of draw calls.
@@ -42,21 +56,30 @@ public class VisibleChunkCollector implements OcclusionCuller.Visitor {
             this.sortedRenderLists.add(renderList);
         }
 
-        if (visible && section.getFlags() != 0) {
-            renderList.add(section);
+        if (visible) {
+            int index = this.graph.getLocalIndex(id);
+            int flags = this.graph.getFlags(id);
+
+            if (flags != 0) {
+                renderList.add(index, flags);
+            }
+
+            renderList.markVisible(index);
         }
 
-        this.addToRebuildLists(section);
+        this.visitedSections.add(this.graph.getChunkX(id), this.graph.getChunkY(id), this.graph.getChunkZ(id));
+
+        this.addToRebuildLists(id);
     }
 
-    private void addToRebuildLists(RenderSection section) {
-        ChunkUpdateType type = section.getPendingUpdate();
+    private void addToRebuildLists(int id) {
+        ChunkUpdateType type = this.graph.getPendingUpdate(id);
 
-        if (type != null && section.getTaskCancellationToken() == null) {
+        if (type != null) {
             Queue<RenderSection> queue = this.sortedRebuildLists.get(type);
 
             if (queue.size() < type.getMaximumQueueSize()) {
-                queue.add(section);
+                queue.add(this.graph.getSection(id));
             }
         }
     }
@@ -68,4 +91,12 @@ public class VisibleChunkCollector implements OcclusionCuller.Visitor {
     public Map<ChunkUpdateType, ArrayDeque<RenderSection>> getRebuildLists() {
         return this.sortedRebuildLists;
     }
+
+    public int getFrame() {
+        return this.frame;
+    }
+
+    public int getRenderListBuffer() {
+        return this.renderListBuffer;
+    }
 }
@@ -0,0 +1,89 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.occlusion;
+
+import net.minecraft.core.BlockPos;
+
+/**
+ * Encodes which layers of a section are entirely made up of opaque blocks. For each axis, bit {@code (axis * 16) + n}
+ * is set when every block in the n-th layer of the section along that axis is opaque, so that contiguous runs of set
+ * bits describe boxes which are known to hide everything behind them.
+ */
+public class OccluderEncoding {
+    public static final long NONE = 0L;
+
+    public static final int AXIS_X = 0;
+    public static final int AXIS_Y = 1;
+    public static final int AXIS_Z = 2;
+    public static final int AXIS_COUNT = 3;
+
+    public static final long FULL = (1L << (AXIS_COUNT * 16)) - 1;
+
+    private static final int LAYER_SIZE = 16 * 16;
+
+    public static boolean isFull(long occluderData) {
+        return occluderData == FULL;
+    }
+
+    /**
+     * Finds the longest run of opaque layers along the given axis.
+     *
+     * @return The first layer of the run in the lower 8 bits and the layer after its end in the upper bits, or zero if
+     * there are no opaque layers along the axis
+     */
+    public static int getLongestRun(long occluderData, int axis) {
+        int layers = (int) (occluderData >>> (axis * 16)) & 0xFFFF;
+
+        int bestStart = 0, bestLength = 0;
+        int start = 0, length = 0;
+
+        for (int layer = 0; layer < 16; layer++) {
+            if ((layers & (1 << layer)) == 0) {
+                length = 0;
+                continue;
+            }
+
+            if (length++ == 0) {
+                start = layer;
+            }
+
+            if (length > bestLength) {
+                bestStart = start;
+                bestLength = length;
+            }
+        }
+
+        return bestLength != 0 ? ((bestStart + bestLength) << 8) | bestStart : 0;
+    }
+
+    public static int getRunStart(int run) {
+        return run & 0xFF;
+    }
+
+    public static int getRunEnd(int run) {
+        return run >>> 8;
+    }
+
+    /**
+     * Counts the opaque blocks in each layer of a section while it is being meshed.
+     */
+    public static class Builder {
+        private final short[] counts = new short[AXIS_COUNT * 16];
+
+        public void setOpaque(BlockPos pos) {
+            this.counts[(AXIS_X * 16) + (pos.getX() & 15)]++;
+            this.counts[(AXIS_Y * 16) + (pos.getY() & 15)]++;
+            this.counts[(AXIS_Z * 16) + (pos.getZ() & 15)]++;
+        }
+
+        public long encode() {
+            long occluderData = NONE;
+
+            for (int i = 0; i < this.counts.length; i++) {
+                if (this.counts[i] == LAYER_SIZE) {
+                    occluderData |= 1L << i;
+                }
+            }
+
+            return occluderData;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.occlusion;
+
+import net.minecraft.util.Mth;
+
+import java.util.Arrays;
+
+/**
+ * Tracks the highest solid slab of each column of sections, which is the topmost run of horizontal layers that are
+ * entirely made up of opaque blocks across the whole column. Any line of sight which passes through the height of the
+ * slab within the column is blocked, which allows the occlusion culler to find sections below the terrain horizon.
+ *
+ * The columns are stored in a fixed grid around the camera which wraps around, so its size must be large enough to hold
+ * every column within the render distance. A column which is replaced by another one in the same cell simply loses its
+ * slab, which only makes the test less effective.
+ */
+public class OccluderHeightmap {
+    // The minimum thickness of a slab, in blocks. Thinner runs of opaque layers, such as flat roofs, are skipped in
+    // favor of the thicker terrain below them.
+    public static final int MIN_SLAB_THICKNESS = 4;
+
+    private static final int NO_SLAB = Integer.MIN_VALUE;
+
+    private final int minSection;
+    private final int sectionCount;
+
+    private final int size;
+
+    // The position of the column which occupies each cell of the grid, packed as in ChunkPos#asLong
+    private final long[] columns;
+
+    // The opaque horizontal layers of each section in the column, as encoded in the Y axis of OccluderEncoding
+    private final short[] layers;
+
+    // The bottom and top of the highest slab of each column, in blocks, or NO_SLAB if there is none
+    private final int[] slabMin;
+    private final int[] slabMax;
+
+    public OccluderHeightmap(int minSection, int sectionCount, int renderDistance) {
+        this.minSection = minSection;
+        this.sectionCount = sectionCount;
+
+        // Sections are kept loaded for a few columns beyond the render distance
+        this.size = (renderDistance * 2) + 7;
+
+        int cells = this.size * this.size;
+
+        this.columns = new long[cells];
+        this.layers = new short[cells * sectionCount];
+        this.slabMin = new int[cells];
+        this.slabMax = new int[cells];
+
+        Arrays.fill(this.columns, Long.MIN_VALUE);
+        Arrays.fill(this.slabMin, NO_SLAB);
+        Arrays.fill(this.slabMax, NO_SLAB);
+    }
+
+    /**
+     * Updates the opaque layers of a section, which must be done whenever the section's occluder data changes.
+     */
+    public void update(int x, int y, int z, long occluderData) {
+        int sectionIndex = y - this.minSection;
+
+        if (sectionIndex < 0 || sectionIndex >= this.sectionCount) {
+            return;
+        }
+
+        int cell = this.getCell(x, z);
+        long column = packColumn(x, z);
+
+        boolean changed = false;
+
+        if (this.columns[cell] != column) {
+            // The cell belonged to another column which is no longer within range
+            Arrays.fill(this.layers, cell * this.sectionCount, (cell + 1) * this.sectionCount, (short) 0);
+            this.columns[cell] = column;
+
+            changed = true;
+        }
+
+        short layers = (short) (occluderData >>> (OccluderEncoding.AXIS_Y * 16));
+
+        if (this.layers[(cell * this.sectionCount) + sectionIndex] != layers) {
+            this.layers[(cell * this.sectionCount) + sectionIndex] = layers;
+
+            changed = true;
+        }
+
+        if (changed) {
+            this.updateSlab(cell);
+        }
+    }
+
+    private void updateSlab(int cell) {
+        int slabMin = NO_SLAB;
+        int slabMax = NO_SLAB;
+
+        int base = cell * this.sectionCount;
+
+        // Walk down the column from the top, and find the first run of opaque layers which is thick enough
+        for (int layer = (this.sectionCount * 16) - 1; layer >= 0; layer--) {
+            boolean opaque = (this.layers[base + (layer >> 4)] & (1 << (layer & 15))) != 0;
+
+            if (opaque) {
+                if (slabMax == NO_SLAB) {
+                    slabMax = layer + 1;
+                }
+
+                slabMin = layer;
+            } else if (slabMax != NO_SLAB) {
+                if (slabMax - slabMin >= MIN_SLAB_THICKNESS) {
+                    break;
+                }
+
+                slabMin = NO_SLAB;
+                slabMax = NO_SLAB;
+            }
+        }
+
+        if (slabMax != NO_SLAB && slabMax - slabMin >= MIN_SLAB_THICKNESS) {
+            int offset = this.minSection * 16;
+
+            this.slabMin[cell] = slabMin + offset;
+            this.slabMax[cell] = slabMax + offset;
+        } else {
+            this.slabMin[cell] = NO_SLAB;
+            this.slabMax[cell] = NO_SLAB;
+        }
+    }
+
+    /**
+     * @return True if the column of sections contains a slab of opaque blocks at the given height, in blocks
+     */
+    public boolean isSolidAt(int x, int z, float height) {
+        int cell = this.getCell(x, z);
+
+        if (this.columns[cell] != packColumn(x, z) || this.slabMax[cell] == NO_SLAB) {
+            return false;
+        }
+
+        return height >= this.slabMin[cell] && height <= this.slabMax[cell];
+    }
+
+    private int getCell(int x, int z) {
+        return (Mth.positiveModulo(x, this.size) * this.size) + Mth.positiveModulo(z, this.size);
+    }
+
+    private static long packColumn(int x, int z) {
+        return (x & 0xFFFFFFFFL) | ((z & 0xFFFFFFFFL) << 32);
+    }
+}
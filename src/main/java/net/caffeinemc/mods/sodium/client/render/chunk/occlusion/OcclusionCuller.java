@@ -1,160 +1,863 @@
 package net.caffeinemc.mods.sodium.client.render.chunk.occlusion;
 
-import it.unimi.dsi.fastutil.longs.Long2ReferenceMap;
-import net.caffeinemc.mods.sodium.client.render.chunk.RenderSection;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.caffeinemc.mods.sodium.client.render.chunk.region.RenderRegion;
 import net.caffeinemc.mods.sodium.client.render.viewport.CameraTransform;
 import net.caffeinemc.mods.sodium.client.render.viewport.Viewport;
-import net.caffeinemc.mods.sodium.client.util.collections.DoubleBufferedQueue;
-import net.caffeinemc.mods.sodium.client.util.collections.ReadQueue;
-import net.caffeinemc.mods.sodium.client.util.collections.WriteQueue;
+import net.caffeinemc.mods.sodium.client.render.viewport.frustum.Frustum;
 import net.minecraft.core.SectionPos;
 import net.minecraft.util.Mth;
 import net.minecraft.world.level.Level;
-import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.stream.IntStream;
 
 public class OcclusionCuller {
-    private final Long2ReferenceMap<RenderSection> sections;
+    // The distance which the camera can move within a section, which is added to the search distance when finding
+    // reachable sections so that the result holds for any camera position within the origin section
+    private static final float REACHABLE_DISTANCE_MARGIN = 16.0f * Mth.SQRT_OF_TWO + 1.0f;
+
+    // The number of consecutive frames the camera must stay inside the same section before the reachable sections are
+    // found, so that they are not found again and again while the camera moves slowly across section boundaries
+    private static final int REACHABLE_SEARCH_DELAY_FRAMES = 4;
+
+    // The weight of each new sample in the average number of frames a set of reachable sections is re-used for, which
+    // is sampled far less often than the costs of each search
+    private static final float REUSE_AVERAGE_WEIGHT = 0.25f;
+
+    // Whether sections are first tested against the bounds of their region, which can be disabled to compare the
+    // performance of the culler with and without them
+    private static final boolean USE_REGION_TESTS = Boolean.parseBoolean(System.getProperty("sodium.culling.regionTests", "true"));
+
+    // Whether regions which lie below the terrain horizon are skipped, which can be disabled to compare the performance
+    // of the culler with and without the test
+    private static final boolean USE_HORIZON_TESTS = Boolean.parseBoolean(System.getProperty("sodium.culling.horizonTests", "true"));
+
+    // Whether large levels of the search are split across the threads of the common fork-join pool
+    private static final boolean USE_PARALLEL_SEARCH = Boolean.parseBoolean(System.getProperty("sodium.culling.parallelSearch", "true"));
+
+    // The smallest level of the search which is split across threads, and the number of sections given to each task.
+    // Smaller levels are processed on the calling thread, since the cost of scheduling the tasks would outweigh the work.
+    private static final int PARALLEL_LEVEL_SIZE = 2048;
+    private static final int PARALLEL_TASK_SIZE = 512;
+
+    // The results of testing a single section
+    private static final int SECTION_VISIBLE = 1 << 0;
+    private static final int SECTION_TEST_SKIPPED = 1 << 1;
+    private static final int SECTION_OCCLUDED = 1 << 2;
+
+    // Marks the sections of a level which are visible, alongside their connections
+    private static final int CONNECTIONS_VISIBLE = 1 << GraphDirection.COUNT;
+
+    // The results of the region-level visibility test
+    private static final int REGION_OUTSIDE = 1 << 0;
+    private static final int REGION_WITHIN_DISTANCE = 1 << 1;
+    private static final int REGION_WITHIN_FRUSTUM = 1 << 2;
+
+    // The horizontal distance from the camera beyond which regions are tested against the terrain horizon. Closer regions
+    // are rarely hidden by the terrain in between, so testing them isn't worth the cost.
+    private static final float HORIZON_TEST_DISTANCE = 128.0f;
+
+    // The largest number of heights at which the lines of sight to a region are tested against the terrain
+    private static final int HORIZON_TEST_PLANES = 16;
+
+    // The distance in sections around the camera from which occluders are drawn into the software depth buffer
+    private static final int OCCLUDER_RADIUS = 3;
+
+    // The weight of each new sample in the moving averages of the debug statistics
+    private static final float AVERAGE_WEIGHT = 0.05f;
+
+    private final SectionGraph graph;
+    private final OccluderHeightmap heightmap;
     private final Level level;
 
-    private final DoubleBufferedQueue<RenderSection> queue = new DoubleBufferedQueue<>();
+    // The depth buffer which sections are tested against after passing the frustum test, or null if software
+    // occlusion culling is disabled
+    private final @Nullable OcclusionRasterizer rasterizer;
+    private boolean useRasterizer;
+
+    // Whether the regions are tested against the horizon of the terrain during the current search
+    private boolean useHorizonTests;
 
-    public OcclusionCuller(Long2ReferenceMap<RenderSection> sections, Level level) {
-        this.sections = sections;
+    // The sections of the level of the search which is being processed, and of the level which follows it
+    private IntArrayList readQueue = new IntArrayList();
+    private IntArrayList writeQueue = new IntArrayList();
+
+    // The position within the search of the first section in the level which is being processed, which starts at one
+    // so that the sections enqueued by the initial step always come before any discoverer
+    private int levelPosition;
+
+    // The tasks which split the levels of the search across threads, and the connections of each section in the
+    // level, which are kept across searches so that their memory can be re-used
+    private final ObjectArrayList<LevelTask> levelTasks = new ObjectArrayList<>();
+    private int[] levelConnections = new int[0];
+
+    // Every section which can be reached from the origin section without considering the frustum, in the order in
+    // which the graph search discovered them. As long as the camera stays inside the origin section and the graph
+    // doesn't change, the visible sections can be found by only repeating the frustum test for each of them.
+    private final IntArrayList reachableSections = new IntArrayList();
+    private boolean reachableSectionsValid;
+
+    private long reachableOrigin;
+    private float reachableSearchDistance;
+    private boolean reachableUseOcclusionCulling;
+
+    private long lastOrigin = Long.MIN_VALUE;
+
+    // The number of consecutive frames for which the camera has stayed inside the same section without the graph
+    // changing, and the number of frames the current set of reachable sections has been re-used for
+    private int framesAtOrigin;
+    private int reachableReuseFrames;
+
+    // The average cost of each way of finding the visible sections, and the average number of frames a set of
+    // reachable sections is re-used for before it is discarded. Finding the reachable sections is more expensive than
+    // a regular search, so it is only done when re-using them is expected to save more time than it costs.
+    private float averageSearchNanos;
+    private float averageVisitNanos;
+    private float averageReachableSearchNanos;
+    private float averageReuseFrames = REACHABLE_SEARCH_DELAY_FRAMES;
+
+    // Identifies the results of region-level tests which belong to the current search, since each search may use a
+    // different viewport or search distance
+    private int searchId;
+
+    private long sectionTests;
+    private long skippedSectionTests;
+    private long occludedSectionTests;
+
+    private float averageSearchTime;
+    private float averageSkippedTests;
+    private float averageOccludedTests;
+
+    public OcclusionCuller(SectionGraph graph, OccluderHeightmap heightmap, Level level, @Nullable OcclusionRasterizer rasterizer) {
+        this.graph = graph;
+        this.heightmap = heightmap;
         this.level = level;
+        this.rasterizer = rasterizer;
     }
 
+    /**
+     * Finds the sections which are visible from the camera of the viewport.
+     *
+     * @param exactCamera True if the result is only used with the exact camera of the viewport. Otherwise, the result
+     *                    must stay valid while the camera moves within the same section, so the software depth buffer
+     *                    and the horizon tests, which both depend on the exact position of the camera, are not used.
+     */
     public void findVisible(Visitor visitor,
                             Viewport viewport,
                             float searchDistance,
                             boolean useOcclusionCulling,
+                            boolean exactCamera,
                             int frame)
     {
-        final var queues = this.queue;
-        queues.reset();
+        long start = System.nanoTime();
+        long origin = viewport.getChunkCoord().asLong();
+
+        // The depth buffer is only used along with the visibility graph, since it would hide everything around a
+        // camera which is inside of opaque blocks
+        this.useRasterizer = this.rasterizer != null && useOcclusionCulling && exactCamera
+                && viewport.getViewProjection() != null;
+        this.useHorizonTests = USE_HORIZON_TESTS && exactCamera;
+
+        if (this.useRasterizer) {
+            this.drawOccluders(viewport);
+        }
+
+        if (origin == this.lastOrigin) {
+            this.framesAtOrigin++;
+        } else {
+            this.framesAtOrigin = 0;
+        }
+
+        long searchStart = System.nanoTime();
+
+        if (this.canReuseReachableSections(origin, searchDistance, useOcclusionCulling)) {
+            this.visitReachableSections(visitor, viewport, searchDistance, frame);
+            this.reachableReuseFrames++;
+
+            this.averageVisitNanos = averageNanos(this.averageVisitNanos, searchStart);
+        } else if (this.shouldFindReachableSections()) {
+            // The camera has stayed inside the same section for a while, which usually means that it is only rotating
+            // or moving slowly. Find every section which could be visible from within this section, so that the
+            // following frames don't need to search the graph again.
+            this.discardReachableSections();
+            this.findReachableSections(viewport, searchDistance, useOcclusionCulling, frame);
+
+            this.averageReachableSearchNanos = averageNanos(this.averageReachableSearchNanos, searchStart);
+
+            this.visitReachableSections(visitor, viewport, searchDistance, frame);
+        } else {
+            this.search(visitor, viewport, searchDistance, useOcclusionCulling, frame, false);
+
+            this.averageSearchNanos = averageNanos(this.averageSearchNanos, searchStart);
+        }
+
+        this.lastOrigin = origin;
+
+        this.averageSearchTime = average(this.averageSearchTime, (System.nanoTime() - start) / 1_000_000.0f);
+
+        if (this.sectionTests > 0) {
+            this.averageSkippedTests = average(this.averageSkippedTests, (float) this.skippedSectionTests / this.sectionTests);
+            this.averageOccludedTests = average(this.averageOccludedTests, (float) this.occludedSectionTests / this.sectionTests);
+        }
+
+        this.sectionTests = 0;
+        this.skippedSectionTests = 0;
+        this.occludedSectionTests = 0;
+    }
+
+    private static float average(float average, float sample) {
+        return average + ((sample - average) * AVERAGE_WEIGHT);
+    }
+
+    // The first sample is taken as is, since the costs are compared against each other before many samples exist
+    private static float averageNanos(float average, long start) {
+        float sample = System.nanoTime() - start;
+
+        return average == 0.0f ? sample : average(average, sample);
+    }
+
+    public void addDebugStrings(List<String> list) {
+        list.add("Culling: %.2fms (%.0f%% of section tests skipped by region tests)".formatted(
+                this.averageSearchTime, this.averageSkippedTests * 100.0f));
+
+        if (this.rasterizer != null) {
+            list.add("Occlusion raster: %d triangles (%.0f%% of section tests occluded)".formatted(
+                    this.rasterizer.getTriangleCount(), this.averageOccludedTests * 100.0f));
+        }
+    }
+
+    /**
+     * Draws the opaque layers of the sections around the camera into the software depth buffer, as one box for each
+     * fully opaque section, or otherwise for the longest run of opaque layers along each axis.
+     */
+    private void drawOccluders(Viewport viewport) {
+        var rasterizer = this.rasterizer;
+        var origin = viewport.getChunkCoord();
+        var camera = viewport.getTransform();
+
+        rasterizer.begin(viewport.getViewProjection());
+
+        for (int x = origin.getX() - OCCLUDER_RADIUS; x <= origin.getX() + OCCLUDER_RADIUS; x++) {
+            for (int y = origin.getY() - OCCLUDER_RADIUS; y <= origin.getY() + OCCLUDER_RADIUS; y++) {
+                for (int z = origin.getZ() - OCCLUDER_RADIUS; z <= origin.getZ() + OCCLUDER_RADIUS; z++) {
+                    int id = this.graph.getId(x, y, z);
+
+                    if (id == SectionGraph.NULL_ID) {
+                        continue;
+                    }
+
+                    long occluderData = this.graph.getOccluderData(id);
+
+                    if (occluderData == OccluderEncoding.NONE) {
+                        continue;
+                    }
+
+                    float ox = ((x << 4) - camera.intX) - camera.fracX;
+                    float oy = ((y << 4) - camera.intY) - camera.fracY;
+                    float oz = ((z << 4) - camera.intZ) - camera.fracZ;
+
+                    if (OccluderEncoding.isFull(occluderData)) {
+                        rasterizer.addOccluder(ox, oy, oz, ox + 16.0f, oy + 16.0f, oz + 16.0f);
+                        continue;
+                    }
+
+                    for (int axis = 0; axis < OccluderEncoding.AXIS_COUNT; axis++) {
+                        int run = OccluderEncoding.getLongestRun(occluderData, axis);
+
+                        if (run == 0) {
+                            continue;
+                        }
+
+                        int start = OccluderEncoding.getRunStart(run);
+                        int end = OccluderEncoding.getRunEnd(run);
+
+                        rasterizer.addOccluder(
+                                ox + (axis == OccluderEncoding.AXIS_X ? start : 0),
+                                oy + (axis == OccluderEncoding.AXIS_Y ? start : 0),
+                                oz + (axis == OccluderEncoding.AXIS_Z ? start : 0),
+                                ox + (axis == OccluderEncoding.AXIS_X ? end : 16),
+                                oy + (axis == OccluderEncoding.AXIS_Y ? end : 16),
+                                oz + (axis == OccluderEncoding.AXIS_Z ? end : 16));
+                    }
+                }
+            }
+        }
+
+        rasterizer.finish();
+    }
+
+    /**
+     * Discards the reachable sections of the last search, which must be done whenever the graph changes in a way
+     * which could affect them, such as when sections are added or removed, or their visibility data changes.
+     */
+    public void invalidateReachableSections() {
+        this.discardReachableSections();
+        this.framesAtOrigin = 0;
+    }
+
+    private void discardReachableSections() {
+        if (this.reachableSectionsValid) {
+            this.averageReuseFrames += (this.reachableReuseFrames - this.averageReuseFrames) * REUSE_AVERAGE_WEIGHT;
+        }
+
+        this.reachableSections.clear();
+        this.reachableSectionsValid = false;
+        this.reachableReuseFrames = 0;
+    }
+
+    /**
+     * The reachable sections are only found once the camera has stayed inside the same section for a few frames, and
+     * when the time they are expected to save outweighs the cost of finding them. They are expected to be re-used for
+     * as many frames as previous sets were, or for as many frames as the camera has already stayed inside the section,
+     * whichever is more. The latter ensures that they are eventually found while the camera stands still, after no
+     * more time has been spent on regular searches than finding them would have cost. Until the costs have been
+     * measured, they are assumed to be worth finding.
+     */
+    private boolean shouldFindReachableSections() {
+        if (this.framesAtOrigin < REACHABLE_SEARCH_DELAY_FRAMES) {
+            return false;
+        }
+
+        if (this.averageSearchNanos == 0.0f || this.averageReachableSearchNanos == 0.0f) {
+            return true;
+        }
+
+        float savedPerFrame = this.averageSearchNanos - this.averageVisitNanos;
+
+        float expectedReuseFrames = Math.max(this.averageReuseFrames, this.framesAtOrigin);
+
+        return expectedReuseFrames * savedPerFrame > this.averageReachableSearchNanos;
+    }
+
+    private boolean canReuseReachableSections(long origin, float searchDistance, boolean useOcclusionCulling) {
+        return this.reachableSectionsValid
+                && this.reachableOrigin == origin
+                && this.reachableUseOcclusionCulling == useOcclusionCulling
+                && searchDistance <= this.reachableSearchDistance;
+    }
+
+    private void findReachableSections(Viewport viewport, float searchDistance, boolean useOcclusionCulling, int frame) {
+        this.reachableSections.clear();
+
+        this.search((id, visible) -> this.reachableSections.add(id), viewport,
+                searchDistance + REACHABLE_DISTANCE_MARGIN, useOcclusionCulling, frame, true);
+
+        this.reachableSectionsValid = true;
+        this.reachableOrigin = viewport.getChunkCoord().asLong();
+        this.reachableSearchDistance = searchDistance;
+        this.reachableUseOcclusionCulling = useOcclusionCulling;
+    }
+
+    private void visitReachableSections(Visitor visitor, Viewport viewport, float searchDistance, int frame) {
+        var origin = viewport.getChunkCoord();
+        this.searchId++;
+
+        for (int i = 0; i < this.reachableSections.size(); i++) {
+            int id = this.reachableSections.getInt(i);
+
+            // The section containing the camera is always visible
+            boolean visible = this.isOriginSection(id, origin) || this.isSectionVisible(id, viewport, searchDistance, false);
+
+            int x = this.graph.getChunkX(id);
+            int y = this.graph.getChunkY(id);
+            int z = this.graph.getChunkZ(id);
+
+            // The reachable sections extend beyond the search distance, since they must cover any camera position within
+            // the origin section. Those which are out of range for the current camera position would never be visited
+            // by a regular search, so they are neither drawn nor queued for rebuilds.
+            if (!visible && !isWithinRenderDistance(viewport.getTransform(), x, y, z, searchDistance)) {
+                continue;
+            }
+
+            this.graph.setLastVisibleFrame(id, frame);
+            visitor.visit(id, visible);
+        }
+    }
+
+    private boolean isOriginSection(int id, SectionPos origin) {
+        return this.graph.getChunkX(id) == origin.getX() && this.graph.getChunkY(id) == origin.getY() && this.graph.getChunkZ(id) == origin.getZ();
+    }
+
+    private void search(Visitor visitor,
+                        Viewport viewport,
+                        float searchDistance,
+                        boolean useOcclusionCulling,
+                        int frame,
+                        boolean ignoreFrustum)
+    {
+        this.readQueue.clear();
+        this.writeQueue.clear();
 
-        this.init(visitor, queues.write(), viewport, searchDistance, useOcclusionCulling, frame);
+        this.searchId++;
+        this.levelPosition = 1;
 
-        while (queues.flip()) {
-            processQueue(visitor, viewport, searchDistance, useOcclusionCulling, frame, queues.read(), queues.write());
+        this.init(visitor, this.writeQueue, viewport, searchDistance, useOcclusionCulling, frame, ignoreFrustum);
+
+        while (!this.writeQueue.isEmpty()) {
+            // The sections which were enqueued by the last level become the next level to process
+            IntArrayList queue = this.writeQueue;
+            this.writeQueue = this.readQueue;
+            this.readQueue = queue;
+
+            this.writeQueue.clear();
+
+            if (this.shouldProcessInParallel(this.readQueue)) {
+                this.processQueueInParallel(visitor, viewport, searchDistance, useOcclusionCulling, frame, ignoreFrustum, this.readQueue, this.writeQueue);
+            } else {
+                this.processQueue(visitor, viewport, searchDistance, useOcclusionCulling, frame, ignoreFrustum, this.readQueue, this.writeQueue);
+            }
+
+            this.levelPosition += this.readQueue.size();
         }
     }
 
-    private static void processQueue(Visitor visitor,
-                                     Viewport viewport,
-                                     float searchDistance,
-                                     boolean useOcclusionCulling,
-                                     int frame,
-                                     ReadQueue<RenderSection> readQueue,
-                                     WriteQueue<RenderSection> writeQueue)
+    private boolean shouldProcessInParallel(IntArrayList queue) {
+        return USE_PARALLEL_SEARCH
+                && queue.size() >= PARALLEL_LEVEL_SIZE
+                && this.levelPosition + queue.size() <= SectionGraph.MAX_DISCOVERER;
+    }
+
+    private void processQueue(Visitor visitor,
+                              Viewport viewport,
+                              float searchDistance,
+                              boolean useOcclusionCulling,
+                              int frame,
+                              boolean ignoreFrustum,
+                              IntArrayList readQueue,
+                              IntArrayList writeQueue)
     {
-        RenderSection section;
+        final var graph = this.graph;
+
+        for (int i = 0; i < readQueue.size(); i++) {
+            int id = readQueue.getInt(i);
 
-        while ((section = readQueue.dequeue()) != null) {
-            boolean visible = isSectionVisible(section, viewport, searchDistance);
-            visitor.visit(section, visible);
+            boolean visible = this.isSectionVisible(id, viewport, searchDistance, ignoreFrustum);
+            visitor.visit(id, visible);
 
             if (!visible) {
                 continue;
             }
 
-            int connections;
-
-            {
-                if (useOcclusionCulling) {
-                    // When using occlusion culling, we can only traverse into neighbors for which there is a path of
-                    // visibility through this chunk. This is determined by taking all the incoming paths to this chunk and
-                    // creating a union of the outgoing paths from those.
-                    connections = VisibilityEncoding.getConnections(section.getVisibilityData(), section.getIncomingDirections());
-                } else {
-                    // Not using any occlusion culling, so traversing in any direction is legal.
-                    connections = GraphDirectionSet.ALL;
+            visitNeighbors(writeQueue, graph, id, getConnections(graph, id, viewport, useOcclusionCulling), frame);
+        }
+    }
+
+    /**
+     * Processes a level of the search in the same way as {@link #processQueue}, but with the sections split across the
+     * threads of the common fork-join pool. The sections are tested and their connections determined first, and only
+     * then are their neighbors visited, so that the incoming directions of a section never depend on the order in which
+     * the threads run.
+     *
+     * Each task records the neighbors which it discovered, and the graph records the discoverer with the lowest position
+     * for each of them. Only that discoverer enqueues the neighbor, and the tasks are merged in order, which gives the
+     * next level the same order as it would have when searching on a single thread.
+     */
+    private void processQueueInParallel(Visitor visitor,
+                                        Viewport viewport,
+                                        float searchDistance,
+                                        boolean useOcclusionCulling,
+                                        int frame,
+                                        boolean ignoreFrustum,
+                                        IntArrayList readQueue,
+                                        IntArrayList writeQueue)
+    {
+        final var graph = this.graph;
+
+        int size = readQueue.size();
+        int taskCount = Mth.positiveCeilDiv(size, PARALLEL_TASK_SIZE);
+
+        if (this.levelConnections.length < size) {
+            this.levelConnections = new int[Mth.smallestEncompassingPowerOfTwo(size)];
+        }
+
+        while (this.levelTasks.size() < taskCount) {
+            this.levelTasks.add(new LevelTask());
+        }
+
+        final int[] connections = this.levelConnections;
+        final int levelPosition = this.levelPosition;
+
+        IntStream.range(0, taskCount)
+                .parallel()
+                .forEach(index -> {
+                    var task = this.levelTasks.get(index);
+                    task.reset(index * PARALLEL_TASK_SIZE, Math.min(size, (index + 1) * PARALLEL_TASK_SIZE));
+
+                    for (int i = task.start; i < task.end; i++) {
+                        int id = readQueue.getInt(i);
+                        int result = this.testSection(id, viewport, searchDistance, ignoreFrustum);
+
+                        task.addTestResult(result);
+
+                        connections[i] = (result & SECTION_VISIBLE) != 0
+                                ? getConnections(graph, id, viewport, useOcclusionCulling) | CONNECTIONS_VISIBLE : GraphDirectionSet.NONE;
+                    }
+                });
+
+        IntStream.range(0, taskCount)
+                .parallel()
+                .forEach(index -> {
+                    var task = this.levelTasks.get(index);
+
+                    for (int i = task.start; i < task.end; i++) {
+                        visitNeighborsConcurrently(task.discovered, graph, readQueue.getInt(i), connections[i], frame, levelPosition + i);
+                    }
+                });
+
+        for (int i = 0; i < size; i++) {
+            visitor.visit(readQueue.getInt(i), (connections[i] & CONNECTIONS_VISIBLE) != 0);
+        }
+
+        for (int index = 0; index < taskCount; index++) {
+            var task = this.levelTasks.get(index);
+            var discovered = task.discovered;
+
+            for (int i = 0; i < discovered.size(); i += 2) {
+                int id = discovered.getInt(i);
+
+                if (graph.getDiscoverer(id) == discovered.getInt(i + 1)) {
+                    writeQueue.add(id);
                 }
+            }
+
+            this.sectionTests += task.sectionTests;
+            this.skippedSectionTests += task.skippedSectionTests;
+            this.occludedSectionTests += task.occludedSectionTests;
+        }
+    }
+
+    private static int getConnections(SectionGraph graph, int id, Viewport viewport, boolean useOcclusionCulling) {
+        int connections;
+
+        if (useOcclusionCulling) {
+            // When using occlusion culling, we can only traverse into neighbors for which there is a path of
+            // visibility through this chunk. This is determined by taking all the incoming paths to this chunk and
+            // creating a union of the outgoing paths from those.
+            connections = VisibilityEncoding.getConnections(graph.getVisibilityData(id), graph.getIncomingDirections(id));
+        } else {
+            // Not using any occlusion culling, so traversing in any direction is legal.
+            connections = GraphDirectionSet.ALL;
+        }
+
+        // We can only traverse *outwards* from the center of the graph search, so mask off any invalid
+        // directions.
+        connections &= getOutwardDirections(viewport.getChunkCoord(), graph, id);
+
+        return connections;
+    }
+
+    private boolean isSectionVisible(int id, Viewport viewport, float maxDistance, boolean ignoreFrustum) {
+        int result = this.testSection(id, viewport, maxDistance, ignoreFrustum);
+
+        this.sectionTests++;
 
-                // We can only traverse *outwards* from the center of the graph search, so mask off any invalid
-                // directions.
-                connections &= getOutwardDirections(viewport.getChunkCoord(), section);
+        if ((result & SECTION_TEST_SKIPPED) != 0) {
+            this.skippedSectionTests++;
+        }
+
+        if ((result & SECTION_OCCLUDED) != 0) {
+            this.occludedSectionTests++;
+        }
+
+        return (result & SECTION_VISIBLE) != 0;
+    }
+
+    /**
+     * Tests whether the section is within the render distance and the frustum, and isn't hidden behind the occluders
+     * in the software depth buffer. This may be called from multiple threads at once, since it only writes the
+     * region-level results, which are the same for every thread.
+     *
+     * @return The result of the test, as a combination of {@link #SECTION_VISIBLE}, {@link #SECTION_TEST_SKIPPED} and
+     * {@link #SECTION_OCCLUDED}
+     */
+    private int testSection(int id, Viewport viewport, float maxDistance, boolean ignoreFrustum) {
+        int regionVisibility = 0;
+
+        if (USE_REGION_TESTS) {
+            regionVisibility = this.getRegionVisibility(this.graph.getRegion(id), viewport, maxDistance, ignoreFrustum);
+
+            if ((regionVisibility & REGION_OUTSIDE) != 0) {
+                return SECTION_TEST_SKIPPED;
             }
+        }
+
+        boolean withinDistance = (regionVisibility & REGION_WITHIN_DISTANCE) != 0;
+        boolean withinFrustum = ignoreFrustum || (regionVisibility & REGION_WITHIN_FRUSTUM) != 0;
 
-            visitNeighbors(writeQueue, section, connections, frame);
+        if (withinDistance && withinFrustum) {
+            return this.testOcclusion(id, viewport, ignoreFrustum, SECTION_VISIBLE | SECTION_TEST_SKIPPED);
         }
+
+        int x = this.graph.getChunkX(id);
+        int y = this.graph.getChunkY(id);
+        int z = this.graph.getChunkZ(id);
+
+        boolean visible = (withinDistance || isWithinRenderDistance(viewport.getTransform(), x, y, z, maxDistance))
+                && (withinFrustum || isWithinFrustum(viewport, x, y, z));
+
+        return visible ? this.testOcclusion(id, viewport, ignoreFrustum, SECTION_VISIBLE) : 0;
     }
 
-    private static boolean isSectionVisible(RenderSection section, Viewport viewport, float maxDistance) {
-        return isWithinRenderDistance(viewport.getTransform(), section, maxDistance) && isWithinFrustum(viewport, section);
+    private int testOcclusion(int id, Viewport viewport, boolean ignoreFrustum, int result) {
+        // The depth buffer depends on the direction of the camera, so it can't be used when ignoring the frustum
+        if (!this.useRasterizer || ignoreFrustum) {
+            return result;
+        }
+
+        var camera = viewport.getTransform();
+
+        float cx = (((this.graph.getChunkX(id) << 4) + 8) - camera.intX) - camera.fracX;
+        float cy = (((this.graph.getChunkY(id) << 4) + 8) - camera.intY) - camera.fracY;
+        float cz = (((this.graph.getChunkZ(id) << 4) + 8) - camera.intZ) - camera.fracZ;
+
+        if (this.rasterizer.isOccluded(
+                cx - CHUNK_SECTION_SIZE, cy - CHUNK_SECTION_SIZE, cz - CHUNK_SECTION_SIZE,
+                cx + CHUNK_SECTION_SIZE, cy + CHUNK_SECTION_SIZE, cz + CHUNK_SECTION_SIZE))
+        {
+            return (result & ~SECTION_VISIBLE) | SECTION_OCCLUDED;
+        }
+
+        return result;
     }
 
-    private static void visitNeighbors(final WriteQueue<RenderSection> queue, RenderSection section, int outgoing, int frame) {
-        // Only traverse into neighbors which are actually present.
-        // This avoids a null-check on each invocation to enqueue, and since the compiler will see that a null
-        // is never encountered (after profiling), it will optimize it away.
-        outgoing &= section.getAdjacentMask();
+    /**
+     * Tests the bounds of the whole region against the render distance and the frustum. The result is cached on the
+     * region for the duration of the current search, so that only the first section of each region needs to test it.
+     */
+    private int getRegionVisibility(RenderRegion region, Viewport viewport, float maxDistance, boolean ignoreFrustum) {
+        long state = region.getCullingState();
 
-        // Check if there are any valid connections left, and if not, early-exit.
-        if (outgoing == GraphDirectionSet.NONE) {
-            return;
+        if ((int) (state >>> 32) == this.searchId) {
+            return (int) state;
+        }
+
+        int visibility = computeRegionVisibility(region, viewport, maxDistance, ignoreFrustum,
+                this.useHorizonTests ? this.heightmap : null);
+        region.setCullingState(((long) this.searchId << 32) | Integer.toUnsignedLong(visibility));
+
+        return visibility;
+    }
+
+    // The half-extents of a region's bounding box, including the maximum model extent of the sections within
+    private static final float REGION_HALF_WIDTH = (RenderRegion.REGION_WIDTH * 8.0f) + 1.0f + 0.125f;
+    private static final float REGION_HALF_HEIGHT = (RenderRegion.REGION_HEIGHT * 8.0f) + 1.0f + 0.125f;
+    private static final float REGION_HALF_LENGTH = (RenderRegion.REGION_LENGTH * 8.0f) + 1.0f + 0.125f;
+
+    private static int computeRegionVisibility(RenderRegion region, Viewport viewport, float maxDistance, boolean ignoreFrustum,
+                                               @Nullable OccluderHeightmap heightmap) {
+        CameraTransform camera = viewport.getTransform();
+
+        // The bounds of the region in view space. These are expanded by one block on each side, since the distance of
+        // each section is measured from its bounds offset by the fractional camera position.
+        int minX = region.getOriginX() - camera.intX - 1;
+        int minY = region.getOriginY() - camera.intY - 1;
+        int minZ = region.getOriginZ() - camera.intZ - 1;
+
+        int maxX = minX + (RenderRegion.REGION_WIDTH * 16) + 2;
+        int maxY = minY + (RenderRegion.REGION_HEIGHT * 16) + 2;
+        int maxZ = minZ + (RenderRegion.REGION_LENGTH * 16) + 2;
+
+        // If the nearest point of the region is beyond the render distance, then so is every section within it
+        float nearestX = nearestToZero(minX, maxX);
+        float nearestY = nearestToZero(minY, maxY);
+        float nearestZ = nearestToZero(minZ, maxZ);
+
+        float maxDistanceSq = maxDistance * maxDistance;
+
+        if (((nearestX * nearestX) + (nearestZ * nearestZ)) >= maxDistanceSq || Math.abs(nearestY) >= maxDistance) {
+            return REGION_OUTSIDE;
+        }
+
+        int visibility = 0;
+
+        // If the farthest point of the region is within the render distance, then so is every section within it
+        float farthestX = Math.max(Math.abs(minX), Math.abs(maxX));
+        float farthestY = Math.max(Math.abs(minY), Math.abs(maxY));
+        float farthestZ = Math.max(Math.abs(minZ), Math.abs(maxZ));
+
+        if (((farthestX * farthestX) + (farthestZ * farthestZ)) < maxDistanceSq && farthestY < maxDistance) {
+            visibility |= REGION_WITHIN_DISTANCE;
+        }
+
+        if (ignoreFrustum) {
+            return visibility | REGION_WITHIN_FRUSTUM;
         }
 
-        // This helps the compiler move the checks for some invariants upwards.
-        queue.ensureCapacity(6);
+        int intersection = viewport.getBoxIntersection(
+                region.getOriginX() + (RenderRegion.REGION_WIDTH * 8),
+                region.getOriginY() + (RenderRegion.REGION_HEIGHT * 8),
+                region.getOriginZ() + (RenderRegion.REGION_LENGTH * 8),
+                REGION_HALF_WIDTH, REGION_HALF_HEIGHT, REGION_HALF_LENGTH);
+
+        if (intersection == Frustum.OUTSIDE) {
+            return REGION_OUTSIDE;
+        } else if (intersection == Frustum.INSIDE) {
+            visibility |= REGION_WITHIN_FRUSTUM;
+        }
 
-        if (GraphDirectionSet.contains(outgoing, GraphDirection.DOWN)) {
-            visitNode(queue, section.adjacentDown, GraphDirectionSet.of(GraphDirection.UP), frame);
+        // The horizon depends on the exact position of the camera, so it is only tested along with the frustum
+        if (heightmap != null && isBelowHorizon(heightmap, camera, minX, minY, minZ, maxX, maxY, maxZ)) {
+            return REGION_OUTSIDE;
         }
 
-        if (GraphDirectionSet.contains(outgoing, GraphDirection.UP)) {
-            visitNode(queue, section.adjacentUp, GraphDirectionSet.of(GraphDirection.DOWN), frame);
+        return visibility;
+    }
+
+    /**
+     * Tests whether every line of sight from the camera to the region is blocked by the solid slabs of the terrain in
+     * between. The lines of sight descend from the camera to the region, so each of them crosses every height between
+     * the top of the region and the camera. If the points at which they cross one such height all lie within columns
+     * whose slab contains that height, then every line of sight passes through opaque blocks before reaching the region.
+     *
+     * The bounds are given in view space relative to the integer camera position, as in
+     * {@link #computeRegionVisibility}.
+     */
+    private static boolean isBelowHorizon(OccluderHeightmap heightmap, CameraTransform camera,
+                                          int minX, int minY, int minZ, int maxX, int maxY, int maxZ)
+    {
+        float x0 = minX - camera.fracX, x1 = maxX - camera.fracX;
+        float y0 = minY - camera.fracY, y1 = maxY - camera.fracY;
+        float z0 = minZ - camera.fracZ, z1 = maxZ - camera.fracZ;
+
+        // Only regions which lie entirely below the camera and far enough away are tested
+        if (y1 >= 0.0f) {
+            return false;
+        }
+
+        float nearestX = nearestToZero(x0, x1);
+        float nearestZ = nearestToZero(z0, z1);
+
+        if (((nearestX * nearestX) + (nearestZ * nearestZ)) < HORIZON_TEST_DISTANCE * HORIZON_TEST_DISTANCE) {
+            return false;
+        }
+
+        // The heights are spaced evenly between the top of the region and the camera, and no closer than the thickness
+        // of the thinnest slab
+        float range = -y1;
+        int planes = Mth.clamp((int) (range / OccluderHeightmap.MIN_SLAB_THICKNESS), 1, HORIZON_TEST_PLANES);
+
+        for (int plane = 1; plane <= planes; plane++) {
+            float height = y1 + ((range * plane) / (planes + 1));
+
+            if (isPlaneBlocked(heightmap, camera, height, x0, y0, z0, x1, y1, z1)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isPlaneBlocked(OccluderHeightmap heightmap, CameraTransform camera, float height,
+                                          float x0, float y0, float z0, float x1, float y1, float z1)
+    {
+        // A line of sight to a point at the height y crosses the plane at the fraction (height / y) of its length, which
+        // is largest for the top of the region and smallest for its bottom. The crossing points of all lines of sight
+        // to the region are contained by the bounds of the crossing points for its corners.
+        float topScale = height / y1;
+        float bottomScale = height / y0;
+
+        float crossingMinX = Math.min(x0 * topScale, x0 * bottomScale);
+        float crossingMaxX = Math.max(x1 * topScale, x1 * bottomScale);
+        float crossingMinZ = Math.min(z0 * topScale, z0 * bottomScale);
+        float crossingMaxZ = Math.max(z1 * topScale, z1 * bottomScale);
+
+        int minColumnX = SectionPos.blockToSectionCoord(Mth.floor(camera.intX + (double) (camera.fracX + crossingMinX)));
+        int maxColumnX = SectionPos.blockToSectionCoord(Mth.floor(camera.intX + (double) (camera.fracX + crossingMaxX)));
+        int minColumnZ = SectionPos.blockToSectionCoord(Mth.floor(camera.intZ + (double) (camera.fracZ + crossingMinZ)));
+        int maxColumnZ = SectionPos.blockToSectionCoord(Mth.floor(camera.intZ + (double) (camera.fracZ + crossingMaxZ)));
+
+        float worldHeight = camera.intY + (camera.fracY + height);
+
+        for (int x = minColumnX; x <= maxColumnX; x++) {
+            for (int z = minColumnZ; z <= maxColumnZ; z++) {
+                if (!heightmap.isSolidAt(x, z, worldHeight)) {
+                    return false;
+                }
+            }
         }
 
-        if (GraphDirectionSet.contains(outgoing, GraphDirection.NORTH)) {
-            visitNode(queue, section.adjacentNorth, GraphDirectionSet.of(GraphDirection.SOUTH), frame);
+        return true;
+    }
+
+    private static void visitNeighbors(final IntArrayList queue, SectionGraph graph, int id, int outgoing, int frame) {
+        // Only traverse into neighbors which are actually present.
+        // This avoids a check for a missing neighbor on each invocation to enqueue.
+        outgoing &= graph.getAdjacentMask(id);
+
+        // Check if there are any valid connections left, and if not, early-exit.
+        if (outgoing == GraphDirectionSet.NONE) {
+            return;
         }
 
-        if (GraphDirectionSet.contains(outgoing, GraphDirection.SOUTH)) {
-            visitNode(queue, section.adjacentSouth, GraphDirectionSet.of(GraphDirection.NORTH), frame);
+        // The neighbors are visited in the same order as the directions are numbered (down, up, north, south, west,
+        // east), which determines the order of the sections within each level of the search.
+        for (int direction = 0; direction < GraphDirection.COUNT; direction++) {
+            if (GraphDirectionSet.contains(outgoing, direction)) {
+                visitNode(queue, graph, graph.getAdjacent(id, direction), GraphDirectionSet.of(GraphDirection.opposite(direction)), frame);
+            }
         }
+    }
 
-        if (GraphDirectionSet.contains(outgoing, GraphDirection.WEST)) {
-            visitNode(queue, section.adjacentWest, GraphDirectionSet.of(GraphDirection.EAST), frame);
+    private static void visitNeighborsConcurrently(final IntArrayList discovered, SectionGraph graph, int id, int outgoing, int frame, int position) {
+        // This also removes the visibility marker of the level, and the connections of sections which aren't visible
+        // are always empty
+        outgoing &= graph.getAdjacentMask(id);
+
+        if (outgoing == GraphDirectionSet.NONE) {
+            return;
         }
 
-        if (GraphDirectionSet.contains(outgoing, GraphDirection.EAST)) {
-            visitNode(queue, section.adjacentEast, GraphDirectionSet.of(GraphDirection.WEST), frame);
+        for (int direction = 0; direction < GraphDirection.COUNT; direction++) {
+            if (GraphDirectionSet.contains(outgoing, direction)) {
+                int adjacent = graph.getAdjacent(id, direction);
+
+                if (graph.visitConcurrently(adjacent, frame, GraphDirectionSet.of(GraphDirection.opposite(direction)), position)) {
+                    discovered.add(adjacent);
+                    discovered.add(position);
+                }
+            }
         }
     }
 
-    private static void visitNode(final WriteQueue<RenderSection> queue, @NotNull RenderSection render, int incoming, int frame) {
-        if (render.getLastVisibleFrame() != frame) {
+    private static void visitNode(final IntArrayList queue, SectionGraph graph, int id, int incoming, int frame) {
+        if (graph.getLastVisibleFrame(id) != frame) {
             // This is the first time we are visiting this section during the given frame, so we must
             // reset the state.
-            render.setLastVisibleFrame(frame);
-            render.setIncomingDirections(GraphDirectionSet.NONE);
+            graph.setLastVisibleFrame(id, frame);
 
-            queue.enqueue(render);
+            queue.add(id);
         }
 
-        render.addIncomingDirections(incoming);
+        graph.addIncomingDirections(id, incoming);
     }
 
-    private static int getOutwardDirections(SectionPos origin, RenderSection section) {
+    private static int getOutwardDirections(SectionPos origin, SectionGraph graph, int id) {
+        int x = graph.getChunkX(id);
+        int y = graph.getChunkY(id);
+        int z = graph.getChunkZ(id);
+
         int planes = 0;
 
-        planes |= section.getChunkX() <= origin.getX() ? 1 << GraphDirection.WEST  : 0;
-        planes |= section.getChunkX() >= origin.getX() ? 1 << GraphDirection.EAST  : 0;
+        planes |= x <= origin.getX() ? 1 << GraphDirection.WEST  : 0;
+        planes |= x >= origin.getX() ? 1 << GraphDirection.EAST  : 0;
 
-        planes |= section.getChunkY() <= origin.getY() ? 1 << GraphDirection.DOWN  : 0;
-        planes |= section.getChunkY() >= origin.getY() ? 1 << GraphDirection.UP    : 0;
+        planes |= y <= origin.getY() ? 1 << GraphDirection.DOWN  : 0;
+        planes |= y >= origin.getY() ? 1 << GraphDirection.UP    : 0;
 
-        planes |= section.getChunkZ() <= origin.getZ() ? 1 << GraphDirection.NORTH : 0;
-        planes |= section.getChunkZ() >= origin.getZ() ? 1 << GraphDirection.SOUTH : 0;
+        planes |= z <= origin.getZ() ? 1 << GraphDirection.NORTH : 0;
+        planes |= z >= origin.getZ() ? 1 << GraphDirection.SOUTH : 0;
 
         return planes;
     }
 
-    private static boolean isWithinRenderDistance(CameraTransform camera, RenderSection section, float maxDistance) {
+    private static boolean isWithinRenderDistance(CameraTransform camera, int x, int y, int z, float maxDistance) {
         // origin point of the chunk's bounding box (in view space)
-        int ox = section.getOriginX() - camera.intX;
-        int oy = section.getOriginY() - camera.intY;
-        int oz = section.getOriginZ() - camera.intZ;
+        int ox = (x << 4) - camera.intX;
+        int oy = (y << 4) - camera.intY;
+        int oz = (z << 4) - camera.intZ;
 
         // coordinates of the point to compare (in view space)
         // this is the closest point within the bounding box to the center (0, 0, 0)
@@ -181,86 +884,87 @@ public class OcclusionCuller {
     // to deal with floating point imprecision during a frustum check (see GH#2132).
     private static final float CHUNK_SECTION_SIZE = 8.0f /* chunk bounds */ + 1.0f /* maximum model extent */ + 0.125f /* epsilon */;
 
-    public static boolean isWithinFrustum(Viewport viewport, RenderSection section) {
-        return viewport.isBoxVisible(section.getCenterX(), section.getCenterY(), section.getCenterZ(),
+    public static boolean isWithinFrustum(Viewport viewport, int x, int y, int z) {
+        return viewport.isBoxVisible((x << 4) + 8, (y << 4) + 8, (z << 4) + 8,
                 CHUNK_SECTION_SIZE, CHUNK_SECTION_SIZE, CHUNK_SECTION_SIZE);
     }
 
     private void init(Visitor visitor,
-                      WriteQueue<RenderSection> queue,
+                      IntArrayList queue,
                       Viewport viewport,
                       float searchDistance,
                       boolean useOcclusionCulling,
-                      int frame)
+                      int frame,
+                      boolean ignoreFrustum)
     {
         var origin = viewport.getChunkCoord();
 
         if (origin.getY() < this.level.getMinSection()) {
             // below the level
             this.initOutsideWorldHeight(queue, viewport, searchDistance, frame,
-                    this.level.getMinSection(), GraphDirection.DOWN);
+                    this.level.getMinSection(), GraphDirection.DOWN, ignoreFrustum);
         } else if (origin.getY() >= this.level.getMaxSection()) {
             // above the level
             this.initOutsideWorldHeight(queue, viewport, searchDistance, frame,
-                    this.level.getMaxSection() - 1, GraphDirection.UP);
+                    this.level.getMaxSection() - 1, GraphDirection.UP, ignoreFrustum);
         } else {
             this.initWithinWorld(visitor, queue, viewport, useOcclusionCulling, frame);
         }
     }
 
-    private void initWithinWorld(Visitor visitor, WriteQueue<RenderSection> queue, Viewport viewport, boolean useOcclusionCulling, int frame) {
+    private void initWithinWorld(Visitor visitor, IntArrayList queue, Viewport viewport, boolean useOcclusionCulling, int frame) {
         var origin = viewport.getChunkCoord();
-        var section = this.getRenderSection(origin.getX(), origin.getY(), origin.getZ());
+        int id = this.graph.getId(origin.getX(), origin.getY(), origin.getZ());
 
-        if (section == null) {
+        if (id == SectionGraph.NULL_ID) {
             return;
         }
 
-        section.setLastVisibleFrame(frame);
-        section.setIncomingDirections(GraphDirectionSet.NONE);
+        this.graph.setLastVisibleFrame(id, frame);
 
-        visitor.visit(section, true);
+        visitor.visit(id, true);
 
         int outgoing;
 
         if (useOcclusionCulling) {
             // Since the camera is located inside this chunk, there are no "incoming" directions. So we need to instead
             // find any possible paths out of this chunk and enqueue those neighbors.
-            outgoing = VisibilityEncoding.getConnections(section.getVisibilityData());
+            outgoing = VisibilityEncoding.getConnections(this.graph.getVisibilityData(id));
         } else {
             // Occlusion culling is disabled, so we can traverse into any neighbor.
             outgoing = GraphDirectionSet.ALL;
         }
 
-        visitNeighbors(queue, section, outgoing, frame);
+        visitNeighbors(queue, this.graph, id, outgoing, frame);
     }
 
     // Enqueues sections that are inside the viewport using diamond spiral iteration to avoid sorting and ensure a
     // consistent order. Innermost layers are enqueued first. Within each layer, iteration starts at the northernmost
     // section and proceeds counterclockwise (N->W->S->E).
-    private void initOutsideWorldHeight(WriteQueue<RenderSection> queue,
+    private void initOutsideWorldHeight(IntArrayList queue,
                                         Viewport viewport,
                                         float searchDistance,
                                         int frame,
                                         int height,
-                                        int direction)
+                                        int direction,
+                                        boolean ignoreFrustum)
     {
         var origin = viewport.getChunkCoord();
         var radius = Mth.floor(searchDistance / 16.0f);
 
         // Layer 0
-        this.tryVisitNode(queue, origin.getX(), height, origin.getZ(), direction, frame, viewport);
+        this.tryVisitNode(queue, origin.getX(), height, origin.getZ(), direction, frame, viewport, ignoreFrustum);
 
         // Complete layers, excluding layer 0
         for (int layer = 1; layer <= radius; layer++) {
             for (int z = -layer; z < layer; z++) {
                 int x = Math.abs(z) - layer;
-                this.tryVisitNode(queue, origin.getX() + x, height, origin.getZ() + z, direction, frame, viewport);
+                this.tryVisitNode(queue, origin.getX() + x, height, origin.getZ() + z, direction, frame, viewport, ignoreFrustum);
             }
 
             for (int z = layer; z > -layer; z--) {
                 int x = layer - Math.abs(z);
-                this.tryVisitNode(queue, origin.getX() + x, height, origin.getZ() + z, direction, frame, viewport);
+                this.tryVisitNode(queue, origin.getX() + x, height, origin.getZ() + z, direction, frame, viewport, ignoreFrustum);
             }
         }
 
@@ -270,41 +974,74 @@ public class OcclusionCuller {
 
             for (int z = -radius; z <= -l; z++) {
                 int x = -z - layer;
-                this.tryVisitNode(queue, origin.getX() + x, height, origin.getZ() + z, direction, frame, viewport);
+                this.tryVisitNode(queue, origin.getX() + x, height, origin.getZ() + z, direction, frame, viewport, ignoreFrustum);
             }
 
             for (int z = l; z <= radius; z++) {
                 int x = z - layer;
-                this.tryVisitNode(queue, origin.getX() + x, height, origin.getZ() + z, direction, frame, viewport);
+                this.tryVisitNode(queue, origin.getX() + x, height, origin.getZ() + z, direction, frame, viewport, ignoreFrustum);
             }
 
             for (int z = radius; z >= l; z--) {
                 int x = layer - z;
-                this.tryVisitNode(queue, origin.getX() + x, height, origin.getZ() + z, direction, frame, viewport);
+                this.tryVisitNode(queue, origin.getX() + x, height, origin.getZ() + z, direction, frame, viewport, ignoreFrustum);
             }
 
             for (int z = -l; z >= -radius; z--) {
                 int x = layer + z;
-                this.tryVisitNode(queue, origin.getX() + x, height, origin.getZ() + z, direction, frame, viewport);
+                this.tryVisitNode(queue, origin.getX() + x, height, origin.getZ() + z, direction, frame, viewport, ignoreFrustum);
             }
         }
     }
 
-    private void tryVisitNode(WriteQueue<RenderSection> queue, int x, int y, int z, int direction, int frame, Viewport viewport) {
-        RenderSection section = this.getRenderSection(x, y, z);
+    private void tryVisitNode(IntArrayList queue, int x, int y, int z, int direction, int frame, Viewport viewport, boolean ignoreFrustum) {
+        int id = this.graph.getId(x, y, z);
 
-        if (section == null || !isWithinFrustum(viewport, section)) {
+        if (id == SectionGraph.NULL_ID || (!ignoreFrustum && !isWithinFrustum(viewport, x, y, z))) {
             return;
         }
 
-        visitNode(queue, section, GraphDirectionSet.of(direction), frame);
+        visitNode(queue, this.graph, id, GraphDirectionSet.of(direction), frame);
     }
 
-    private RenderSection getRenderSection(int x, int y, int z) {
-        return this.sections.get(SectionPos.asLong(x, y, z));
+    private static final class LevelTask {
+        // The sections which were discovered by this task, as pairs of the section and the position of its discoverer
+        private final IntArrayList discovered = new IntArrayList();
+
+        private int start, end;
+
+        private long sectionTests;
+        private long skippedSectionTests;
+        private long occludedSectionTests;
+
+        private void reset(int start, int end) {
+            this.start = start;
+            this.end = end;
+
+            this.discovered.clear();
+
+            this.sectionTests = 0;
+            this.skippedSectionTests = 0;
+            this.occludedSectionTests = 0;
+        }
+
+        private void addTestResult(int result) {
+            this.sectionTests++;
+
+            if ((result & SECTION_TEST_SKIPPED) != 0) {
+                this.skippedSectionTests++;
+            }
+
+            if ((result & SECTION_OCCLUDED) != 0) {
+                this.occludedSectionTests++;
+            }
+        }
     }
 
     public interface Visitor {
-        void visit(RenderSection section, boolean visible);
+        /**
+         * @param id The id of the section within the {@link SectionGraph}
+         */
+        void visit(int id, boolean visible);
     }
 }
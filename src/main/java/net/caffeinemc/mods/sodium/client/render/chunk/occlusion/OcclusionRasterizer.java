@@ -0,0 +1,406 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.occlusion;
+
+import org.joml.Matrix4fc;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A low-resolution depth buffer which is rasterized on the CPU from boxes that are known to be opaque, and which can
+ * then test whether other boxes are hidden behind them. This finds sections which are hidden behind large terrain
+ * features, such as mountains, even when the visibility graph has open paths around them.
+ *
+ * Occluders are rasterized by sampling the center of each pixel, so that adjacent faces meet without cracks, and the
+ * result is then widened to the farthest depth of each pixel and its neighbors. A pixel is therefore only considered
+ * covered if the occluders cover the whole area around it, and only gaps between occluders which are narrower than a
+ * pixel can be missed. A box is only hidden if its nearest depth is behind every pixel which its projected bounds
+ * touch, which is tested against a hierarchy of the farthest depths in the buffer.
+ *
+ * All positions are relative to the camera, and are transformed into clip space by the view-projection matrix which is
+ * given to {@link #begin(Matrix4fc)}. The buffer has no dependencies on the game or graphics API, so that it can be used
+ * and tested entirely on the CPU. Once {@link #finish()} has been called, any number of threads can test boxes
+ * against it at once.
+ */
+public class OcclusionRasterizer {
+    public static final int WIDTH = 256;
+    public static final int HEIGHT = 128;
+
+    // The number of rows of the depth buffer which are rasterized by each task. Each task owns its rows, so that the
+    // tasks can be run in parallel without synchronizing their writes.
+    private static final int BAND_HEIGHT = 16;
+    private static final int BAND_COUNT = HEIGHT / BAND_HEIGHT;
+
+    // Faces with any vertex closer to the camera than this (in clip space) are not drawn, and boxes with any corner
+    // closer than this are never hidden, since they can't be projected onto the screen safely
+    private static final float NEAR_W = 0.05f;
+
+    private static final float FAR_DEPTH = Float.POSITIVE_INFINITY;
+
+    private static final int MAX_TRIANGLES = 16384;
+
+    // The setup of each triangle: the three edge functions (a, b, c), the depth plane (a, b, c), and its bounds on the
+    // screen (min x, min y, max x, max y)
+    private static final int TRIANGLE_STRIDE = 16;
+
+    private final float[] triangles = new float[MAX_TRIANGLES * TRIANGLE_STRIDE];
+    private int triangleCount;
+
+    // The nearest depth of the occluders at the center of each pixel, before it is widened into the depth buffer
+    private final float[] samples = new float[WIDTH * HEIGHT];
+
+    // The levels of the depth buffer, where the first level has the full resolution and each texel of the following
+    // levels holds the farthest depth of the 2x2 texels below it
+    private final float[][] levels;
+    private final int[] levelWidths;
+    private final int[] levelHeights;
+
+    private float m00, m01, m02, m03;
+    private float m10, m11, m12, m13;
+    private float m20, m21, m22, m23;
+    private float m30, m31, m32, m33;
+
+    public OcclusionRasterizer() {
+        int levelCount = 1 + Integer.numberOfTrailingZeros(Math.max(WIDTH, HEIGHT));
+
+        this.levels = new float[levelCount][];
+        this.levelWidths = new int[levelCount];
+        this.levelHeights = new int[levelCount];
+
+        for (int level = 0; level < levelCount; level++) {
+            int width = Math.max(1, WIDTH >> level);
+            int height = Math.max(1, HEIGHT >> level);
+
+            this.levels[level] = new float[width * height];
+            this.levelWidths[level] = width;
+            this.levelHeights[level] = height;
+        }
+    }
+
+    /**
+     * Clears the occluders and starts drawing a new frame with the given view-projection matrix.
+     */
+    public void begin(Matrix4fc viewProjection) {
+        this.triangleCount = 0;
+
+        this.m00 = viewProjection.m00(); this.m01 = viewProjection.m01(); this.m02 = viewProjection.m02(); this.m03 = viewProjection.m03();
+        this.m10 = viewProjection.m10(); this.m11 = viewProjection.m11(); this.m12 = viewProjection.m12(); this.m13 = viewProjection.m13();
+        this.m20 = viewProjection.m20(); this.m21 = viewProjection.m21(); this.m22 = viewProjection.m22(); this.m23 = viewProjection.m23();
+        this.m30 = viewProjection.m30(); this.m31 = viewProjection.m31(); this.m32 = viewProjection.m32(); this.m33 = viewProjection.m33();
+    }
+
+    /**
+     * Adds an opaque box to the occluders of the frame. Only the faces of the box which point towards the camera are
+     * drawn, and boxes which contain the camera are ignored.
+     */
+    public void addOccluder(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        if (minX > 0.0f) {
+            this.addQuad(minX, minY, minZ, minX, maxY, minZ, minX, maxY, maxZ, minX, minY, maxZ);
+        } else if (maxX < 0.0f) {
+            this.addQuad(maxX, minY, minZ, maxX, maxY, minZ, maxX, maxY, maxZ, maxX, minY, maxZ);
+        }
+
+        if (minY > 0.0f) {
+            this.addQuad(minX, minY, minZ, maxX, minY, minZ, maxX, minY, maxZ, minX, minY, maxZ);
+        } else if (maxY < 0.0f) {
+            this.addQuad(minX, maxY, minZ, maxX, maxY, minZ, maxX, maxY, maxZ, minX, maxY, maxZ);
+        }
+
+        if (minZ > 0.0f) {
+            this.addQuad(minX, minY, minZ, maxX, minY, minZ, maxX, maxY, minZ, minX, maxY, minZ);
+        } else if (maxZ < 0.0f) {
+            this.addQuad(minX, minY, maxZ, maxX, minY, maxZ, maxX, maxY, maxZ, minX, maxY, maxZ);
+        }
+    }
+
+    private void addQuad(float x0, float y0, float z0,
+                         float x1, float y1, float z1,
+                         float x2, float y2, float z2,
+                         float x3, float y3, float z3)
+    {
+        float w0 = this.clipW(x0, y0, z0);
+        float w1 = this.clipW(x1, y1, z1);
+        float w2 = this.clipW(x2, y2, z2);
+        float w3 = this.clipW(x3, y3, z3);
+
+        // Faces which cross the near plane are skipped rather than clipped, which only makes the buffer less effective
+        if (w0 < NEAR_W || w1 < NEAR_W || w2 < NEAR_W || w3 < NEAR_W) {
+            return;
+        }
+
+        float sx0 = this.screenX(x0, y0, z0, w0), sy0 = this.screenY(x0, y0, z0, w0), sz0 = this.depth(x0, y0, z0, w0);
+        float sx1 = this.screenX(x1, y1, z1, w1), sy1 = this.screenY(x1, y1, z1, w1), sz1 = this.depth(x1, y1, z1, w1);
+        float sx2 = this.screenX(x2, y2, z2, w2), sy2 = this.screenY(x2, y2, z2, w2), sz2 = this.depth(x2, y2, z2, w2);
+        float sx3 = this.screenX(x3, y3, z3, w3), sy3 = this.screenY(x3, y3, z3, w3), sz3 = this.depth(x3, y3, z3, w3);
+
+        this.addTriangle(sx0, sy0, sz0, sx1, sy1, sz1, sx2, sy2, sz2);
+        this.addTriangle(sx0, sy0, sz0, sx2, sy2, sz2, sx3, sy3, sz3);
+    }
+
+    private void addTriangle(float x0, float y0, float z0,
+                             float x1, float y1, float z1,
+                             float x2, float y2, float z2)
+    {
+        if (this.triangleCount >= MAX_TRIANGLES) {
+            return;
+        }
+
+        float area = ((x1 - x0) * (y2 - y0)) - ((x2 - x0) * (y1 - y0));
+
+        if (Math.abs(area) < 1.0e-6f) {
+            return;
+        }
+
+        // Wind the triangle counter-clockwise, so that the edge functions are positive inside of it
+        if (area < 0.0f) {
+            float x = x1, y = y1, z = z1;
+            x1 = x2; y1 = y2; z1 = z2;
+            x2 = x; y2 = y; z2 = z;
+
+            area = -area;
+        }
+
+        int minX = Math.max(0, (int) Math.floor(Math.min(x0, Math.min(x1, x2))));
+        int minY = Math.max(0, (int) Math.floor(Math.min(y0, Math.min(y1, y2))));
+        int maxX = Math.min(WIDTH, (int) Math.ceil(Math.max(x0, Math.max(x1, x2))));
+        int maxY = Math.min(HEIGHT, (int) Math.ceil(Math.max(y0, Math.max(y1, y2))));
+
+        if (minX >= maxX || minY >= maxY) {
+            return;
+        }
+
+        float a0 = y0 - y1, b0 = x1 - x0, c0 = (x0 * y1) - (x1 * y0);
+        float a1 = y1 - y2, b1 = x2 - x1, c1 = (x1 * y2) - (x2 * y1);
+        float a2 = y2 - y0, b2 = x0 - x2, c2 = (x2 * y0) - (x0 * y2);
+
+        // The depth after the perspective divide is affine in screen space
+        float za = (((z1 - z0) * (y2 - y0)) - ((z2 - z0) * (y1 - y0))) / area;
+        float zb = (((x1 - x0) * (z2 - z0)) - ((x2 - x0) * (z1 - z0))) / area;
+        float zc = z0 - (za * x0) - (zb * y0);
+
+        int offset = this.triangleCount++ * TRIANGLE_STRIDE;
+
+        float[] triangles = this.triangles;
+        triangles[offset + 0] = a0;
+        triangles[offset + 1] = b0;
+        triangles[offset + 2] = c0;
+        triangles[offset + 3] = a1;
+        triangles[offset + 4] = b1;
+        triangles[offset + 5] = c1;
+        triangles[offset + 6] = a2;
+        triangles[offset + 7] = b2;
+        triangles[offset + 8] = c2;
+        triangles[offset + 9] = za;
+        triangles[offset + 10] = zb;
+        triangles[offset + 11] = zc;
+        triangles[offset + 12] = minX;
+        triangles[offset + 13] = minY;
+        triangles[offset + 14] = maxX;
+        triangles[offset + 15] = maxY;
+    }
+
+    /**
+     * Rasterizes the occluders of the frame and builds the depth hierarchy. The rows of the buffer are split into bands
+     * which are rasterized in parallel.
+     */
+    public void finish() {
+        IntStream.range(0, BAND_COUNT)
+                .parallel()
+                .forEach(this::rasterizeBand);
+
+        IntStream.range(0, BAND_COUNT)
+                .parallel()
+                .forEach(this::widenBand);
+
+        for (int level = 1; level < this.levels.length; level++) {
+            this.downsample(level);
+        }
+    }
+
+    private void rasterizeBand(int band) {
+        int bandMinY = band * BAND_HEIGHT;
+        int bandMaxY = bandMinY + BAND_HEIGHT;
+
+        float[] depth = this.samples;
+        Arrays.fill(depth, bandMinY * WIDTH, bandMaxY * WIDTH, FAR_DEPTH);
+
+        float[] triangles = this.triangles;
+
+        for (int triangle = 0; triangle < this.triangleCount; triangle++) {
+            int offset = triangle * TRIANGLE_STRIDE;
+
+            int minY = Math.max(bandMinY, (int) triangles[offset + 13]);
+            int maxY = Math.min(bandMaxY, (int) triangles[offset + 15]);
+
+            if (minY >= maxY) {
+                continue;
+            }
+
+            int minX = (int) triangles[offset + 12];
+            int maxX = (int) triangles[offset + 14];
+
+            float a0 = triangles[offset + 0], b0 = triangles[offset + 1], c0 = triangles[offset + 2];
+            float a1 = triangles[offset + 3], b1 = triangles[offset + 4], c1 = triangles[offset + 5];
+            float a2 = triangles[offset + 6], b2 = triangles[offset + 7], c2 = triangles[offset + 8];
+            float za = triangles[offset + 9], zb = triangles[offset + 10], zc = triangles[offset + 11];
+
+            for (int y = minY; y < maxY; y++) {
+                float py = y + 0.5f;
+                int row = y * WIDTH;
+
+                // Each row is a simple loop over the pixels with no dependencies between them, which the compiler can
+                // unroll and vectorize
+                for (int x = minX; x < maxX; x++) {
+                    float px = x + 0.5f;
+
+                    float e0 = (a0 * px) + (b0 * py) + c0;
+                    float e1 = (a1 * px) + (b1 * py) + c1;
+                    float e2 = (a2 * px) + (b2 * py) + c2;
+
+                    float z = (za * px) + (zb * py) + zc;
+                    float prev = depth[row + x];
+
+                    depth[row + x] = (e0 >= 0.0f && e1 >= 0.0f && e2 >= 0.0f) ? Math.min(prev, z) : prev;
+                }
+            }
+        }
+    }
+
+    // Every point within a pixel lies between the centers of the pixel and its neighbors, so the farthest of their
+    // depths is never nearer than the occluders anywhere within the pixel
+    private void widenBand(int band) {
+        int bandMinY = band * BAND_HEIGHT;
+        int bandMaxY = bandMinY + BAND_HEIGHT;
+
+        float[] src = this.samples;
+        float[] dst = this.levels[0];
+
+        for (int y = bandMinY; y < bandMaxY; y++) {
+            int above = Math.max(y - 1, 0) * WIDTH;
+            int row = y * WIDTH;
+            int below = Math.min(y + 1, HEIGHT - 1) * WIDTH;
+
+            for (int x = 0; x < WIDTH; x++) {
+                int left = Math.max(x - 1, 0);
+                int right = Math.min(x + 1, WIDTH - 1);
+
+                float depth = Math.max(Math.max(src[above + left], src[above + x]), src[above + right]);
+                depth = Math.max(depth, Math.max(Math.max(src[row + left], src[row + x]), src[row + right]));
+                depth = Math.max(depth, Math.max(Math.max(src[below + left], src[below + x]), src[below + right]));
+
+                dst[row + x] = depth;
+            }
+        }
+    }
+
+    private void downsample(int level) {
+        float[] src = this.levels[level - 1];
+        float[] dst = this.levels[level];
+
+        int srcWidth = this.levelWidths[level - 1];
+        int srcHeight = this.levelHeights[level - 1];
+
+        int dstWidth = this.levelWidths[level];
+        int dstHeight = this.levelHeights[level];
+
+        for (int y = 0; y < dstHeight; y++) {
+            int y0 = Math.min(y * 2, srcHeight - 1);
+            int y1 = Math.min((y * 2) + 1, srcHeight - 1);
+
+            for (int x = 0; x < dstWidth; x++) {
+                int x0 = Math.min(x * 2, srcWidth - 1);
+                int x1 = Math.min((x * 2) + 1, srcWidth - 1);
+
+                dst[(y * dstWidth) + x] = Math.max(
+                        Math.max(src[(y0 * srcWidth) + x0], src[(y0 * srcWidth) + x1]),
+                        Math.max(src[(y1 * srcWidth) + x0], src[(y1 * srcWidth) + x1]));
+            }
+        }
+    }
+
+    /**
+     * Tests whether the box is entirely hidden behind the occluders of the frame. This can be called from any number
+     * of threads once the frame has been finished.
+     *
+     * @return True if the box is definitely hidden, or false if it may be visible
+     */
+    public boolean isOccluded(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        float screenMinX = Float.POSITIVE_INFINITY, screenMaxX = Float.NEGATIVE_INFINITY;
+        float screenMinY = Float.POSITIVE_INFINITY, screenMaxY = Float.NEGATIVE_INFINITY;
+        float nearestDepth = Float.POSITIVE_INFINITY;
+
+        for (int corner = 0; corner < 8; corner++) {
+            float x = (corner & 1) == 0 ? minX : maxX;
+            float y = (corner & 2) == 0 ? minY : maxY;
+            float z = (corner & 4) == 0 ? minZ : maxZ;
+
+            float w = this.clipW(x, y, z);
+
+            if (w < NEAR_W) {
+                return false;
+            }
+
+            float sx = this.screenX(x, y, z, w);
+            float sy = this.screenY(x, y, z, w);
+
+            screenMinX = Math.min(screenMinX, sx);
+            screenMaxX = Math.max(screenMaxX, sx);
+            screenMinY = Math.min(screenMinY, sy);
+            screenMaxY = Math.max(screenMaxY, sy);
+
+            nearestDepth = Math.min(nearestDepth, this.depth(x, y, z, w));
+        }
+
+        int x0 = Math.max(0, (int) Math.floor(screenMinX));
+        int y0 = Math.max(0, (int) Math.floor(screenMinY));
+        int x1 = Math.min(WIDTH - 1, (int) Math.floor(screenMaxX));
+        int y1 = Math.min(HEIGHT - 1, (int) Math.floor(screenMaxY));
+
+        // Boxes which are entirely off-screen are left to the frustum test
+        if (x0 > x1 || y0 > y1) {
+            return false;
+        }
+
+        // Find the first level in which the bounds cover at most 2x2 texels
+        int level = 0;
+
+        while (level < this.levels.length - 1 && (((x1 >> level) - (x0 >> level)) > 1 || ((y1 >> level) - (y0 >> level)) > 1)) {
+            level++;
+        }
+
+        float[] depth = this.levels[level];
+        int width = this.levelWidths[level];
+
+        for (int y = y0 >> level; y <= y1 >> level; y++) {
+            for (int x = x0 >> level; x <= x1 >> level; x++) {
+                if (depth[(y * width) + x] >= nearestDepth) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    public int getTriangleCount() {
+        return this.triangleCount;
+    }
+
+    private float clipW(float x, float y, float z) {
+        return (this.m03 * x) + (this.m13 * y) + (this.m23 * z) + this.m33;
+    }
+
+    private float screenX(float x, float y, float z, float w) {
+        float clipX = (this.m00 * x) + (this.m10 * y) + (this.m20 * z) + this.m30;
+        return ((clipX / w) * 0.5f + 0.5f) * WIDTH;
+    }
+
+    private float screenY(float x, float y, float z, float w) {
+        float clipY = (this.m01 * x) + (this.m11 * y) + (this.m21 * z) + this.m31;
+        return ((clipY / w) * 0.5f + 0.5f) * HEIGHT;
+    }
+
+    private float depth(float x, float y, float z, float w) {
+        float clipZ = (this.m02 * x) + (this.m12 * y) + (this.m22 * z) + this.m32;
+        return clipZ / w;
+    }
+}
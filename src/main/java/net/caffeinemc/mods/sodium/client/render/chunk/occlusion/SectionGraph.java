@@ -0,0 +1,347 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.occlusion;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.caffeinemc.mods.sodium.client.render.chunk.ChunkUpdateType;
+import net.caffeinemc.mods.sodium.client.render.chunk.RenderSection;
+import net.caffeinemc.mods.sodium.client.render.chunk.region.RenderRegion;
+import net.minecraft.core.SectionPos;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * The visibility graph of all sections, stored as a set of primitive arrays which are indexed by a dense section id.
+ * The occlusion culler traverses the graph using only these arrays, rather than following references between section
+ * objects, which keeps the data it needs close together in memory.
+ *
+ * Ids are assigned when sections are added to the graph and re-used after they are removed. The state of each section
+ * is copied into the graph when it changes, so the section objects are only needed to schedule rebuilds.
+ */
+public class SectionGraph {
+    public static final int NULL_ID = -1;
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private static final ChunkUpdateType[] UPDATE_TYPES = ChunkUpdateType.values();
+
+    // The largest position of a section within a search which can be recorded as the discoverer of another section
+    public static final int MAX_DISCOVERER = (1 << 24) - 1;
+
+    private static final long DIRECTIONS_MASK = 0xFFL;
+    private static final long DISCOVERER_MASK = ((long) MAX_DISCOVERER) << 8;
+
+    private static final VarHandle TRAVERSAL_STATE = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final Long2IntOpenHashMap idByPosition = new Long2IntOpenHashMap();
+    private final IntArrayList freeIds = new IntArrayList();
+
+    private int capacity;
+    private int highestId = NULL_ID;
+
+    // The section coordinates (x, y, z) of each section
+    private int[] positions = new int[0];
+
+    // The ids of the adjacent sections in each direction, or NULL_ID if there is no adjacent section
+    private int[] adjacent = new int[0];
+    private byte[] adjacentMask = new byte[0];
+
+    private long[] visibilityData = new long[0];
+    private long[] occluderData = new long[0];
+    private int[] flags = new int[0];
+
+    // The index of each section within its region, and the region itself
+    private byte[] localIndex = new byte[0];
+    private RenderRegion[] regions = new RenderRegion[0];
+
+    // The state of each section which is written by the occlusion culler. This packs the frame in which the section
+    // was last visited (upper 32 bits), the position of the section which discovered it within the search (24 bits),
+    // and the directions through which it was entered (lower 8 bits), so that it can be updated atomically.
+    private long[] traversalState = new long[0];
+
+    // The update which should be scheduled for the section, as the ordinal of the update type plus one, or zero if
+    // there is no update pending or a task is already running for the section
+    private byte[] pendingUpdates = new byte[0];
+    private RenderSection[] sections = new RenderSection[0];
+
+    public SectionGraph() {
+        this.idByPosition.defaultReturnValue(NULL_ID);
+        this.resize(INITIAL_CAPACITY);
+    }
+
+    public int add(RenderSection section) {
+        int id = this.allocateId();
+
+        this.positions[(id * 3) + 0] = section.getChunkX();
+        this.positions[(id * 3) + 1] = section.getChunkY();
+        this.positions[(id * 3) + 2] = section.getChunkZ();
+
+        this.localIndex[id] = (byte) section.getSectionIndex();
+        this.regions[id] = section.getRegion();
+        this.sections[id] = section;
+
+        this.traversalState[id] = packTraversalState(-1, 0, 0);
+
+        this.updateSection(id, section);
+        this.updatePendingUpdate(id, section);
+
+        this.idByPosition.put(SectionPos.asLong(section.getChunkX(), section.getChunkY(), section.getChunkZ()), id);
+
+        // Connect the section with each of its neighbors
+        this.adjacentMask[id] = 0;
+
+        for (int direction = 0; direction < GraphDirection.COUNT; direction++) {
+            int neighbor = this.getId(section.getChunkX() + GraphDirection.x(direction),
+                    section.getChunkY() + GraphDirection.y(direction),
+                    section.getChunkZ() + GraphDirection.z(direction));
+
+            this.adjacent[(id * GraphDirection.COUNT) + direction] = neighbor;
+
+            if (neighbor != NULL_ID) {
+                this.adjacentMask[id] |= (byte) GraphDirectionSet.of(direction);
+
+                int opposite = GraphDirection.opposite(direction);
+                this.adjacent[(neighbor * GraphDirection.COUNT) + opposite] = id;
+                this.adjacentMask[neighbor] |= (byte) GraphDirectionSet.of(opposite);
+            }
+        }
+
+        return id;
+    }
+
+    public void remove(RenderSection section) {
+        int id = this.idByPosition.remove(SectionPos.asLong(section.getChunkX(), section.getChunkY(), section.getChunkZ()));
+
+        if (id == NULL_ID) {
+            return;
+        }
+
+        for (int direction = 0; direction < GraphDirection.COUNT; direction++) {
+            int neighbor = this.adjacent[(id * GraphDirection.COUNT) + direction];
+
+            if (neighbor != NULL_ID) {
+                int opposite = GraphDirection.opposite(direction);
+                this.adjacent[(neighbor * GraphDirection.COUNT) + opposite] = NULL_ID;
+                this.adjacentMask[neighbor] &= (byte) ~GraphDirectionSet.of(opposite);
+            }
+
+            this.adjacent[(id * GraphDirection.COUNT) + direction] = NULL_ID;
+        }
+
+        this.adjacentMask[id] = 0;
+        this.visibilityData[id] = VisibilityEncoding.NULL;
+        this.occluderData[id] = OccluderEncoding.NONE;
+        this.flags[id] = 0;
+        this.pendingUpdates[id] = 0;
+        this.traversalState[id] = packTraversalState(-1, 0, 0);
+
+        this.regions[id] = null;
+        this.sections[id] = null;
+
+        this.freeIds.add(id);
+    }
+
+    /**
+     * Copies the render flags, visibility and occluder data of the section into the graph. This must be called whenever the
+     * section's info changes.
+     */
+    public void updateSection(RenderSection section) {
+        int id = this.getId(section);
+
+        if (id != NULL_ID) {
+            this.updateSection(id, section);
+        }
+    }
+
+    private void updateSection(int id, RenderSection section) {
+        this.flags[id] = section.getFlags();
+        this.visibilityData[id] = section.getVisibilityData();
+        this.occluderData[id] = section.getOccluderData();
+    }
+
+    /**
+     * Copies the pending update of the section into the graph. This must be called whenever the section's pending
+     * update or task changes.
+     */
+    public void updatePendingUpdate(RenderSection section) {
+        int id = this.getId(section);
+
+        if (id != NULL_ID) {
+            this.updatePendingUpdate(id, section);
+        }
+    }
+
+    private void updatePendingUpdate(int id, RenderSection section) {
+        ChunkUpdateType type = section.getPendingUpdate();
+
+        if (type != null && section.getTaskCancellationToken() == null) {
+            this.pendingUpdates[id] = (byte) (type.ordinal() + 1);
+        } else {
+            this.pendingUpdates[id] = 0;
+        }
+    }
+
+    private int allocateId() {
+        if (!this.freeIds.isEmpty()) {
+            return this.freeIds.popInt();
+        }
+
+        int id = ++this.highestId;
+
+        if (id >= this.capacity) {
+            this.resize(this.capacity * 2);
+        }
+
+        return id;
+    }
+
+    private void resize(int capacity) {
+        this.positions = Arrays.copyOf(this.positions, capacity * 3);
+
+        int prevCapacity = this.capacity;
+        this.adjacent = Arrays.copyOf(this.adjacent, capacity * GraphDirection.COUNT);
+        Arrays.fill(this.adjacent, prevCapacity * GraphDirection.COUNT, capacity * GraphDirection.COUNT, NULL_ID);
+
+        this.adjacentMask = Arrays.copyOf(this.adjacentMask, capacity);
+        this.visibilityData = Arrays.copyOf(this.visibilityData, capacity);
+        this.occluderData = Arrays.copyOf(this.occluderData, capacity);
+        this.flags = Arrays.copyOf(this.flags, capacity);
+        this.localIndex = Arrays.copyOf(this.localIndex, capacity);
+        this.regions = Arrays.copyOf(this.regions, capacity);
+        this.traversalState = Arrays.copyOf(this.traversalState, capacity);
+        this.pendingUpdates = Arrays.copyOf(this.pendingUpdates, capacity);
+        this.sections = Arrays.copyOf(this.sections, capacity);
+
+        this.capacity = capacity;
+    }
+
+    public int getId(int x, int y, int z) {
+        return this.idByPosition.get(SectionPos.asLong(x, y, z));
+    }
+
+    private int getId(RenderSection section) {
+        return this.getId(section.getChunkX(), section.getChunkY(), section.getChunkZ());
+    }
+
+    public int getChunkX(int id) {
+        return this.positions[(id * 3) + 0];
+    }
+
+    public int getChunkY(int id) {
+        return this.positions[(id * 3) + 1];
+    }
+
+    public int getChunkZ(int id) {
+        return this.positions[(id * 3) + 2];
+    }
+
+    public int getAdjacent(int id, int direction) {
+        return this.adjacent[(id * GraphDirection.COUNT) + direction];
+    }
+
+    public int getAdjacentMask(int id) {
+        return this.adjacentMask[id];
+    }
+
+    public long getVisibilityData(int id) {
+        return this.visibilityData[id];
+    }
+
+    public long getOccluderData(int id) {
+        return this.occluderData[id];
+    }
+
+    public int getFlags(int id) {
+        return this.flags[id];
+    }
+
+    public int getLocalIndex(int id) {
+        return Byte.toUnsignedInt(this.localIndex[id]);
+    }
+
+    public RenderRegion getRegion(int id) {
+        return this.regions[id];
+    }
+
+    public int getIncomingDirections(int id) {
+        return (int) (this.traversalState[id] & DIRECTIONS_MASK);
+    }
+
+    public void addIncomingDirections(int id, int directions) {
+        this.traversalState[id] |= directions;
+    }
+
+    public int getLastVisibleFrame(int id) {
+        return (int) (this.traversalState[id] >>> 32);
+    }
+
+    /**
+     * Marks the section as visited in the given frame, and clears the directions through which it was entered.
+     */
+    public void setLastVisibleFrame(int id, int frame) {
+        this.traversalState[id] = packTraversalState(frame, 0, 0);
+    }
+
+    /**
+     * Visits the section from a neighbor during a search which is split across multiple threads. The directions
+     * through which the section was entered are added atomically, and the discoverer with the lowest position in the
+     * search is recorded if the section was first visited in the given frame. Sections which were visited in the frame
+     * before any discoverer was recorded keep a discoverer of zero, and are never claimed again.
+     *
+     * @param discoverer The position of the neighbor within the search, which must be greater than zero
+     * @return True if the neighbor is now the first discoverer of the section
+     */
+    public boolean visitConcurrently(int id, int frame, int incoming, int discoverer) {
+        long prev, next;
+        boolean claimed;
+
+        do {
+            prev = (long) TRAVERSAL_STATE.getVolatile(this.traversalState, id);
+
+            if ((int) (prev >>> 32) != frame) {
+                next = packTraversalState(frame, discoverer, incoming);
+                claimed = true;
+            } else {
+                next = prev | incoming;
+                claimed = discoverer < getDiscoverer(prev);
+
+                if (claimed) {
+                    next = (next & ~DISCOVERER_MASK) | ((long) discoverer << 8);
+                }
+            }
+        } while (!TRAVERSAL_STATE.compareAndSet(this.traversalState, id, prev, next));
+
+        return claimed;
+    }
+
+    /**
+     * @return The position of the section which first discovered this section in a search which was split across
+     * multiple threads
+     */
+    public int getDiscoverer(int id) {
+        return getDiscoverer(this.traversalState[id]);
+    }
+
+    private static int getDiscoverer(long state) {
+        return (int) ((state & DISCOVERER_MASK) >>> 8);
+    }
+
+    private static long packTraversalState(int frame, int discoverer, int directions) {
+        return ((long) frame << 32) | ((long) discoverer << 8) | directions;
+    }
+
+    /**
+     * @return The update which should be scheduled for the section, or null if there is none
+     */
+    public @Nullable ChunkUpdateType getPendingUpdate(int id) {
+        int pending = this.pendingUpdates[id];
+
+        return pending != 0 ? UPDATE_TYPES[pending - 1] : null;
+    }
+
+    public RenderSection getSection(int id) {
+        return this.sections[id];
+    }
+}
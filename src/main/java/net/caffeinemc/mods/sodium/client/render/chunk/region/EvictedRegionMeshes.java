@@ -0,0 +1,126 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.region;
+
+import net.caffeinemc.mods.sodium.client.gl.buffer.GlMutableBuffer;
+import net.caffeinemc.mods.sodium.client.gl.sync.GlFence;
+import net.caffeinemc.mods.sodium.client.gl.util.VertexRange;
+import net.caffeinemc.mods.sodium.client.render.chunk.terrain.TerrainRenderPass;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The meshes of a region which have been evicted from device memory by the {@link RegionResidencyManager}. The vertex
+ * and index data of each section is kept in a compressed form, along with the vertex ranges which are needed to upload
+ * it again.
+ *
+ * <p>Meshes are first copied into a read-back buffer on the device, and are only read into system memory and
+ * compressed once the fence which follows the copy has been signalled. Until then, they are held as pending meshes
+ * which refer to ranges of that buffer.</p>
+ */
+public class EvictedRegionMeshes {
+    private final List<Mesh> meshes = new ArrayList<>();
+    private final List<PendingMesh> pendingMeshes = new ArrayList<>();
+
+    private @Nullable GlMutableBuffer readbackBuffer;
+    private @Nullable GlFence readbackFence;
+
+    void add(Mesh mesh) {
+        this.meshes.add(mesh);
+    }
+
+    void addPending(PendingMesh mesh) {
+        this.pendingMeshes.add(mesh);
+    }
+
+    void remove(int sectionIndex) {
+        this.meshes.removeIf(mesh -> mesh.sectionIndex() == sectionIndex);
+        this.pendingMeshes.removeIf(mesh -> mesh.sectionIndex() == sectionIndex);
+    }
+
+    boolean isEmpty() {
+        return this.meshes.isEmpty() && this.pendingMeshes.isEmpty();
+    }
+
+    void setReadback(GlMutableBuffer buffer, GlFence fence) {
+        this.readbackBuffer = buffer;
+        this.readbackFence = fence;
+    }
+
+    boolean isReadbackPending() {
+        return this.readbackBuffer != null;
+    }
+
+    @Nullable GlMutableBuffer getReadbackBuffer() {
+        return this.readbackBuffer;
+    }
+
+    @Nullable GlFence getReadbackFence() {
+        return this.readbackFence;
+    }
+
+    List<PendingMesh> getPendingMeshes() {
+        return this.pendingMeshes;
+    }
+
+    /**
+     * Clears the pending meshes and forgets the read-back buffer and fence, which must be deleted by the caller.
+     */
+    void clearReadback() {
+        this.pendingMeshes.clear();
+        this.readbackBuffer = null;
+        this.readbackFence = null;
+    }
+
+    List<Mesh> getMeshes() {
+        return this.meshes;
+    }
+
+    public long getCompressedSize() {
+        long size = 0;
+
+        for (var mesh : this.meshes) {
+            size += CompressedData.compressedLength(mesh.vertexData()) + CompressedData.compressedLength(mesh.indexData());
+        }
+
+        return size;
+    }
+
+    public long getUncompressedSize() {
+        long size = 0;
+
+        for (var mesh : this.meshes) {
+            size += CompressedData.length(mesh.vertexData()) + CompressedData.length(mesh.indexData());
+        }
+
+        for (var mesh : this.pendingMeshes) {
+            size += mesh.vertexLength() + mesh.indexLength();
+        }
+
+        return size;
+    }
+
+    record Mesh(TerrainRenderPass pass, int sectionIndex,
+                @Nullable VertexRange[] ranges, @Nullable CompressedData vertexData, @Nullable CompressedData indexData,
+                boolean shortIndices) {
+    }
+
+    /**
+     * A mesh whose data is still being copied into the read-back buffer. The offsets are in bytes within that buffer,
+     * and a length of zero means that the section has no data of that kind.
+     */
+    record PendingMesh(TerrainRenderPass pass, int sectionIndex, @Nullable VertexRange[] ranges,
+                       long vertexOffset, int vertexLength, long indexOffset, int indexLength,
+                       boolean shortIndices) {
+    }
+
+    record CompressedData(byte[] bytes, int length) {
+        static int length(@Nullable CompressedData data) {
+            return data != null ? data.length : 0;
+        }
+
+        static int compressedLength(@Nullable CompressedData data) {
+            return data != null ? data.bytes.length : 0;
+        }
+    }
+}
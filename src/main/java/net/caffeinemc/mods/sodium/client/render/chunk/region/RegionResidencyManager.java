@@ -0,0 +1,321 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.region;
+
+import it.unimi.dsi.fastutil.objects.Reference2LongMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ReferenceLinkedOpenHashMap;
+import net.caffeinemc.mods.sodium.client.gl.arena.GlBufferSegment;
+import net.caffeinemc.mods.sodium.client.gl.buffer.GlBufferUsage;
+import net.caffeinemc.mods.sodium.client.gl.buffer.GlMutableBuffer;
+import net.caffeinemc.mods.sodium.client.gl.device.CommandList;
+import net.caffeinemc.mods.sodium.client.gl.util.VertexRange;
+import net.caffeinemc.mods.sodium.client.render.chunk.terrain.DefaultTerrainRenderPasses;
+import net.caffeinemc.mods.sodium.client.render.chunk.terrain.TerrainRenderPass;
+import net.caffeinemc.mods.sodium.client.util.NativeBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps the device memory used by terrain geometry within a budget. When the budget is exceeded, the meshes of regions
+ * which have not been visible for some time are read back from the device and kept in compressed form in system memory
+ * instead. Once such a region becomes visible again, the region manager uploads its meshes through the staging buffer,
+ * which avoids rebuilding every section within it.
+ *
+ * <p>The read-back is asynchronous: evicted meshes are copied into a buffer on the device, and are only read into
+ * system memory and compressed on a later frame once a fence signals that the copy has completed.</p>
+ */
+class RegionResidencyManager {
+    // The number of frames a region must not have been used for before its meshes can be evicted
+    private static final int EVICTION_DELAY_FRAMES = 600;
+
+    // The number of bytes which can be read back from the device each frame when evicting regions
+    private static final int EVICTION_BYTES_PER_FRAME = 4 * 1024 * 1024;
+
+    private final long budget;
+
+    private final Reference2LongMap<RenderRegion> lastUsedFrame = new Reference2LongOpenHashMap<>();
+    private long frame;
+
+    // The evicted meshes of each region which are still being copied into a read-back buffer, in order of eviction
+    private final Reference2ReferenceLinkedOpenHashMap<RenderRegion, EvictedRegionMeshes> pendingReadbacks =
+            new Reference2ReferenceLinkedOpenHashMap<>();
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+
+    RegionResidencyManager(long budget) {
+        this.budget = budget;
+    }
+
+    void beginFrame() {
+        this.frame++;
+    }
+
+    /**
+     * Marks the region as being in use this frame, which prevents it from being evicted for a while.
+     */
+    void markUsed(RenderRegion region) {
+        this.lastUsedFrame.put(region, this.frame);
+    }
+
+    void onRegionDeleted(CommandList commandList, RenderRegion region) {
+        this.lastUsedFrame.removeLong(region);
+
+        var meshes = this.pendingReadbacks.remove(region);
+
+        if (meshes != null) {
+            deleteReadback(commandList, meshes);
+        }
+    }
+
+    /**
+     * Reads back and compresses the meshes of every region whose copy into a read-back buffer has completed.
+     */
+    void processReadbacks(CommandList commandList) {
+        var it = this.pendingReadbacks.values()
+                .iterator();
+
+        while (it.hasNext()) {
+            var meshes = it.next();
+
+            // Copies complete in the order they were submitted, so later read-backs cannot be ready either
+            if (!meshes.getReadbackFence().isCompleted()) {
+                break;
+            }
+
+            it.remove();
+            this.completeReadback(commandList, meshes);
+        }
+    }
+
+    /**
+     * Reads back and compresses the pending meshes of the region immediately, waiting for the copy to complete if
+     * necessary. This is needed when a region becomes visible again before its read-back has completed.
+     */
+    void finishReadback(CommandList commandList, RenderRegion region) {
+        var meshes = this.pendingReadbacks.remove(region);
+
+        if (meshes != null) {
+            this.completeReadback(commandList, meshes);
+        }
+    }
+
+    /**
+     * Evicts the meshes of the least recently used regions until the device memory used by geometry is within the
+     * budget, or until the number of bytes which can be read back this frame has been exhausted.
+     *
+     * @param usedBytes The number of bytes of device memory currently used by geometry
+     */
+    void evictInactive(CommandList commandList, Collection<RenderRegion> regions, long usedBytes) {
+        long excess = usedBytes - this.budget;
+
+        if (excess <= 0) {
+            return;
+        }
+
+        List<RenderRegion> candidates = new ArrayList<>();
+
+        for (RenderRegion region : regions) {
+            if (region.getResources() == null || region.isEvicted()) {
+                continue;
+            }
+
+            if (this.frame - this.lastUsedFrame.getLong(region) >= EVICTION_DELAY_FRAMES) {
+                candidates.add(region);
+            }
+        }
+
+        candidates.sort(Comparator.comparingLong(this.lastUsedFrame::getLong));
+
+        int readBackBudget = EVICTION_BYTES_PER_FRAME;
+
+        for (RenderRegion region : candidates) {
+            if (excess <= 0 || readBackBudget <= 0) {
+                break;
+            }
+
+            var meshes = this.evict(commandList, region);
+
+            if (!meshes.isEmpty()) {
+                region.setEvictedMeshes(meshes);
+                this.pendingReadbacks.put(region, meshes);
+            }
+
+            long evicted = meshes.getUncompressedSize();
+
+            excess -= evicted;
+            readBackBudget -= (int) Math.min(evicted, Integer.MAX_VALUE);
+        }
+    }
+
+    private EvictedRegionMeshes evict(CommandList commandList, RenderRegion region) {
+        var resources = region.getResources();
+        var meshes = new EvictedRegionMeshes();
+
+        int vertexStride = resources.getGeometryArena().getStride();
+        int indexStride = resources.getIndexArena().getStride();
+
+        // Lay out the meshes in the read-back buffer first, since its size must be known before anything is copied
+        long readbackSize = 0;
+
+        for (TerrainRenderPass pass : DefaultTerrainRenderPasses.ALL) {
+            var storage = region.getStorage(pass);
+
+            if (storage == null) {
+                continue;
+            }
+
+            for (int sectionIndex = 0; sectionIndex < RenderRegion.REGION_SIZE; sectionIndex++) {
+                GlBufferSegment vertexAllocation = storage.getVertexAllocation(sectionIndex);
+                GlBufferSegment indexAllocation = storage.getIndexAllocation(sectionIndex);
+
+                if (vertexAllocation == null && indexAllocation == null) {
+                    continue;
+                }
+
+                VertexRange[] ranges = null;
+                int vertexLength = 0;
+                int indexLength = 0;
+                boolean shortIndices = false;
+
+                if (vertexAllocation != null) {
+                    ranges = storage.getVertexRanges(sectionIndex);
+                    vertexLength = vertexAllocation.getLength() * vertexStride;
+                }
+
+                if (indexAllocation != null) {
+                    indexLength = indexAllocation.getLength() * indexStride;
+                    shortIndices = storage.hasShortIndices(sectionIndex);
+                }
+
+                meshes.addPending(new EvictedRegionMeshes.PendingMesh(pass, sectionIndex, ranges,
+                        readbackSize, vertexLength, readbackSize + vertexLength, indexLength, shortIndices));
+
+                readbackSize += vertexLength + indexLength;
+            }
+        }
+
+        if (meshes.isEmpty()) {
+            return meshes;
+        }
+
+        GlMutableBuffer readbackBuffer = commandList.createMutableBuffer();
+        commandList.allocateStorage(readbackBuffer, readbackSize, GlBufferUsage.STREAM_READ);
+
+        // The copies are ordered before any later use of the freed segments, so the storage can be released right away
+        for (var mesh : meshes.getPendingMeshes()) {
+            var storage = region.getStorage(mesh.pass());
+
+            if (mesh.vertexLength() > 0) {
+                GlBufferSegment segment = storage.getVertexAllocation(mesh.sectionIndex());
+                commandList.copyBufferSubData(resources.getGeometryBuffer(), readbackBuffer,
+                        (long) segment.getOffset() * vertexStride, mesh.vertexOffset(), mesh.vertexLength());
+            }
+
+            if (mesh.indexLength() > 0) {
+                GlBufferSegment segment = storage.getIndexAllocation(mesh.sectionIndex());
+                commandList.copyBufferSubData(resources.getIndexBuffer(), readbackBuffer,
+                        (long) segment.getOffset() * indexStride, mesh.indexOffset(), mesh.indexLength());
+            }
+
+            storage.removeData(mesh.sectionIndex());
+        }
+
+        meshes.setReadback(readbackBuffer, commandList.createFence());
+
+        return meshes;
+    }
+
+    private void completeReadback(CommandList commandList, EvictedRegionMeshes meshes) {
+        GlMutableBuffer readbackBuffer = meshes.getReadbackBuffer();
+        var buffer = new NativeBuffer((int) readbackBuffer.getSize());
+
+        try {
+            commandList.getBufferSubData(readbackBuffer, 0, buffer.getDirectBuffer());
+
+            ByteBuffer data = buffer.getDirectBuffer();
+
+            for (var mesh : meshes.getPendingMeshes()) {
+                EvictedRegionMeshes.CompressedData vertexData = null;
+                EvictedRegionMeshes.CompressedData indexData = null;
+
+                if (mesh.vertexLength() > 0) {
+                    vertexData = this.compress(data.slice((int) mesh.vertexOffset(), mesh.vertexLength()));
+                }
+
+                if (mesh.indexLength() > 0) {
+                    indexData = this.compress(data.slice((int) mesh.indexOffset(), mesh.indexLength()));
+                }
+
+                meshes.add(new EvictedRegionMeshes.Mesh(mesh.pass(), mesh.sectionIndex(), mesh.ranges(),
+                        vertexData, indexData, mesh.shortIndices()));
+            }
+        } finally {
+            buffer.free();
+            deleteReadback(commandList, meshes);
+        }
+    }
+
+    private static void deleteReadback(CommandList commandList, EvictedRegionMeshes meshes) {
+        commandList.deleteBuffer(meshes.getReadbackBuffer());
+        meshes.getReadbackFence().delete();
+        meshes.clearReadback();
+    }
+
+    private EvictedRegionMeshes.CompressedData compress(ByteBuffer data) {
+        int length = data.remaining();
+
+        this.deflater.reset();
+        this.deflater.setInput(data);
+        this.deflater.finish();
+
+        byte[] bytes = new byte[Math.max(64, length / 2)];
+        int size = 0;
+
+        while (!this.deflater.finished()) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+
+            size += this.deflater.deflate(bytes, size, bytes.length - size);
+        }
+
+        return new EvictedRegionMeshes.CompressedData(Arrays.copyOf(bytes, size), length);
+    }
+
+    NativeBuffer decompress(EvictedRegionMeshes.CompressedData data) {
+        var buffer = new NativeBuffer(data.length());
+
+        this.inflater.reset();
+        this.inflater.setInput(data.bytes());
+
+        try {
+            this.inflater.inflate(buffer.getDirectBuffer());
+        } catch (DataFormatException e) {
+            buffer.free();
+
+            throw new RuntimeException("Failed to decompress evicted mesh data", e);
+        }
+
+        return buffer;
+    }
+
+    void delete(CommandList commandList) {
+        for (var meshes : this.pendingReadbacks.values()) {
+            deleteReadback(commandList, meshes);
+        }
+
+        this.pendingReadbacks.clear();
+
+        this.deflater.end();
+        this.inflater.end();
+        this.lastUsedFrame.clear();
+    }
+}
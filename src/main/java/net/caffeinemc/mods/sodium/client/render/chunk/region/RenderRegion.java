@@ -11,10 +11,11 @@ import net.caffeinemc.mods.sodium.client.render.chunk.data.SectionRenderDataStor
 import net.caffeinemc.mods.sodium.client.render.chunk.lists.ChunkRenderList;
 import net.caffeinemc.mods.sodium.client.render.chunk.terrain.DefaultTerrainRenderPasses;
 import net.caffeinemc.mods.sodium.client.render.chunk.terrain.TerrainRenderPass;
-import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkMeshFormats;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
 import net.caffeinemc.mods.sodium.client.util.MathUtil;
 import net.minecraft.core.SectionPos;
 import org.apache.commons.lang3.Validate;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Arrays;
 import java.util.Map;
@@ -41,9 +42,14 @@ public class RenderRegion {
     }
 
     private final StagingBuffer stagingBuffer;
+    private final ChunkVertexType vertexType;
     private final int x, y, z;
 
-    private final ChunkRenderList renderList;
+    // The number of render lists of each region. While the render lists of one search are being drawn, the next search
+    // can fill the other lists, so that they can run at the same time.
+    public static final int RENDER_LIST_BUFFERS = 2;
+
+    private final ChunkRenderList[] renderLists = new ChunkRenderList[RENDER_LIST_BUFFERS];
 
     private final RenderSection[] sections = new RenderSection[RenderRegion.REGION_SIZE];
     private int sectionCount;
@@ -51,13 +57,40 @@ public class RenderRegion {
     private final Map<TerrainRenderPass, SectionRenderDataStorage> sectionRenderData = new Reference2ReferenceOpenHashMap<>();
     private DeviceResources resources;
 
-    public RenderRegion(int x, int y, int z, StagingBuffer stagingBuffer) {
+    // The meshes which were evicted from device memory, or null if the region's meshes are resident
+    private @Nullable EvictedRegionMeshes evictedMeshes;
+
+    // Whether the region allocates its meshes from one of the shared geometry heaps, which are assigned to it by the
+    // region manager, rather than owning its own resources
+    private final boolean usesSharedResources;
+
+    // The result of the occlusion culler's visibility test for the whole region, tagged with the search it belongs to
+    private long cullingState = Long.MIN_VALUE;
+
+    public RenderRegion(int x, int y, int z, StagingBuffer stagingBuffer, ChunkVertexType vertexType) {
+        this(x, y, z, stagingBuffer, vertexType, false);
+    }
+
+    public RenderRegion(int x, int y, int z, StagingBuffer stagingBuffer, ChunkVertexType vertexType, boolean usesSharedResources) {
         this.x = x;
         this.y = y;
         this.z = z;
 
         this.stagingBuffer = stagingBuffer;
-        this.renderList = new ChunkRenderList(this);
+        this.vertexType = vertexType;
+        this.usesSharedResources = usesSharedResources;
+
+        for (int i = 0; i < this.renderLists.length; i++) {
+            this.renderLists[i] = new ChunkRenderList(this);
+        }
+    }
+
+    public long getCullingState() {
+        return this.cullingState;
+    }
+
+    public void setCullingState(long cullingState) {
+        this.cullingState = cullingState;
     }
 
     public static long key(int x, int y, int z) {
@@ -94,9 +127,14 @@ public class RenderRegion {
         }
 
         this.sectionRenderData.clear();
+        this.evictedMeshes = null;
 
         if (this.resources != null) {
-            this.resources.delete(commandList);
+            // Shared resources outlive any single region, and are deleted by the region manager
+            if (!this.usesSharedResources) {
+                this.resources.delete(commandList);
+            }
+
             this.resources = null;
         }
 
@@ -115,7 +153,10 @@ public class RenderRegion {
         var storage = this.sectionRenderData.get(pass);
 
         if (storage == null) {
-            storage = new SectionRenderDataStorage(pass == DefaultTerrainRenderPasses.TRANSLUCENT);
+            int elementsPerVertex = this.vertexType.forRenderPass(pass).getVertexFormat().getStride()
+                    / this.vertexType.getVertexFormat().getStride();
+
+            storage = new SectionRenderDataStorage(pass == DefaultTerrainRenderPasses.TRANSLUCENT, elementsPerVertex);
             this.sectionRenderData.put(pass, storage);
         }
 
@@ -128,9 +169,7 @@ public class RenderRegion {
             this.resources.deleteIndexedTessellation(commandList);
         }
 
-        for (var storage : this.sectionRenderData.values()) {
-            storage.onBufferResized();
-        }
+        this.refreshMeshOffsets();
     }
 
     public void refreshIndexedTesselation(CommandList commandList) {
@@ -138,7 +177,28 @@ public class RenderRegion {
             this.resources.deleteIndexedTessellation(commandList);
         }
 
-        this.sectionRenderData.get(DefaultTerrainRenderPasses.TRANSLUCENT).onIndexBufferResized();
+        this.refreshIndexOffsets();
+    }
+
+    /**
+     * Updates the vertex offsets of every mesh after some of them have been moved within the same geometry buffer,
+     * which leaves the tessellations intact.
+     */
+    public void refreshMeshOffsets() {
+        for (var storage : this.sectionRenderData.values()) {
+            storage.onBufferResized();
+        }
+    }
+
+    /**
+     * Updates the index offsets of every mesh after some of them have been moved within the same index buffer.
+     */
+    public void refreshIndexOffsets() {
+        var storage = this.sectionRenderData.get(DefaultTerrainRenderPasses.TRANSLUCENT);
+
+        if (storage != null) {
+            storage.onIndexBufferResized();
+        }
     }
 
     public void addSection(RenderSection section) {
@@ -167,6 +227,10 @@ public class RenderRegion {
             storage.removeData(sectionIndex);
         }
 
+        if (this.evictedMeshes != null) {
+            this.evictedMeshes.remove(sectionIndex);
+        }
+
         this.sections[sectionIndex] = null;
         this.sectionCount--;
     }
@@ -181,21 +245,100 @@ public class RenderRegion {
 
     public DeviceResources createResources(CommandList commandList) {
         if (this.resources == null) {
-            this.resources = new DeviceResources(commandList, this.stagingBuffer);
+            if (this.usesSharedResources) {
+                throw new IllegalStateException("Shared resources must be assigned by the region manager");
+            }
+
+            this.resources = new DeviceResources(commandList, this.stagingBuffer, this.vertexType);
         }
 
         return this.resources;
     }
 
+    void setSharedResources(DeviceResources resources) {
+        if (!this.usesSharedResources || this.resources != null) {
+            throw new IllegalStateException("Region can't be assigned to a shared geometry heap");
+        }
+
+        this.resources = resources;
+    }
+
+    public boolean isEvicted() {
+        return this.evictedMeshes != null;
+    }
+
+    public @Nullable EvictedRegionMeshes getEvictedMeshes() {
+        return this.evictedMeshes;
+    }
+
+    void setEvictedMeshes(@Nullable EvictedRegionMeshes meshes) {
+        this.evictedMeshes = meshes;
+    }
+
+    public boolean usesSharedResources() {
+        return this.usesSharedResources;
+    }
+
     public void update(CommandList commandList) {
         if (this.resources != null && this.resources.shouldDelete()) {
-            this.resources.delete(commandList);
+            // An empty shared heap holds no meshes of this region either, so the region is assigned to a heap again
+            // once it has meshes to upload
+            if (!this.usesSharedResources) {
+                this.resources.delete(commandList);
+            }
+
             this.resources = null;
         }
     }
 
-    public ChunkRenderList getRenderList() {
-        return this.renderList;
+    /**
+     * Incrementally compacts the region's buffer arenas, and updates the offsets of any meshes which were moved.
+     *
+     * @param maxBytes The number of bytes which may be copied
+     * @return The number of bytes which were copied
+     */
+    public int defragment(CommandList commandList, int maxBytes) {
+        // Shared resources are defragmented by the region manager, since they hold the meshes of other regions too
+        if (this.resources == null || this.usesSharedResources) {
+            return 0;
+        }
+
+        var geometryArena = this.resources.getGeometryArena();
+        int copied = geometryArena.compact(commandList, maxBytes);
+
+        if (copied > 0) {
+            this.refreshTesselation(commandList);
+        }
+
+        if (copied < maxBytes) {
+            var indexArena = this.resources.getIndexArena();
+            int copiedIndices = indexArena.compact(commandList, maxBytes - copied);
+
+            if (copiedIndices > 0) {
+                this.refreshIndexedTesselation(commandList);
+            }
+
+            copied += copiedIndices;
+        }
+
+        return copied;
+    }
+
+    public ChunkRenderList getRenderList(int buffer) {
+        return this.renderLists[buffer];
+    }
+
+    /**
+     * @return True if the region was visited by the search which created the render lists of the given frame
+     */
+    public boolean isVisibleInFrame(int frame) {
+        for (var list : this.renderLists) {
+            if (list.getLastVisibleFrame() == frame) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     public static class DeviceResources {
@@ -212,14 +355,24 @@ public class RenderRegion {
          * two can't easily be combined because integers and vertices require different
          * amounts of data which makes the returned offsets incompatible.
          */
-        public DeviceResources(CommandList commandList, StagingBuffer stagingBuffer) {
-            int stride = ChunkMeshFormats.COMPACT.getVertexFormat().getStride();
+        public DeviceResources(CommandList commandList, StagingBuffer stagingBuffer, ChunkVertexType vertexType) {
+            this(commandList, stagingBuffer, vertexType, 1);
+        }
+
+        /**
+         * Creates resources which are sized for the given number of regions. When more than one region is used, the
+         * resources are one of the shared geometry heaps, and several regions sub-allocate their meshes from the same
+         * arenas. The offsets stored for each section are then relative to the start of the shared buffers rather
+         * than to the region.
+         */
+        public DeviceResources(CommandList commandList, StagingBuffer stagingBuffer, ChunkVertexType vertexType, int regionCount) {
+            int stride = vertexType.getVertexFormat().getStride();
 
             // the magic number 756 for the initial size is arbitrary, it was made up.
             var initialVertices = 756;
-            this.geometryArena = new GlBufferArena(commandList, REGION_SIZE * initialVertices, stride, stagingBuffer);
+            this.geometryArena = new GlBufferArena(commandList, regionCount * REGION_SIZE * initialVertices, stride, stagingBuffer);
             var initialIndices = (initialVertices / 4) * 6;
-            this.indexArena = new GlBufferArena(commandList, REGION_SIZE * initialIndices, Integer.BYTES, stagingBuffer);
+            this.indexArena = new GlBufferArena(commandList, regionCount * REGION_SIZE * initialIndices, Integer.BYTES, stagingBuffer);
         }
 
         public void updateTessellation(CommandList commandList, GlTessellation tessellation) {
@@ -3,11 +3,14 @@ package net.caffeinemc.mods.sodium.client.render.chunk.region;
 import it.unimi.dsi.fastutil.longs.Long2ReferenceOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Reference2ReferenceMap;
 import it.unimi.dsi.fastutil.objects.Reference2ReferenceOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import net.caffeinemc.mods.sodium.client.SodiumClientMod;
+import net.caffeinemc.mods.sodium.client.gl.arena.GlBufferArena;
 import net.caffeinemc.mods.sodium.client.gl.arena.PendingUpload;
 import net.caffeinemc.mods.sodium.client.gl.arena.staging.FallbackStagingBuffer;
 import net.caffeinemc.mods.sodium.client.gl.arena.staging.MappedStagingBuffer;
 import net.caffeinemc.mods.sodium.client.gl.arena.staging.StagingBuffer;
+import net.caffeinemc.mods.sodium.client.gl.buffer.GlBuffer;
 import net.caffeinemc.mods.sodium.client.gl.device.CommandList;
 import net.caffeinemc.mods.sodium.client.gl.device.RenderDevice;
 import net.caffeinemc.mods.sodium.client.render.chunk.RenderSection;
@@ -17,18 +20,54 @@ import net.caffeinemc.mods.sodium.client.render.chunk.compile.ChunkSortOutput;
 import net.caffeinemc.mods.sodium.client.render.chunk.data.BuiltSectionMeshParts;
 import net.caffeinemc.mods.sodium.client.render.chunk.terrain.DefaultTerrainRenderPasses;
 import net.caffeinemc.mods.sodium.client.render.chunk.terrain.TerrainRenderPass;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 
 public class RenderRegionManager {
+    // The number of bytes which can be moved within region buffers each frame to defragment them
+    private static final int DEFRAGMENTATION_BYTES_PER_FRAME = 4 * 1024 * 1024;
+
+    // The size of each shared geometry heap, in terms of how many regions the per-region arenas would hold. Most
+    // regions use much less than that, so each heap is usually shared by many more regions.
+    private static final int SHARED_HEAP_REGIONS = 4;
+
+    // The fraction of a shared geometry heap which may be used before no more regions are assigned to it. The rest is
+    // left for the regions which already use the heap, so that it rarely needs to grow.
+    private static final float SHARED_HEAP_FILL_LIMIT = 0.75f;
+
     private final Long2ReferenceOpenHashMap<RenderRegion> regions = new Long2ReferenceOpenHashMap<>();
 
     private final StagingBuffer stagingBuffer;
+    private final ChunkVertexType vertexType;
+
+    // The geometry heaps which regions are assigned to, or null if each region owns its own arenas. Once every heap is
+    // close to full, another one is added rather than growing an existing heap, which would copy all of its contents.
+    private final @Nullable List<RenderRegion.DeviceResources> sharedHeaps;
 
-    public RenderRegionManager(CommandList commandList) {
+    // Evicts the meshes of inactive regions when over the geometry memory budget, or null if there is no budget
+    private final @Nullable RegionResidencyManager residency;
+
+    public RenderRegionManager(CommandList commandList, ChunkVertexType vertexType) {
         this.stagingBuffer = createStagingBuffer(commandList);
+        this.vertexType = vertexType;
+
+        if (SodiumClientMod.options().advanced.useSharedGeometryHeap) {
+            this.sharedHeaps = new ArrayList<>();
+        } else {
+            this.sharedHeaps = null;
+        }
+
+        int budget = SodiumClientMod.options().advanced.geometryMemoryBudget;
+
+        if (budget > 0) {
+            this.residency = new RegionResidencyManager(budget * 1024L * 1024L);
+        } else {
+            this.residency = null;
+        }
     }
 
     public void update() {
@@ -38,6 +77,8 @@ public class RenderRegionManager {
             Iterator<RenderRegion> it = this.regions.values()
                     .iterator();
 
+            int defragmentationBudget = DEFRAGMENTATION_BYTES_PER_FRAME;
+
             while (it.hasNext()) {
                 RenderRegion region = it.next();
                 region.update(commandList);
@@ -45,8 +86,198 @@ public class RenderRegionManager {
                 if (region.isEmpty()) {
                     region.delete(commandList);
 
+                    if (this.residency != null) {
+                        this.residency.onRegionDeleted(commandList, region);
+                    }
+
                     it.remove();
+                } else if (defragmentationBudget > 0 && this.sharedHeaps == null) {
+                    defragmentationBudget -= region.defragment(commandList, defragmentationBudget);
+                }
+            }
+
+            if (this.sharedHeaps != null) {
+                this.updateSharedHeaps(commandList, defragmentationBudget);
+            }
+        }
+    }
+
+    private void updateSharedHeaps(CommandList commandList, int defragmentationBudget) {
+        // The regions have already let go of any heap which has become empty
+        this.sharedHeaps.removeIf(heap -> {
+            if (heap.shouldDelete()) {
+                heap.delete(commandList);
+                return true;
+            }
+
+            return false;
+        });
+
+        for (var heap : this.sharedHeaps) {
+            if (defragmentationBudget <= 0) {
+                break;
+            }
+
+            defragmentationBudget -= this.defragmentSharedHeap(commandList, heap, defragmentationBudget);
+        }
+    }
+
+    /**
+     * Incrementally compacts one of the shared geometry heaps. Only the regions whose meshes were moved need their
+     * offsets updated, and the tessellations of the heap only need to be re-created if its buffers were replaced.
+     *
+     * @return The number of bytes which were copied
+     */
+    private int defragmentSharedHeap(CommandList commandList, RenderRegion.DeviceResources heap, int maxBytes) {
+        var movedRegions = new ReferenceOpenHashSet<RenderRegion>();
+
+        GlBuffer geometryBuffer = heap.getGeometryBuffer();
+        int copied = heap.getGeometryArena()
+                .compact(commandList, maxBytes, segment -> movedRegions.add((RenderRegion) segment.getOwner()));
+
+        if (heap.getGeometryBuffer() != geometryBuffer) {
+            heap.deleteTessellation(commandList);
+            heap.deleteIndexedTessellation(commandList);
+        }
+
+        for (RenderRegion region : movedRegions) {
+            region.refreshMeshOffsets();
+        }
+
+        if (copied < maxBytes) {
+            movedRegions.clear();
+
+            GlBuffer indexBuffer = heap.getIndexBuffer();
+            copied += heap.getIndexArena()
+                    .compact(commandList, maxBytes - copied, segment -> movedRegions.add((RenderRegion) segment.getOwner()));
+
+            if (heap.getIndexBuffer() != indexBuffer) {
+                heap.deleteIndexedTessellation(commandList);
+            }
+
+            for (RenderRegion region : movedRegions) {
+                region.refreshIndexOffsets();
+            }
+        }
+
+        return copied;
+    }
+
+    /**
+     * Updates the mesh offsets and tessellations after the geometry buffer of the given region has been re-allocated.
+     * When the region uses a shared geometry heap, every region using the same heap is affected.
+     */
+    private void refreshTesselation(CommandList commandList, RenderRegion region) {
+        if (region.usesSharedResources()) {
+            for (RenderRegion other : this.regions.values()) {
+                if (other.getResources() == region.getResources()) {
+                    other.refreshTesselation(commandList);
+                }
+            }
+        } else {
+            region.refreshTesselation(commandList);
+        }
+    }
+
+    private void refreshIndexedTesselation(CommandList commandList, RenderRegion region) {
+        if (region.usesSharedResources()) {
+            for (RenderRegion other : this.regions.values()) {
+                if (other.getResources() == region.getResources()) {
+                    other.refreshIndexedTesselation(commandList);
+                }
+            }
+        } else {
+            region.refreshIndexedTesselation(commandList);
+        }
+    }
+
+    private RenderRegion.DeviceResources createResources(CommandList commandList, RenderRegion region) {
+        var resources = region.getResources();
+
+        if (resources != null || this.sharedHeaps == null) {
+            return region.createResources(commandList);
+        }
+
+        resources = this.findSharedHeap(commandList);
+        region.setSharedResources(resources);
+
+        return resources;
+    }
+
+    private RenderRegion.DeviceResources findSharedHeap(CommandList commandList) {
+        for (var heap : this.sharedHeaps) {
+            var arena = heap.getGeometryArena();
+
+            if (arena.getDeviceUsedMemory() < arena.getDeviceAllocatedMemory() * SHARED_HEAP_FILL_LIMIT) {
+                return heap;
+            }
+        }
+
+        var heap = new RenderRegion.DeviceResources(commandList, this.stagingBuffer, this.vertexType, SHARED_HEAP_REGIONS);
+        this.sharedHeaps.add(heap);
+
+        return heap;
+    }
+
+    /**
+     * Restores the evicted meshes of every region which is visible in the given frame, and then evicts the meshes of
+     * inactive regions if the geometry memory budget is exceeded.
+     */
+    public void updateResidency(CommandList commandList, int visibleFrame) {
+        if (this.residency == null) {
+            return;
+        }
+
+        this.residency.beginFrame();
+        this.residency.processReadbacks(commandList);
+
+        for (RenderRegion region : this.regions.values()) {
+            if (region.isVisibleInFrame(visibleFrame)) {
+                this.residency.markUsed(region);
+                this.restoreMeshes(commandList, region);
+            }
+        }
+
+        this.residency.evictInactive(commandList, this.regions.values(), this.getDeviceUsedMemory());
+    }
+
+    private void restoreMeshes(CommandList commandList, RenderRegion region) {
+        var evicted = region.getEvictedMeshes();
+
+        if (evicted == null) {
+            return;
+        }
+
+        this.residency.finishReadback(commandList, region);
+        region.setEvictedMeshes(null);
+
+        var uploads = new ArrayList<PendingSectionMeshUpload>();
+        var indexUploads = new ArrayList<PendingSectionIndexBufferUpload>();
+
+        try {
+            for (var mesh : evicted.getMeshes()) {
+                var section = region.getSection(mesh.sectionIndex());
+
+                if (mesh.vertexData() != null) {
+                    var meshData = new BuiltSectionMeshParts(this.residency.decompress(mesh.vertexData()), mesh.ranges());
+                    uploads.add(new PendingSectionMeshUpload(section, meshData, mesh.pass(),
+                            new PendingUpload(meshData.getVertexData())));
                 }
+
+                if (mesh.indexData() != null) {
+                    indexUploads.add(new PendingSectionIndexBufferUpload(section,
+                            new PendingUpload(this.residency.decompress(mesh.indexData())), mesh.shortIndices()));
+                }
+            }
+
+            this.uploadMeshes(commandList, region, uploads, indexUploads);
+        } finally {
+            for (var upload : uploads) {
+                upload.vertexUpload.getDataBuffer().free();
+            }
+
+            for (var upload : indexUploads) {
+                upload.indexBufferUpload.getDataBuffer().free();
             }
         }
     }
@@ -58,6 +289,12 @@ public class RenderRegionManager {
     }
 
     private void uploadResults(CommandList commandList, RenderRegion region, Collection<BuilderTaskOutput> results) {
+        if (this.residency != null) {
+            // The results may replace or re-use the meshes of evicted sections, so the region must be resident
+            this.residency.markUsed(region);
+            this.restoreMeshes(commandList, region);
+        }
+
         var uploads = new ArrayList<PendingSectionMeshUpload>();
         var indexUploads = new ArrayList<PendingSectionIndexBufferUpload>();
 
@@ -93,7 +330,8 @@ public class RenderRegionManager {
                     continue;
                 }
 
-                indexUploads.add(new PendingSectionIndexBufferUpload(result.render, new PendingUpload(buffer)));
+                indexUploads.add(new PendingSectionIndexBufferUpload(result.render, new PendingUpload(buffer),
+                        indexDataOutput.hasShortIndices()));
 
                 var storage = region.getStorage(DefaultTerrainRenderPasses.TRANSLUCENT);
                 if (storage != null) {
@@ -102,12 +340,17 @@ public class RenderRegionManager {
             }
         }
 
+        this.uploadMeshes(commandList, region, uploads, indexUploads);
+    }
+
+    private void uploadMeshes(CommandList commandList, RenderRegion region,
+                              List<PendingSectionMeshUpload> uploads, List<PendingSectionIndexBufferUpload> indexUploads) {
         // If we have nothing to upload, abort!
         if (uploads.isEmpty() && indexUploads.isEmpty()) {
             return;
         }
 
-        var resources = region.createResources(commandList);
+        var resources = this.createResources(commandList, region);
 
         if (!uploads.isEmpty()) {
             var arena = resources.getGeometryArena();
@@ -117,14 +360,16 @@ public class RenderRegionManager {
             // If any of the buffers changed, the tessellation will need to be updated
             // Once invalidated the tessellation will be re-created on the next attempted use
             if (bufferChanged) {
-                region.refreshTesselation(commandList);
+                this.refreshTesselation(commandList, region);
             }
 
             // Collect the upload results
             for (PendingSectionMeshUpload upload : uploads) {
+                var segment = upload.vertexUpload.getResult();
+                segment.setOwner(region);
+
                 var storage = region.createStorage(upload.pass);
-                storage.setVertexData(upload.section.getSectionIndex(),
-                        upload.vertexUpload.getResult(), upload.meshData.getVertexRanges());
+                storage.setVertexData(upload.section.getSectionIndex(), segment, upload.meshData.getVertexRanges());
             }
         }
 
@@ -134,12 +379,15 @@ public class RenderRegionManager {
                     .map(upload -> upload.indexBufferUpload));
 
             if (bufferChanged) {
-                region.refreshIndexedTesselation(commandList);
+                this.refreshIndexedTesselation(commandList, region);
             }
 
             for (PendingSectionIndexBufferUpload upload : indexUploads) {
+                var segment = upload.indexBufferUpload.getResult();
+                segment.setOwner(region);
+
                 var storage = region.createStorage(DefaultTerrainRenderPasses.TRANSLUCENT);
-                storage.setIndexData(upload.section.getSectionIndex(), upload.indexBufferUpload.getResult());
+                storage.setIndexData(upload.section.getSectionIndex(), segment, upload.shortIndices);
             }
         }
     }
@@ -161,6 +409,19 @@ public class RenderRegionManager {
         }
 
         this.regions.clear();
+
+        if (this.residency != null) {
+            this.residency.delete(commandList);
+        }
+
+        if (this.sharedHeaps != null) {
+            for (var heap : this.sharedHeaps) {
+                heap.delete(commandList);
+            }
+
+            this.sharedHeaps.clear();
+        }
+
         this.stagingBuffer.delete(commandList);
     }
 
@@ -168,6 +429,55 @@ public class RenderRegionManager {
         return this.regions.values();
     }
 
+    /**
+     * Returns every distinct geometry arena, which is either the arena of each shared geometry heap or of each region.
+     */
+    public List<GlBufferArena> getGeometryArenas() {
+        List<GlBufferArena> arenas = new ArrayList<>();
+
+        if (this.sharedHeaps != null) {
+            for (var heap : this.sharedHeaps) {
+                arenas.add(heap.getGeometryArena());
+            }
+
+            return arenas;
+        }
+
+        for (RenderRegion region : this.regions.values()) {
+            var resources = region.getResources();
+
+            if (resources != null) {
+                arenas.add(resources.getGeometryArena());
+            }
+        }
+
+        return arenas;
+    }
+
+    private long getDeviceUsedMemory() {
+        long used = 0;
+
+        if (this.sharedHeaps != null) {
+            for (var heap : this.sharedHeaps) {
+                used += heap.getGeometryArena().getDeviceUsedMemory();
+                used += heap.getIndexArena().getDeviceUsedMemory();
+            }
+
+            return used;
+        }
+
+        for (RenderRegion region : this.regions.values()) {
+            var resources = region.getResources();
+
+            if (resources != null) {
+                used += resources.getGeometryArena().getDeviceUsedMemory();
+                used += resources.getIndexArena().getDeviceUsedMemory();
+            }
+        }
+
+        return used;
+    }
+
     public StagingBuffer getStagingBuffer() {
         return this.stagingBuffer;
     }
@@ -184,7 +494,7 @@ public class RenderRegionManager {
         var instance = this.regions.get(key);
 
         if (instance == null) {
-            this.regions.put(key, instance = new RenderRegion(x, y, z, this.stagingBuffer));
+            this.regions.put(key, instance = new RenderRegion(x, y, z, this.stagingBuffer, this.vertexType, this.sharedHeaps != null));
         }
 
         return instance;
@@ -193,7 +503,7 @@ public class RenderRegionManager {
     private record PendingSectionMeshUpload(RenderSection section, BuiltSectionMeshParts meshData, TerrainRenderPass pass, PendingUpload vertexUpload) {
     }
 
-    private record PendingSectionIndexBufferUpload(RenderSection section, PendingUpload indexBufferUpload) {
+    private record PendingSectionIndexBufferUpload(RenderSection section, PendingUpload indexBufferUpload, boolean shortIndices) {
     }
 
 
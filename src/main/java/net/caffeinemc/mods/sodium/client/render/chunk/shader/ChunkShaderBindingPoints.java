@@ -8,4 +8,6 @@ public class ChunkShaderBindingPoints {
     public static final int ATTRIBUTE_LIGHT_MATERIAL_INDEX = 4;
 
     public static final int FRAG_COLOR = 0;
+
+    public static final int BUFFER_VERTEX_DATA = 0;
 }
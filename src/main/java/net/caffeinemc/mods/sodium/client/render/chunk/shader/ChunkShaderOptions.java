@@ -2,9 +2,13 @@ package net.caffeinemc.mods.sodium.client.render.chunk.shader;
 
 import net.caffeinemc.mods.sodium.client.gl.shader.ShaderConstants;
 import net.caffeinemc.mods.sodium.client.render.chunk.terrain.TerrainRenderPass;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkMeshFormats;
 import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
 
-public record ChunkShaderOptions(ChunkFogMode fog, TerrainRenderPass pass, ChunkVertexType vertexType) {
+/**
+ * @param quadTiling Whether the geometry may contain merged quads, which repeat their texture across the quad
+ */
+public record ChunkShaderOptions(ChunkFogMode fog, TerrainRenderPass pass, ChunkVertexType vertexType, boolean quadTiling) {
     public ShaderConstants constants() {
         ShaderConstants.Builder constants = ShaderConstants.builder();
         constants.addAll(this.fog.getDefines());
@@ -15,6 +19,16 @@ public record ChunkShaderOptions(ChunkFogMode fog, TerrainRenderPass pass, Chunk
 
         constants.add("USE_VERTEX_COMPRESSION"); // TODO: allow compact vertex format to be disabled
 
+        if (this.vertexType == ChunkMeshFormats.QUANTIZED) {
+            constants.add("USE_VERTEX_FORMAT_QUANTIZED");
+        } else if (this.vertexType == ChunkMeshFormats.QUAD_RECORDS) {
+            constants.add("USE_VERTEX_PULLING");
+        }
+
+        if (this.quadTiling) {
+            constants.add("USE_QUAD_TILING");
+        }
+
         return constants.build();
     }
 }
@@ -10,7 +10,7 @@ abstract class DynamicSorter extends Sorter {
     abstract void writeSort(CombinedCameraPos cameraPos, boolean initial);
 
     @Override
-    public void writeIndexBuffer(CombinedCameraPos cameraPos, boolean initial) {
+    void writeIndices(CombinedCameraPos cameraPos, boolean initial) {
         this.initBufferWithQuadLength(this.quadCount);
         this.writeSort(cameraPos, initial);
     }
@@ -7,6 +7,12 @@ import java.nio.IntBuffer;
 public interface PresentSortData {
     NativeBuffer getIndexBuffer();
 
+    /**
+     * Whether the index buffer contains 16-bit indices instead of 32-bit indices. In both cases, the indices of each
+     * facing are relative to the first vertex of that facing.
+     */
+    boolean hasShortIndices();
+
     default IntBuffer getIntBuffer() {
         return this.getIndexBuffer().getDirectBuffer().asIntBuffer();
     }
@@ -1,18 +1,60 @@
 package net.caffeinemc.mods.sodium.client.render.chunk.translucent_sorting.data;
 
 import net.caffeinemc.mods.sodium.client.util.NativeBuffer;
+import net.caffeinemc.mods.sodium.client.util.NativeMemoryTracker;
+import org.lwjgl.system.MemoryUtil;
 
 public abstract class Sorter implements PresentSortData {
     private NativeBuffer indexBuffer;
+    private boolean shortIndices;
 
-    public abstract void writeIndexBuffer(CombinedCameraPos cameraPos, boolean initial);
+    abstract void writeIndices(CombinedCameraPos cameraPos, boolean initial);
+
+    /**
+     * Writes the sorted indices into the index buffer. If the section is small enough, the indices are then narrowed
+     * to 16 bits, which halves the size of the buffer that needs to be uploaded and kept on the device.
+     */
+    public void writeIndexBuffer(CombinedCameraPos cameraPos, boolean initial) {
+        this.writeIndices(cameraPos, initial);
+        this.packIndexBuffer();
+    }
 
     @Override
     public NativeBuffer getIndexBuffer() {
         return this.indexBuffer;
     }
 
+    @Override
+    public boolean hasShortIndices() {
+        return this.shortIndices;
+    }
+
     void initBufferWithQuadLength(int quadCount) {
-        this.indexBuffer = new NativeBuffer(TranslucentData.quadCountToIndexBytes(quadCount));
+        this.indexBuffer = new NativeBuffer(TranslucentData.quadCountToIndexBytes(quadCount), NativeMemoryTracker.Tag.INDEX_DATA);
+        this.shortIndices = false;
+    }
+
+    private void packIndexBuffer() {
+        var intBuffer = this.indexBuffer;
+        int indexCount = intBuffer.getLength() / TranslucentData.BYTES_PER_INDEX;
+
+        if (!TranslucentData.canUseShortIndices(indexCount / TranslucentData.INDICES_PER_QUAD)) {
+            return;
+        }
+
+        var shortBuffer = new NativeBuffer(indexCount * TranslucentData.BYTES_PER_SHORT_INDEX, NativeMemoryTracker.Tag.INDEX_DATA);
+
+        long pSrc = MemoryUtil.memAddress(intBuffer.getDirectBuffer());
+        long pDst = MemoryUtil.memAddress(shortBuffer.getDirectBuffer());
+
+        for (int i = 0; i < indexCount; i++) {
+            MemoryUtil.memPutShort(pDst + ((long) i * TranslucentData.BYTES_PER_SHORT_INDEX),
+                    (short) MemoryUtil.memGetInt(pSrc + ((long) i * TranslucentData.BYTES_PER_INDEX)));
+        }
+
+        intBuffer.free();
+
+        this.indexBuffer = shortBuffer;
+        this.shortIndices = true;
     }
 }
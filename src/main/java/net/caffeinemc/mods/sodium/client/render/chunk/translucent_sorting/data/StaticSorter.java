@@ -6,7 +6,7 @@ class StaticSorter extends Sorter {
     }
 
     @Override
-    public void writeIndexBuffer(CombinedCameraPos cameraPos, boolean initial) {
+    void writeIndices(CombinedCameraPos cameraPos, boolean initial) {
         // no-op
     }
 }
@@ -19,6 +19,14 @@ public abstract class TranslucentData {
     public static final int VERTICES_PER_QUAD = 4;
     public static final int BYTES_PER_INDEX = 4;
     public static final int BYTES_PER_QUAD = INDICES_PER_QUAD * BYTES_PER_INDEX;
+    public static final int BYTES_PER_SHORT_INDEX = 2;
+
+    /**
+     * The number of quads up to which the vertex indexes fit into 16-bit indices. The vertex indexes of each facing
+     * start at zero and are offset by the facing's base vertex when drawing, so this bounds the quad count of the
+     * whole section conservatively.
+     */
+    public static final int MAX_SHORT_INDEX_QUADS = (1 << 16) / VERTICES_PER_QUAD;
 
     public final SectionPos sectionPos;
 
@@ -50,6 +58,10 @@ public abstract class TranslucentData {
         return indexBytes / BYTES_PER_QUAD;
     }
 
+    public static boolean canUseShortIndices(int quadCount) {
+        return quadCount <= MAX_SHORT_INDEX_QUADS;
+    }
+
     public static void writeQuadVertexIndexes(IntBuffer intBuffer, int quadIndex) {
         int vertexOffset = quadIndex * VERTICES_PER_QUAD;
 
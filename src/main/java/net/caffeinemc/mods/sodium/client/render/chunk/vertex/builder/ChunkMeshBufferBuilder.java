@@ -1,13 +1,17 @@
 package net.caffeinemc.mods.sodium.client.render.chunk.vertex.builder;
 
 import net.caffeinemc.mods.sodium.client.render.chunk.terrain.material.Material;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkQuadBatch;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexBatchEncoder;
 import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexEncoder;
 import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
+import net.caffeinemc.mods.sodium.client.util.NativeMemoryTracker;
 import org.lwjgl.system.MemoryUtil;
 import java.nio.ByteBuffer;
 
 public class ChunkMeshBufferBuilder {
     private final ChunkVertexEncoder encoder;
+    private final ChunkVertexBatchEncoder batchEncoder;
     private final int stride;
 
     private final int initialCapacity;
@@ -17,8 +21,14 @@ public class ChunkMeshBufferBuilder {
     private int capacity;
     private int sectionIndex;
 
+    // When quad merging is enabled, quads are collected here and only encoded once the mesh is finished
+    private final ChunkQuadBatch deferredQuads = new ChunkQuadBatch();
+    private final GreedyQuadMerger merger = new GreedyQuadMerger();
+    private boolean mergeQuads;
+
     public ChunkMeshBufferBuilder(ChunkVertexType vertexType, int initialCapacity) {
         this.encoder = vertexType.getEncoder();
+        this.batchEncoder = vertexType.getBatchEncoder();
         this.stride = vertexType.getVertexFormat().getStride();
 
         this.buffer = null;
@@ -28,14 +38,40 @@ public class ChunkMeshBufferBuilder {
     }
 
     public void push(ChunkVertexEncoder.Vertex[] vertices, Material material) {
-        var vertexCount = vertices.length;
+        if (this.mergeQuads) {
+            this.deferredQuads.add(vertices, material);
+            return;
+        }
+
+        // The encoder may use up to twice the space of the vertices for a quad (see ChunkVertexEncoder#write)
+        var maxVertexCount = vertices.length * 2;
+
+        if (this.count + maxVertexCount >= this.capacity) {
+            this.grow(this.stride * maxVertexCount);
+        }
+
+        long ptr = MemoryUtil.memAddress(this.buffer, this.count * this.stride);
+        long end = this.encoder.write(ptr, material, vertices, this.sectionIndex);
+
+        this.count += (int) ((end - ptr) / this.stride);
+    }
+
+    /**
+     * Encodes every quad in the batch with a single capacity check, rather than checking once per quad.
+     */
+    public void push(ChunkQuadBatch batch) {
+        var vertexCount = batch.getVertexCount();
+
+        if (vertexCount == 0) {
+            return;
+        }
 
         if (this.count + vertexCount >= this.capacity) {
-            this.grow(this.stride * vertexCount);
+            this.grow(vertexCount);
         }
 
-        this.encoder.write(MemoryUtil.memAddress(this.buffer, this.count * this.stride),
-                material, vertices, this.sectionIndex);
+        this.batchEncoder.write(MemoryUtil.memAddress(this.buffer, this.count * this.stride),
+                batch, this.sectionIndex);
 
         this.count += vertexCount;
     }
@@ -49,19 +85,57 @@ public class ChunkMeshBufferBuilder {
     }
 
     private void setBufferSize(int capacity) {
+        long oldBytes = this.buffer != null ? this.buffer.capacity() : 0;
+
         this.buffer = MemoryUtil.memRealloc(this.buffer, capacity * this.stride);
         this.capacity = capacity;
+
+        if (oldBytes == 0) {
+            NativeMemoryTracker.onAllocated(NativeMemoryTracker.Tag.MESH_BUILDING, this.buffer.capacity());
+        } else {
+            NativeMemoryTracker.onReallocated(NativeMemoryTracker.Tag.MESH_BUILDING, oldBytes, this.buffer.capacity());
+        }
     }
 
     public void start(int sectionIndex) {
+        this.start(sectionIndex, false);
+    }
+
+    /**
+     * Starts a new mesh for the given section. If {@code mergeQuads} is true, the quads pushed to this builder are
+     * held back until {@link #flush()} is called, at which point adjacent faces are merged with a
+     * {@link GreedyQuadMerger} before being encoded.
+     */
+    public void start(int sectionIndex, boolean mergeQuads) {
         this.count = 0;
         this.sectionIndex = sectionIndex;
+        this.mergeQuads = mergeQuads;
+        this.deferredQuads.clear();
 
         this.setBufferSize(this.initialCapacity);
     }
 
+    /**
+     * Merges and encodes any quads which were held back. This must be called before the contents of the buffer are
+     * read, and does nothing if quad merging is disabled or the quads have already been flushed.
+     */
+    public void flush() {
+        if (!this.mergeQuads) {
+            return;
+        }
+
+        this.mergeQuads = false;
+
+        if (!this.deferredQuads.isEmpty()) {
+            this.merger.merge(this.deferredQuads);
+            this.push(this.deferredQuads);
+            this.deferredQuads.clear();
+        }
+    }
+
     public void destroy() {
         if (this.buffer != null) {
+            NativeMemoryTracker.onFreed(NativeMemoryTracker.Tag.MESH_BUILDING, this.buffer.capacity());
             MemoryUtil.memFree(this.buffer);
         }
 
@@ -0,0 +1,468 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.vertex.builder;
+
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import net.caffeinemc.mods.sodium.client.render.chunk.terrain.material.parameters.MaterialParameters;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkQuadBatch;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.QuadTiling;
+import net.caffeinemc.mods.sodium.client.render.frapi.SpriteFinderCache;
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+
+import java.util.Arrays;
+
+/**
+ * Merges runs of adjacent, coplanar block faces in a batch into single quads which repeat their texture, so that
+ * distant terrain can be drawn with far fewer vertices.
+ *
+ * <p>Only quads which cover exactly one block face, have uniform color and light across their corners, and map a
+ * complete mip-mapped sprite with a power-of-two size are considered. Two quads are only merged if they are
+ * identical apart from their position. Runs are first formed along one axis of the face plane, and the remaining
+ * quads are then merged along the other axis. Since the repetition of a merged quad is described by a single
+ * {@link QuadTiling}, runs only ever extend along one axis and are limited to {@link QuadTiling#MAX_EXTENT} faces.
+ *
+ * <p>Instances are not thread-safe, and are meant to be owned by a single mesh buffer builder.
+ */
+public class GreedyQuadMerger {
+    private static final float POSITION_EPSILON = 1.0e-4f;
+    private static final float TEXTURE_EPSILON = 1.0e-2f;
+
+    // The texture coordinates of merged quads are snapped to the sprite bounds, which must be representable exactly
+    private static final float TEXTURE_MAX_VALUE = 1 << 15;
+
+    // Positions are biased so that they are always positive when packed into a sort key
+    private static final int POSITION_BIAS = 8;
+    private static final int POSITION_MASK = 0x3F;
+
+    private static final int NO_TILE = -1;
+
+    // The per-quad analysis results, indexed by the quad's position within the batch
+    private int[] cells = new int[0];
+    private int[] signatures = new int[0];
+    private int[] tiles = new int[0];
+    private TextureAtlasSprite[] sprites = new TextureAtlasSprite[0];
+    private boolean[] removed = new boolean[0];
+
+    private long[] keys = new long[0];
+
+    /**
+     * Merges the quads of the batch in-place. The order of the remaining quads is preserved.
+     */
+    public void merge(ChunkQuadBatch batch) {
+        int quadCount = batch.getQuadCount();
+
+        if (quadCount < 2 || SpriteFinderCache.forBlockAtlas() == null) {
+            return;
+        }
+
+        this.ensureCapacity(quadCount);
+
+        int candidates = 0;
+
+        for (int quad = 0; quad < quadCount; quad++) {
+            this.removed[quad] = false;
+
+            if (this.analyze(batch, quad)) {
+                candidates++;
+            } else {
+                this.sprites[quad] = null;
+            }
+        }
+
+        if (candidates < 2) {
+            Arrays.fill(this.sprites, 0, quadCount, null);
+            return;
+        }
+
+        this.sweep(batch, quadCount, 0);
+        this.sweep(batch, quadCount, 1);
+
+        int writeIndex = 0;
+
+        for (int quad = 0; quad < quadCount; quad++) {
+            if (this.removed[quad]) {
+                continue;
+            }
+
+            if (quad != writeIndex) {
+                batch.copyQuad(quad, writeIndex);
+            }
+
+            writeIndex++;
+        }
+
+        batch.truncate(writeIndex);
+
+        // Avoid keeping sprites reachable after a resource reload
+        Arrays.fill(this.sprites, 0, quadCount, null);
+    }
+
+    /**
+     * Merges runs of candidate quads along the given axis of their face plane (0 for the first axis, 1 for the
+     * second). Quads which were already merged or removed by an earlier sweep are skipped.
+     */
+    private void sweep(ChunkQuadBatch batch, int quadCount, int direction) {
+        final int[] tiling = batch.tiling();
+
+        int keyCount = 0;
+
+        for (int quad = 0; quad < quadCount; quad++) {
+            if (this.sprites[quad] == null || this.removed[quad] || tiling[quad] != QuadTiling.NONE) {
+                continue;
+            }
+
+            if (getTile(this.tiles[quad], direction) == NO_TILE) {
+                continue;
+            }
+
+            this.keys[keyCount++] = createKey(this.cells[quad], direction, quad);
+        }
+
+        if (keyCount < 2) {
+            return;
+        }
+
+        LongArrays.radixSort(this.keys, 0, keyCount);
+
+        int start = 0;
+
+        while (start < keyCount) {
+            long startKey = this.keys[start];
+            int startQuad = (int) startKey;
+
+            int end = start + 1;
+            int length = 1;
+
+            while (end < keyCount && length < QuadTiling.MAX_EXTENT) {
+                long key = this.keys[end];
+
+                if (getGroup(key) != getGroup(startKey) || getAlong(key) != getAlong(startKey) + length) {
+                    break;
+                }
+
+                if (!this.isCompatible(batch, startQuad, (int) key)) {
+                    break;
+                }
+
+                end++;
+                length++;
+            }
+
+            if (length > 1) {
+                for (int i = start + 1; i < end; i++) {
+                    this.removed[(int) this.keys[i]] = true;
+                }
+
+                this.extend(batch, startQuad, direction, length);
+            }
+
+            start = end;
+        }
+    }
+
+    /**
+     * Stretches the quad so that it covers {@code length} faces along the given direction, and marks its texture
+     * as repeating across that length.
+     */
+    private void extend(ChunkQuadBatch batch, int quad, int direction, int length) {
+        final int cell = this.cells[quad];
+        final int signature = this.signatures[quad];
+        final TextureAtlasSprite sprite = this.sprites[quad];
+
+        final int normalAxis = getNormalAxis(cell);
+        final int axis = (normalAxis + 1 + direction) % 3;
+
+        final float[] positions = switch (axis) {
+            case 0 -> batch.x();
+            case 1 -> batch.y();
+            default -> batch.z();
+        };
+
+        final float[] us = batch.u();
+        final float[] vs = batch.v();
+
+        for (int corner = 0; corner < 4; corner++) {
+            int idx = (quad * 4) + corner;
+            int bits = signature >>> (corner * 4);
+
+            if (((bits >>> direction) & 1) != 0) {
+                positions[idx] += length - 1;
+            }
+
+            // The shader derives the repeated region from the texture coordinates, so they must be exact
+            us[idx] = ((bits >>> 2) & 1) != 0 ? sprite.getU1() : sprite.getU0();
+            vs[idx] = ((bits >>> 3) & 1) != 0 ? sprite.getV1() : sprite.getV0();
+        }
+
+        int tile = getTile(this.tiles[quad], direction);
+
+        batch.setTiling(quad, QuadTiling.pack(tile & 1, length, tile >>> 1));
+    }
+
+    private boolean isCompatible(ChunkQuadBatch batch, int a, int b) {
+        return this.sprites[a] == this.sprites[b] &&
+                this.signatures[a] == this.signatures[b] &&
+                batch.materialBits()[a] == batch.materialBits()[b] &&
+                batch.color()[a * 4] == batch.color()[b * 4] &&
+                batch.light()[a * 4] == batch.light()[b * 4];
+    }
+
+    /**
+     * Determines whether the quad can be merged, and records its cell, corner signature, sprite and tiling.
+     */
+    private boolean analyze(ChunkQuadBatch batch, int quad) {
+        final int base = quad * 4;
+
+        if ((batch.materialBits()[quad] & (1 << MaterialParameters.OFFSET_USE_MIP)) == 0) {
+            return false;
+        }
+
+        final int[] colors = batch.color();
+        final int[] lights = batch.light();
+
+        for (int corner = 1; corner < 4; corner++) {
+            if (colors[base + corner] != colors[base] || lights[base + corner] != lights[base]) {
+                return false;
+            }
+        }
+
+        final float[][] positions = { batch.x(), batch.y(), batch.z() };
+
+        int normalAxis = -1;
+
+        for (int axis = 0; axis < 3; axis++) {
+            float[] p = positions[axis];
+
+            if (p[base] == p[base + 1] && p[base] == p[base + 2] && p[base] == p[base + 3]) {
+                if (normalAxis != -1) {
+                    return false;
+                }
+
+                normalAxis = axis;
+            }
+        }
+
+        if (normalAxis == -1) {
+            return false;
+        }
+
+        int plane = toInteger(positions[normalAxis][base]);
+
+        if (plane == Integer.MIN_VALUE) {
+            return false;
+        }
+
+        final float[] pa = positions[(normalAxis + 1) % 3];
+        final float[] pb = positions[(normalAxis + 2) % 3];
+
+        int minA = toInteger(Math.min(Math.min(pa[base], pa[base + 1]), Math.min(pa[base + 2], pa[base + 3])));
+        int minB = toInteger(Math.min(Math.min(pb[base], pb[base + 1]), Math.min(pb[base + 2], pb[base + 3])));
+
+        if (minA == Integer.MIN_VALUE || minB == Integer.MIN_VALUE) {
+            return false;
+        }
+
+        final float centerU = (batch.u()[base] + batch.u()[base + 1] + batch.u()[base + 2] + batch.u()[base + 3]) * 0.25f;
+        final float centerV = (batch.v()[base] + batch.v()[base + 1] + batch.v()[base + 2] + batch.v()[base + 3]) * 0.25f;
+
+        final TextureAtlasSprite sprite = SpriteFinderCache.forBlockAtlas().find(centerU, centerV);
+
+        if (sprite == null) {
+            return false;
+        }
+
+        final float toleranceU = (sprite.getU1() - sprite.getU0()) * TEXTURE_EPSILON;
+        final float toleranceV = (sprite.getV1() - sprite.getV0()) * TEXTURE_EPSILON;
+
+        // Each corner is described by which side of the face it lies on along both plane axes, and which side of
+        // the sprite its texture coordinates lie on
+        int signature = 0;
+        int coverage = 0;
+
+        int sidesA = 0, sidesB = 0, sidesU = 0, sidesV = 0;
+
+        for (int corner = 0; corner < 4; corner++) {
+            int idx = base + corner;
+
+            int sideA = getSide(pa[idx], minA, POSITION_EPSILON);
+            int sideB = getSide(pb[idx], minB, POSITION_EPSILON);
+            int sideU = getSide(batch.u()[idx], sprite.getU0(), sprite.getU1(), toleranceU);
+            int sideV = getSide(batch.v()[idx], sprite.getV0(), sprite.getV1(), toleranceV);
+
+            if ((sideA | sideB | sideU | sideV) < 0) {
+                return false;
+            }
+
+            coverage |= 1 << (sideA | (sideB << 1));
+            signature |= (sideA | (sideB << 1) | (sideU << 2) | (sideV << 3)) << (corner * 4);
+
+            sidesA |= sideA << corner;
+            sidesB |= sideB << corner;
+            sidesU |= sideU << corner;
+            sidesV |= sideV << corner;
+        }
+
+        // The corners must span the entire face
+        if (coverage != 0b1111) {
+            return false;
+        }
+
+        // The texture must not be sheared, so each texture axis has to follow exactly one axis of the face
+        int tileA, tileB;
+
+        if (isSameAxis(sidesU, sidesA) && isSameAxis(sidesV, sidesB)) {
+            tileA = getTileForAxis(QuadTiling.AXIS_U, sprite.getU0(), sprite.getU1());
+            tileB = getTileForAxis(QuadTiling.AXIS_V, sprite.getV0(), sprite.getV1());
+        } else if (isSameAxis(sidesU, sidesB) && isSameAxis(sidesV, sidesA)) {
+            tileA = getTileForAxis(QuadTiling.AXIS_V, sprite.getV0(), sprite.getV1());
+            tileB = getTileForAxis(QuadTiling.AXIS_U, sprite.getU0(), sprite.getU1());
+        } else {
+            return false;
+        }
+
+        if (tileA == NO_TILE && tileB == NO_TILE) {
+            return false;
+        }
+
+        // Distinguishes faces which share a plane but point in opposite directions
+        int winding = getWinding(pa, pb, base) ? 1 : 0;
+
+        this.cells[quad] = packCell(normalAxis, winding, plane, minA, minB);
+        this.signatures[quad] = signature;
+        this.tiles[quad] = (tileA & 0xFFFF) | (tileB << 16);
+        this.sprites[quad] = sprite;
+
+        return true;
+    }
+
+    private static boolean getWinding(float[] pa, float[] pb, int base) {
+        float a1 = pa[base + 1] - pa[base], b1 = pb[base + 1] - pb[base];
+        float a2 = pa[base + 2] - pa[base], b2 = pb[base + 2] - pb[base];
+
+        return ((a1 * b2) - (b1 * a2)) > 0.0f;
+    }
+
+    private static boolean isSameAxis(int texSides, int posSides) {
+        return texSides == posSides || texSides == (~posSides & 0b1111);
+    }
+
+    private static int getTileForAxis(int axis, float min, float max) {
+        float size = max - min;
+
+        if (size <= 0.0f) {
+            return NO_TILE;
+        }
+
+        int exponent = Math.round((float) -(Math.log(size) / Math.log(2.0)));
+
+        if (exponent < QuadTiling.MIN_SIZE_EXPONENT || exponent > QuadTiling.MAX_SIZE_EXPONENT) {
+            return NO_TILE;
+        }
+
+        if (Math.abs(size - Math.scalb(1.0f, -exponent)) > size * 1.0e-3f) {
+            return NO_TILE;
+        }
+
+        if (!isRepresentable(min) || !isRepresentable(max)) {
+            return NO_TILE;
+        }
+
+        return axis | (exponent << 1);
+    }
+
+    private static boolean isRepresentable(float coord) {
+        float scaled = coord * TEXTURE_MAX_VALUE;
+
+        return Math.abs(scaled - Math.round(scaled)) < 1.0e-3f;
+    }
+
+    private static int getTile(int tiles, int direction) {
+        int tile = (tiles >>> (direction * 16)) & 0xFFFF;
+
+        return tile == 0xFFFF ? NO_TILE : tile;
+    }
+
+    private static int getSide(float value, int min, float epsilon) {
+        if (Math.abs(value - min) < epsilon) {
+            return 0;
+        } else if (Math.abs(value - (min + 1)) < epsilon) {
+            return 1;
+        }
+
+        return -1;
+    }
+
+    private static int getSide(float value, float min, float max, float epsilon) {
+        if (Math.abs(value - min) < epsilon) {
+            return 0;
+        } else if (Math.abs(value - max) < epsilon) {
+            return 1;
+        }
+
+        return -1;
+    }
+
+    private static int toInteger(float value) {
+        int rounded = Math.round(value);
+
+        if (Math.abs(value - rounded) > POSITION_EPSILON) {
+            return Integer.MIN_VALUE;
+        }
+
+        if (rounded + POSITION_BIAS < 0 || rounded + POSITION_BIAS > POSITION_MASK) {
+            return Integer.MIN_VALUE;
+        }
+
+        return rounded;
+    }
+
+    // cell layout: normal axis (2 bits), winding (1 bit), plane (6 bits), first axis (6 bits), second axis (6 bits)
+    private static int packCell(int normalAxis, int winding, int plane, int a, int b) {
+        return (normalAxis << 0) |
+                (winding << 2) |
+                ((plane + POSITION_BIAS) << 3) |
+                ((a + POSITION_BIAS) << 9) |
+                ((b + POSITION_BIAS) << 15);
+    }
+
+    private static int getNormalAxis(int cell) {
+        return cell & 0x3;
+    }
+
+    // key layout: quads which can form a run share a group, and are sorted by their position along the run
+    private static long createKey(int cell, int direction, int quad) {
+        int group = cell & 0x1FF;
+        int along, across;
+
+        if (direction == 0) {
+            along = (cell >>> 9) & POSITION_MASK;
+            across = (cell >>> 15) & POSITION_MASK;
+        } else {
+            along = (cell >>> 15) & POSITION_MASK;
+            across = (cell >>> 9) & POSITION_MASK;
+        }
+
+        return ((long) ((group << 6) | across) << 38) | ((long) along << 32) | (quad & 0xFFFFFFFFL);
+    }
+
+    private static long getGroup(long key) {
+        return key >>> 38;
+    }
+
+    private static int getAlong(long key) {
+        return (int) (key >>> 32) & POSITION_MASK;
+    }
+
+    private void ensureCapacity(int quadCount) {
+        if (this.cells.length >= quadCount) {
+            return;
+        }
+
+        int capacity = Math.max(quadCount, this.cells.length * 2);
+
+        this.cells = new int[capacity];
+        this.signatures = new int[capacity];
+        this.tiles = new int[capacity];
+        this.sprites = new TextureAtlasSprite[capacity];
+        this.removed = new boolean[capacity];
+        this.keys = new long[capacity];
+    }
+}
@@ -1,7 +1,16 @@
 package net.caffeinemc.mods.sodium.client.render.chunk.vertex.format;
 
+import net.caffeinemc.mods.sodium.client.SodiumClientMod;
 import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.impl.CompactChunkVertex;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.impl.QuadRecordChunkVertex;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.impl.QuantizedChunkVertex;
 
 public class ChunkMeshFormats {
     public static final ChunkVertexType COMPACT = new CompactChunkVertex();
+    public static final ChunkVertexType QUANTIZED = new QuantizedChunkVertex();
+    public static final ChunkVertexType QUAD_RECORDS = new QuadRecordChunkVertex();
+
+    public static ChunkVertexType getPreferredFormat() {
+        return SodiumClientMod.options().advanced.useQuantizedVertexFormat ? QUANTIZED : COMPACT;
+    }
 }
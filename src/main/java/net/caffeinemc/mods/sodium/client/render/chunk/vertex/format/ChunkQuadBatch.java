@@ -0,0 +1,210 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.vertex.format;
+
+import net.caffeinemc.mods.sodium.client.render.chunk.terrain.material.Material;
+
+import java.util.Arrays;
+
+/**
+ * Stores the attributes of many quads as a structure of primitive arrays, so that they can be encoded into a vertex
+ * buffer in a single pass with {@link ChunkVertexBatchEncoder}. Each attribute array holds four consecutive entries
+ * per quad, and the material bits and texture tiling are stored once per quad.
+ */
+public class ChunkQuadBatch {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private float[] x, y, z;
+    private float[] u, v;
+    private int[] color;
+    private int[] light;
+    private int[] materialBits;
+    private int[] tiling;
+
+    private int quadCount;
+
+    public ChunkQuadBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ChunkQuadBatch(int initialQuadCapacity) {
+        this.allocate(Math.max(1, initialQuadCapacity));
+    }
+
+    private void allocate(int quadCapacity) {
+        int vertexCapacity = quadCapacity * 4;
+
+        this.x = new float[vertexCapacity];
+        this.y = new float[vertexCapacity];
+        this.z = new float[vertexCapacity];
+        this.u = new float[vertexCapacity];
+        this.v = new float[vertexCapacity];
+        this.color = new int[vertexCapacity];
+        this.light = new int[vertexCapacity];
+        this.materialBits = new int[quadCapacity];
+        this.tiling = new int[quadCapacity];
+    }
+
+    private void ensureCapacity(int quadCount) {
+        if (quadCount <= this.materialBits.length) {
+            return;
+        }
+
+        int quadCapacity = Math.max(this.materialBits.length * 2, quadCount);
+        int vertexCapacity = quadCapacity * 4;
+
+        this.x = Arrays.copyOf(this.x, vertexCapacity);
+        this.y = Arrays.copyOf(this.y, vertexCapacity);
+        this.z = Arrays.copyOf(this.z, vertexCapacity);
+        this.u = Arrays.copyOf(this.u, vertexCapacity);
+        this.v = Arrays.copyOf(this.v, vertexCapacity);
+        this.color = Arrays.copyOf(this.color, vertexCapacity);
+        this.light = Arrays.copyOf(this.light, vertexCapacity);
+        this.materialBits = Arrays.copyOf(this.materialBits, quadCapacity);
+        this.tiling = Arrays.copyOf(this.tiling, quadCapacity);
+    }
+
+    /**
+     * Appends a quad to the batch by copying the attributes out of the given vertices.
+     */
+    public void add(ChunkVertexEncoder.Vertex[] vertices, Material material) {
+        int quad = this.quadCount;
+
+        this.ensureCapacity(quad + 1);
+
+        int base = quad * 4;
+
+        for (int i = 0; i < 4; i++) {
+            var vertex = vertices[i];
+            int idx = base + i;
+
+            this.x[idx] = vertex.x;
+            this.y[idx] = vertex.y;
+            this.z[idx] = vertex.z;
+            this.u[idx] = vertex.u;
+            this.v[idx] = vertex.v;
+            this.color[idx] = vertex.color;
+            this.light[idx] = vertex.light;
+        }
+
+        this.materialBits[quad] = material.bits();
+        this.tiling[quad] = QuadTiling.NONE;
+        this.quadCount = quad + 1;
+    }
+
+    /**
+     * Sets the attributes of a single vertex. The quad must have been reserved with {@link #reserve(int)} beforehand.
+     */
+    public void setVertex(int quad, int corner, float x, float y, float z, int color, float u, float v, int light) {
+        int idx = (quad * 4) + corner;
+
+        this.x[idx] = x;
+        this.y[idx] = y;
+        this.z[idx] = z;
+        this.color[idx] = color;
+        this.u[idx] = u;
+        this.v[idx] = v;
+        this.light[idx] = light;
+    }
+
+    public void setMaterial(int quad, Material material) {
+        this.materialBits[quad] = material.bits();
+    }
+
+    /**
+     * Sets the packed texture tiling of a quad, as created by {@link QuadTiling#pack(int, int, int)}.
+     */
+    public void setTiling(int quad, int tiling) {
+        this.tiling[quad] = tiling;
+    }
+
+    /**
+     * Copies all attributes of the quad at index {@code src} over the quad at index {@code dst}.
+     */
+    public void copyQuad(int src, int dst) {
+        System.arraycopy(this.x, src * 4, this.x, dst * 4, 4);
+        System.arraycopy(this.y, src * 4, this.y, dst * 4, 4);
+        System.arraycopy(this.z, src * 4, this.z, dst * 4, 4);
+        System.arraycopy(this.u, src * 4, this.u, dst * 4, 4);
+        System.arraycopy(this.v, src * 4, this.v, dst * 4, 4);
+        System.arraycopy(this.color, src * 4, this.color, dst * 4, 4);
+        System.arraycopy(this.light, src * 4, this.light, dst * 4, 4);
+
+        this.materialBits[dst] = this.materialBits[src];
+        this.tiling[dst] = this.tiling[src];
+    }
+
+    /**
+     * Discards every quad past the given count.
+     */
+    public void truncate(int quadCount) {
+        if (quadCount > this.quadCount) {
+            throw new IllegalArgumentException("Cannot truncate to a larger size");
+        }
+
+        this.quadCount = quadCount;
+    }
+
+    /**
+     * Reserves space for the given number of quads at the end of the batch and returns the index of the first one.
+     */
+    public int reserve(int quads) {
+        int first = this.quadCount;
+
+        this.ensureCapacity(first + quads);
+        Arrays.fill(this.tiling, first, first + quads, QuadTiling.NONE);
+        this.quadCount = first + quads;
+
+        return first;
+    }
+
+    public void clear() {
+        this.quadCount = 0;
+    }
+
+    public boolean isEmpty() {
+        return this.quadCount == 0;
+    }
+
+    public int getQuadCount() {
+        return this.quadCount;
+    }
+
+    public int getVertexCount() {
+        return this.quadCount * 4;
+    }
+
+    public float[] x() {
+        return this.x;
+    }
+
+    public float[] y() {
+        return this.y;
+    }
+
+    public float[] z() {
+        return this.z;
+    }
+
+    public float[] u() {
+        return this.u;
+    }
+
+    public float[] v() {
+        return this.v;
+    }
+
+    public int[] color() {
+        return this.color;
+    }
+
+    public int[] light() {
+        return this.light;
+    }
+
+    public int[] materialBits() {
+        return this.materialBits;
+    }
+
+    public int[] tiling() {
+        return this.tiling;
+    }
+}
@@ -0,0 +1,11 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.vertex.format;
+
+public interface ChunkVertexBatchEncoder {
+    /**
+     * Encodes every quad in the batch into memory starting at {@code ptr}. The caller is responsible for ensuring
+     * that at least {@code batch.getVertexCount() * stride} bytes are writable.
+     *
+     * @return the pointer just past the last vertex that was written
+     */
+    long write(long ptr, ChunkQuadBatch batch, int sectionIndex);
+}
@@ -3,6 +3,12 @@ package net.caffeinemc.mods.sodium.client.render.chunk.vertex.format;
 import net.caffeinemc.mods.sodium.client.render.chunk.terrain.material.Material;
 
 public interface ChunkVertexEncoder {
+    /**
+     * Encodes the quad into memory starting at {@code ptr}. Most formats write exactly four vertices, but a format may
+     * use up to twice that space for quads which it cannot represent compactly.
+     *
+     * @return the pointer just past the last byte that was written
+     */
     long write(long ptr, Material material, Vertex[] vertices, int sectionIndex);
 
     class Vertex {
@@ -1,9 +1,21 @@
 package net.caffeinemc.mods.sodium.client.render.chunk.vertex.format;
 
 import net.caffeinemc.mods.sodium.client.gl.attribute.GlVertexFormat;
+import net.caffeinemc.mods.sodium.client.render.chunk.terrain.TerrainRenderPass;
 
 public interface ChunkVertexType {
     GlVertexFormat<ChunkMeshAttribute> getVertexFormat();
 
     ChunkVertexEncoder getEncoder();
+
+    ChunkVertexBatchEncoder getBatchEncoder();
+
+    /**
+     * Returns the vertex type which encodes the geometry of the given render pass. The geometry of every pass is
+     * stored in the same buffer, whose stride is that of this vertex type, so the stride of the returned type must be
+     * a multiple of it.
+     */
+    default ChunkVertexType forRenderPass(TerrainRenderPass pass) {
+        return this;
+    }
 }
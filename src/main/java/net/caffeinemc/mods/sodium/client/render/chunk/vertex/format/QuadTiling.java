@@ -0,0 +1,42 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.vertex.format;
+
+/**
+ * Describes how the texture of a merged quad repeats. A merged quad keeps the texture coordinates of a single
+ * block face, and the shader repeats the sprite {@code extent} times along one texture axis.
+ *
+ * <pre>
+ *   bit 0:    texture axis which repeats (0 = u, 1 = v)
+ *   bits 1-4: number of repetitions, minus one
+ *   bits 5-8: size of the sprite along the repeating axis, as an exponent of two (size = 2^-(value + 1))
+ * </pre>
+ *
+ * A value of zero describes a quad which does not repeat its texture.
+ */
+public class QuadTiling {
+    public static final int NONE = 0;
+
+    public static final int AXIS_U = 0;
+    public static final int AXIS_V = 1;
+
+    public static final int MAX_EXTENT = 16;
+    public static final int MIN_SIZE_EXPONENT = 1;
+    public static final int MAX_SIZE_EXPONENT = 16;
+
+    public static int pack(int axis, int extent, int sizeExponent) {
+        return ((axis & 0x1) << 0) |
+                (((extent - 1) & 0xF) << 1) |
+                (((sizeExponent - 1) & 0xF) << 5);
+    }
+
+    public static int axis(int tiling) {
+        return (tiling >>> 0) & 0x1;
+    }
+
+    public static int extent(int tiling) {
+        return ((tiling >>> 1) & 0xF) + 1;
+    }
+
+    public static int sizeExponent(int tiling) {
+        return ((tiling >>> 5) & 0xF) + 1;
+    }
+}
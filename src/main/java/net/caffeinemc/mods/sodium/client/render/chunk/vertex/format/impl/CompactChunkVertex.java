@@ -3,6 +3,7 @@ package net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.impl;
 import net.caffeinemc.mods.sodium.client.gl.attribute.GlVertexAttributeFormat;
 import net.caffeinemc.mods.sodium.client.gl.attribute.GlVertexFormat;
 import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkMeshAttribute;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexBatchEncoder;
 import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexEncoder;
 import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
 import net.minecraft.util.Mth;
@@ -70,6 +71,55 @@ public class CompactChunkVertex implements ChunkVertexType {
         };
     }
 
+    @Override
+    public ChunkVertexBatchEncoder getBatchEncoder() {
+        return (ptr, batch, section) -> {
+            final float[] xs = batch.x(), ys = batch.y(), zs = batch.z();
+            final float[] us = batch.u(), vs = batch.v();
+            final int[] colors = batch.color(), lights = batch.light();
+            final int[] materials = batch.materialBits();
+            final int[] tilings = batch.tiling();
+
+            final int quadCount = batch.getQuadCount();
+
+            for (int quad = 0; quad < quadCount; quad++) {
+                final int base = quad * 4;
+
+                // Calculate the center point of the texture region which is mapped to the quad
+                final float texCentroidU = (us[base] + us[base + 1] + us[base + 2] + us[base + 3]) * (1.0f / 4.0f);
+                final float texCentroidV = (vs[base] + vs[base + 1] + vs[base + 2] + vs[base + 3]) * (1.0f / 4.0f);
+
+                // The material and section index are constant across the quad, so only the light needs to be merged.
+                // The texture tiling of merged quads is stored in the unused upper bits of the material, and in the
+                // two-bit components of the position attributes.
+                final int tiling = tilings[quad];
+                final int data = ((materials[quad] & 0x7) << 16) | ((tiling & 0x1F) << 19) | ((section & 0xFF) << 24);
+
+                final int tilingHi = ((tiling >>> 5) & 0x3) << 30;
+                final int tilingLo = ((tiling >>> 7) & 0x3) << 30;
+
+                for (int idx = base; idx < base + 4; idx++) {
+                    int x = encodePosition(xs[idx]);
+                    int y = encodePosition(ys[idx]);
+                    int z = encodePosition(zs[idx]);
+
+                    int u = encodeTexture(texCentroidU, us[idx]);
+                    int v = encodeTexture(texCentroidV, vs[idx]);
+
+                    MemoryUtil.memPutInt(ptr +  0L, packPositionHi(x, y, z) | tilingHi);
+                    MemoryUtil.memPutInt(ptr +  4L, packPositionLo(x, y, z) | tilingLo);
+                    MemoryUtil.memPutInt(ptr +  8L, colors[idx]);
+                    MemoryUtil.memPutInt(ptr + 12L, packTexture(u, v));
+                    MemoryUtil.memPutInt(ptr + 16L, (encodeLight(lights[idx]) & 0xFFFF) | data);
+
+                    ptr += STRIDE;
+                }
+            }
+
+            return ptr;
+        };
+    }
+
     private static int packPositionHi(int x, int y, int z) {
         return  (((x >>> 10) & 0x3FF) <<  0) |
                 (((y >>> 10) & 0x3FF) << 10) |
@@ -0,0 +1,237 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.impl;
+
+import net.caffeinemc.mods.sodium.client.gl.attribute.GlVertexFormat;
+import net.caffeinemc.mods.sodium.client.render.chunk.terrain.DefaultTerrainRenderPasses;
+import net.caffeinemc.mods.sodium.client.render.chunk.terrain.TerrainRenderPass;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkMeshAttribute;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkMeshFormats;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexBatchEncoder;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexEncoder;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
+import org.lwjgl.system.MemoryUtil;
+
+import java.util.EnumMap;
+
+/**
+ * A format which is read by the vertex shader from a storage buffer, rather than through vertex attributes. Each quad
+ * is stored as one 32-byte record when it can be represented by one, and otherwise as four 16-byte vertices which are
+ * laid out like those of {@link QuantizedChunkVertex}. The vertex shader locates the record of a vertex using
+ * {@code gl_VertexID}, so the "vertices" of this format are 8-byte units, and a record makes up four of them.
+ *
+ * <p>A quad can be represented by a record when it is a rectangle on the 1/16th block grid used by block models, its
+ * texture is mapped along its edges (in any of the four rotations), and every corner has the same tint. Each corner
+ * keeps its own light and shade, so smooth lighting does not prevent a quad from using a record. The second and fourth
+ * corners take each of their coordinates from either the first or the third corner, which is selected by a mask.</p>
+ *
+ * <pre>
+ *   word 0: x0 (9 bits) | y0 (9 bits) | z0 (9 bits) | corner mask (5 bits)
+ *   word 1: x2 (9 bits) | material (3 bits) | record kind (2 bits) | y2 (9 bits) | z2 (9 bits)
+ *   word 2: u0 (16 bits) | v0 (16 bits)
+ *   word 3: u2 (16 bits) | v2 (16 bits)
+ *   word 4: light of corners 0 and 1 (block light (8 bits) | sky light (8 bits) each)
+ *   word 5: light of corners 2 and 3
+ *   word 6: color (BGR) | section index (8 bits)
+ *   word 7: shade of corners 0 to 3 (8 bits each)
+ * </pre>
+ *
+ * <p>Other quads use two records (and are drawn as two quads, the second of which is degenerate). Their vertices use
+ * the bits of word 1 which hold the material in the quantized format to store the record kind at the start of each
+ * record, so the material is only stored in the second vertex. These quads have the same precision as the quantized
+ * format.</p>
+ *
+ * <p>Since every quad uses a multiple of four units, and the arena only ever places segments directly after one
+ * another, every record starts at a multiple of four units. The translucent pass is stored in the quantized format,
+ * since its index buffers are sorted by quad and so cannot account for quads which use two records.</p>
+ */
+public class QuadRecordChunkVertex implements ChunkVertexType {
+    public static final int STRIDE = 8;
+
+    // No attributes are bound for this format, as the vertex shader fetches the records itself
+    public static final GlVertexFormat<ChunkMeshAttribute> VERTEX_FORMAT =
+            new GlVertexFormat<>(ChunkMeshAttribute.class, new EnumMap<>(ChunkMeshAttribute.class), STRIDE);
+
+    public static final int RECORD_SIZE = 32;
+
+    private static final int KIND_RECT = 0;
+    private static final int KIND_VERTICES = 1;
+    private static final int KIND_CONTINUATION = 2;
+
+    private static final int GRID_BITS = 9;
+    private static final int GRID_MAX_VALUE = (1 << GRID_BITS) - 1;
+
+    private static final float MODEL_TRANSLATION = 8.0f;
+    private static final float MODEL_SCALE = 32.0f;
+
+    private static final int NO_MASK = -1;
+
+    @Override
+    public GlVertexFormat<ChunkMeshAttribute> getVertexFormat() {
+        return VERTEX_FORMAT;
+    }
+
+    @Override
+    public ChunkVertexType forRenderPass(TerrainRenderPass pass) {
+        return pass == DefaultTerrainRenderPasses.TRANSLUCENT ? ChunkMeshFormats.QUANTIZED : this;
+    }
+
+    @Override
+    public ChunkVertexEncoder getEncoder() {
+        return (ptr, material, vertices, section) -> {
+            // Calculate the center point of the texture region which is mapped to the quad
+            float texCentroidU = 0.0f;
+            float texCentroidV = 0.0f;
+
+            for (var vertex : vertices) {
+                texCentroidU += vertex.u;
+                texCentroidV += vertex.v;
+            }
+
+            texCentroidU *= (1.0f / 4.0f);
+            texCentroidV *= (1.0f / 4.0f);
+
+            var v0 = vertices[0];
+            var v1 = vertices[1];
+            var v2 = vertices[2];
+            var v3 = vertices[3];
+
+            int mask = getRectMask(v0, v1, v2, v3, texCentroidU, texCentroidV);
+
+            if (mask != NO_MASK) {
+                return writeRect(ptr, v0, v1, v2, v3, texCentroidU, texCentroidV, mask, material.bits(), section);
+            }
+
+            for (int i = 0; i < 4; i++) {
+                var vertex = vertices[i];
+
+                // The kind of the record is stored at the start of each record, and the material in the second vertex
+                int tag = switch (i) {
+                    case 0 -> KIND_VERTICES;
+                    case 1 -> material.bits() & 0x7;
+                    case 2 -> KIND_CONTINUATION;
+                    default -> 0;
+                };
+
+                ptr = writeVertex(ptr, vertex, texCentroidU, texCentroidV, tag, section);
+            }
+
+            return ptr;
+        };
+    }
+
+    @Override
+    public ChunkVertexBatchEncoder getBatchEncoder() {
+        return (ptr, batch, section) -> {
+            throw new UnsupportedOperationException("Quad merging is not supported by the quad record format");
+        };
+    }
+
+    /**
+     * @return The corner mask of the record which represents the quad, or {@link #NO_MASK} if the quad can not be
+     * represented by a record
+     */
+    private static int getRectMask(ChunkVertexEncoder.Vertex v0, ChunkVertexEncoder.Vertex v1,
+                                   ChunkVertexEncoder.Vertex v2, ChunkVertexEncoder.Vertex v3,
+                                   float texCentroidU, float texCentroidV) {
+        int color = v0.color & 0xFFFFFF;
+
+        if ((v1.color & 0xFFFFFF) != color || (v2.color & 0xFFFFFF) != color || (v3.color & 0xFFFFFF) != color) {
+            return NO_MASK;
+        }
+
+        int x = getCornerSelection(encodeGridPosition(v0.x), encodeGridPosition(v1.x),
+                encodeGridPosition(v2.x), encodeGridPosition(v3.x));
+        int y = getCornerSelection(encodeGridPosition(v0.y), encodeGridPosition(v1.y),
+                encodeGridPosition(v2.y), encodeGridPosition(v3.y));
+        int z = getCornerSelection(encodeGridPosition(v0.z), encodeGridPosition(v1.z),
+                encodeGridPosition(v2.z), encodeGridPosition(v3.z));
+
+        int u = getCornerSelection(QuantizedChunkVertex.encodeTexture(texCentroidU, v0.u),
+                QuantizedChunkVertex.encodeTexture(texCentroidU, v1.u),
+                QuantizedChunkVertex.encodeTexture(texCentroidU, v2.u),
+                QuantizedChunkVertex.encodeTexture(texCentroidU, v3.u));
+        int v = getCornerSelection(QuantizedChunkVertex.encodeTexture(texCentroidV, v0.v),
+                QuantizedChunkVertex.encodeTexture(texCentroidV, v1.v),
+                QuantizedChunkVertex.encodeTexture(texCentroidV, v2.v),
+                QuantizedChunkVertex.encodeTexture(texCentroidV, v3.v));
+
+        if ((x | y | z | u | v) < 0) {
+            return NO_MASK;
+        }
+
+        return (x << 0) | (y << 1) | (z << 2) | (u << 3) | (v << 4);
+    }
+
+    /**
+     * @return 0 if the second corner uses the value of the first corner and the fourth corner that of the third, 1 if
+     * it is the other way around, or -1 if neither is the case (or a value could not be encoded)
+     */
+    private static int getCornerSelection(int a0, int a1, int a2, int a3) {
+        if (a0 < 0 || a1 < 0 || a2 < 0 || a3 < 0) {
+            return -1;
+        }
+
+        if (a1 == a0 && a3 == a2) {
+            return 0;
+        }
+
+        if (a1 == a2 && a3 == a0) {
+            return 1;
+        }
+
+        return -1;
+    }
+
+    private static long writeRect(long ptr, ChunkVertexEncoder.Vertex v0, ChunkVertexEncoder.Vertex v1,
+                                  ChunkVertexEncoder.Vertex v2, ChunkVertexEncoder.Vertex v3,
+                                  float texCentroidU, float texCentroidV, int mask, int material, int section) {
+        int x0 = encodeGridPosition(v0.x), y0 = encodeGridPosition(v0.y), z0 = encodeGridPosition(v0.z);
+        int x2 = encodeGridPosition(v2.x), y2 = encodeGridPosition(v2.y), z2 = encodeGridPosition(v2.z);
+
+        int u0 = QuantizedChunkVertex.encodeTexture(texCentroidU, v0.u);
+        int t0 = QuantizedChunkVertex.encodeTexture(texCentroidV, v0.v);
+        int u2 = QuantizedChunkVertex.encodeTexture(texCentroidU, v2.u);
+        int t2 = QuantizedChunkVertex.encodeTexture(texCentroidV, v2.v);
+
+        MemoryUtil.memPutInt(ptr +  0L, (x0 << 0) | (y0 << 9) | (z0 << 18) | (mask << 27));
+        MemoryUtil.memPutInt(ptr +  4L, (x2 << 0) | ((material & 0x7) << 9) | (KIND_RECT << 12) | (y2 << 14) | (z2 << 23));
+        MemoryUtil.memPutInt(ptr +  8L, (u0 << 0) | (t0 << 16));
+        MemoryUtil.memPutInt(ptr + 12L, (u2 << 0) | (t2 << 16));
+        MemoryUtil.memPutInt(ptr + 16L, QuantizedChunkVertex.encodeLight(v0.light) | (QuantizedChunkVertex.encodeLight(v1.light) << 16));
+        MemoryUtil.memPutInt(ptr + 20L, QuantizedChunkVertex.encodeLight(v2.light) | (QuantizedChunkVertex.encodeLight(v3.light) << 16));
+        MemoryUtil.memPutInt(ptr + 24L, (v0.color & 0xFFFFFF) | ((section & 0xFF) << 24));
+        MemoryUtil.memPutInt(ptr + 28L, (v0.color >>> 24) | ((v1.color >>> 24) << 8) | ((v2.color >>> 24) << 16) | ((v3.color >>> 24) << 24));
+
+        return ptr + RECORD_SIZE;
+    }
+
+    private static long writeVertex(long ptr, ChunkVertexEncoder.Vertex vertex, float texCentroidU, float texCentroidV,
+                                    int tag, int section) {
+        int x = QuantizedChunkVertex.encodePosition(vertex.x);
+        int y = QuantizedChunkVertex.encodePosition(vertex.y);
+        int z = QuantizedChunkVertex.encodePosition(vertex.z);
+
+        int u = QuantizedChunkVertex.encodeTexture(texCentroidU, vertex.u);
+        int v = QuantizedChunkVertex.encodeTexture(texCentroidV, vertex.v);
+
+        MemoryUtil.memPutInt(ptr +  0L, (x << 0) | (y << 12) | ((section & 0xFF) << 24));
+        MemoryUtil.memPutInt(ptr +  4L, (z << 0) | ((tag & 0xF) << 12) | (QuantizedChunkVertex.encodeLight(vertex.light) << 16));
+        MemoryUtil.memPutInt(ptr +  8L, vertex.color);
+        MemoryUtil.memPutInt(ptr + 12L, (u << 0) | (v << 16));
+
+        return ptr + QuantizedChunkVertex.STRIDE;
+    }
+
+    /**
+     * @return The position on the 1/16th block grid, or -1 if the position does not lie exactly on the grid
+     */
+    private static int encodeGridPosition(float position) {
+        float scaled = (position + MODEL_TRANSLATION) * ((1 << GRID_BITS) / MODEL_SCALE);
+        int value = (int) scaled;
+
+        if (value != scaled || value < 0 || value > GRID_MAX_VALUE) {
+            return -1;
+        }
+
+        return value;
+    }
+}
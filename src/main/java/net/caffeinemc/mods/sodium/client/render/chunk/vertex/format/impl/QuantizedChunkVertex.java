@@ -0,0 +1,144 @@
+package net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.impl;
+
+import net.caffeinemc.mods.sodium.client.gl.attribute.GlVertexAttributeFormat;
+import net.caffeinemc.mods.sodium.client.gl.attribute.GlVertexFormat;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkMeshAttribute;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexBatchEncoder;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexEncoder;
+import net.caffeinemc.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
+import net.minecraft.util.Mth;
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * A 16-byte vertex format which trades position precision for memory. Positions are quantized to 1/128th of a block,
+ * and the bits saved are used to hold the per-quad material and section index alongside the position.
+ *
+ * <p>This format is lossy. Positions on the 1/16th block grid used by block models are represented exactly, but any
+ * other position (such as the surface of a fluid, or a rotated model face) is rounded to the nearest 1/128th of a
+ * block, an error of up to 1/256th of a block. Positions outside the range of the format (8 blocks beyond the edges of
+ * the section) are clamped to its edge rather than wrapping, which distorts the few models that extend that far.</p>
+ *
+ * <pre>
+ *   word 0: x (12 bits) | y (12 bits) | section index (8 bits)
+ *   word 1: z (12 bits) | material (4 bits) | block light (8 bits) | sky light (8 bits)
+ *   word 2: color (ABGR)
+ *   word 3: u (16 bits) | v (16 bits), each with the texture bias sign in the least significant bit
+ * </pre>
+ */
+public class QuantizedChunkVertex implements ChunkVertexType {
+    public static final int STRIDE = 16;
+
+    public static final GlVertexFormat<ChunkMeshAttribute> VERTEX_FORMAT = GlVertexFormat.builder(ChunkMeshAttribute.class, STRIDE)
+            .addElement(ChunkMeshAttribute.POSITION_HI, 0, GlVertexAttributeFormat.UNSIGNED_INT, 1, false, true)
+            .addElement(ChunkMeshAttribute.POSITION_LO, 4, GlVertexAttributeFormat.UNSIGNED_INT, 1, false, true)
+            .addElement(ChunkMeshAttribute.COLOR, 8, GlVertexAttributeFormat.UNSIGNED_BYTE, 4, true, false)
+            .addElement(ChunkMeshAttribute.TEXTURE, 12, GlVertexAttributeFormat.UNSIGNED_SHORT, 2, false, true)
+            // The light and material share the second word with the z coordinate, so the attribute aliases it
+            .addElement(ChunkMeshAttribute.LIGHT_MATERIAL_INDEX, 4, GlVertexAttributeFormat.UNSIGNED_BYTE, 4, false, true)
+            .build();
+
+    private static final int POSITION_BITS = 12;
+    private static final int POSITION_MAX_VALUE = (1 << POSITION_BITS) - 1;
+    private static final int TEXTURE_MAX_VALUE = 1 << 15;
+
+    private static final float MODEL_TRANSLATION = 8.0f;
+    private static final float MODEL_SCALE = 32.0f;
+
+    @Override
+    public GlVertexFormat<ChunkMeshAttribute> getVertexFormat() {
+        return VERTEX_FORMAT;
+    }
+
+    @Override
+    public ChunkVertexEncoder getEncoder() {
+        return (ptr, material, vertices, section) -> {
+            // Calculate the center point of the texture region which is mapped to the quad
+            float texCentroidU = 0.0f;
+            float texCentroidV = 0.0f;
+
+            for (var vertex : vertices) {
+                texCentroidU += vertex.u;
+                texCentroidV += vertex.v;
+            }
+
+            texCentroidU *= (1.0f / 4.0f);
+            texCentroidV *= (1.0f / 4.0f);
+
+            for (int i = 0; i < 4; i++) {
+                var vertex = vertices[i];
+
+                ptr = writeVertex(ptr, vertex.x, vertex.y, vertex.z, vertex.color,
+                        encodeTexture(texCentroidU, vertex.u), encodeTexture(texCentroidV, vertex.v),
+                        vertex.light, material.bits(), section);
+            }
+
+            return ptr;
+        };
+    }
+
+    @Override
+    public ChunkVertexBatchEncoder getBatchEncoder() {
+        return (ptr, batch, section) -> {
+            final float[] xs = batch.x(), ys = batch.y(), zs = batch.z();
+            final float[] us = batch.u(), vs = batch.v();
+            final int[] colors = batch.color(), lights = batch.light();
+            final int[] materials = batch.materialBits();
+
+            final int quadCount = batch.getQuadCount();
+
+            for (int quad = 0; quad < quadCount; quad++) {
+                final int base = quad * 4;
+
+                final float texCentroidU = (us[base] + us[base + 1] + us[base + 2] + us[base + 3]) * (1.0f / 4.0f);
+                final float texCentroidV = (vs[base] + vs[base + 1] + vs[base + 2] + vs[base + 3]) * (1.0f / 4.0f);
+
+                for (int idx = base; idx < base + 4; idx++) {
+                    ptr = writeVertex(ptr, xs[idx], ys[idx], zs[idx], colors[idx],
+                            encodeTexture(texCentroidU, us[idx]), encodeTexture(texCentroidV, vs[idx]),
+                            lights[idx], materials[quad], section);
+                }
+            }
+
+            return ptr;
+        };
+    }
+
+    private static long writeVertex(long ptr, float posX, float posY, float posZ, int color, int u, int v,
+                                    int light, int material, int section) {
+        int x = encodePosition(posX);
+        int y = encodePosition(posY);
+        int z = encodePosition(posZ);
+
+        MemoryUtil.memPutInt(ptr +  0L, (x << 0) | (y << 12) | ((section & 0xFF) << 24));
+        MemoryUtil.memPutInt(ptr +  4L, (z << 0) | ((material & 0xF) << 12) | (encodeLight(light) << 16));
+        MemoryUtil.memPutInt(ptr +  8L, color);
+        MemoryUtil.memPutInt(ptr + 12L, ((u & 0xFFFF) << 0) | ((v & 0xFFFF) << 16));
+
+        return ptr + STRIDE;
+    }
+
+    static int encodePosition(float position) {
+        // Rounds to the nearest 1/128th of a block. Unlike the compact format, values outside the model range are clamped
+        // instead of wrapping.
+        return Mth.clamp(Math.round((position + MODEL_TRANSLATION) * ((1 << POSITION_BITS) / MODEL_SCALE)), 0, POSITION_MAX_VALUE);
+    }
+
+    static int encodeTexture(float center, float x) {
+        // See CompactChunkVertex#encodeTexture for an explanation of the bias bit
+        int bias = (x < center) ? 1 : -1;
+        int quantized = floorInt(x * TEXTURE_MAX_VALUE) + bias;
+
+        return ((quantized & 0x7FFF) << 1) | (bias >>> 31);
+    }
+
+    static int encodeLight(int light) {
+        int sky = Mth.clamp((light >>> 16) & 0xFF, 8, 248);
+        int block = Mth.clamp((light >>>  0) & 0xFF, 8, 248);
+
+        return (block << 0) | (sky << 8);
+    }
+
+    private static int floorInt(float x) {
+        return (int) Math.floor(x);
+    }
+}
@@ -3,17 +3,29 @@ package net.caffeinemc.mods.sodium.client.render.viewport;
 import net.caffeinemc.mods.sodium.client.render.viewport.frustum.Frustum;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.SectionPos;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
 import org.joml.Vector3d;
 
 public final class Viewport {
     private final Frustum frustum;
     private final CameraTransform transform;
 
+    // The combined projection and view matrix of the camera, which transforms camera-relative positions into clip
+    // space, or null if it isn't known
+    private final @Nullable Matrix4fc viewProjection;
+
     private final SectionPos sectionCoords;
     private final BlockPos blockCoords;
 
     public Viewport(Frustum frustum, Vector3d position) {
+        this(frustum, position, null);
+    }
+
+    public Viewport(Frustum frustum, Vector3d position, @Nullable Matrix4fc viewProjection) {
         this.frustum = frustum;
+        this.viewProjection = viewProjection != null ? new Matrix4f(viewProjection) : null;
         this.transform = new CameraTransform(position.x, position.y, position.z);
 
         this.sectionCoords = SectionPos.of(
@@ -41,10 +53,33 @@ public final class Viewport {
         );
     }
 
+    /**
+     * @return The intersection of the box with the frustum, as one of the constants defined in {@link Frustum}
+     */
+    public int getBoxIntersection(int intOriginX, int intOriginY, int intOriginZ, float floatSizeX, float floatSizeY, float floatSizeZ) {
+        float floatOriginX = (intOriginX - this.transform.intX) - this.transform.fracX;
+        float floatOriginY = (intOriginY - this.transform.intY) - this.transform.fracY;
+        float floatOriginZ = (intOriginZ - this.transform.intZ) - this.transform.fracZ;
+
+        return this.frustum.intersectAab(
+                floatOriginX - floatSizeX,
+                floatOriginY - floatSizeY,
+                floatOriginZ - floatSizeZ,
+
+                floatOriginX + floatSizeX,
+                floatOriginY + floatSizeY,
+                floatOriginZ + floatSizeZ
+        );
+    }
+
     public CameraTransform getTransform() {
         return this.transform;
     }
 
+    public @Nullable Matrix4fc getViewProjection() {
+        return this.viewProjection;
+    }
+
     public SectionPos getChunkCoord() {
         return this.sectionCoords;
     }
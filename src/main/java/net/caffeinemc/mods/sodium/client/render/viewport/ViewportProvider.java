@@ -2,4 +2,10 @@ package net.caffeinemc.mods.sodium.client.render.viewport;
 
 public interface ViewportProvider {
     Viewport sodium$createViewport();
+
+    /**
+     * Creates a viewport whose field of view is wider than that of the frustum by the given factor, which is applied
+     * to the tangents of the horizontal and vertical half-angles.
+     */
+    Viewport sodium$createExpandedViewport(float factor);
 }
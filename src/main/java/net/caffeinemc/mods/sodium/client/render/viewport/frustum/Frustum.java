@@ -1,5 +1,17 @@
 package net.caffeinemc.mods.sodium.client.render.viewport.frustum;
 
 public interface Frustum {
+    int OUTSIDE = 0;
+    int INTERSECT = 1;
+    int INSIDE = 2;
+
     boolean testAab(float minX, float minY, float minZ, float maxX, float maxY, float maxZ);
+
+    /**
+     * Classifies the box as being entirely outside, partially inside, or entirely inside the frustum. Implementations
+     * which can't determine this may return {@link #INTERSECT} for any box which {@link #testAab} considers visible.
+     */
+    default int intersectAab(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        return this.testAab(minX, minY, minZ, maxX, maxY, maxZ) ? INTERSECT : OUTSIDE;
+    }
 }
@@ -22,12 +22,14 @@ public class NativeBuffer {
     private static final Reference2ReferenceMap<Reference<NativeBuffer>, BufferReference> ACTIVE_BUFFERS =
             Reference2ReferenceMaps.synchronize(new Reference2ReferenceOpenHashMap<>());
 
-    private static long ALLOCATED = 0L;
-
     private final BufferReference ref;
 
     public NativeBuffer(int capacity) {
-        this.ref = allocate(capacity);
+        this(capacity, NativeMemoryTracker.Tag.BUFFERS);
+    }
+
+    public NativeBuffer(int capacity, NativeMemoryTracker.Tag tag) {
+        this.ref = allocate(capacity, tag);
 
         ACTIVE_BUFFERS.put(new PhantomReference<>(this, RECLAIM_QUEUE), this.ref);
     }
@@ -81,10 +83,6 @@ public class NativeBuffer {
         }
     }
 
-    public static long getTotalAllocated() {
-        return ALLOCATED;
-    }
-
     private static StackTraceElement[] getStackTrace() {
         return SodiumClientMod.options().advanced.enableMemoryTracing ? Thread.currentThread()
                 .getStackTrace() : null;
@@ -92,7 +90,7 @@ public class NativeBuffer {
 
     private static final int MAX_ALLOCATION_ATTEMPTS = 3;
 
-    private static BufferReference allocate(int bytes) {
+    private static BufferReference allocate(int bytes, NativeMemoryTracker.Tag tag) {
         long address = 0;
         int attempts = 0;
 
@@ -116,8 +114,8 @@ public class NativeBuffer {
 
         StackTraceElement[] stackTrace = getStackTrace();
 
-        BufferReference ref = new BufferReference(address, bytes, stackTrace);
-        ALLOCATED += ref.length;
+        BufferReference ref = new BufferReference(address, bytes, tag, stackTrace);
+        NativeMemoryTracker.onAllocated(tag, ref.length);
 
         return ref;
     }
@@ -128,20 +126,22 @@ public class NativeBuffer {
 
         MemoryUtil.nmemFree(ref.address);
 
-        ALLOCATED -= ref.length;
+        NativeMemoryTracker.onFreed(ref.tag, ref.length);
     }
 
     private static class BufferReference {
         public final long address;
         public final int length;
+        public final NativeMemoryTracker.Tag tag;
 
         public final StackTraceElement[] allocationSite;
 
         public boolean freed;
 
-        private BufferReference(long address, int length, StackTraceElement[] allocationSite) {
+        private BufferReference(long address, int length, NativeMemoryTracker.Tag tag, StackTraceElement[] allocationSite) {
             this.address = address;
             this.length = length;
+            this.tag = tag;
             this.allocationSite = allocationSite;
         }
 
@@ -0,0 +1,143 @@
+package net.caffeinemc.mods.sodium.client.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.lwjgl.system.MemoryUtil;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the native memory which is allocated outside the Java heap, grouped by the subsystem which owns it.
+ * For each subsystem, the number of live allocations, the number of bytes they use and the highest number of bytes
+ * which were in use at any time are recorded. Allocations may happen on any thread.
+ *
+ * Subsystems which are bound to the lifetime of a level should not hold on to any memory once the level is unloaded,
+ * and {@link #checkForLeaks()} reports those which still do.
+ */
+public class NativeMemoryTracker {
+    private static final Logger LOGGER = LogManager.getLogger(NativeMemoryTracker.class);
+
+    public enum Tag {
+        BUFFERS("Buffers", true),
+        MESH_DATA("Mesh Data", true),
+        INDEX_DATA("Index Data", true),
+        MESH_BUILDING("Mesh Building", true),
+        SECTION_DATA("Section Data", true),
+        DRAW_COMMANDS("Draw Commands", true),
+        ENTITY_RENDERING("Entity Rendering", false);
+
+        private final String name;
+        private final boolean levelScoped;
+
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong peakBytes = new AtomicLong();
+
+        Tag(String name, boolean levelScoped) {
+            this.name = name;
+            this.levelScoped = levelScoped;
+        }
+
+        public long getBytes() {
+            return this.bytes.get();
+        }
+
+        public long getCount() {
+            return this.count.get();
+        }
+
+        public long getPeakBytes() {
+            return this.peakBytes.get();
+        }
+    }
+
+    private static final Tag[] TAGS = Tag.values();
+
+    public static void onAllocated(Tag tag, long bytes) {
+        long total = tag.bytes.addAndGet(bytes);
+        tag.count.incrementAndGet();
+        tag.peakBytes.accumulateAndGet(total, Math::max);
+    }
+
+    public static void onReallocated(Tag tag, long oldBytes, long newBytes) {
+        long total = tag.bytes.addAndGet(newBytes - oldBytes);
+        tag.peakBytes.accumulateAndGet(total, Math::max);
+    }
+
+    public static void onFreed(Tag tag, long bytes) {
+        tag.bytes.addAndGet(-bytes);
+        tag.count.decrementAndGet();
+    }
+
+    /**
+     * Allocates aligned native memory, which must be released with {@link #alignedFree(Tag, long, long)}.
+     */
+    public static long alignedAlloc(Tag tag, long alignment, long bytes) {
+        long pointer = MemoryUtil.nmemAlignedAlloc(alignment, bytes);
+
+        if (pointer == MemoryUtil.NULL) {
+            throw new OutOfMemoryError("Couldn't allocate %s bytes".formatted(bytes));
+        }
+
+        onAllocated(tag, bytes);
+
+        return pointer;
+    }
+
+    public static void alignedFree(Tag tag, long pointer, long bytes) {
+        MemoryUtil.nmemAlignedFree(pointer);
+
+        onFreed(tag, bytes);
+    }
+
+    public static long getTotalAllocated() {
+        long total = 0;
+
+        for (Tag tag : TAGS) {
+            total += tag.getBytes();
+        }
+
+        return total;
+    }
+
+    /**
+     * Logs a warning for every level-scoped subsystem which still holds native memory. This should be called once all
+     * resources belonging to a level have been released.
+     *
+     * @return True if any memory was leaked
+     */
+    public static boolean checkForLeaks() {
+        boolean leaked = false;
+
+        for (Tag tag : TAGS) {
+            if (tag.levelScoped && (tag.getBytes() != 0 || tag.getCount() != 0)) {
+                LOGGER.warn("Native memory was not released after unloading the level: {} holds {} bytes in {} allocations",
+                        tag.name, tag.getBytes(), tag.getCount());
+
+                leaked = true;
+            }
+        }
+
+        return leaked;
+    }
+
+    public static void addDebugStrings(List<String> list) {
+        for (Tag tag : TAGS) {
+            if (tag.getPeakBytes() == 0) {
+                continue;
+            }
+
+            list.add("Native %s: %s (peak %s, %d allocs)".formatted(tag.name,
+                    formatBytes(tag.getBytes()), formatBytes(tag.getPeakBytes()), tag.getCount()));
+        }
+    }
+
+    private static String formatBytes(long bytes) {
+        if (Math.abs(bytes) < 1024L * 1024L) {
+            return "%d KiB".formatted(bytes / 1024L);
+        }
+
+        return "%d MiB".formatted(MathUtil.toMib(bytes));
+    }
+}
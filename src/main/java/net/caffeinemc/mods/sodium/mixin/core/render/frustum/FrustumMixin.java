@@ -5,6 +5,7 @@ import net.minecraft.client.renderer.culling.Frustum;
 import net.caffeinemc.mods.sodium.client.render.viewport.Viewport;
 import net.caffeinemc.mods.sodium.client.render.viewport.ViewportProvider;
 import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
 import org.joml.Vector3d;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
@@ -25,8 +26,22 @@ public class FrustumMixin implements ViewportProvider {
     @Final
     private FrustumIntersection intersection;
 
+    @Shadow
+    @Final
+    private Matrix4f matrix;
+
     @Override
     public Viewport sodium$createViewport() {
-        return new Viewport(new SimpleFrustum(this.intersection), new Vector3d(this.camX, this.camY, this.camZ));
+        return new Viewport(new SimpleFrustum(this.intersection), new Vector3d(this.camX, this.camY, this.camZ), this.matrix);
+    }
+
+    @Override
+    public Viewport sodium$createExpandedViewport(float factor) {
+        // Scaling down the X and Y axes of clip space moves the side planes of the frustum outwards
+        var matrix = new Matrix4f()
+                .scaling(1.0f / factor, 1.0f / factor, 1.0f)
+                .mul(this.matrix);
+
+        return new Viewport(new SimpleFrustum(new FrustumIntersection(matrix)), new Vector3d(this.camX, this.camY, this.camZ), matrix);
     }
 }
@@ -4,6 +4,7 @@ import com.mojang.blaze3d.vertex.PoseStack;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import net.caffeinemc.mods.sodium.client.gl.device.RenderDevice;
 import net.caffeinemc.mods.sodium.client.render.SodiumWorldRenderer;
+import net.caffeinemc.mods.sodium.client.render.chunk.AsyncOcclusionCuller;
 import net.caffeinemc.mods.sodium.client.render.chunk.ChunkRenderMatrices;
 import net.caffeinemc.mods.sodium.client.render.viewport.ViewportProvider;
 import net.caffeinemc.mods.sodium.client.util.FlawlessFrames;
@@ -125,12 +126,13 @@ public abstract class LevelRendererMixin implements LevelRendererExtension {
     private void setupRender(Camera camera, Frustum frustum, boolean hasForcedFrustum, boolean spectator) {
 
         var viewport = ((ViewportProvider) frustum).sodium$createViewport();
+        var expandedViewport = ((ViewportProvider) frustum).sodium$createExpandedViewport(AsyncOcclusionCuller.FRUSTUM_EXPANSION);
         var updateChunksImmediately = FlawlessFrames.isActive();
 
         RenderDevice.enterManagedCode();
 
         try {
-            this.renderer.setupTerrain(camera, viewport, this.frame++, spectator, updateChunksImmediately);
+            this.renderer.setupTerrain(camera, viewport, expandedViewport, this.frame++, spectator, updateChunksImmediately);
         } finally {
             RenderDevice.exitManagedCode();
         }
@@ -4,7 +4,7 @@ import com.google.common.collect.Lists;
 import net.caffeinemc.mods.sodium.client.SodiumClientMod;
 import net.caffeinemc.mods.sodium.client.render.SodiumWorldRenderer;
 import net.caffeinemc.mods.sodium.client.util.MathUtil;
-import net.caffeinemc.mods.sodium.client.util.NativeBuffer;
+import net.caffeinemc.mods.sodium.client.util.NativeMemoryTracker;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.gui.components.DebugScreenOverlay;
 import org.spongepowered.asm.mixin.Mixin;
@@ -29,6 +29,8 @@ public abstract class DebugScreenOverlayMixin {
             strings.addAll(renderer.getDebugStrings());
         }
 
+        NativeMemoryTracker.addDebugStrings(strings);
+
         for (int i = 0; i < strings.size(); i++) {
             String str = strings.get(i);
 
@@ -65,6 +67,6 @@ public abstract class DebugScreenOverlayMixin {
 
     @Unique
     private static long getNativeMemoryUsage() {
-        return ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage().getUsed() + NativeBuffer.getTotalAllocated();
+        return ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage().getUsed() + NativeMemoryTracker.getTotalAllocated();
     }
 }
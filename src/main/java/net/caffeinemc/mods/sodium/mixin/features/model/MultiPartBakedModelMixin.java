@@ -5,11 +5,13 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.spongepowered.asm.mixin.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.StampedLock;
 import java.util.function.Predicate;
 import net.minecraft.client.renderer.block.model.BakedQuad;
 import net.minecraft.client.resources.model.BakedModel;
 import net.minecraft.client.resources.model.MultiPartBakedModel;
+import net.minecraft.client.resources.model.SimpleBakedModel;
 import net.minecraft.core.Direction;
 import net.minecraft.util.RandomSource;
 import net.minecraft.world.level.block.state.BlockState;
@@ -21,13 +23,31 @@ public class MultiPartBakedModelMixin {
     @Unique
     private final StampedLock lock = new StampedLock();
 
+    /**
+     * The assembled quads for each block state whose selected models do not depend on the random seed, indexed by
+     * the ordinal of the face (or {@link #NULL_FACE_INDEX} for unculled quads). Block states are compared by identity,
+     * and reads do not need to take the lock.
+     */
+    @Unique
+    private final Map<BlockState, List<BakedQuad>[]> quadCache = new ConcurrentHashMap<>();
+
+    @Unique
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @Unique
+    private static final int NULL_FACE_INDEX = DIRECTIONS.length;
+
+    @Unique
+    private static final List<BakedQuad>[] UNCACHEABLE = createQuadArray();
+
     @Shadow
     @Final
     private List<Pair<Predicate<BlockState>, BakedModel>> selectors;
 
     /**
      * @author JellySquid
-     * @reason Avoid expensive allocations and replace bitfield indirection
+     * @reason Avoid expensive allocations and replace bitfield indirection, and cache the combined quads of
+     * seed-independent models
      */
     @Overwrite
     public List<BakedQuad> getQuads(BlockState state, Direction face, RandomSource random) {
@@ -35,6 +55,31 @@ public class MultiPartBakedModelMixin {
             return Collections.emptyList();
         }
 
+        List<BakedQuad>[] cachedQuads = this.quadCache.get(state);
+
+        if (cachedQuads == null) {
+            cachedQuads = this.quadCache.computeIfAbsent(state, key -> assembleQuads(key, this.getModels(key), random));
+        }
+
+        if (cachedQuads != UNCACHEABLE) {
+            return cachedQuads[face == null ? NULL_FACE_INDEX : face.ordinal()];
+        }
+
+        BakedModel[] models = this.getModels(state);
+
+        List<BakedQuad> quads = new ArrayList<>();
+        long seed = random.nextLong();
+
+        for (BakedModel model : models) {
+            random.setSeed(seed);
+            quads.addAll(model.getQuads(state, face, random));
+        }
+
+        return quads;
+    }
+
+    @Unique
+    private BakedModel[] getModels(BlockState state) {
         BakedModel[] models;
 
         long readStamp = this.lock.readLock();
@@ -62,14 +107,41 @@ public class MultiPartBakedModelMixin {
             }
         }
 
-        List<BakedQuad> quads = new ArrayList<>();
-        long seed = random.nextLong();
+        return models;
+    }
 
+    /**
+     * Combines the quads of every selected model for each face, or returns {@link #UNCACHEABLE} if any of the models
+     * could return different quads depending on the random seed.
+     */
+    @Unique
+    private static List<BakedQuad>[] assembleQuads(BlockState state, BakedModel[] models, RandomSource random) {
         for (BakedModel model : models) {
-            random.setSeed(seed);
-            quads.addAll(model.getQuads(state, face, random));
+            // Only vanilla's simple models are known to ignore the random source entirely
+            if (model.getClass() != SimpleBakedModel.class) {
+                return UNCACHEABLE;
+            }
+        }
+
+        List<BakedQuad>[] quads = createQuadArray();
+
+        for (int index = 0; index <= NULL_FACE_INDEX; index++) {
+            Direction face = index == NULL_FACE_INDEX ? null : DIRECTIONS[index];
+            List<BakedQuad> faceQuads = new ArrayList<>();
+
+            for (BakedModel model : models) {
+                faceQuads.addAll(model.getQuads(state, face, random));
+            }
+
+            quads[index] = faceQuads.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(faceQuads);
         }
 
         return quads;
     }
+
+    @Unique
+    @SuppressWarnings("unchecked")
+    private static List<BakedQuad>[] createQuadArray() {
+        return new List[NULL_FACE_INDEX + 1];
+    }
 }
@@ -6,6 +6,7 @@ import org.spongepowered.asm.mixin.*;
 import java.util.*;
 import net.minecraft.client.renderer.block.model.BakedQuad;
 import net.minecraft.client.resources.model.BakedModel;
+import net.minecraft.client.resources.model.SimpleBakedModel;
 import net.minecraft.client.resources.model.WeightedBakedModel;
 import net.minecraft.core.Direction;
 import net.minecraft.util.RandomSource;
@@ -22,12 +23,31 @@ public class WeightedBakedModelMixin {
     @Final
     private int totalWeight;
 
+    /**
+     * The model of the only entry, if there is exactly one entry and its quads do not depend on the random seed.
+     * Initialized lazily, since the list is not yet assigned when unique fields are initialized.
+     */
+    @Unique
+    private BakedModel seedIndependentModel;
+
+    @Unique
+    private boolean initialized;
+
     /**
      * @author JellySquid
-     * @reason Avoid excessive object allocations
+     * @reason Avoid excessive object allocations, and skip the random selection for models with a single variant
      */
     @Overwrite
     public List<BakedQuad> getQuads(@Nullable BlockState state, @Nullable Direction face, RandomSource random) {
+        if (!this.initialized) {
+            this.initialize();
+        }
+
+        if (this.seedIndependentModel != null) {
+            // The selection would always pick the same model, and the model does not use the random source
+            return this.seedIndependentModel.getQuads(state, face, random);
+        }
+
         WeightedEntry.Wrapper<BakedModel> quad = getAt(this.list, Math.abs((int) random.nextLong()) % this.totalWeight);
 
         if (quad != null) {
@@ -38,6 +58,19 @@ public class WeightedBakedModelMixin {
         return Collections.emptyList();
     }
 
+    @Unique
+    private void initialize() {
+        if (this.list.size() == 1) {
+            BakedModel model = this.list.get(0).data();
+
+            if (model.getClass() == SimpleBakedModel.class) {
+                this.seedIndependentModel = model;
+            }
+        }
+
+        this.initialized = true;
+    }
+
     @Unique
     private static <T extends WeightedEntry> T getAt(List<T> pool, int totalWeight) {
         int i = 0;
@@ -16,7 +16,18 @@ uint _draw_id;
 // The material bits for the primitive
 uint _material_params;
 
+#ifdef USE_QUAD_TILING
+// The region of the texture atlas which is repeated across a merged quad, and the size of each repetition. The size
+// is zero along axes which do not repeat.
+vec2 _vert_tile_origin;
+vec2 _vert_tile_size;
+#endif
+
+#if defined(USE_VERTEX_FORMAT_QUANTIZED) || defined(USE_VERTEX_PULLING)
+const int POSITION_BITS         = 12;
+#else
 const int POSITION_BITS         = 20;
+#endif
 const int TEXTURE_BITS          = 15;
 const int LIGHT_BITS            = 8;
 
@@ -30,12 +41,32 @@ const float MODEL_TRANSLATION  = -8.0;
 const float TEXTURE_FUZZ_AMOUNT = 1.0 / 64.0;
 const float TEXTURE_GROW_FACTOR = (1.0 - TEXTURE_FUZZ_AMOUNT) / TEXTURE_MAX_COORD;
 
-in vec3 a_PositionHi;           // 3x Unsigned 10-bit integer
-in vec3 a_PositionLo;           // ...
+#if defined(USE_VERTEX_PULLING)
+// The region's geometry buffer, which contains the quad records (see QuadRecordChunkVertex). The block has no explicit
+// binding, so it uses the default binding index of zero.
+layout(std430) readonly buffer QuadData {
+    uint u_QuadData[];
+};
+#elif defined(USE_VERTEX_FORMAT_QUANTIZED)
+in uint a_PositionHi;           // x (12 bits), y (12 bits), section index (8 bits)
+in uint a_PositionLo;           // z (12 bits), material (4 bits), block light (8 bits), sky light (8 bits)
+in vec4 a_Color;                // 4x Unsigned 8-bit integer (normalized)
+in uvec2 a_TexCoord;            // 2x Signed 16-bit integer
+#else
+in vec4 a_PositionHi;           // 3x Unsigned 10-bit integer, 1x Unsigned 2-bit integer (tile size, low bits)
+in vec4 a_PositionLo;           // ...                                               (tile size, high bits)
 in vec4 a_Color;                // 4x Unsigned 8-bit integer (normalized)
 in uvec2 a_TexCoord;            // 2x Signed 16-bit integer
 in uvec4 a_LightAndData;        // 4x Unsigned 8-bit integer
+#endif
+
+#if defined(USE_VERTEX_FORMAT_QUANTIZED) || defined(USE_VERTEX_PULLING)
+vec3 _decode_position(uint word0, uint word1) {
+    uvec3 quantized = uvec3(word0, word0 >> 12u, word1) & uvec3(0xFFFu);
 
+    return (vec3(quantized) * MODEL_SCALE) + MODEL_TRANSLATION;
+}
+#else
 vec3 _decode_position(vec3 hi, vec3 lo) {
     // The 2.10.10.10 vertex formats do not support being interpreted as integer data within the shader.
     // Because of this, we need to emulate the bitwise ops with floating-point arithmetic. There is probably no
@@ -47,6 +78,7 @@ vec3 _decode_position(vec3 hi, vec3 lo) {
 
     return normalized;
 }
+#endif
 
 vec2 _decode_texcoord(uvec2 value) {
     // Normalize the texture coordinate, shifting out the LSB which stores the bias value.
@@ -62,13 +94,152 @@ vec2 _decode_light(uvec2 value) {
     return vec2(value) * (1.0 / LIGHT_MAX_COORD);
 }
 
+#ifdef USE_QUAD_TILING
+// Decodes the texture tiling of a merged quad (see QuadTiling), and stretches the texture coordinate of the vertex so
+// that the texture is repeated across the quad.
+void _init_tiling(uint tiling, uint sizeExponent, uvec2 texcoord) {
+    uint repeats = (tiling >> 1u) & 0xFu; // The number of repetitions, minus one
+
+    if (repeats == 0u) {
+        _vert_tile_origin = vec2(0.0);
+        _vert_tile_size = vec2(0.0);
+
+        return;
+    }
+
+    bvec2 axis = bvec2((tiling & 1u) == 0u, (tiling & 1u) != 0u);
+    vec2 size = mix(vec2(0.0), vec2(exp2(-float(sizeExponent + 1u))), axis);
+
+    // The texture coordinates are snapped to the sprite bounds, and shrunk by one unit towards the center of the
+    // sprite (see CompactChunkVertex#encodeTexture). The bias bit is set on the minimum side of the sprite.
+    bvec2 isMinSide = bvec2(texcoord & 1u);
+    vec2 coord = vec2(texcoord >> 1u) / TEXTURE_MAX_COORD;
+
+    vec2 origin = mix(coord + (1.0 / TEXTURE_MAX_COORD) - size, coord - (1.0 / TEXTURE_MAX_COORD), isMinSide);
+
+    _vert_tile_origin = mix(vec2(0.0), origin, axis);
+    _vert_tile_size = size;
+
+    _vert_tex_diffuse_coord += mix(size * float(repeats), vec2(0.0), isMinSide);
+}
+#endif
+
+#ifdef USE_VERTEX_PULLING
+const uint RECORD_KIND_RECT = 0u;
+const uint RECORD_KIND_VERTICES = 1u;
+
+// The scale of the positions in rectangle records, which lie on the 1/16th block grid
+const float GRID_SCALE = 1.0 / 16.0;
+
+vec4 _decode_color(uint value) {
+    return vec4((uvec4(value) >> uvec4(0u, 8u, 16u, 24u)) & uvec4(0xFFu)) * (1.0 / 255.0);
+}
+
+// Decodes a corner of a rectangle record. The first and third corners are stored, and each coordinate of the second
+// and fourth corners is taken from one of them, which is selected by the corner mask.
+void _vert_init_rect(uint base, uint corner) {
+    uint word0 = u_QuadData[base + 0u];
+    uint word1 = u_QuadData[base + 1u];
+
+    uint mask = word0 >> 27u;
+    uint select;
+
+    if ((corner & 1u) == 0u) {
+        select = (corner == 0u) ? 0u : 0x1Fu;
+    } else {
+        select = (corner == 1u) ? mask : ~mask;
+    }
+
+    uvec3 position0 = uvec3(word0, word0 >> 9u, word0 >> 18u) & uvec3(0x1FFu);
+    uvec3 position2 = uvec3(word1, word1 >> 14u, word1 >> 23u) & uvec3(0x1FFu);
+    bvec3 usePosition2 = notEqual((uvec3(select) >> uvec3(0u, 1u, 2u)) & 1u, uvec3(0u));
+
+    _vert_position = (mix(vec3(position0), vec3(position2), usePosition2) * GRID_SCALE) + MODEL_TRANSLATION;
+
+    uint texcoord0 = u_QuadData[base + 2u];
+    uint texcoord2 = u_QuadData[base + 3u];
+    bvec2 useTexcoord2 = notEqual((uvec2(select) >> uvec2(3u, 4u)) & 1u, uvec2(0u));
+
+    vec2 texcoord = mix(vec2(uvec2(texcoord0, texcoord0 >> 16u) & uvec2(0xFFFFu)),
+                        vec2(uvec2(texcoord2, texcoord2 >> 16u) & uvec2(0xFFFFu)), useTexcoord2);
+    _vert_tex_diffuse_coord = _decode_texcoord(uvec2(texcoord));
+
+    uint light = u_QuadData[base + 4u + (corner >> 1u)] >> ((corner & 1u) << 4u);
+    _vert_tex_light_coord = _decode_light(uvec2(light, light >> 8u) & uvec2(0xFFu));
+
+    uint color = u_QuadData[base + 6u];
+    uint shade = (u_QuadData[base + 7u] >> (corner << 3u)) & 0xFFu;
+    _vert_color = _decode_color((color & 0xFFFFFFu) | (shade << 24u));
+
+    _material_params = (word1 >> 9u) & 0x7u;
+    _draw_id = color >> 24u;
+}
+
+// Decodes a corner of a quad which is stored as four vertices in the layout of the quantized format
+void _vert_init_vertices(uint base, uint corner) {
+    uint vertex = base + (corner << 2u);
+
+    uint word0 = u_QuadData[vertex + 0u];
+    uint word1 = u_QuadData[vertex + 1u];
+    uint texcoord = u_QuadData[vertex + 3u];
+
+    _vert_position = _decode_position(word0, word1);
+    _vert_color = _decode_color(u_QuadData[vertex + 2u]);
+    _vert_tex_diffuse_coord = _decode_texcoord(uvec2(texcoord, texcoord >> 16u) & uvec2(0xFFFFu));
+    _vert_tex_light_coord = _decode_light(uvec2(word1 >> 16u, word1 >> 24u) & uvec2(0xFFu));
+
+    // The material is stored in the second vertex, since the others hold the kind of their record in its place
+    _material_params = (u_QuadData[base + 5u] >> 12u) & 0x7u;
+    _draw_id = word0 >> 24u;
+}
+
 void _vert_init() {
+    // The draw commands use a base vertex, so the vertex ID is the absolute index of the vertex within the region's
+    // buffer, in units of 8 bytes. Every record starts at a multiple of four units, so the record and the corner
+    // within it are recovered from the ID.
+    uint base = (uint(gl_VertexID) & ~3u) << 1u;
+    uint corner = uint(gl_VertexID) & 3u;
+    uint kind = (u_QuadData[base + 1u] >> 12u) & 0x3u;
+
+    if (kind == RECORD_KIND_RECT) {
+        _vert_init_rect(base, corner);
+    } else if (kind == RECORD_KIND_VERTICES) {
+        _vert_init_vertices(base, corner);
+    } else {
+        // The second record of a quad stored as vertices is drawn as a degenerate quad, which produces no fragments
+        _vert_position = vec3(0.0);
+        _vert_color = vec4(0.0);
+        _vert_tex_diffuse_coord = vec2(0.0);
+        _vert_tex_light_coord = vec2(0.0);
+
+        _material_params = 0u;
+        _draw_id = 0u;
+    }
+}
+#else
+void _vert_init() {
+#ifdef USE_VERTEX_FORMAT_QUANTIZED
     _vert_position = _decode_position(a_PositionHi, a_PositionLo);
+#else
+    _vert_position = _decode_position(a_PositionHi.xyz, a_PositionLo.xyz);
+#endif
     _vert_color = a_Color;
     _vert_tex_diffuse_coord = _decode_texcoord(a_TexCoord);
 
+#ifdef USE_VERTEX_FORMAT_QUANTIZED
+    _vert_tex_light_coord = _decode_light(uvec2(a_PositionLo >> 16u, a_PositionLo >> 24u) & uvec2(0xFFu));
+
+    _material_params = (a_PositionLo >> 12u) & 0xFu;
+    _draw_id = a_PositionHi >> 24u;
+#else
     _vert_tex_light_coord = _decode_light(a_LightAndData.xy);
 
-    _material_params = a_LightAndData[2];
+    _material_params = a_LightAndData[2] & 0x7u;
     _draw_id = a_LightAndData[3];
-}
\ No newline at end of file
+
+#ifdef USE_QUAD_TILING
+    _init_tiling(a_LightAndData[2] >> 3u, uint(a_PositionHi.w) | (uint(a_PositionLo.w) << 2u), a_TexCoord);
+#endif
+#endif
+}
+#endif
\ No newline at end of file